@@ -8,6 +8,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
@@ -146,4 +150,46 @@ public class BridgeUtils {
         }
         return roleSet;
     }
+
+    /**
+     * Waits for the result of a future. If the work failed, its exception is thrown as is if it is unchecked, and
+     * wrapped in a BridgeServiceException if not.
+     */
+    public static <T> T getFutureResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException(e);
+        } catch(ExecutionException e) {
+            throw unwrapExecutionException(e);
+        }
+    }
+
+    /**
+     * Waits up to the given time for the result of a future. Failures are thrown the same way as by
+     * {@link #getFutureResult(Future)}.
+     * 
+     * @throws TimeoutException
+     *         if the future isn't done in time; the work is not cancelled
+     */
+    public static <T> T getFutureResult(Future<T> future, long timeout, TimeUnit unit) throws TimeoutException {
+        try {
+            return future.get(timeout, unit);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException(e);
+        } catch(ExecutionException e) {
+            throw unwrapExecutionException(e);
+        }
+    }
+
+    private static RuntimeException unwrapExecutionException(ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+            return (RuntimeException)e.getCause();
+        } else if (e.getCause() instanceof Error) {
+            throw (Error)e.getCause();
+        }
+        return new BridgeServiceException(e.getCause());
+    }
 }
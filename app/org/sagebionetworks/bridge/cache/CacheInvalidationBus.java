@@ -0,0 +1,154 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * <p>
+ * Carries the invalidations of every in-process cache on one Redis pub/sub channel. Each cache has its own
+ * {@link CacheInvalidationChannel}, and messages name the cache they're for, so all caches share a single subscriber
+ * thread and a single Redis connection. A subscribed connection can't run other commands, so it is held for good and
+ * is not available to the rest of the node.
+ * </p>
+ * <p>
+ * Messages published by this node are not delivered to this node's own listeners, since the node that made the change
+ * has already updated its local copy. Pub/sub is fire and forget, so if the subscriber connection drops, messages can
+ * be lost. When the subscriber reconnects, every cache is told to invalidate everything.
+ * </p>
+ */
+public class CacheInvalidationBus {
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    private static final String MESSAGE_SEPARATOR = "|";
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    private final JedisPool jedisPool;
+    private final String redisChannel;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, CacheInvalidationChannel> channelMap = new ConcurrentHashMap<>();
+    private final Subscriber subscriber = new Subscriber();
+    private final Thread subscriberThread;
+    private volatile boolean shutdown = false;
+
+    /**
+     * Creates the bus and starts the subscriber thread. This is configured by Spring.
+     *
+     * @param jedisPool
+     *         Redis connection pool, must be non-null; the subscriber holds one connection from the pool
+     * @param redisChannel
+     *         Redis pub/sub channel name, must be non-blank
+     */
+    public CacheInvalidationBus(JedisPool jedisPool, String redisChannel) {
+        checkNotNull(jedisPool);
+        checkArgument(isNotBlank(redisChannel));
+        this.jedisPool = jedisPool;
+        this.redisChannel = redisChannel;
+
+        subscriberThread = new Thread(this::subscribeLoop, "cache-invalidation");
+        subscriberThread.setDaemon(true);
+        subscriberThread.start();
+    }
+
+    /** Called by each channel when it is created. Each cache name can only be used once. */
+    /* package-scoped */ void register(CacheInvalidationChannel channel) {
+        checkArgument(!channel.getCacheName().contains(MESSAGE_SEPARATOR), "Cache name can't contain "
+                + MESSAGE_SEPARATOR);
+        CacheInvalidationChannel existing = channelMap.putIfAbsent(channel.getCacheName(), channel);
+        checkArgument(existing == null, "Cache " + channel.getCacheName() + " already has a channel");
+    }
+
+    /**
+     * Tells all other nodes to invalidate their local copy of the object with the given key in the named cache. Errors
+     * are logged and swallowed, since the local copies on other nodes will still expire on their own.
+     */
+    /* package-scoped */ void publish(String cacheName, String key) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.publish(redisChannel, nodeId + MESSAGE_SEPARATOR + cacheName + MESSAGE_SEPARATOR + key);
+        } catch (RuntimeException ex) {
+            logger.error("Error publishing cache invalidation for key " + key + " of cache " + cacheName, ex);
+        }
+    }
+
+    /** Stops the subscriber. This is called by Spring when the context is closed. */
+    public void shutdown() {
+        shutdown = true;
+        if (subscriber.isSubscribed()) {
+            subscriber.unsubscribe();
+        }
+        subscriberThread.interrupt();
+    }
+
+    /* package-scoped */ void onMessage(String message) {
+        int nodeEnd = message.indexOf(MESSAGE_SEPARATOR);
+        int cacheEnd = nodeEnd < 0 ? -1 : message.indexOf(MESSAGE_SEPARATOR, nodeEnd + 1);
+        if (cacheEnd < 0) {
+            logger.warn("Malformed cache invalidation message: " + message);
+            return;
+        }
+        if (nodeId.equals(message.substring(0, nodeEnd))) {
+            // Our own message. We already have the latest copy.
+            return;
+        }
+        CacheInvalidationChannel channel = channelMap.get(message.substring(nodeEnd + 1, cacheEnd));
+        if (channel != null) {
+            channel.notifyListeners(message.substring(cacheEnd + 1));
+        }
+    }
+
+    /* package-scoped */ void onReconnect() {
+        // We may have missed messages while we were disconnected.
+        for (CacheInvalidationChannel channel : channelMap.values()) {
+            channel.notifyListeners(null);
+        }
+    }
+
+    private void subscribeLoop() {
+        while (!shutdown) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                // subscribe() blocks until we unsubscribe or the connection fails.
+                jedis.subscribe(subscriber, redisChannel);
+            } catch (RuntimeException ex) {
+                if (shutdown) {
+                    return;
+                }
+                logger.warn("Lost cache invalidation subscription on channel " + redisChannel + ", reconnecting: "
+                        + ex.getMessage());
+            }
+
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    private class Subscriber extends JedisPubSub {
+        private boolean subscribedBefore = false;
+
+        @Override
+        public void onMessage(String channel, String message) {
+            CacheInvalidationBus.this.onMessage(message);
+        }
+
+        @Override
+        public void onSubscribe(String channel, int subscribedChannels) {
+            if (subscribedBefore) {
+                onReconnect();
+            }
+            subscribedBefore = true;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Broadcasts the invalidations of one in-process cache to every app node. Each node keeps in-process copies of some
+ * cached objects (see {@link InvalidatingCache}). When one node changes such an object, it publishes the object's
+ * key, and every other node drops its local copy, so the next read goes back to the source. The invalidations of all
+ * caches travel over one {@link CacheInvalidationBus}.
+ */
+public class CacheInvalidationChannel {
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationChannel.class);
+
+    private final CacheInvalidationBus bus;
+    private final String cacheName;
+    private final List<Consumer<String>> listenerList = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates the channel and registers it on the bus. This is configured by Spring.
+     *
+     * @param bus
+     *         bus carrying the invalidations of all caches, must be non-null
+     * @param cacheName
+     *         name of the cache, unique on the bus, must be non-blank
+     */
+    public CacheInvalidationChannel(CacheInvalidationBus bus, String cacheName) {
+        checkNotNull(bus);
+        checkArgument(isNotBlank(cacheName));
+        this.bus = bus;
+        this.cacheName = cacheName;
+        bus.register(this);
+    }
+
+    /** Name of the cache this channel invalidates. */
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    /**
+     * Registers a listener, which is called with the key of each invalidated object, or with null if all objects
+     * should be invalidated. Listeners are called on the bus's subscriber thread and should return quickly.
+     */
+    public void addListener(Consumer<String> listener) {
+        checkNotNull(listener);
+        listenerList.add(listener);
+    }
+
+    /**
+     * Tells all other nodes to invalidate their local copy of the object with the given key. Errors are logged and
+     * swallowed, since the local copies on other nodes will still expire on their own.
+     */
+    public void publish(String key) {
+        checkArgument(isNotBlank(key));
+        bus.publish(cacheName, key);
+    }
+
+    /* package-scoped */ void notifyListeners(String key) {
+        for (Consumer<String> listener : listenerList) {
+            try {
+                listener.accept(key);
+            } catch (RuntimeException ex) {
+                logger.error("Error invalidating key " + key + " of cache " + cacheName, ex);
+            }
+        }
+    }
+}
@@ -3,8 +3,15 @@ package org.sagebionetworks.bridge.cache;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
 
 import org.sagebionetworks.bridge.BridgeConstants;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
@@ -12,12 +19,20 @@ import org.sagebionetworks.bridge.models.accounts.User;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.redis.JedisOps;
-import org.sagebionetworks.bridge.redis.JedisTransaction;
+import org.sagebionetworks.bridge.redis.JedisPipelineOps;
 import org.sagebionetworks.bridge.redis.RedisKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.CacheBuilder;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Transaction;
+import redis.clients.util.SafeEncoder;
 
 /**
  * A wrapper around whatever cache provider we ultimately decide to go with (probably Redis). 
@@ -26,8 +41,32 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 @Component
 public class CacheProvider {
 
+    private static final Logger logger = LoggerFactory.getLogger(CacheProvider.class);
+
+    private static final BridgeConfig CONFIG = BridgeConfigFactory.getConfig();
+
     private ObjectMapper bridgeObjectMapper;
     private JedisOps jedisOps;
+    private JedisPipelineOps jedisPipelineOps;
+    private JedisPool jedisPool;
+    private ExecutorService executorService;
+    private SessionCodec sessionCodec = SessionCodec.valueOf(CONFIG.getProperty("session.codec"));
+
+    // Lazy session refresh. Instead of extending the session TTLs on every read, we only extend them when the TTL may
+    // have dropped below the threshold, and do it in the background. To know that without asking Redis, we remember
+    // when this node last set or extended each session. TTLs only ever get extended, so the real remaining TTL is at
+    // least the full expiry minus the time since then.
+    private boolean lazySessionRefresh = Boolean.valueOf(CONFIG.getProperty("session.refresh.lazy"));
+    private final long sessionRefreshThresholdMillis = TimeUnit.SECONDS.toMillis(
+            CONFIG.getPropertyAsInt("session.refresh.threshold.seconds"));
+    private final ConcurrentMap<String, Long> sessionRefreshTimes = CacheBuilder.newBuilder()
+            .maximumSize(CONFIG.getPropertyAsInt("session.refresh.max.tracked"))
+            .expireAfterWrite(BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, TimeUnit.SECONDS)
+            .<String, Long>build().asMap();
+
+    // In-process copies of studies, in front of Redis. Studies change rarely and are read on nearly every request, so
+    // this saves a Redis round trip and a JSON deserialization on the hot path.
+    private final InvalidatingCache<Study> localStudyCache = new InvalidatingCache<>("study.cache.local");
 
     @Autowired
     public void setBridgeObjectMapper(BridgeObjectMapper bridgeObjectMapper) {
@@ -39,6 +78,43 @@ public class CacheProvider {
         this.jedisOps = jedisOps;
     }
 
+    /** Used for operations that take more than one Redis command, so each takes a single round trip. */
+    @Autowired
+    public void setJedisPipelineOps(JedisPipelineOps jedisPipelineOps) {
+        this.jedisPipelineOps = jedisPipelineOps;
+    }
+
+    /** Redis connection pool, used for sessions, which are stored as binary. This is configured by Spring. */
+    @Resource(name = "jedisPool")
+    public void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    /**
+     * Bounded executor that runs lazy session refreshes in the background. Refreshes it rejects are retried on a later
+     * request. This is configured by Spring.
+     */
+    @Resource(name = "sessionRefreshExecutorService")
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /** Format used to write sessions. Defaults to the session.codec setting. Used by unit tests. */
+    void setSessionCodec(SessionCodec sessionCodec) {
+        this.sessionCodec = sessionCodec;
+    }
+
+    /** Turns lazy session refresh on or off. Defaults to the session.refresh.lazy setting. Used by unit tests. */
+    void setLazySessionRefresh(boolean lazySessionRefresh) {
+        this.lazySessionRefresh = lazySessionRefresh;
+    }
+
+    /** Channel used to drop changed studies from the local copies of every node. This is configured by Spring. */
+    @Resource(name = "studyCacheInvalidationChannel")
+    public void setStudyInvalidationChannel(CacheInvalidationChannel studyInvalidationChannel) {
+        localStudyCache.setInvalidationChannel(studyInvalidationChannel);
+    }
+
     public void setUserSession(final UserSession session) {
 
         checkNotNull(session);
@@ -51,12 +127,12 @@ public class CacheProvider {
 
         final String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
         final String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
-        try (JedisTransaction transaction = jedisOps.getTransaction()) {
-            final String ser = bridgeObjectMapper.writeValueAsString(session);
-            final List<Object> results = transaction
-                    .setex(userKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, sessionToken)
-                    .setex(sessionKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, ser)
-                    .exec();
+        try (Jedis jedis = jedisPool.getResource()) {
+            final byte[] ser = sessionCodec.encode(session);
+            final Transaction transaction = jedis.multi();
+            transaction.setex(userKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, sessionToken);
+            transaction.setex(SafeEncoder.encode(sessionKey), BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, ser);
+            final List<Object> results = transaction.exec();
             if (results == null) {
                 throw new BridgeServiceException("Session storage error.");
             }
@@ -65,6 +141,7 @@ public class CacheProvider {
                     throw new BridgeServiceException("Session storage error.");
                 }
             }
+            sessionRefreshTimes.put(sessionToken, System.currentTimeMillis());
         } catch (Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -75,17 +152,20 @@ public class CacheProvider {
         checkNotNull(sessionToken);
         try {
             final String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
-            final String ser = jedisOps.get(sessionKey);
+            final byte[] ser;
+            try (Jedis jedis = jedisPool.getResource()) {
+                ser = jedis.get(SafeEncoder.encode(sessionKey));
+            }
             if (ser == null) {
                 return null;
             }
-            final UserSession session = bridgeObjectMapper.readValue(ser, UserSession.class);
+            // Sessions may have been written by a node with a different session.codec setting.
+            final UserSession session = SessionCodec.forData(ser).decode(ser);
             final String userKey = RedisKey.USER_SESSION.getRedisKey(session.getUser().getId());
-            try (JedisTransaction transaction = jedisOps.getTransaction(sessionKey)) {
-                transaction
-                        .expire(userKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS)
-                        .expire(sessionKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS)
-                        .exec();
+            if (lazySessionRefresh) {
+                refreshSessionIfNeeded(sessionToken, sessionKey, userKey);
+            } else {
+                jedisPipelineOps.expire(BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, userKey, sessionKey);
             }
             return session;
         } catch (Throwable e) {
@@ -94,6 +174,44 @@ public class CacheProvider {
         }
     }
 
+    /**
+     * Extends the session TTLs in the background, if this node doesn't know that they were extended recently enough.
+     * The refresh is a pipelined pair of EXPIREs. It doesn't need a transaction, since EXPIRE on a key that has been
+     * deleted in the meantime does nothing.
+     */
+    private void refreshSessionIfNeeded(final String sessionToken, final String sessionKey, final String userKey) {
+        final long now = System.currentTimeMillis();
+        final Long lastRefresh = sessionRefreshTimes.get(sessionToken);
+        if (lastRefresh != null) {
+            final long minRemainingMillis = TimeUnit.SECONDS.toMillis(BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS)
+                    - (now - lastRefresh);
+            if (minRemainingMillis > sessionRefreshThresholdMillis) {
+                return;
+            }
+        }
+
+        // Claim the refresh first, so concurrent requests for the same session don't all submit one.
+        final boolean claimed = (lastRefresh == null) ? sessionRefreshTimes.putIfAbsent(sessionToken, now) == null
+                : sessionRefreshTimes.replace(sessionToken, lastRefresh, now);
+        if (!claimed) {
+            return;
+        }
+        try {
+            executorService.execute(() -> {
+                try {
+                    jedisPipelineOps.expire(BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, userKey, sessionKey);
+                } catch (RuntimeException ex) {
+                    // The next request for this session will try again.
+                    sessionRefreshTimes.remove(sessionToken, now);
+                    logger.error("Error refreshing session TTL: " + ex.getMessage(), ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            sessionRefreshTimes.remove(sessionToken, now);
+            logger.warn("Session refresh rejected by executor, will retry on next request");
+        }
+    }
+
     public UserSession getUserSessionByUserId(final String userId) {
         checkNotNull(userId);
         String sessionToken = null;
@@ -114,9 +232,9 @@ public class CacheProvider {
         try {
             final String sessionKey = RedisKey.SESSION.getRedisKey(session.getSessionToken());
             final String userKey = RedisKey.USER_SESSION.getRedisKey(session.getUser().getId());
-            try (JedisTransaction transaction = jedisOps.getTransaction()) {
-                transaction.del(sessionKey).del(userKey).exec();
-            }
+            // A single DEL of both keys is atomic, so it doesn't need a transaction.
+            jedisOps.del(sessionKey, userKey);
+            sessionRefreshTimes.remove(session.getSessionToken());
         } catch(Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -129,9 +247,8 @@ public class CacheProvider {
             final String sessionToken = jedisOps.get(userKey);
             if (sessionToken != null) {
                 final String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
-                try (JedisTransaction transaction = jedisOps.getTransaction()) {
-                    transaction.del(sessionKey).del(userKey).exec();
-                }
+                jedisOps.del(sessionKey, userKey);
+                sessionRefreshTimes.remove(sessionToken);
             }
         } catch(Throwable e) {
             promptToStartRedisIfLocal(e);
@@ -151,24 +268,24 @@ public class CacheProvider {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
         }
+        localStudyCache.put(study.getIdentifier(), study);
     }
 
     public Study getStudy(String identifier) {
-        try {
-            String redisKey = RedisKey.STUDY.getRedisKey(identifier);
-            String ser = jedisOps.get(redisKey);
-            if (ser != null) {
-                jedisOps.expire(redisKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
-                return BridgeObjectMapper.get().readValue(ser, Study.class);
+        return localStudyCache.get(identifier, () -> {
+            try {
+                String redisKey = RedisKey.STUDY.getRedisKey(identifier);
+                String ser = jedisPipelineOps.getAndExpire(redisKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
+                return (ser == null) ? null : BridgeObjectMapper.get().readValue(ser, Study.class);
+            } catch (Throwable e) {
+                promptToStartRedisIfLocal(e);
+                throw new BridgeServiceException(e);
             }
-        } catch (Throwable e) {
-            promptToStartRedisIfLocal(e);
-            throw new BridgeServiceException(e);
-        }
-        return null;
+        });
     }
 
     public void removeStudy(String identifier) {
+        // Delete from Redis first, so a local read between the two steps can't copy the old study back in.
         try {
             String redisKey = RedisKey.STUDY.getRedisKey(identifier);
             jedisOps.del(redisKey);
@@ -176,6 +293,7 @@ public class CacheProvider {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
         }
+        localStudyCache.remove(identifier);
     }
 
     public String getString(String cacheKey) {
@@ -0,0 +1,203 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.config.BridgeConfigFactory;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
+
+/**
+ * <p>
+ * In-process cache whose entries are dropped on every node when the object behind them changes. Each node keeps its own
+ * copies, so reads are served without a round trip. When a node changes an object, it calls {@link #remove}, which
+ * drops the local entry and publishes the key through a {@link CacheInvalidationChannel}, so every other node drops its
+ * entry too. Entries also expire after a TTL, which bounds how long a copy can be stale if an invalidation message is
+ * lost (for example while a node reconnects to Redis). The size and TTL are read from the {@code <prefix>.max.size}
+ * and {@code <prefix>.ttl.seconds} settings.
+ * </p>
+ * <p>
+ * A loaded value is only cached if none of its keys were invalidated while it was being loaded, so a concurrent change
+ * can't be undone by a stale load (see {@link InvalidationStamps}). Optionally, concurrent loads of the same key on
+ * this node are coalesced into one (see {@link LoadCoalescer}).
+ * </p>
+ * <p>
+ * Classes using this cache only add their own key scheme. A cache that drops more than one entry for a key (for
+ * example all entries of a study) overrides {@link #evict}. Cached values are shared between callers and must not be
+ * modified.
+ * </p>
+ */
+public class InvalidatingCache<V> {
+    private static final BridgeConfig CONFIG = BridgeConfigFactory.getConfig();
+
+    private final Cache<String, V> cache;
+    private final InvalidationStamps invalidationStamps = new InvalidationStamps();
+    private final LoadCoalescer<V> loadCoalescer;
+    private CacheInvalidationChannel invalidationChannel;
+
+    /**
+     * Creates a cache whose loads are not coalesced.
+     *
+     * @param configPrefix
+     *         prefix of the size and TTL settings of this cache
+     */
+    public InvalidatingCache(String configPrefix) {
+        this(configPrefix, false);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param configPrefix
+     *         prefix of the size and TTL settings of this cache
+     * @param coalesceLoads
+     *         true if concurrent loads of the same key on this node should share one call to the loader
+     */
+    public InvalidatingCache(String configPrefix, boolean coalesceLoads) {
+        checkNotNull(configPrefix);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(CONFIG.getPropertyAsInt(configPrefix + ".max.size"))
+                .expireAfterWrite(CONFIG.getPropertyAsInt(configPrefix + ".ttl.seconds"), TimeUnit.SECONDS)
+                .recordStats().build();
+        this.loadCoalescer = coalesceLoads ? new LoadCoalescer<>() : null;
+    }
+
+    /** Channel used to tell other nodes about invalidated keys, and to hear about invalidations on other nodes. */
+    public void setInvalidationChannel(CacheInvalidationChannel invalidationChannel) {
+        this.invalidationChannel = invalidationChannel;
+        invalidationChannel.addListener(this::invalidateLocal);
+    }
+
+    /** Registers the hit and miss counts of this cache for export, under the given name. */
+    public void registerMetrics(MetricsRegistry metricsRegistry, String name) {
+        metricsRegistry.registerCache(name, cache);
+    }
+
+    /**
+     * Gets the value with the given key, calling the loader if it isn't cached. A null value is not cached.
+     *
+     * @param key
+     *         key of the value
+     * @param loader
+     *         loads the value on a cache miss; exceptions are passed through to the caller
+     * @return the value, shared with other callers
+     */
+    public V get(String key, Supplier<V> loader) {
+        return get(key, loader, value -> true);
+    }
+
+    /**
+     * Gets the value with the given key, calling the loader if it isn't cached. The loaded value is cached only if it
+     * is non-null and matches the given condition.
+     *
+     * @param key
+     *         key of the value
+     * @param loader
+     *         loads the value on a cache miss; exceptions are passed through to the caller
+     * @param cacheable
+     *         true if a loaded value may be cached
+     * @return the value, shared with other callers
+     */
+    public V get(String key, Supplier<V> loader, Predicate<? super V> cacheable) {
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        Supplier<V> stampedLoader = () -> {
+            long stamp = stamp();
+            V loaded = loader.get();
+            if (loaded != null && cacheable.test(loaded)) {
+                putIfCurrent(key, loaded, stamp);
+            }
+            return loaded;
+        };
+        return (loadCoalescer == null) ? stampedLoader.get() : loadCoalescer.load(key, stampedLoader);
+    }
+
+    /** The cached value with the given key, or null if there is none. */
+    public V getIfPresent(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Stamp to take before loading a value that is then cached with {@link #putIfCurrent}. Only needed by callers that
+     * don't load through {@link #get}.
+     */
+    public long stamp() {
+        return invalidationStamps.stamp();
+    }
+
+    /**
+     * Caches the value, unless its key or any of the other given keys was invalidated after the stamp was taken.
+     *
+     * @param key
+     *         key of the value
+     * @param value
+     *         loaded value
+     * @param stamp
+     *         stamp taken with {@link #stamp} before the value was loaded
+     * @param otherKeys
+     *         other keys the value is dropped under, for example the key of its study
+     * @return true if the value was cached
+     */
+    public boolean putIfCurrent(String key, V value, long stamp, String... otherKeys) {
+        if (invalidationStamps.isCurrent(stamp, key) && invalidationStamps.isCurrent(stamp, otherKeys)) {
+            cache.put(key, value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Caches a value that was just written to the source of truth, and drops the copies on other nodes, which may
+     * hold an older value.
+     */
+    public void put(String key, V value) {
+        invalidateLocal(key);
+        cache.put(key, value);
+        publish(key);
+    }
+
+    /** Drops the entries for the given key, on this node and on all other nodes. */
+    public void remove(String key) {
+        invalidateLocal(key);
+        publish(key);
+    }
+
+    /**
+     * Drops the entries for the given key from this node. By default this is the entry with that key; override this to
+     * drop other entries that depend on the key.
+     *
+     * @param map
+     *         view of this node's entries
+     * @param key
+     *         invalidated key
+     */
+    protected void evict(ConcurrentMap<String, V> map, String key) {
+        map.remove(key);
+    }
+
+    /** Drops the entries for the given key from this node, or all entries if the key is null. */
+    private void invalidateLocal(String key) {
+        if (key == null) {
+            invalidationStamps.invalidateAll();
+            cache.invalidateAll();
+        } else {
+            invalidationStamps.invalidate(key);
+            evict(cache.asMap(), key);
+        }
+    }
+
+    private void publish(String key) {
+        if (invalidationChannel != null) {
+            invalidationChannel.publish(key);
+        }
+    }
+}
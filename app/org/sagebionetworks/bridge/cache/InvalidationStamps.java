@@ -0,0 +1,81 @@
+package org.sagebionetworks.bridge.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * <p>
+ * Tells an in-process cache whether a value it just loaded may have been invalidated while it was being loaded, so a
+ * stale load can't undo a concurrent change. A loader takes a {@link #stamp} before loading, and only caches the value
+ * if {@link #isCurrent} says none of the value's keys were invalidated after that stamp. Invalidating one key does not
+ * affect loads of other keys.
+ * </p>
+ * <p>
+ * The stamp of each invalidated key is kept for a few minutes, which is far longer than any load takes. Stamps that are
+ * dropped early, because too many keys were invalidated, are folded into a floor that applies to all keys, so dropping
+ * a stamp can only make a load look stale, never current.
+ * </p>
+ */
+public class InvalidationStamps {
+    private static final int MAX_KEY_STAMPS = 100000;
+    private static final int KEY_STAMP_RETENTION_SECONDS = 600;
+
+    private final AtomicLong sequence = new AtomicLong();
+    // Loads stamped before this are stale for every key. Raised by invalidateAll() and by dropped key stamps.
+    private final AtomicLong floor = new AtomicLong();
+    private final Cache<String, Long> keyStamps = CacheBuilder.newBuilder()
+            .maximumSize(MAX_KEY_STAMPS)
+            .expireAfterWrite(KEY_STAMP_RETENTION_SECONDS, TimeUnit.SECONDS)
+            .removalListener(this::onRemoval)
+            .build();
+
+    /** Stamp to take before loading a value. */
+    public long stamp() {
+        return sequence.get();
+    }
+
+    /**
+     * True if none of the given keys, and not all keys, were invalidated after the stamp was taken.
+     *
+     * @param stamp
+     *         stamp taken before the value was loaded
+     * @param keys
+     *         keys the value is dropped under, for example its own key and the key of its study
+     */
+    public boolean isCurrent(long stamp, String... keys) {
+        if (floor.get() > stamp) {
+            return false;
+        }
+        for (String key : keys) {
+            Long keyStamp = keyStamps.getIfPresent(key);
+            if (keyStamp != null && keyStamp > stamp) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Marks loads of the key that are already running as stale. Call this before dropping the cached value. */
+    public void invalidate(String key) {
+        keyStamps.put(key, sequence.incrementAndGet());
+    }
+
+    /** Marks every load that is already running as stale. Call this before clearing the cache. */
+    public void invalidateAll() {
+        raiseFloor(sequence.incrementAndGet());
+    }
+
+    private void onRemoval(RemovalNotification<String, Long> notification) {
+        if (notification.wasEvicted()) {
+            raiseFloor(notification.getValue());
+        }
+    }
+
+    private void raiseFloor(long stamp) {
+        floor.accumulateAndGet(stamp, Math::max);
+    }
+}
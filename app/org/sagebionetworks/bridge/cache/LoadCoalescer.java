@@ -0,0 +1,47 @@
+package org.sagebionetworks.bridge.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import com.google.common.collect.Maps;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+
+/**
+ * Coalesces concurrent loads of the same key on this node: if several callers load a key at once, only the first one
+ * calls its loader, and the others wait for it and share its result (or its exception). Loads of different keys don't
+ * wait for each other, and a key is loaded again by the next caller once its load has finished.
+ */
+public class LoadCoalescer<V> {
+    // Loads in progress on this node, by key. Later callers wait on the first caller's load.
+    private final ConcurrentMap<String, CompletableFuture<V>> loadsInProgress = Maps.newConcurrentMap();
+
+    /**
+     * Loads the value of the given key, or waits for the load that is already in progress.
+     *
+     * @param key
+     *         key of the value
+     * @param loader
+     *         loads the value if no load of the key is in progress; exceptions are passed through to all waiting
+     *         callers
+     * @return the loaded value
+     */
+    public V load(String key, Supplier<V> loader) {
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> loadInProgress = loadsInProgress.putIfAbsent(key, load);
+        if (loadInProgress != null) {
+            return BridgeUtils.getFutureResult(loadInProgress);
+        }
+        try {
+            V value = loader.get();
+            load.complete(value);
+            return value;
+        } catch(Throwable t) {
+            load.completeExceptionally(t);
+            throw t;
+        } finally {
+            loadsInProgress.remove(key, load);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.sagebionetworks.bridge.cache;
+
+import java.util.List;
+import java.util.function.Supplier;
+import javax.annotation.Resource;
+
+import com.google.common.collect.ImmutableList;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+
+/**
+ * In-process cache of each study's schedule plans, for all app versions. Every task request schedules every plan in
+ * the study, so this saves reading and deserializing the plans (and their polymorphic strategies) from DynamoDB each
+ * time. Cached plans are deserialized once, so the parsing done when a plan is deserialized (event IDs, times of day)
+ * is only done once as well. A study's plans are dropped when any of them is created, updated or deleted.
+ */
+@Component
+public class SchedulePlanCache {
+    private final InvalidatingCache<List<SchedulePlan>> cache = new InvalidatingCache<>("schedule.plan.cache");
+
+    /** Channel used to drop changed schedule plans on every node. This is configured by Spring. */
+    @Resource(name = "schedulePlanCacheInvalidationChannel")
+    public void setInvalidationChannel(CacheInvalidationChannel invalidationChannel) {
+        cache.setInvalidationChannel(invalidationChannel);
+    }
+
+    /**
+     * Gets all schedule plans in the given study, calling the loader if they aren't cached.
+     *
+     * @param studyIdentifier
+     *         study the plans live in
+     * @param loader
+     *         fetches all of the study's plans, for all app versions, on a cache miss; exceptions are passed through to
+     *         the caller
+     * @return the study's plans
+     */
+    public List<SchedulePlan> getSchedulePlans(StudyIdentifier studyIdentifier,
+            Supplier<List<SchedulePlan>> loader) {
+        return cache.get(studyIdentifier.getIdentifier(), () -> ImmutableList.copyOf(loader.get()));
+    }
+
+    /** Drops the study's cached plans, on this node and on all other nodes. */
+    public void removeSchedulePlans(StudyIdentifier studyIdentifier) {
+        cache.remove(studyIdentifier.getIdentifier());
+    }
+}
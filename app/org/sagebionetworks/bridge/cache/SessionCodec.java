@@ -0,0 +1,56 @@
+package org.sagebionetworks.bridge.cache;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileConstants;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.accounts.UserSession;
+
+/**
+ * <p>
+ * Formats for storing user sessions in Redis. The format used for writing is selected by the session.codec setting.
+ * Reading doesn't depend on the setting: {@link #forData} detects the format from the stored bytes, so nodes can read
+ * sessions written in either format. To switch formats, first deploy this code everywhere, then change the setting.
+ * </p>
+ * <p>
+ * Both formats are produced by a {@link BridgeObjectMapper}, so they contain exactly the same fields. Smile is
+ * Jackson's binary JSON. It writes each property name once per session (later occurrences are back-references), and
+ * numbers as binary, so sessions are smaller and faster to parse. Smile data always starts with the ":)\n" header,
+ * which can never be the start of a JSON object.
+ * </p>
+ */
+public enum SessionCodec {
+    /** UTF-8 JSON. These are the same bytes the session was stored as before there was a choice of codec. */
+    JSON(BridgeObjectMapper.get()),
+
+    /** Jackson Smile (binary JSON). */
+    SMILE(new BridgeObjectMapper(new SmileFactory()));
+
+    private final ObjectMapper mapper;
+
+    SessionCodec(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /** Serializes the session in this format. */
+    public byte[] encode(UserSession session) throws IOException {
+        return mapper.writeValueAsBytes(session);
+    }
+
+    /** Deserializes a session that was stored in this format. */
+    public UserSession decode(byte[] data) throws IOException {
+        return mapper.readValue(data, UserSession.class);
+    }
+
+    /** Returns the codec that the given stored session was written with. */
+    public static SessionCodec forData(byte[] data) {
+        if (data.length >= 3 && data[0] == SmileConstants.HEADER_BYTE_1 && data[1] == SmileConstants.HEADER_BYTE_2
+                && data[2] == SmileConstants.HEADER_BYTE_3) {
+            return SMILE;
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,88 @@
+package org.sagebionetworks.bridge.cache;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.Resource;
+
+import com.google.common.cache.CacheBuilder;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.config.BridgeConfigFactory;
+import org.sagebionetworks.bridge.models.studies.StudyConsent;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+
+/**
+ * <p>
+ * In-process cache of study consent documents and of each study's active consent, so checking a participant's consent
+ * at sign-in doesn't query DynamoDB and download the document from S3 every time.
+ * </p>
+ * <p>
+ * Document contents are keyed by their S3 storage path, which includes the consent's createdOn timestamp. A document
+ * is never rewritten once it's stored, so these entries never need to be dropped. The active consent of a study changes
+ * when another consent is published, or when the study's consents are deleted, and its entry is then dropped.
+ * </p>
+ */
+@Component
+public class StudyConsentCache {
+    private static final BridgeConfig CONFIG = BridgeConfigFactory.getConfig();
+
+    private final ConcurrentMap<String, String> documentCache = CacheBuilder.newBuilder()
+            .maximumSize(CONFIG.getPropertyAsInt("study.consent.cache.max.size"))
+            .expireAfterAccess(CONFIG.getPropertyAsInt("study.consent.cache.ttl.seconds"), TimeUnit.SECONDS)
+            .<String, String>build().asMap();
+
+    private final InvalidatingCache<StudyConsent> activeConsentCache = new InvalidatingCache<>("study.consent.cache");
+
+    /** Channel used to drop changed active consents on every node. This is configured by Spring. */
+    @Resource(name = "studyConsentCacheInvalidationChannel")
+    public void setInvalidationChannel(CacheInvalidationChannel invalidationChannel) {
+        activeConsentCache.setInvalidationChannel(invalidationChannel);
+    }
+
+    /**
+     * Gets the active consent of the study, calling the loader if it isn't cached. A study without an active consent
+     * is not cached.
+     *
+     * @param studyIdentifier
+     *         study of the consent
+     * @param loader
+     *         fetches the active consent on a cache miss, or returns null if there is none; exceptions are passed
+     *         through to the caller
+     * @return the active consent, or null if there is none
+     */
+    public StudyConsent getActiveConsent(StudyIdentifier studyIdentifier, Supplier<StudyConsent> loader) {
+        return activeConsentCache.get(studyIdentifier.getIdentifier(), loader);
+    }
+
+    /**
+     * Gets the content of the consent document stored at the given path, calling the loader if it isn't cached.
+     *
+     * @param storagePath
+     *         S3 key of the document
+     * @param loader
+     *         downloads the document on a cache miss; exceptions are passed through to the caller
+     * @return the document content
+     */
+    public String getDocumentContent(String storagePath, Supplier<String> loader) {
+        String content = documentCache.get(storagePath);
+        if (content == null) {
+            content = loader.get();
+            if (content != null) {
+                documentCache.putIfAbsent(storagePath, content);
+            }
+        }
+        return content;
+    }
+
+    /** Caches the content of a document that has just been stored at the given path. */
+    public void putDocumentContent(String storagePath, String content) {
+        documentCache.put(storagePath, content);
+    }
+
+    /** Drops the cached active consent of the study, on this node and on all other nodes. */
+    public void removeActiveConsent(StudyIdentifier studyIdentifier) {
+        activeConsentCache.remove(studyIdentifier.getIdentifier());
+    }
+}
@@ -0,0 +1,51 @@
+package org.sagebionetworks.bridge.cache;
+
+import java.util.function.Supplier;
+import javax.annotation.Resource;
+
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolder;
+import org.sagebionetworks.bridge.models.surveys.Survey;
+
+/**
+ * In-process cache of published survey versions, with their elements, keyed by survey GUID and createdOn. A published
+ * version can no longer be edited, so its entry only needs to be dropped when the version is deleted (which marks it
+ * deleted, or removes it). Unpublished versions are never cached. If several callers miss the same version at once,
+ * only the first one loads it.
+ */
+@Component
+public class SurveyCache {
+    private static final String KEY_SEPARATOR = ":";
+
+    private final InvalidatingCache<Survey> cache = new InvalidatingCache<>("survey.cache", true);
+
+    /** Channel used to drop deleted survey versions on every node. This is configured by Spring. */
+    @Resource(name = "surveyCacheInvalidationChannel")
+    public void setInvalidationChannel(CacheInvalidationChannel invalidationChannel) {
+        cache.setInvalidationChannel(invalidationChannel);
+    }
+
+    /**
+     * Gets the survey version with the given GUID and createdOn, calling the loader if it isn't cached. The loaded
+     * survey is cached only if it is published.
+     *
+     * @param keys
+     *         survey GUID and createdOn
+     * @param loader
+     *         fetches the survey with its elements on a cache miss; exceptions are passed through to the caller
+     * @return the survey, shared with other callers
+     */
+    public Survey getSurvey(GuidCreatedOnVersionHolder keys, Supplier<Survey> loader) {
+        return cache.get(getSurveyKey(keys), loader, Survey::isPublished);
+    }
+
+    /** Drops the cached copy of the given survey version, on this node and on all other nodes. */
+    public void removeSurvey(GuidCreatedOnVersionHolder keys) {
+        cache.remove(getSurveyKey(keys));
+    }
+
+    private static String getSurveyKey(GuidCreatedOnVersionHolder keys) {
+        return keys.getGuid() + KEY_SEPARATOR + keys.getCreatedOn();
+    }
+}
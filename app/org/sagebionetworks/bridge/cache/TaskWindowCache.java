@@ -0,0 +1,125 @@
+package org.sagebionetworks.bridge.cache;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import javax.annotation.Resource;
+
+import com.google.common.collect.ImmutableList;
+import org.joda.time.DateTime;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.models.schedules.ScheduleContext;
+import org.sagebionetworks.bridge.models.schedules.Task;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+
+/**
+ * <p>
+ * In-process cache of each participant's tasks, keyed by health code. Getting tasks schedules every plan in the study
+ * through the requested end time, persists the tasks that haven't been persisted yet, and reads them all back. Each
+ * entry remembers the end time its tasks were scheduled through (the "watermark"). Scheduling through an earlier end
+ * time would only produce tasks that have already been persisted, so a request that ends on or before the watermark,
+ * from the same app and time zone, can be answered from the entry. Apps poll for tasks every time they come to the
+ * foreground, and the controller rounds the end time to the end of the day, so most polls are hits.
+ * </p>
+ * <p>
+ * Anything that changes what would be scheduled or what was persisted drops the entry: task events (which includes
+ * consenting), task updates and deletes, and withdrawing consent drop the participant's entry, and schedule plan
+ * changes drop the entries of every participant in the study.
+ * </p>
+ */
+@Component
+public class TaskWindowCache {
+    private static final String KEY_SEPARATOR = ":";
+    private static final String HEALTH_CODE_KEY_PREFIX = "healthCode" + KEY_SEPARATOR;
+    private static final String STUDY_KEY_PREFIX = "study" + KEY_SEPARATOR;
+
+    // Entries are keyed by health code. Invalidating a study key drops the entries of every participant in the study.
+    private final InvalidatingCache<TaskWindow> cache = new InvalidatingCache<TaskWindow>("task.window.cache") {
+        @Override
+        protected void evict(ConcurrentMap<String, TaskWindow> map, String key) {
+            if (key.startsWith(STUDY_KEY_PREFIX)) {
+                String studyId = key.substring(STUDY_KEY_PREFIX.length());
+                map.values().removeIf(window -> window.studyIdentifier.getIdentifier().equals(studyId));
+            } else {
+                map.remove(key);
+            }
+        }
+    };
+
+    /** Channel used to drop changed tasks on every node. This is configured by Spring. */
+    @Resource(name = "taskWindowCacheInvalidationChannel")
+    public void setInvalidationChannel(CacheInvalidationChannel invalidationChannel) {
+        cache.setInvalidationChannel(invalidationChannel);
+    }
+
+    /**
+     * Gets the participant's tasks for the given context, calling the loader if they haven't been scheduled through
+     * the context's end time yet. The returned tasks may include tasks scheduled after the context's end time, and
+     * tasks that have been hidden since they were read, so callers must filter them.
+     *
+     * @param context
+     *         schedule context of the request
+     * @param loader
+     *         schedules and persists the tasks through the context's end time, then reads back the participant's
+     *         tasks; exceptions are passed through to the caller
+     * @return the participant's tasks, scheduled through at least the context's end time
+     */
+    public List<Task> getTasks(ScheduleContext context, Supplier<List<Task>> loader) {
+        String key = getHealthCodeKey(context.getHealthCode());
+        TaskWindow window = cache.getIfPresent(key);
+        if (window != null && window.covers(context)) {
+            return window.tasks;
+        }
+
+        long stamp = cache.stamp();
+        List<Task> tasks = ImmutableList.copyOf(loader.get());
+        cache.putIfCurrent(key, new TaskWindow(context, tasks), stamp, getStudyKey(context.getStudyIdentifier()));
+        return tasks;
+    }
+
+    /** Drops the participant's tasks, on this node and on all other nodes. */
+    public void removeTasks(String healthCode) {
+        cache.remove(getHealthCodeKey(healthCode));
+    }
+
+    /** Drops the tasks of every participant in the study, on this node and on all other nodes. */
+    public void removeStudy(StudyIdentifier studyIdentifier) {
+        cache.remove(getStudyKey(studyIdentifier));
+    }
+
+    private static String getHealthCodeKey(String healthCode) {
+        return HEALTH_CODE_KEY_PREFIX + healthCode;
+    }
+
+    private static String getStudyKey(StudyIdentifier studyIdentifier) {
+        return STUDY_KEY_PREFIX + studyIdentifier.getIdentifier();
+    }
+
+    /** A participant's tasks, and the context they were scheduled for. */
+    private static final class TaskWindow {
+        private final StudyIdentifier studyIdentifier;
+        private final ScheduleContext context;
+        private final List<Task> tasks;
+
+        TaskWindow(ScheduleContext context, List<Task> tasks) {
+            this.studyIdentifier = context.getStudyIdentifier();
+            this.context = context;
+            this.tasks = tasks;
+        }
+
+        /**
+         * True if these tasks answer a request with the given context. The app version decides which plans are
+         * scheduled and which tasks are returned, and the time zone decides when tasks are scheduled, so both must
+         * match.
+         */
+        boolean covers(ScheduleContext other) {
+            DateTime scheduledThrough = context.getEndsOn();
+            return studyIdentifier.getIdentifier().equals(other.getStudyIdentifier().getIdentifier())
+                    && Objects.equals(context.getClientInfo(), other.getClientInfo())
+                    && Objects.equals(context.getZone(), other.getZone())
+                    && !other.getEndsOn().isAfter(scheduledThrough);
+        }
+    }
+}
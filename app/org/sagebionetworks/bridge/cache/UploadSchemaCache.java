@@ -0,0 +1,72 @@
+package org.sagebionetworks.bridge.cache;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import javax.annotation.Resource;
+
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.upload.UploadSchema;
+
+/**
+ * In-process cache of the upload schemas that upload validation looks up for every upload. A schema revision never
+ * changes once it's written (updating a schema writes a new revision), so entries don't need to be refreshed. They are
+ * only dropped when the schema is deleted, since a deleted schema revision can be created again with different fields.
+ * Surveys are cached by {@link SurveyCache}.
+ */
+@Component
+public class UploadSchemaCache {
+    private static final String KEY_SEPARATOR = ":";
+
+    // Entries are keyed by schema prefix and revision. Invalidating a schema prefix drops all revisions of that schema.
+    private final InvalidatingCache<UploadSchema> cache = new InvalidatingCache<UploadSchema>("upload.schema.cache") {
+        @Override
+        protected void evict(ConcurrentMap<String, UploadSchema> map, String keyPrefix) {
+            map.keySet().removeIf(key -> key.startsWith(keyPrefix));
+        }
+    };
+
+    /** Channel used to drop deleted schemas on every node. This is configured by Spring. */
+    @Resource(name = "uploadSchemaCacheInvalidationChannel")
+    public void setInvalidationChannel(CacheInvalidationChannel invalidationChannel) {
+        cache.setInvalidationChannel(invalidationChannel);
+    }
+
+    /**
+     * Gets the upload schema with the given study, schema ID, and revision, calling the loader if it isn't cached.
+     *
+     * @param studyIdentifier
+     *         study the schema lives in
+     * @param schemaId
+     *         schema ID
+     * @param schemaRev
+     *         schema revision
+     * @param loader
+     *         fetches the schema on a cache miss; exceptions are passed through to the caller
+     * @return the schema
+     */
+    public UploadSchema getUploadSchema(StudyIdentifier studyIdentifier, String schemaId, int schemaRev,
+            Supplier<UploadSchema> loader) {
+        String keyPrefix = getSchemaKeyPrefix(studyIdentifier, schemaId);
+        String key = keyPrefix + schemaRev;
+        UploadSchema schema = cache.getIfPresent(key);
+        if (schema == null) {
+            long stamp = cache.stamp();
+            schema = loader.get();
+            if (schema != null) {
+                cache.putIfCurrent(key, schema, stamp, keyPrefix);
+            }
+        }
+        return schema;
+    }
+
+    /** Drops all cached revisions of the given schema, on this node and on all other nodes. */
+    public void removeUploadSchemas(StudyIdentifier studyIdentifier, String schemaId) {
+        cache.remove(getSchemaKeyPrefix(studyIdentifier, schemaId));
+    }
+
+    private static String getSchemaKeyPrefix(StudyIdentifier studyIdentifier, String schemaId) {
+        return studyIdentifier.getIdentifier() + KEY_SEPARATOR + schemaId + KEY_SEPARATOR;
+    }
+}
@@ -1,5 +1,9 @@
 package org.sagebionetworks.bridge.cache;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import javax.annotation.Resource;
+
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.redis.RedisKey;
@@ -12,6 +16,17 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.base.Joiner;
 import com.google.common.base.Supplier;
 
+/**
+ * <p>
+ * Caches the JSON of views in Redis, with an in-process copy of each view's UTF-8 bytes in front of Redis, so views
+ * that every device asks for (like a newly published survey) are served without a Redis round trip or re-encoding.
+ * </p>
+ * <p>
+ * Loads are coalesced: if several requests on this node miss the same view at once, only the first one reads Redis
+ * and, on a Redis miss, calls the supplier. Removing a view drops it from Redis and from the in-process cache on every
+ * node.
+ * </p>
+ */
 @Component
 public class ViewCache {
     
@@ -27,6 +42,8 @@ public class ViewCache {
         }
     };
     
+    private final InvalidatingCache<byte[]> localCache = new InvalidatingCache<>("view.cache.local", true);
+    
     private CacheProvider cache;
     
     @Autowired
@@ -34,6 +51,12 @@ public class ViewCache {
         this.cache = cacheProvider;
     }
     
+    /** Channel used to drop removed views on every node. This is configured by Spring. */
+    @Resource(name = "viewCacheInvalidationChannel")
+    public void setInvalidationChannel(CacheInvalidationChannel invalidationChannel) {
+        localCache.setInvalidationChannel(invalidationChannel);
+    }
+    
     /**
      * Get the JSON for the viewCacheKey, or if nothing has been cached, call the supplier, 
      * cache the JSON representation of the object returned, and return that JSON.
@@ -42,26 +65,31 @@ public class ViewCache {
      * @return
      */
     public <T> String getView(ViewCacheKey<T> key, Supplier<T> supplier) {
-        try {
-            String value = cache.getString(key.getKey());
-            if (value == null) {
-                value = cacheView(key, supplier);
-            } else {
-                logger.debug("Retrieving " +key.getKey()+"' JSON from cache");
-            }
-            return value;
-        } catch(JsonProcessingException e) {
-            throw new BridgeServiceException(e);
-        }
+        return new String(getViewBytes(key, supplier), UTF_8);
+    }
+    
+    /**
+     * Get the UTF-8 encoded JSON for the viewCacheKey, or if nothing has been cached, call the supplier, 
+     * cache the JSON representation of the object returned, and return that JSON. Controllers should 
+     * return these bytes as is. The returned array is shared and must not be modified.
+     * @param key
+     * @param supplier
+     * @return
+     */
+    public <T> byte[] getViewBytes(ViewCacheKey<T> key, Supplier<T> supplier) {
+        return localCache.get(key.getKey(), () -> loadView(key, supplier));
     }
 
     /**
-     * Remove the JSON for the view represented by the viewCacheKey.
+     * Remove the JSON for the view represented by the viewCacheKey, on this node and on all other nodes.
      * @param key
      */
     public <T> void removeView(ViewCacheKey<T> key) {
         logger.debug("Deleting JSON for '" +key.getKey() +"'");
+        // Delete from Redis first, so a load on this node that starts after the local copy is dropped can't read the
+        // old JSON back from Redis.
         cache.removeString(key.getKey());
+        localCache.remove(key.getKey());
     }
     
     /**
@@ -76,6 +104,20 @@ public class ViewCache {
         return new ViewCacheKey<T>(RedisKey.VIEW.getRedisKey(id + ":" + clazz.getName()));
     }
     
+    private <T> byte[] loadView(ViewCacheKey<T> key, Supplier<T> supplier) {
+        try {
+            String value = cache.getString(key.getKey());
+            if (value == null) {
+                value = cacheView(key, supplier);
+            } else {
+                logger.debug("Retrieving " +key.getKey()+"' JSON from cache");
+            }
+            return value.getBytes(UTF_8);
+        } catch(JsonProcessingException e) {
+            throw new BridgeServiceException(e);
+        }
+    }
+    
     private <T> String cacheView(ViewCacheKey<T> key, Supplier<T> supplier) throws JsonProcessingException {
         logger.debug("Caching JSON for " +key.getKey()+"'");
         T object = supplier.get();
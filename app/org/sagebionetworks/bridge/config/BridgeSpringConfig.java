@@ -2,8 +2,11 @@ package org.sagebionetworks.bridge.config;
 
 import java.util.List;
 import java.util.MissingResourceException;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Resource;
 
@@ -37,6 +40,8 @@ import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 
+import org.sagebionetworks.bridge.cache.CacheInvalidationBus;
+import org.sagebionetworks.bridge.cache.CacheInvalidationChannel;
 import org.sagebionetworks.bridge.crypto.AesGcmEncryptor;
 import org.sagebionetworks.bridge.crypto.BridgeEncryptor;
 import org.sagebionetworks.bridge.crypto.CmsEncryptor;
@@ -44,6 +49,7 @@ import org.sagebionetworks.bridge.crypto.CmsEncryptorCacheLoader;
 import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataAttachment;
 import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataRecord;
 import org.sagebionetworks.bridge.dynamodb.DynamoIndexHelper;
+import org.sagebionetworks.bridge.dynamodb.DynamoParticipantOptions;
 import org.sagebionetworks.bridge.dynamodb.DynamoStudyConsent1;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurvey;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurveyElement;
@@ -52,8 +58,13 @@ import org.sagebionetworks.bridge.dynamodb.DynamoTask;
 import org.sagebionetworks.bridge.dynamodb.DynamoTaskEvent;
 import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
 import org.sagebionetworks.bridge.dynamodb.DynamoUploadSchema;
+import org.sagebionetworks.bridge.dynamodb.DynamoUserConsent2;
 import org.sagebionetworks.bridge.dynamodb.DynamoUtils;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.metrics.Dependency;
+import org.sagebionetworks.bridge.metrics.DependencyTimingInterceptor;
+import org.sagebionetworks.bridge.metrics.DependencyTimingRequestHandler;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
 import org.sagebionetworks.bridge.redis.JedisOps;
 import org.sagebionetworks.bridge.s3.S3Helper;
 import org.sagebionetworks.bridge.upload.DecryptHandler;
@@ -61,10 +72,12 @@ import org.sagebionetworks.bridge.upload.IosSchemaValidationHandler2;
 import org.sagebionetworks.bridge.upload.ParseJsonHandler;
 import org.sagebionetworks.bridge.upload.S3DownloadHandler;
 import org.sagebionetworks.bridge.upload.StrictValidationHandler;
+import org.sagebionetworks.bridge.upload.StreamingUnzipHandler;
 import org.sagebionetworks.bridge.upload.TranscribeConsentHandler;
 import org.sagebionetworks.bridge.upload.UnzipHandler;
 import org.sagebionetworks.bridge.upload.UploadArtifactsHandler;
 import org.sagebionetworks.bridge.upload.UploadValidationHandler;
+import org.sagebionetworks.bridge.upload.UploadValidationScheduler;
 
 @ComponentScan({"org.sagebionetworks.bridge"})
 @Configuration
@@ -118,6 +131,76 @@ public class BridgeSpringConfig {
         return jedisPool;
     }
 
+    // One subscriber connection carries the invalidations of all in-process caches.
+    @Bean(name = "cacheInvalidationBus")
+    @Resource(name = "jedisPool")
+    public CacheInvalidationBus cacheInvalidationBus(final JedisPool jedisPool) {
+        return new CacheInvalidationBus(jedisPool, "cache-invalidation");
+    }
+
+    @Bean(name = "studyCacheInvalidationChannel")
+    @Autowired
+    public CacheInvalidationChannel studyCacheInvalidationChannel(CacheInvalidationBus cacheInvalidationBus) {
+        return new CacheInvalidationChannel(cacheInvalidationBus, "study");
+    }
+
+    @Bean(name = "uploadSchemaCacheInvalidationChannel")
+    @Autowired
+    public CacheInvalidationChannel uploadSchemaCacheInvalidationChannel(CacheInvalidationBus cacheInvalidationBus) {
+        return new CacheInvalidationChannel(cacheInvalidationBus, "upload-schema");
+    }
+
+    @Bean(name = "surveyCacheInvalidationChannel")
+    @Autowired
+    public CacheInvalidationChannel surveyCacheInvalidationChannel(CacheInvalidationBus cacheInvalidationBus) {
+        return new CacheInvalidationChannel(cacheInvalidationBus, "survey");
+    }
+
+    @Bean(name = "studyConsentCacheInvalidationChannel")
+    @Autowired
+    public CacheInvalidationChannel studyConsentCacheInvalidationChannel(CacheInvalidationBus cacheInvalidationBus) {
+        return new CacheInvalidationChannel(cacheInvalidationBus, "study-consent");
+    }
+
+    @Bean(name = "stormpathAccountCacheInvalidationChannel")
+    @Autowired
+    public CacheInvalidationChannel stormpathAccountCacheInvalidationChannel(CacheInvalidationBus cacheInvalidationBus) {
+        return new CacheInvalidationChannel(cacheInvalidationBus, "stormpath-account");
+    }
+
+    @Bean(name = "schedulePlanCacheInvalidationChannel")
+    @Autowired
+    public CacheInvalidationChannel schedulePlanCacheInvalidationChannel(CacheInvalidationBus cacheInvalidationBus) {
+        return new CacheInvalidationChannel(cacheInvalidationBus, "schedule-plan");
+    }
+
+    @Bean(name = "taskWindowCacheInvalidationChannel")
+    @Autowired
+    public CacheInvalidationChannel taskWindowCacheInvalidationChannel(CacheInvalidationBus cacheInvalidationBus) {
+        return new CacheInvalidationChannel(cacheInvalidationBus, "task-window");
+    }
+
+    @Bean(name = "viewCacheInvalidationChannel")
+    @Autowired
+    public CacheInvalidationChannel viewCacheInvalidationChannel(CacheInvalidationBus cacheInvalidationBus) {
+        return new CacheInvalidationChannel(cacheInvalidationBus, "view");
+    }
+
+    // Applied to the jedisOps bean in application-context.xml.
+    @Bean(name = "redisTimingInterceptor")
+    @Autowired
+    public DependencyTimingInterceptor redisTimingInterceptor(MetricsRegistry metricsRegistry) {
+        return new DependencyTimingInterceptor(metricsRegistry, Dependency.REDIS);
+    }
+
+    // Applied to the Stormpath directory DAO in application-context.xml. The account DAO is served partly from caches,
+    // so it times its own calls to Stormpath.
+    @Bean(name = "stormpathTimingInterceptor")
+    @Autowired
+    public DependencyTimingInterceptor stormpathTimingInterceptor(MetricsRegistry metricsRegistry) {
+        return new DependencyTimingInterceptor(metricsRegistry, Dependency.STORMPATH);
+    }
+
     @Bean(name = "jedisOps")
     @Resource(name = "jedisPool")
     public JedisOps jedisOps(final JedisPool jedisPool) {
@@ -152,17 +235,22 @@ public class BridgeSpringConfig {
     }
 
     @Bean(name = "dynamoDbClient")
-    public AmazonDynamoDBClient dynamoDbClient() {
+    @Autowired
+    public AmazonDynamoDBClient dynamoDbClient(MetricsRegistry metricsRegistry) {
         int maxRetries = bridgeConfig().getPropertyAsInt("ddb.max.retries");
         ClientConfiguration awsClientConfig = PredefinedClientConfigurations.dynamoDefault()
                 .withMaxErrorRetry(maxRetries);
-        return new AmazonDynamoDBClient(awsCredentials(), awsClientConfig);
+        AmazonDynamoDBClient client = new AmazonDynamoDBClient(awsCredentials(), awsClientConfig);
+        client.addRequestHandler(new DependencyTimingRequestHandler(metricsRegistry, Dependency.DYNAMODB));
+        return client;
     }
 
     @Bean(name = "s3Client")
     @Resource(name = "awsCredentials")
-    public AmazonS3Client s3Client(BasicAWSCredentials awsCredentials) {
-        return new AmazonS3Client(awsCredentials);
+    public AmazonS3Client s3Client(BasicAWSCredentials awsCredentials, MetricsRegistry metricsRegistry) {
+        AmazonS3Client client = new AmazonS3Client(awsCredentials);
+        client.addRequestHandler(new DependencyTimingRequestHandler(metricsRegistry, Dependency.S3));
+        return client;
     }
 
     @Bean(name = "s3UploadClient")
@@ -173,8 +261,10 @@ public class BridgeSpringConfig {
 
     @Bean(name = "s3CmsClient")
     @Resource(name = "s3CmsCredentials")
-    public AmazonS3Client s3CmsClient(BasicAWSCredentials s3CmsCredentials) {
-        return new AmazonS3Client(s3CmsCredentials);
+    public AmazonS3Client s3CmsClient(BasicAWSCredentials s3CmsCredentials, MetricsRegistry metricsRegistry) {
+        AmazonS3Client client = new AmazonS3Client(s3CmsCredentials);
+        client.addRequestHandler(new DependencyTimingRequestHandler(metricsRegistry, Dependency.S3));
+        return client;
     }
 
     @Bean(name ="uploadTokenServiceClient")
@@ -208,8 +298,10 @@ public class BridgeSpringConfig {
 
     @Bean(name = "s3ConsentsClient")
     @Resource(name = "s3ConsentsCredentials")
-    public AmazonS3Client s3ConsentsClient(BasicAWSCredentials awsCredentials) {
-        return new AmazonS3Client(awsCredentials);
+    public AmazonS3Client s3ConsentsClient(BasicAWSCredentials awsCredentials, MetricsRegistry metricsRegistry) {
+        AmazonS3Client client = new AmazonS3Client(awsCredentials);
+        client.addRequestHandler(new DependencyTimingRequestHandler(metricsRegistry, Dependency.S3));
+        return client;
     }
 
     @Bean(name = "s3ConsentsHelper")
@@ -238,6 +330,61 @@ public class BridgeSpringConfig {
         return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("async.worker.thread.count"));
     }
 
+    @Bean(name = "uploadArtifactsExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService uploadArtifactsExecutorService(BridgeConfig bridgeConfig) {
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("upload.artifacts.thread.count"));
+    }
+
+    @Bean(name = "surveyLoaderExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService surveyLoaderExecutorService(BridgeConfig bridgeConfig) {
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("survey.loader.thread.count"));
+    }
+
+    // Steps of building a session at sign in. When all threads are busy and the queue is full, steps run on the
+    // request thread, so sign in slows down instead of failing.
+    @Bean(name = "sessionExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService sessionExecutorService(BridgeConfig bridgeConfig) {
+        int threadCount = bridgeConfig.getPropertyAsInt("session.step.thread.count");
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(bridgeConfig.getPropertyAsInt("session.step.queue.capacity")),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // Session refreshes are best effort, so when the queue is full they are dropped and retried on a later request.
+    @Bean(name = "sessionRefreshExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService sessionRefreshExecutorService(BridgeConfig bridgeConfig) {
+        int threadCount = bridgeConfig.getPropertyAsInt("session.refresh.thread.count");
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(bridgeConfig.getPropertyAsInt("session.refresh.queue.capacity")),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean(name = "mailExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService mailExecutorService(BridgeConfig bridgeConfig) {
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("email.sender.thread.count"));
+    }
+
+    @Bean(name = "userDeletionExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService userDeletionExecutorService(BridgeConfig bridgeConfig) {
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("user.delete.thread.count"));
+    }
+
+    @Bean(name = "uploadValidationScheduler")
+    @Resource(name = "bridgeConfig")
+    public UploadValidationScheduler uploadValidationScheduler(BridgeConfig bridgeConfig) {
+        return new UploadValidationScheduler(bridgeConfig.getPropertyAsInt("upload.validation.worker.thread.count"),
+                bridgeConfig.getPropertyAsInt("upload.validation.queue.capacity"),
+                bridgeConfig.getPropertyAsInt("upload.validation.max.queued.per.study"),
+                UploadValidationScheduler.RejectionPolicy.valueOf(
+                        bridgeConfig.getProperty("upload.validation.rejection.policy")));
+    }
+
     @Bean(name = "supportEmail")
     @Resource(name = "bridgeConfig")
     public String supportEmail(BridgeConfig bridgeConfig) {
@@ -306,10 +453,17 @@ public class BridgeSpringConfig {
 
     @Bean(name = "uploadValidationHandlerList")
     @Autowired
-    public List<UploadValidationHandler> uploadValidationHandlerList(S3DownloadHandler s3DownloadHandler,
-            DecryptHandler decryptHandler, UnzipHandler unzipHandler, ParseJsonHandler parseJsonHandler,
+    public List<UploadValidationHandler> uploadValidationHandlerList(final BridgeConfig bridgeConfig,
+            S3DownloadHandler s3DownloadHandler, DecryptHandler decryptHandler, UnzipHandler unzipHandler,
+            ParseJsonHandler parseJsonHandler, StreamingUnzipHandler streamingUnzipHandler,
             IosSchemaValidationHandler2 iosSchemaValidationHandler2, StrictValidationHandler strictValidationHandler,
             TranscribeConsentHandler transcribeConsentHandler, UploadArtifactsHandler uploadArtifactsHandler) {
+        if (Boolean.parseBoolean(bridgeConfig.getProperty("upload.validation.streaming"))) {
+            // Unzip and parse JSON in one pass, holding at most one unzipped entry in memory at a time.
+            return ImmutableList.of(s3DownloadHandler, decryptHandler, streamingUnzipHandler,
+                    iosSchemaValidationHandler2, strictValidationHandler, transcribeConsentHandler,
+                    uploadArtifactsHandler);
+        }
         return ImmutableList.of(s3DownloadHandler, decryptHandler, unzipHandler, parseJsonHandler,
                 iosSchemaValidationHandler2, strictValidationHandler, transcribeConsentHandler,
                 uploadArtifactsHandler);
@@ -339,6 +493,19 @@ public class BridgeSpringConfig {
         return DynamoUtils.getMapper(DynamoSurveyResponse.class, bridgeConfig, client);
     }
 
+    @Bean(name = "participantOptionsStudyIndex")
+    @Autowired
+    public DynamoIndexHelper participantOptionsStudyIndex(final BridgeConfig bridgeConfig,
+            final AmazonDynamoDB client) {
+        return DynamoIndexHelper.create(DynamoParticipantOptions.class, "studyKey-index", bridgeConfig, client);
+    }
+
+    @Bean(name = "userConsentStudyIndex")
+    @Autowired
+    public DynamoIndexHelper userConsentStudyIndex(final BridgeConfig bridgeConfig, final AmazonDynamoDB client) {
+        return DynamoIndexHelper.create(DynamoUserConsent2.class, "studyKey-index", bridgeConfig, client);
+    }
+
     @Bean(name = "uploadSchemaStudyIdIndex")
     @Autowired
     public DynamoIndexHelper uploadSchemaStudyIdIndex(final BridgeConfig bridgeConfig, final AmazonDynamoDB client) {
@@ -20,6 +20,41 @@ public interface BackfillDao {
      */
     void updateTaskStatus(String taskId, BackfillStatus status);
 
+    /**
+     * Records how many items of the task's input have been processed, so a failed or interrupted
+     * task can resume after them.
+     */
+    void updateTaskCheckpoint(String taskId, int checkpoint);
+
+    /**
+     * Gets the number of items of the task's input that have been processed, or 0 if the task
+     * has not recorded a checkpoint.
+     */
+    int getTaskCheckpoint(String taskId);
+
+    /**
+     * Records a hash of the task's input, so a checkpoint is only used to resume the task on
+     * the same input.
+     */
+    void updateTaskInputHash(String taskId, String inputHash);
+
+    /**
+     * Gets the hash of the input the task's checkpoint was taken on, or null if the task has
+     * not recorded one.
+     */
+    String getTaskInputHash(String taskId);
+
+    /**
+     * Records that the node running the task is still running it.
+     */
+    void updateTaskHeartbeat(String taskId);
+
+    /**
+     * Gets when the node running the task last recorded a heartbeat, in epoch milliseconds. If the task has
+     * no heartbeat, this is when the task was created.
+     */
+    long getTaskHeartbeat(String taskId);
+
     /**
      * Gets the backfill task by ID.
      */
@@ -1,5 +1,8 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Manages one-way mapping from health ID to health code.
  */
@@ -14,5 +17,11 @@ public interface HealthIdDao {
      * Given a health ID, gets the health code.
      */
     String getCode(String id);
+
+    /**
+     * Given many health IDs, gets their health codes with batch reads. IDs that don't exist are left out of the 
+     * returned map.
+     */
+    Map<String, String> getCodes(Collection<String> ids);
     
 }
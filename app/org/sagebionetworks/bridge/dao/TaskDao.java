@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.dao;
 
 import java.util.List;
+import java.util.Set;
 
 import org.sagebionetworks.bridge.models.schedules.ScheduleContext;
 import org.sagebionetworks.bridge.models.schedules.Task;
@@ -18,12 +19,15 @@ public interface TaskDao {
     public List<Task> getTasks(ScheduleContext context);
     
     /**
-     * Have any of the tasks for this run key been created?
+     * Of the supplied run keys, which have already had tasks created for them? This resolves the run keys of 
+     * each schedule plan at once, so the cost does not grow with the number of run keys being checked, or with 
+     * the runs persisted outside the window of run keys being checked.
+     * 
      * @param healthCode
-     * @param runKey
-     * @return
+     * @param runKeys
+     * @return the subset of runKeys for which tasks have been persisted (never null)
      */
-    public boolean taskRunHasNotOccurred(String healthCode, String runKey);
+    public Set<String> getRunKeysThatHaveOccurred(String healthCode, Set<String> runKeys);
     
     /**
      * Save tasks (tasks will only be saved if they are not in the database).
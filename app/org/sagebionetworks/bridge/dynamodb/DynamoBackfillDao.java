@@ -7,6 +7,8 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import java.util.Iterator;
 import java.util.List;
 
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.BackfillDao;
 import org.sagebionetworks.bridge.models.backfill.BackfillRecord;
@@ -63,6 +65,62 @@ public class DynamoBackfillDao implements BackfillDao {
         taskMapper.save(task);
     }
 
+    @Override
+    public void updateTaskCheckpoint(String taskId, int checkpoint) {
+        checkArgument(isNotBlank(taskId));
+        checkArgument(checkpoint >= 0);
+        DynamoBackfillTask task = new DynamoBackfillTask(taskId);
+        task = taskMapper.load(task);
+        task.setCheckpoint(checkpoint);
+        taskMapper.save(task);
+    }
+
+    @Override
+    public int getTaskCheckpoint(String taskId) {
+        checkArgument(isNotBlank(taskId));
+        DynamoBackfillTask task = new DynamoBackfillTask(taskId);
+        task = taskMapper.load(task);
+        return (task == null || task.getCheckpoint() == null) ? 0 : task.getCheckpoint();
+    }
+
+    @Override
+    public void updateTaskInputHash(String taskId, String inputHash) {
+        checkArgument(isNotBlank(taskId));
+        checkArgument(isNotBlank(inputHash));
+        DynamoBackfillTask task = new DynamoBackfillTask(taskId);
+        task = taskMapper.load(task);
+        task.setInputHash(inputHash);
+        taskMapper.save(task);
+    }
+
+    @Override
+    public String getTaskInputHash(String taskId) {
+        checkArgument(isNotBlank(taskId));
+        DynamoBackfillTask task = new DynamoBackfillTask(taskId);
+        task = taskMapper.load(task);
+        return (task == null) ? null : task.getInputHash();
+    }
+
+    @Override
+    public void updateTaskHeartbeat(String taskId) {
+        checkArgument(isNotBlank(taskId));
+        DynamoBackfillTask task = new DynamoBackfillTask(taskId);
+        task = taskMapper.load(task);
+        task.setHeartbeat(DateTime.now(DateTimeZone.UTC).getMillis());
+        taskMapper.save(task);
+    }
+
+    @Override
+    public long getTaskHeartbeat(String taskId) {
+        checkArgument(isNotBlank(taskId));
+        DynamoBackfillTask task = new DynamoBackfillTask(taskId);
+        task = taskMapper.load(task);
+        if (task == null) {
+            return 0L;
+        }
+        return task.getHeartbeat() == null ? task.getTimestamp() : task.getHeartbeat();
+    }
+
     @Override
     public BackfillTask getTask(String taskId) {
         checkArgument(isNotBlank(taskId));
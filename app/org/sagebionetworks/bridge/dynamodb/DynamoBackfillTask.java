@@ -24,6 +24,9 @@ public class DynamoBackfillTask implements BackfillTask {
 
     private String user;
     private String status;
+    private Integer checkpoint;
+    private String inputHash;
+    private Long heartbeat;
 
     public DynamoBackfillTask() {
     }
@@ -84,6 +87,39 @@ public class DynamoBackfillTask implements BackfillTask {
         this.status = status;
     }
 
+    /**
+     * Number of items of the backfill's input that have been processed. A failed or interrupted backfill
+     * resumes after them.
+     */
+    public Integer getCheckpoint() {
+        return checkpoint;
+    }
+    public void setCheckpoint(Integer checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Hash of the input the checkpoint was taken on. The checkpoint is only used if the backfill is resumed on an
+     * input with the same hash.
+     */
+    public String getInputHash() {
+        return inputHash;
+    }
+    public void setInputHash(String inputHash) {
+        this.inputHash = inputHash;
+    }
+
+    /**
+     * When the node running the backfill last reported that it is still running it, in epoch milliseconds. Null if
+     * the task has not been started.
+     */
+    public Long getHeartbeat() {
+        return heartbeat;
+    }
+    public void setHeartbeat(Long heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+
     @DynamoDBIgnore
     @Override
     public String getId() {
@@ -1,8 +1,13 @@
 package org.sagebionetworks.bridge.dynamodb;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.HealthIdDao;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +19,9 @@ import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.ConsistentReads;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.SaveBehavior;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 @Component
 public class DynamoHealthIdDao implements HealthIdDao {
@@ -52,4 +60,26 @@ public class DynamoHealthIdDao implements HealthIdDao {
         }
         return null;
     }
+
+    @Override
+    public Map<String, String> getCodes(Collection<String> ids) {
+        checkNotNull(ids);
+        Map<String, String> codes = Maps.newHashMap();
+        if (ids.isEmpty()) {
+            return codes;
+        }
+        // A batch get fails if it asks for the same key twice.
+        List<Object> keys = Lists.newArrayListWithCapacity(ids.size());
+        for (String id : Sets.newHashSet(ids)) {
+            keys.add(new DynamoHealthId(id, null));
+        }
+        Map<String, List<Object>> results = mapper.batchLoad(keys);
+        for (List<Object> tableResults : results.values()) {
+            for (Object result : tableResults) {
+                DynamoHealthId healthId = (DynamoHealthId)result;
+                codes.put(healthId.getId(), healthId.getCode());
+            }
+        }
+        return codes;
+    }
 }
@@ -4,10 +4,14 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.document.DynamoDB;
@@ -15,6 +19,7 @@ import com.amazonaws.services.dynamodbv2.document.Index;
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.RangeKeyCondition;
 import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
 
 import org.sagebionetworks.bridge.config.Config;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
@@ -27,6 +32,10 @@ import org.sagebionetworks.bridge.json.BridgeObjectMapper;
  */
 public class DynamoIndexHelper {
 
+    private static final String VALIDATION_EXCEPTION_ERROR_CODE = "ValidationException";
+    private static final String INDEX_BACKFILLING_MESSAGE = "Cannot read from backfilling global secondary index";
+    private static final String INDEX_MISSING_MESSAGE = "The table does not have the specified index";
+
     public static DynamoIndexHelper create(final Class<?> dynamoTable, final String indexName,
             final Config config, final AmazonDynamoDB client) {
         final DynamoDB ddb = new DynamoDB(client);
@@ -107,6 +116,56 @@ public class DynamoIndexHelper {
         return count;
     }
     
+    /**
+     * Queries the secondary index with the specified key name and value, and returns the distinct string values of a
+     * single projected attribute across all matching items. This allows a caller to resolve membership for many key
+     * values with one query, rather than issuing a count query for each value.
+     *
+     * @param attributeName
+     *         name of the projected attribute to collect
+     * @param indexKeyName
+     *         index key name to query on
+     * @param indexKeyValue
+     *         index key value to query on
+     * @param rangeKeyCondition
+     *         range condition for query on range portion of key (optional)
+     * @return set of attribute values found in the index; items without the attribute are skipped
+     */
+    public Set<String> queryAttributeValues(@Nonnull String attributeName, @Nonnull String indexKeyName,
+            @Nonnull Object indexKeyValue, RangeKeyCondition rangeKeyCondition) {
+        Set<String> values = new HashSet<>();
+        Iterable<Item> itemIter = queryHelper(indexKeyName, indexKeyValue, rangeKeyCondition);
+        for (Item oneItem : itemIter) {
+            String value = oneItem.getString(attributeName);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+    
+    /**
+     * Queries the secondary index with the specified key name and value, and passes each item to the consumer as it 
+     * is read. Results are fetched from DynamoDB one page at a time, and only the current page is held in memory, so 
+     * this can be used to read all of a study's rows without loading them all at once. Only the attributes projected 
+     * onto the index will be returned.
+     *
+     * @param indexKeyName
+     *         index key name to query on
+     * @param indexKeyValue
+     *         index key value to query on
+     * @param rangeKeyCondition
+     *         range condition for query on range portion of key (optional)
+     * @param consumer
+     *         called with each item, in the order the index returns them
+     */
+    public void forEachItem(@Nonnull String indexKeyName, @Nonnull Object indexKeyValue,
+            RangeKeyCondition rangeKeyCondition, @Nonnull Consumer<Item> consumer) {
+        for (Item oneItem : queryHelper(indexKeyName, indexKeyValue, rangeKeyCondition)) {
+            consumer.accept(oneItem);
+        }
+    }
+    
     /**
      * Queries the secondary index with the specified key name and value. Results will be returned as a list of
      * the specified class. Unlike {@link #queryKeys}, this method re-queries DynamoDB to get the full rows of the
@@ -157,6 +216,23 @@ public class DynamoIndexHelper {
         return recordList;
     }
 
+    /**
+     * True if the exception means the index can't be read, because it was just added to an existing table and is 
+     * still being backfilled, or hasn't been created yet. Callers can fall back to scanning the table until the index 
+     * is ready. DynamoDB reports both cases as a ValidationException, so they are told apart from other validation 
+     * errors (like a bad query) by the error message.
+     */
+    public static boolean isIndexUnavailable(AmazonServiceException ex) {
+        if (ex instanceof ResourceNotFoundException) {
+            return true;
+        }
+        if (!VALIDATION_EXCEPTION_ERROR_CODE.equals(ex.getErrorCode()) || ex.getErrorMessage() == null) {
+            return false;
+        }
+        return ex.getErrorMessage().startsWith(INDEX_BACKFILLING_MESSAGE)
+                || ex.getErrorMessage().startsWith(INDEX_MISSING_MESSAGE);
+    }
+
     /**
      * This abstracts away the call to index.query(), which returns an ItemCollection. While ItemCollection implements
      * Iterable, it overrides iterator() to return an IteratorSupport, which is not publicly exposed. This makes
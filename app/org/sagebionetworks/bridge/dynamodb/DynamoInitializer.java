@@ -1,8 +1,10 @@
 package org.sagebionetworks.bridge.dynamodb;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
@@ -13,11 +15,17 @@ import org.slf4j.LoggerFactory;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClient;
+import com.amazonaws.services.dynamodbv2.model.CreateGlobalSecondaryIndexAction;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexUpdate;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
 import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
 import com.amazonaws.services.dynamodbv2.model.TableStatus;
+import com.amazonaws.services.dynamodbv2.model.UpdateTableRequest;
 
 public class DynamoInitializer {
 
@@ -105,11 +113,58 @@ public class DynamoInitializer {
                 logger.info("Creating table " + table.getTableName());
                 DYNAMO.createTable(createTableRequest);
             } else {
-                final TableDescription existingTable = existingTables.get(table.getTableName());
+                TableDescription existingTable = existingTables.get(table.getTableName());
+                if (addMissingGlobalSecondaryIndices(table, existingTable)) {
+                    existingTable = DYNAMO.describeTable(table.getTableName()).getTable();
+                }
                 DynamoUtils.compareSchema(table, existingTable);
             }
             DynamoUtils.waitForActive(DYNAMO, table.getTableName());
         }
         logger.info("DynamoDB tables are ready.");
     }
+
+    /**
+     * Adds global secondary indices that have been added to an annotated type since its table was created. DynamoDB
+     * only creates one index per table at a time, so indices are added one after the other. The table is usable
+     * while a new index is backfilled, but the index can't be queried until the backfill is done, so callers of new
+     * indices should fall back to scanning (see {@link DynamoIndexHelper#isIndexUnavailable}).
+     *
+     * @return true if any index was added
+     */
+    private static boolean addMissingGlobalSecondaryIndices(final TableDescription table,
+            final TableDescription existingTable) {
+        if (table.getGlobalSecondaryIndexes() == null) {
+            return false;
+        }
+        Set<String> existingIndexNames = new HashSet<>();
+        if (existingTable.getGlobalSecondaryIndexes() != null) {
+            for (GlobalSecondaryIndexDescription existingIndex : existingTable.getGlobalSecondaryIndexes()) {
+                existingIndexNames.add(existingIndex.getIndexName());
+            }
+        }
+        boolean added = false;
+        for (GlobalSecondaryIndexDescription index : table.getGlobalSecondaryIndexes()) {
+            if (existingIndexNames.contains(index.getIndexName())) {
+                continue;
+            }
+            ProvisionedThroughputDescription throughput = index.getProvisionedThroughput();
+            CreateGlobalSecondaryIndexAction createIndex = new CreateGlobalSecondaryIndexAction()
+                    .withIndexName(index.getIndexName())
+                    .withKeySchema(index.getKeySchema())
+                    .withProjection(index.getProjection())
+                    .withProvisionedThroughput(throughput == null ?
+                            new ProvisionedThroughput(DEFAULT_READ_CAPACITY, DEFAULT_WRITE_CAPACITY) :
+                            new ProvisionedThroughput(throughput.getReadCapacityUnits(),
+                                    throughput.getWriteCapacityUnits()));
+            logger.info("Adding index " + index.getIndexName() + " to table " + table.getTableName());
+            DYNAMO.updateTable(new UpdateTableRequest()
+                    .withTableName(table.getTableName())
+                    .withAttributeDefinitions(table.getAttributeDefinitions())
+                    .withGlobalSecondaryIndexUpdates(new GlobalSecondaryIndexUpdate().withCreate(createIndex)));
+            DynamoUtils.waitForActive(DYNAMO, table.getTableName());
+            added = true;
+        }
+        return added;
+    }
 }
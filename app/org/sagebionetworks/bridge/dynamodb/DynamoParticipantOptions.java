@@ -10,7 +10,9 @@ import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexHashKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.collect.Maps;
@@ -23,7 +25,13 @@ public class DynamoParticipantOptions {
     private String studyKey; // range
     private Map<String,String> options = Maps.newHashMap();
     
+    /**
+     * The study-keyed index projects all attributes, so the options of every participant in a study can be read 
+     * from the index alone.
+     */
     @DynamoDBAttribute
+    @DynamoDBIndexHashKey(attributeName="studyKey", globalSecondaryIndexName = "studyKey-index")
+    @DynamoProjection(projectionType=ProjectionType.ALL, globalSecondaryIndexName = "studyKey-index")
     public String getStudyKey() {
         return studyKey;
     }
@@ -1,30 +1,49 @@
 package org.sagebionetworks.bridge.dynamodb;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Resource;
+
 import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.ParticipantOption;
 import org.sagebionetworks.bridge.dao.ParticipantOptionsDao;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.ConsistentReads;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.SaveBehavior;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 @Component
 public class DynamoParticipantOptionsDao implements ParticipantOptionsDao {
 
+    private static final Logger logger = LoggerFactory.getLogger(DynamoParticipantOptionsDao.class);
+
+    private static final String STUDY_KEY = "studyKey";
+    private static final String HEALTH_CODE_ATTRIBUTE = "healthDataCode";
+    private static final String DATA_ATTRIBUTE = "data";
+    private static final int STUDY_SCAN_SEGMENTS = 4;
+    private static final DynamoDBMapperConfig ITERATION_ONLY_CONFIG = new DynamoDBMapperConfig(
+            PaginationLoadingStrategy.ITERATION_ONLY);
+
     private DynamoDBMapper mapper;
+    private DynamoIndexHelper studyIndex;
 
     @Autowired
     public void setDynamoDbClient(BridgeConfig bridgeConfig, AmazonDynamoDB client) {
@@ -38,6 +57,11 @@ public class DynamoParticipantOptionsDao implements ParticipantOptionsDao {
     protected void setMapper(DynamoDBMapper mapper) {
         this.mapper = mapper;
     }
+    
+    @Resource(name = "participantOptionsStudyIndex")
+    public void setStudyIndex(DynamoIndexHelper studyIndex) {
+        this.studyIndex = studyIndex;
+    }
 
     @Override
     public void setOption(StudyIdentifier studyIdentifier, String healthCode, ParticipantOption option, String value) {
@@ -95,39 +119,94 @@ public class DynamoParticipantOptionsDao implements ParticipantOptionsDao {
         DynamoParticipantOptions keyObject = new DynamoParticipantOptions();
         keyObject.setHealthCode(healthCode);
         
-        Map<ParticipantOption,String> map = Maps.newHashMap();
         DynamoParticipantOptions options = mapper.load(keyObject);
         if (options == null) {
-            return map;
+            return Maps.newHashMap();
+        }
+        return toOptionMap(options.getOptions());
+    }
+
+    @Override
+    public Map<String,Map<ParticipantOption,String>> getAllParticipantOptions(Collection<String> healthCodes) {
+        Map<String,Map<ParticipantOption,String>> optionsByHealthCode = Maps.newHashMap();
+        if (healthCodes.isEmpty()) {
+            return optionsByHealthCode;
+        }
+        // A batch get fails if it asks for the same key twice.
+        List<Object> keys = Lists.newArrayListWithCapacity(healthCodes.size());
+        for (String healthCode : Sets.newHashSet(healthCodes)) {
+            DynamoParticipantOptions keyObject = new DynamoParticipantOptions();
+            keyObject.setHealthCode(healthCode);
+            keys.add(keyObject);
+        }
+        Map<String, List<Object>> results = mapper.batchLoad(keys);
+        for (List<Object> tableResults : results.values()) {
+            for (Object result : tableResults) {
+                DynamoParticipantOptions options = (DynamoParticipantOptions)result;
+                optionsByHealthCode.put(options.getHealthCode(), toOptionMap(options.getOptions()));
+            }
         }
+        // Participants who never set an option have no record.
+        for (String healthCode : healthCodes) {
+            if (!optionsByHealthCode.containsKey(healthCode)) {
+                optionsByHealthCode.put(healthCode, toOptionMap(Maps.newHashMap()));
+            }
+        }
+        return optionsByHealthCode;
+    }
+
+    /** All options, with the default value of each option that isn't set. */
+    private static Map<ParticipantOption,String> toOptionMap(Map<String,String> options) {
+        Map<ParticipantOption,String> map = Maps.newHashMap();
         for (ParticipantOption opt : ParticipantOption.values()) {
             String value = opt.getDefaultValue();
-            if (options.getOptions().get(opt.name()) != null) {
-                value = options.getOptions().get(opt.name());
+            if (options.get(opt.name()) != null) {
+                value = options.get(opt.name());
             }
             map.put(opt, value);
-        }        
+        }
         return map;
     }
     
     @Override
     public OptionLookup getOptionForAllStudyParticipants(StudyIdentifier studyIdentifier, ParticipantOption option) {
         // The only place we need the study, and that's to find all the options for all the 
-        // participants in a given study.
+        // participants in a given study. The study index projects all attributes, so this reads 
+        // only the study's rows, a page at a time.
+        final OptionLookup map = new OptionLookup(option.getDefaultValue());
+        try {
+            studyIndex.forEachItem(STUDY_KEY, studyIdentifier.getIdentifier(), null, item -> {
+                DynamoParticipantOptions options = new DynamoParticipantOptions();
+                if (item.getString(DATA_ATTRIBUTE) != null) {
+                    options.setData(item.getString(DATA_ATTRIBUTE));
+                }
+                map.put(item.getString(HEALTH_CODE_ATTRIBUTE), options.getOptions().get(option.name()));
+            });
+        } catch (AmazonServiceException e) {
+            if (!DynamoIndexHelper.isIndexUnavailable(e)) {
+                throw e;
+            }
+            logger.warn("Study index of participant options can't be read, scanning the table instead: " + 
+                    e.getMessage());
+            scanOptionForAllStudyParticipants(studyIdentifier, option, map);
+        }
+        return map;
+    }
+
+    private void scanOptionForAllStudyParticipants(StudyIdentifier studyIdentifier, ParticipantOption option,
+            OptionLookup map) {
         DynamoDBScanExpression scan = new DynamoDBScanExpression();
 
         Condition condition = new Condition();
         condition.withComparisonOperator(ComparisonOperator.EQ);
         condition.withAttributeValueList(new AttributeValue().withS(studyIdentifier.getIdentifier()));
-        scan.addFilterCondition("studyKey", condition);
-        
-        List<DynamoParticipantOptions> mappings = mapper.scan(DynamoParticipantOptions.class, scan);
+        scan.addFilterCondition(STUDY_KEY, condition);
         
-        OptionLookup map = new OptionLookup(option.getDefaultValue());
+        List<DynamoParticipantOptions> mappings = mapper.parallelScan(DynamoParticipantOptions.class, scan,
+                STUDY_SCAN_SEGMENTS, ITERATION_ONLY_CONFIG);
         for (DynamoParticipantOptions mapping : mappings) {
             map.put(mapping.getHealthCode(), mapping.getOptions().get(option.name()));
         }
-        return map;
     }
 
 }
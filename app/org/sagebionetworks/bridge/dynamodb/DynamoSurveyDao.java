@@ -4,10 +4,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Resource;
 
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.SurveyCache;
 import org.sagebionetworks.bridge.dao.SurveyDao;
 import org.sagebionetworks.bridge.dao.UploadSchemaDao;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
@@ -21,6 +24,7 @@ import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
 import org.sagebionetworks.bridge.models.surveys.Survey;
 import org.sagebionetworks.bridge.models.surveys.SurveyElement;
 import org.sagebionetworks.bridge.models.surveys.SurveyElementFactory;
+import org.sagebionetworks.bridge.models.surveys.SurveyQuestion;
 import org.sagebionetworks.bridge.models.upload.UploadSchema;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -190,6 +194,8 @@ public class DynamoSurveyDao implements SurveyDao {
     private DynamoDBMapper surveyMapper;
     private DynamoDBMapper surveyElementMapper;
     private UploadSchemaDao uploadSchemaDao;
+    private SurveyCache surveyCache;
+    private ExecutorService surveyLoaderExecutorService;
     
     @Resource(name = "surveyMapper")
     public void setSurveyMapper(DynamoDBMapper surveyMapper) {
@@ -206,6 +212,18 @@ public class DynamoSurveyDao implements SurveyDao {
         this.uploadSchemaDao = uploadSchemaDao;
     }
 
+    /** Runs the element queries of several surveys in parallel. This is configured by Spring. */
+    @Resource(name = "surveyLoaderExecutorService")
+    public final void setSurveyLoaderExecutorService(ExecutorService surveyLoaderExecutorService) {
+        this.surveyLoaderExecutorService = surveyLoaderExecutorService;
+    }
+
+    /** Cache of published survey versions. This is configured by Spring. */
+    @Autowired
+    public final void setSurveyCache(SurveyCache surveyCache) {
+        this.surveyCache = surveyCache;
+    }
+
     @Override
     public Survey createSurvey(Survey survey) {
         checkNotNull(survey.getStudyIdentifier(), "Survey study identifier is null");
@@ -266,7 +284,9 @@ public class DynamoSurveyDao implements SurveyDao {
         existing.setModifiedOn(DateUtils.getCurrentMillisFromEpoch());
         existing.setSchemaRevision(null);
 
-        return saveSurvey(existing);
+        Survey saved = saveSurvey(existing);
+        surveyCache.removeSurvey(saved);
+        return saved;
     }
     
     @Override
@@ -305,6 +325,7 @@ public class DynamoSurveyDao implements SurveyDao {
         }
         existing.setDeleted(true);
         saveSurvey(existing);
+        surveyCache.removeSurvey(existing);
     }
 
     @Override
@@ -312,6 +333,7 @@ public class DynamoSurveyDao implements SurveyDao {
         Survey existing = getSurvey(keys);
         deleteAllElements(existing.getGuid(), existing.getCreatedOn());
         surveyMapper.delete(existing);
+        surveyCache.removeSurvey(existing);
         
         // Delete the schemas as well, or they accumulate.
         try {
@@ -337,16 +359,28 @@ public class DynamoSurveyDao implements SurveyDao {
         return new QueryBuilder().setStudy(studyIdentifier).isPublished().setSurvey(guid).isNotDeleted().getOne(true);
     }
     
-    // This is a slower call. There's no getting around it. But not as slow as calling all of these separately
-    // from the Researcher UI.
-    // secondary index query (via getAllSurveysMostRecentlyPublishedVersion)
+    // secondary index query (via getAllSurveysMostRecentlyPublishedVersion), then the element queries of all 
+    // the surveys in parallel. The index projects the whole survey row, so the rows don't need to be loaded again. 
     @Override
     public List<Survey> getSurveysSummary(StudyIdentifier studyIdentifier) {
         List<Survey> surveys = getAllSurveysMostRecentlyPublishedVersion(studyIdentifier);
-        // get the questions for each survey from the whole survey, then copy over only the questions
+        
+        List<Future<Survey>> loads = Lists.newArrayListWithCapacity(surveys.size());
+        for (Survey survey : surveys) {
+            loads.add(surveyLoaderExecutorService.submit(() -> surveyCache.getSurvey(survey, () -> {
+                DynamoSurvey loaded = new DynamoSurvey((DynamoSurvey)survey);
+                new QueryBuilder().attachSurveyElements(loaded);
+                return loaded;
+            })));
+        }
+        // copy over only the questions of each whole survey
         for (int i=0; i < surveys.size(); i++) {
-            Survey updated = getSurvey(surveys.get(i));
-            surveys.get(i).setElements(ImmutableList.copyOf(updated.getUnmodifiableQuestionList()));
+            Survey loaded = BridgeUtils.getFutureResult(loads.get(i));
+            List<SurveyElement> questions = Lists.newArrayList();
+            for (SurveyQuestion question : loaded.getUnmodifiableQuestionList()) {
+                questions.add(SurveyElementFactory.fromDynamoEntity(question));
+            }
+            surveys.get(i).setElements(questions);
         }
         return surveys;
     }
@@ -367,12 +401,15 @@ public class DynamoSurveyDao implements SurveyDao {
     
     /**
      * Get a specific survey version regardless of whether or not is has been deleted. This is the only call 
-     * that will return a deleted survey. With most scheduling now pointing to the most recently published 
-     * version (not a specific timestamped version), this method should be rarely called.
+     * that will return a deleted survey. Survey responses and uploads look up specific versions on every 
+     * request, so published versions (which cannot change except to be deleted) are served from the 
+     * survey cache. Each caller gets its own copy, which it may modify.
      */
     @Override
     public Survey getSurvey(GuidCreatedOnVersionHolder keys) {
-        return new QueryBuilder().setSurvey(keys.getGuid()).setCreatedOn(keys.getCreatedOn()).getOne(true);
+        Survey survey = surveyCache.getSurvey(keys, () -> 
+            new QueryBuilder().setSurvey(keys.getGuid()).setCreatedOn(keys.getCreatedOn()).getOne(true));
+        return new DynamoSurvey((DynamoSurvey)survey);
     }
     
     /**
@@ -394,7 +431,7 @@ public class DynamoSurveyDao implements SurveyDao {
         }
         return ImmutableList.copyOf(map.values());
     }
-    
+
     private Survey saveSurvey(Survey survey) {
         deleteAllElements(survey.getGuid(), survey.getCreatedOn());
         
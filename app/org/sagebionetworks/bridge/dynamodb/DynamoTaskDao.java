@@ -2,6 +2,9 @@ package org.sagebionetworks.bridge.dynamodb;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
 
 import javax.annotation.Resource;
 
@@ -20,6 +23,8 @@ import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 @Component
 public class DynamoTaskDao implements TaskDao {
@@ -72,10 +77,28 @@ public class DynamoTaskDao implements TaskDao {
     
     /** {@inheritDoc} */
     @Override
-    public boolean taskRunHasNotOccurred(String healthCode, String runKey) {
-        RangeKeyCondition rangeKeyCondition = new RangeKeyCondition("runKey").eq(runKey);
-        int count = index.queryKeyCount("healthCode", healthCode, rangeKeyCondition);
-        return (count == 0);
+    public Set<String> getRunKeysThatHaveOccurred(String healthCode, Set<String> runKeys) {
+        if (runKeys.isEmpty()) {
+            return Sets.newHashSet();
+        }
+        // A runKey is the schedule plan's GUID followed by the time of the run, so the runKeys of one plan sort by
+        // time. One query per plan reads the persisted runKeys between that plan's earliest and latest requested run,
+        // rather than a count query per runKey. Runs from before the scheduling window aren't read, so the cost
+        // doesn't grow with the user's history.
+        Map<String,SortedSet<String>> runKeysByPlan = Maps.newHashMap();
+        for (String runKey : runKeys) {
+            String planGuid = runKey.substring(0, runKey.indexOf(':') + 1);
+            runKeysByPlan.computeIfAbsent(planGuid, key -> Sets.newTreeSet()).add(runKey);
+        }
+        Set<String> occurredRunKeys = Sets.newHashSet();
+        for (SortedSet<String> planRunKeys : runKeysByPlan.values()) {
+            RangeKeyCondition rangeKeyCondition = new RangeKeyCondition("runKey").between(planRunKeys.first(),
+                    planRunKeys.last());
+            Set<String> persistedRunKeys = index.queryAttributeValues("runKey", "healthCode", healthCode,
+                    rangeKeyCondition);
+            occurredRunKeys.addAll(Sets.intersection(planRunKeys, persistedRunKeys));
+        }
+        return occurredRunKeys;
     }
     
     /** {@inheritDoc} */
@@ -4,8 +4,9 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
-import java.util.List;
-import java.util.Set;
+import java.util.Iterator;
+
+import javax.annotation.Resource;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -15,25 +16,36 @@ import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.models.accounts.UserConsent;
 import org.sagebionetworks.bridge.models.studies.StudyConsent;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.ConsistentReads;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.SaveBehavior;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
-import com.google.common.collect.Sets;
 
 @Component
 public class DynamoUserConsentDao implements UserConsentDao {
 
+    private static final Logger logger = LoggerFactory.getLogger(DynamoUserConsentDao.class);
+
+    private static final String STUDY_KEY = "studyKey";
+    private static final int PARTICIPANT_COUNT_SCAN_SEGMENTS = 4;
+    private static final DynamoDBMapperConfig ITERATION_ONLY_CONFIG = new DynamoDBMapperConfig(
+            PaginationLoadingStrategy.ITERATION_ONLY);
+
     private DynamoDBMapper mapper;
+    private DynamoIndexHelper studyIndex;
 
     @Autowired
     public void setDynamoDbClient(BridgeConfig bridgeConfig, AmazonDynamoDB client) {
@@ -43,6 +55,11 @@ public class DynamoUserConsentDao implements UserConsentDao {
         mapper = new DynamoDBMapper(client, mapperConfig);
     }
 
+    @Resource(name = "userConsentStudyIndex")
+    public void setStudyIndex(DynamoIndexHelper studyIndex) {
+        this.studyIndex = studyIndex;
+    }
+
     @Override
     public UserConsent giveConsent(String healthCode, StudyConsent studyConsent) {
         checkArgument(isNotBlank(healthCode), "Health code is blank or null");
@@ -85,22 +102,38 @@ public class DynamoUserConsentDao implements UserConsentDao {
 
     @Override
     public long getNumberOfParticipants(StudyIdentifier studyIdentifier) {
+        // Consents are keyed by health code and study, so each consent in the study is a unique participant. 
+        // The study index only holds the study's keys, so this reads only the study's rows.
+        try {
+            return studyIndex.queryKeyCount(STUDY_KEY, studyIdentifier.getIdentifier(), null);
+        } catch (AmazonServiceException e) {
+            if (!DynamoIndexHelper.isIndexUnavailable(e)) {
+                throw e;
+            }
+            logger.warn("Study index of user consents can't be read, scanning the table instead: " + e.getMessage());
+            return scanNumberOfParticipants(studyIdentifier);
+        }
+    }
+
+    private long scanNumberOfParticipants(StudyIdentifier studyIdentifier) {
         DynamoDBScanExpression scan = new DynamoDBScanExpression();
         scan.setConsistentRead(true);
 
         Condition condition = new Condition();
         condition.withComparisonOperator(ComparisonOperator.EQ);
         condition.withAttributeValueList(new AttributeValue().withS(studyIdentifier.getIdentifier()));
-        scan.addFilterCondition("studyKey", condition);
-
-        // We need the count of unique study participants, users may end up signing 
-        // more than one version of the consent.
-        Set<String> healthCodes = Sets.newHashSet();
-        List<DynamoUserConsent2> mappings = mapper.scan(DynamoUserConsent2.class, scan);
-        for (DynamoUserConsent2 consent : mappings) {
-            healthCodes.add(consent.getHealthCode());
+        scan.addFilterCondition(STUDY_KEY, condition);
+
+        // Segments are scanned in parallel, and each page is dropped once it has been counted, rather than 
+        // holding the whole study in memory.
+        Iterator<DynamoUserConsent2> consents = mapper.parallelScan(DynamoUserConsent2.class, scan,
+                PARTICIPANT_COUNT_SCAN_SEGMENTS, ITERATION_ONLY_CONFIG).iterator();
+        long count = 0;
+        while (consents.hasNext()) {
+            consents.next();
+            count++;
         }
-        return healthCodes.size();
+        return count;
     }
 
     private DynamoUserConsent2 getUserConsent(String healthCode, StudyConsent studyConsent) {
@@ -0,0 +1,27 @@
+package org.sagebionetworks.bridge.metrics;
+
+/** Backing services whose call times are broken out in request metrics. */
+public enum Dependency {
+    /** Redis, through JedisOps. */
+    REDIS("redis"),
+
+    /** DynamoDB, through the DynamoDB client shared by all mappers. */
+    DYNAMODB("dynamodb"),
+
+    /** Stormpath, through the Stormpath account and directory DAOs. */
+    STORMPATH("stormpath"),
+
+    /** S3, through the S3 clients. */
+    S3("s3");
+
+    private final String label;
+
+    Dependency(String label) {
+        this.label = label;
+    }
+
+    /** Name used for this dependency in request logs and in exported metrics. */
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,34 @@
+package org.sagebionetworks.bridge.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Times every method call on a proxied bean as a call to the given backing service. This is applied by Spring to the
+ * beans that wrap a backing service with no timing hook of its own (Redis and Stormpath). Calls made by the bean to
+ * other proxied beans are timed by those beans too, so the per-service times can overlap.
+ */
+public class DependencyTimingInterceptor implements MethodInterceptor {
+    private final MetricsRegistry metricsRegistry;
+    private final Dependency dependency;
+
+    /** Creates an interceptor that records into the given registry. This is configured by Spring. */
+    public DependencyTimingInterceptor(MetricsRegistry metricsRegistry, Dependency dependency) {
+        checkNotNull(metricsRegistry);
+        checkNotNull(dependency);
+        this.metricsRegistry = metricsRegistry;
+        this.dependency = dependency;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        long startNanos = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            metricsRegistry.recordDependencyCall(dependency, System.nanoTime() - startNanos);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.sagebionetworks.bridge.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.RequestHandler2;
+
+/**
+ * Times every request made by an AWS client as a call to the given backing service. AWS clients call their request
+ * handlers on the calling thread, before the first attempt and after the last, so the time includes retries. One
+ * handler can be shared by several clients.
+ */
+public class DependencyTimingRequestHandler extends RequestHandler2 {
+    private final MetricsRegistry metricsRegistry;
+    private final Dependency dependency;
+    private final ThreadLocal<Long> startNanos = new ThreadLocal<>();
+
+    /** Creates a handler that records into the given registry. This is configured by Spring. */
+    public DependencyTimingRequestHandler(MetricsRegistry metricsRegistry, Dependency dependency) {
+        checkNotNull(metricsRegistry);
+        checkNotNull(dependency);
+        this.metricsRegistry = metricsRegistry;
+        this.dependency = dependency;
+    }
+
+    @Override
+    public void beforeRequest(Request<?> request) {
+        startNanos.set(System.nanoTime());
+    }
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+        record();
+    }
+
+    @Override
+    public void afterError(Request<?> request, Response<?> response, Exception ex) {
+        record();
+    }
+
+    private void record() {
+        Long start = startNanos.get();
+        if (start != null) {
+            startNanos.remove();
+            metricsRegistry.recordDependencyCall(dependency, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.sagebionetworks.bridge.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.models.Metrics;
+import org.sagebionetworks.bridge.util.LatencyHistogram;
+
+/**
+ * <p>
+ * Latency histograms for this node, since it started: one per route (controller method), one per study, one per
+ * backing service, and one per step of building a session at sign in. Requests are recorded by the metrics
+ * interceptor. Calls to backing services are recorded by {@link DependencyTimingInterceptor} and
+ * {@link DependencyTimingRequestHandler}, which also add them to the {@link Metrics} of the request being handled on
+ * that thread, if any.
+ * </p>
+ * <p>
+ * {@link #toPrometheusText} exports everything in the Prometheus text format, so it can be scraped, along with the
+ * number of commands sent to each backing service, the hit and miss counts of registered in-process caches, and counts
+ * of errors that happen in the background, where no caller sees them. Routes and studies both come from a small fixed
+ * set, so the number of histograms stays small.
+ * </p>
+ */
+@Component("metricsRegistry")
+public class MetricsRegistry {
+    private static final String REQUEST_METRIC = "bridge_request_duration_seconds";
+    private static final String STUDY_METRIC = "bridge_study_request_duration_seconds";
+    private static final String DEPENDENCY_METRIC = "bridge_dependency_call_duration_seconds";
+    private static final String DEPENDENCY_COMMANDS_METRIC = "bridge_dependency_commands_total";
+    private static final String SESSION_STEP_METRIC = "bridge_session_step_duration_seconds";
+    private static final String CACHE_REQUESTS_METRIC = "bridge_cache_requests_total";
+    private static final String BACKGROUND_ERRORS_METRIC = "bridge_background_errors_total";
+
+    private final ConcurrentMap<String, LatencyHistogram> routeHistograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> studyHistograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Dependency, LatencyHistogram> dependencyHistograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Dependency, LongAdder> dependencyCommandCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> sessionStepHistograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Cache<?, ?>> caches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> backgroundErrorCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Records a completed request.
+     *
+     * @param route
+     *         route that handled the request, must be non-null
+     * @param study
+     *         study of the caller, or null if unknown, in which case the request is only recorded for the route
+     * @param elapsedNanos
+     *         time taken to handle the request
+     */
+    public void recordRequest(String route, String study, long elapsedNanos) {
+        checkNotNull(route);
+        routeHistograms.computeIfAbsent(route, key -> new LatencyHistogram()).record(elapsedNanos);
+        if (study != null) {
+            studyHistograms.computeIfAbsent(study, key -> new LatencyHistogram()).record(elapsedNanos);
+        }
+    }
+
+    /**
+     * Records a call to a backing service, here and in the metrics of the request being handled on this thread.
+     *
+     * @param dependency
+     *         backing service that was called, must be non-null
+     * @param elapsedNanos
+     *         time taken by the call
+     */
+    public void recordDependencyCall(Dependency dependency, long elapsedNanos) {
+        recordDependencyCall(dependency, elapsedNanos, 1);
+    }
+
+    /**
+     * Records a call to a backing service that sent more than one command, such as a Redis pipeline, here and in the
+     * metrics of the request being handled on this thread.
+     *
+     * @param dependency
+     *         backing service that was called, must be non-null
+     * @param elapsedNanos
+     *         time taken by the call
+     * @param commandCount
+     *         number of commands sent in the call
+     */
+    public void recordDependencyCall(Dependency dependency, long elapsedNanos, int commandCount) {
+        checkNotNull(dependency);
+        dependencyHistograms.computeIfAbsent(dependency, key -> new LatencyHistogram()).record(elapsedNanos);
+        dependencyCommandCounts.computeIfAbsent(dependency, key -> new LongAdder()).add(commandCount);
+        Metrics metrics = Metrics.getCurrent();
+        if (metrics != null) {
+            metrics.addDependencyTime(dependency, elapsedNanos, commandCount);
+        }
+    }
+
+    /**
+     * Records one step of building a user's session at sign in, such as looking up their health code or checking
+     * their consent.
+     *
+     * @param step
+     *         name of the step, must be non-null
+     * @param elapsedNanos
+     *         time taken by the step
+     */
+    public void recordSessionStep(String step, long elapsedNanos) {
+        checkNotNull(step);
+        sessionStepHistograms.computeIfAbsent(step, key -> new LatencyHistogram()).record(elapsedNanos);
+    }
+
+    /**
+     * Registers an in-process cache, so its hit and miss counts are exported. The cache must be built with
+     * {@code recordStats()}, or its counts are always zero.
+     *
+     * @param name
+     *         name of the cache, must be non-null
+     * @param cache
+     *         the cache, must be non-null
+     */
+    public void registerCache(String name, Cache<?, ?> cache) {
+        checkNotNull(name);
+        checkNotNull(cache);
+        caches.put(name, cache);
+    }
+
+    /**
+     * Records an error in work done in the background, such as sending email, which no caller sees.
+     *
+     * @param error
+     *         kind of error, from a small fixed set, must be non-null
+     */
+    public void recordBackgroundError(String error) {
+        checkNotNull(error);
+        backgroundErrorCounts.computeIfAbsent(error, key -> new LongAdder()).increment();
+    }
+
+    /** Histogram for the given session step, or null if it was never recorded. Used by unit tests. */
+    LatencyHistogram getSessionStepHistogram(String step) {
+        return sessionStepHistograms.get(step);
+    }
+
+    /** Histogram for the given route, or null if no requests were recorded for it. Used by unit tests. */
+    LatencyHistogram getRouteHistogram(String route) {
+        return routeHistograms.get(route);
+    }
+
+    /** Returns all histograms in the Prometheus text exposition format (version 0.0.4). */
+    public String toPrometheusText() {
+        StringBuilder builder = new StringBuilder();
+        appendHistograms(builder, REQUEST_METRIC, "Time taken to handle requests, by route.", "route",
+                routeHistograms);
+        appendHistograms(builder, STUDY_METRIC, "Time taken to handle requests, by study.", "study", studyHistograms);
+
+        Map<String, LatencyHistogram> dependencyHistogramsByLabel = new TreeMap<>();
+        for (Map.Entry<Dependency, LatencyHistogram> oneHistogram : dependencyHistograms.entrySet()) {
+            dependencyHistogramsByLabel.put(oneHistogram.getKey().getLabel(), oneHistogram.getValue());
+        }
+        appendHistograms(builder, DEPENDENCY_METRIC, "Time taken by calls to backing services.", "dependency",
+                dependencyHistogramsByLabel);
+        appendHistograms(builder, SESSION_STEP_METRIC, "Time taken by each step of building a session at sign in.",
+                "step", sessionStepHistograms);
+
+        builder.append("# HELP ").append(DEPENDENCY_COMMANDS_METRIC)
+                .append(" Commands sent to backing services. A call can send more than one command.\n");
+        builder.append("# TYPE ").append(DEPENDENCY_COMMANDS_METRIC).append(" counter\n");
+        Map<String, Long> commandCountsByLabel = new TreeMap<>();
+        for (Map.Entry<Dependency, LongAdder> oneCount : dependencyCommandCounts.entrySet()) {
+            commandCountsByLabel.put(oneCount.getKey().getLabel(), oneCount.getValue().sum());
+        }
+        for (Map.Entry<String, Long> oneCount : commandCountsByLabel.entrySet()) {
+            builder.append(DEPENDENCY_COMMANDS_METRIC).append("{dependency=\"").append(oneCount.getKey())
+                    .append("\"} ").append(oneCount.getValue()).append('\n');
+        }
+
+        builder.append("# HELP ").append(CACHE_REQUESTS_METRIC)
+                .append(" Lookups in in-process caches, by cache and result.\n");
+        builder.append("# TYPE ").append(CACHE_REQUESTS_METRIC).append(" counter\n");
+        for (Map.Entry<String, Cache<?, ?>> oneCache : new TreeMap<>(caches).entrySet()) {
+            String label = "cache=\"" + escapeLabelValue(oneCache.getKey()) + "\"";
+            CacheStats stats = oneCache.getValue().stats();
+            builder.append(CACHE_REQUESTS_METRIC).append('{').append(label).append(",result=\"hit\"} ")
+                    .append(stats.hitCount()).append('\n');
+            builder.append(CACHE_REQUESTS_METRIC).append('{').append(label).append(",result=\"miss\"} ")
+                    .append(stats.missCount()).append('\n');
+        }
+
+        builder.append("# HELP ").append(BACKGROUND_ERRORS_METRIC)
+                .append(" Errors in work done in the background, by kind.\n");
+        builder.append("# TYPE ").append(BACKGROUND_ERRORS_METRIC).append(" counter\n");
+        for (Map.Entry<String, LongAdder> oneCount : new TreeMap<>(backgroundErrorCounts).entrySet()) {
+            builder.append(BACKGROUND_ERRORS_METRIC).append("{error=\"").append(escapeLabelValue(oneCount.getKey()))
+                    .append("\"} ").append(oneCount.getValue().sum()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static void appendHistograms(StringBuilder builder, String metric, String help, String labelName,
+            Map<String, LatencyHistogram> histogramsByLabel) {
+        builder.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(metric).append(" histogram\n");
+
+        double[] upperBounds = LatencyHistogram.getBucketUpperBoundsSeconds();
+        for (Map.Entry<String, LatencyHistogram> oneHistogram : new TreeMap<>(histogramsByLabel).entrySet()) {
+            String label = labelName + "=\"" + escapeLabelValue(oneHistogram.getKey()) + "\"";
+            LatencyHistogram histogram = oneHistogram.getValue();
+
+            // Prometheus buckets are cumulative. Count from the same snapshot, so the total always matches +Inf.
+            long[] bucketCounts = histogram.getBucketCounts();
+            long cumulativeCount = 0;
+            for (int i = 0; i < upperBounds.length; i++) {
+                cumulativeCount += bucketCounts[i];
+                builder.append(metric).append("_bucket{").append(label).append(",le=\"").append(upperBounds[i])
+                        .append("\"} ").append(cumulativeCount).append('\n');
+            }
+            cumulativeCount += bucketCounts[upperBounds.length];
+            builder.append(metric).append("_bucket{").append(label).append(",le=\"+Inf\"} ").append(cumulativeCount)
+                    .append('\n');
+            builder.append(metric).append("_sum{").append(label).append("} ").append(histogram.getTotalSeconds())
+                    .append('\n');
+            builder.append(metric).append("_count{").append(label).append("} ").append(cumulativeCount).append('\n');
+        }
+    }
+
+    private static String escapeLabelValue(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -1,15 +1,23 @@
 package org.sagebionetworks.bridge.models;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import org.sagebionetworks.bridge.json.DateUtils;
+import org.sagebionetworks.bridge.metrics.Dependency;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
- * Request-scoped metrics.
+ * Request-scoped metrics. The metrics for the request being handled are bound to the request thread (see
+ * {@link #getCurrent}), so controllers and the code that calls backing services can find them without a lookup.
  */
 public class Metrics {
 
@@ -18,11 +26,30 @@ public class Metrics {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    private static final ThreadLocal<Metrics> CURRENT = new ThreadLocal<>();
+
     private final ObjectNode json;
 
-    public static String getCacheKey(String requestId) {
-        checkArgument(isNotBlank(requestId), "Request ID cannot be blank.");
-        return requestId + ":" + Metrics.class.getSimpleName();
+    // Calls (round trips), commands and nanoseconds spent in each backing service. A call can send more than one
+    // command, for example a Redis pipeline. Work done for the request on other threads (such as the steps of
+    // building a session) updates these too, so they are guarded by this object's lock.
+    private final Map<Dependency, long[]> dependencyTimes = new EnumMap<>(Dependency.class);
+
+    /** Returns the metrics for the request being handled on this thread, or null if there is none. */
+    public static Metrics getCurrent() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds the given metrics to this thread, or unbinds them if null. Called by the metrics interceptor, and by code
+     * that does part of the request's work on another thread.
+     */
+    public static void setCurrent(Metrics metrics) {
+        if (metrics == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(metrics);
+        }
     }
 
     public Metrics(final String requestId) {
@@ -32,10 +59,6 @@ public class Metrics {
         setRequestId(requestId);
     }
 
-    public String getCacheKey() {
-        return Metrics.getCacheKey(json.get("request_id").asText());
-    }
-
     public String toJsonString() {
         return json.toString();
     }
@@ -44,8 +67,52 @@ public class Metrics {
         json.put("start", DateUtils.getCurrentISODateTime());
     }
 
-    public void end() {
+    public synchronized void end() {
         json.put("end", DateUtils.getCurrentISODateTime());
+        if (!dependencyTimes.isEmpty()) {
+            ObjectNode dependencies = json.putObject("dependencies");
+            for (Map.Entry<Dependency, long[]> oneDependency : dependencyTimes.entrySet()) {
+                ObjectNode dependency = dependencies.putObject(oneDependency.getKey().getLabel());
+                dependency.put("calls", oneDependency.getValue()[0]);
+                dependency.put("commands", oneDependency.getValue()[2]);
+                dependency.put("millis", TimeUnit.NANOSECONDS.toMillis(oneDependency.getValue()[1]));
+            }
+        }
+    }
+
+    /** Adds one call to the given backing service, which took the given number of nanoseconds, to this request. */
+    public void addDependencyTime(Dependency dependency, long elapsedNanos) {
+        addDependencyTime(dependency, elapsedNanos, 1);
+    }
+
+    /**
+     * Adds one call to the given backing service, which sent the given number of commands and took the given number
+     * of nanoseconds, to this request.
+     */
+    public synchronized void addDependencyTime(Dependency dependency, long elapsedNanos, int commandCount) {
+        checkNotNull(dependency);
+        long[] callsAndNanos = dependencyTimes.computeIfAbsent(dependency, key -> new long[3]);
+        callsAndNanos[0]++;
+        callsAndNanos[1] += elapsedNanos;
+        callsAndNanos[2] += commandCount;
+    }
+
+    /** Total number of commands this request sent to the given backing service. */
+    public synchronized long getDependencyCommands(Dependency dependency) {
+        long[] callsAndNanos = dependencyTimes.get(dependency);
+        return (callsAndNanos == null) ? 0 : callsAndNanos[2];
+    }
+
+    /** Total nanoseconds this request spent in the given backing service. */
+    public synchronized long getDependencyNanos(Dependency dependency) {
+        long[] callsAndNanos = dependencyTimes.get(dependency);
+        return (callsAndNanos == null) ? 0 : callsAndNanos[1];
+    }
+
+    /** Study of the user making the request, or null if it isn't known (for example, the user isn't signed in). */
+    public String getStudy() {
+        JsonNode study = json.get("study");
+        return (study == null) ? null : study.textValue();
     }
 
     public void setRequestId(String requestId) {
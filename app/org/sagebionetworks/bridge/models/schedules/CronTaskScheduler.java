@@ -1,46 +1,64 @@
 package org.sagebionetworks.bridge.models.schedules;
 
+import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
 import org.joda.time.DateTime;
-import org.quartz.CronScheduleBuilder;
-import org.quartz.spi.MutableTrigger;
+import org.joda.time.DateTimeZone;
+import org.quartz.CronExpression;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 
 class CronTaskScheduler extends TaskScheduler {
 
+    // Parsed cron expressions, by expression and time zone. Parsing is much more expensive than finding fire times,
+    // and there are only as many expressions as there are cron schedules. CronExpression.getTimeAfter() doesn't
+    // modify the expression, so parsed expressions can be shared between threads.
+    private static final ConcurrentMap<String, CronExpression> CRON_EXPRESSIONS = CacheBuilder.newBuilder()
+            .maximumSize(1000).<String, CronExpression>build().asMap();
+
     CronTaskScheduler(Schedule schedule) {
         super(schedule);
     }
-    
+
     @Override
     public List<Task> getTasks(SchedulePlan plan, ScheduleContext context) {
         List<Task> tasks = Lists.newArrayList();
         DateTime scheduledTime = getScheduledTimeBasedOnEvent(context);
-        
+
         if (scheduledTime != null) {
-            MutableTrigger trigger = parseTrigger(scheduledTime);
-            
+            CronExpression cronExpression = getCronExpression(scheduledTime.getZone());
+
             while (scheduledTime.isBefore(context.getEndsOn())) {
-                Date next = trigger.getFireTimeAfter(scheduledTime.toDate());
+                Date next = cronExpression.getTimeAfter(scheduledTime.toDate());
+                if (next == null) {
+                    // The expression never fires again (it names a year that has passed).
+                    break;
+                }
                 scheduledTime = new DateTime(next, context.getZone());
-                
+
                 if (scheduledTime.isBefore(context.getEndsOn())) {
-                    addTaskForEachTime(tasks, plan, context, scheduledTime);    
+                    addTaskForEachTime(tasks, plan, context, scheduledTime);
                 }
             }
         }
         return trimTasks(tasks);
     }
-    
-    private MutableTrigger parseTrigger(DateTime scheduledTime) {
-        MutableTrigger mutable = CronScheduleBuilder
-            .cronSchedule(schedule.getCronTrigger())
-            .inTimeZone(scheduledTime.getZone().toTimeZone()).build();
-        mutable.setStartTime(scheduledTime.toDate());
-        return mutable;
+
+    private CronExpression getCronExpression(DateTimeZone zone) {
+        String cronTrigger = schedule.getCronTrigger();
+        return CRON_EXPRESSIONS.computeIfAbsent(zone.getID() + " " + cronTrigger, key -> {
+            try {
+                CronExpression cronExpression = new CronExpression(cronTrigger);
+                cronExpression.setTimeZone(zone.toTimeZone());
+                return cronExpression;
+            } catch (ParseException e) {
+                throw new RuntimeException("CronExpression '" + cronTrigger + "' is invalid.", e);
+            }
+        });
     }
 
 }
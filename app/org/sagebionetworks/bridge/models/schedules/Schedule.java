@@ -14,6 +14,8 @@ import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolder;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 public final class Schedule implements BridgeEntity {
@@ -32,10 +34,16 @@ public final class Schedule implements BridgeEntity {
     public static final String TYPE_PROPERTY_NAME = "type";
     public static final String ACTIVITIES_PROPERTY = "activities";
     public static final String TIMES_PROPERTY = "times";
+    
+    // If no event is specified, it's enrollment by default.
+    private static final List<String> DEFAULT_EVENT_IDS = ImmutableList.of("enrollment");
+    private static final Splitter EVENT_ID_SPLITTER = Splitter.on(',').trimResults();
    
     private String label;
     private ScheduleType scheduleType;
     private String eventId;
+    // Derived from eventId, so it isn't part of equality or serialization.
+    private transient List<String> eventIds = DEFAULT_EVENT_IDS;
     private Period delay;
     private Period interval;
     private Period expires;
@@ -147,6 +155,15 @@ public final class Schedule implements BridgeEntity {
     }
     public void setEventId(String eventId) {
         this.eventId = eventId;
+        this.eventIds = (eventId == null) ? DEFAULT_EVENT_IDS : ImmutableList.copyOf(EVENT_ID_SPLITTER.split(eventId));
+    }
+    /**
+     * The event IDs from eventId, in order, split when the event ID is set rather than every time tasks are 
+     * scheduled.
+     * @return
+     */
+    List<String> getEventIds() {
+        return eventIds;
     }
     /**
      * A persistent schedule is one that keeps a task alive in the list of tasks, 
@@ -23,12 +23,7 @@ public abstract class TaskScheduler {
         if (!context.hasEvents()) {
             return null;
         }
-        // If no event is specified, it's enrollment by default.
-        String eventIdString = schedule.getEventId();
-        if (eventIdString == null) {
-            eventIdString = "enrollment";
-        }
-        DateTime eventTime = getFirstEventDateTime(context, eventIdString);
+        DateTime eventTime = getFirstEventDateTime(context, schedule.getEventIds());
 
         // An event was specified, but it hasn't happened yet. So no tasks are generated.
         // OR, an event fires, but outside of the window for the schedule, so again, no tasks.
@@ -105,17 +100,13 @@ public abstract class TaskScheduler {
         return scheduledTime.plus(schedule.getExpires());
     }
 
-    protected DateTime getFirstEventDateTime(ScheduleContext context, String eventIdsString) {
-        DateTime eventDateTime = null;
-        if (eventIdsString != null) {
-            String[] eventIds = eventIdsString.trim().split("\\s*,\\s*");
-            for (String thisEventId : eventIds) {
-                if (context.getEvent(thisEventId) != null) {
-                    eventDateTime = context.getEvent(thisEventId).withZone(context.getZone());
-                    break;
-                }
+    protected DateTime getFirstEventDateTime(ScheduleContext context, List<String> eventIds) {
+        for (String thisEventId : eventIds) {
+            DateTime eventDateTime = context.getEvent(thisEventId);
+            if (eventDateTime != null) {
+                return eventDateTime.withZone(context.getZone());
             }
         }
-        return eventDateTime;
+        return null;
     }    
 }
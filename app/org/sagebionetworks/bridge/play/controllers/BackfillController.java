@@ -25,18 +25,22 @@ public class BackfillController extends BaseController implements ApplicationCon
         this.appContext = appContext;
     }
 
-    public Result backfill(final String name) throws Exception {
-        return ok(views.html.backfill.render(name));
+    public Result backfill(final String name, final String restart) throws Exception {
+        return ok(views.html.backfill.render(name, Boolean.parseBoolean(restart)));
     }
 
-    public Result start(final String name) throws Exception {
+    /**
+     * Starts the backfill, or resumes its most recent task if that failed or was interrupted. With restart=true, a
+     * new task is always started.
+     */
+    public Result start(final String name, final String restart) throws Exception {
         final String user = checkUser();
         final BackfillService backfillService = appContext.getBean(name, BackfillService.class);
         Chunks<String> chunks = new StringChunks() {
                 @Override
                 public void onReady(final Chunks.Out<String> out) {
                     BackfillChunksAdapter chunksAdapter = new BackfillChunksAdapter(out);
-                    backfillService.backfill(user, name, chunksAdapter);
+                    backfillService.backfill(user, name, Boolean.parseBoolean(restart), chunksAdapter);
                 }
             };
         logger.info("Backfill " + name + " submitted.");
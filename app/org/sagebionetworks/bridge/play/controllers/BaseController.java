@@ -23,13 +23,11 @@ import org.sagebionetworks.bridge.models.ResourceList;
 import org.sagebionetworks.bridge.models.StatusMessage;
 import org.sagebionetworks.bridge.models.accounts.User;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
-import org.sagebionetworks.bridge.play.interceptors.RequestUtils;
 import org.sagebionetworks.bridge.services.AuthenticationService;
 import org.sagebionetworks.bridge.services.StudyService;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import play.Logger;
-import play.cache.Cache;
 import play.libs.Json;
 import play.mvc.Controller;
 import play.mvc.Http.Cookie;
@@ -236,11 +234,10 @@ public abstract class BaseController extends Controller {
     }
     
     /**
-     * Retrieves the metrics object from the cache. Can be null if the metrics is not in the cache.
+     * Retrieves the metrics object for this request. Can be null if the request isn't going through the metrics
+     * interceptor.
      */
     Metrics getMetrics() {
-        final String requestId = RequestUtils.getRequestId(request());
-        final String cacheKey = Metrics.getCacheKey(requestId);
-        return (Metrics)Cache.get(cacheKey);
+        return Metrics.getCurrent();
     }
 }
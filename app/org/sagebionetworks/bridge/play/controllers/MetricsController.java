@@ -0,0 +1,32 @@
+package org.sagebionetworks.bridge.play.controllers;
+
+import static org.sagebionetworks.bridge.Roles.ADMIN;
+
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+
+import play.mvc.Result;
+
+@Controller
+public class MetricsController extends BaseController {
+
+    /** Content type of the Prometheus text exposition format. */
+    static final String PROMETHEUS_TEXT_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Latency histograms for this node by route, by study, and by backing service, in the Prometheus text format.
+     * Each node keeps its own histograms, so scrape every node.
+     */
+    public Result getLatencyMetrics() throws Exception {
+        getAuthenticatedSession(ADMIN);
+        return ok(metricsRegistry.toPrometheusText()).as(PROMETHEUS_TEXT_CONTENT_TYPE);
+    }
+}
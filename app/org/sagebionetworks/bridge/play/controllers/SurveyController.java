@@ -86,7 +86,7 @@ public class SurveyController extends BaseController {
         final UserSession session = getAuthenticatedAndConsentedSession();
 
         ViewCacheKey<Survey> cacheKey = viewCache.getCacheKey(Survey.class, surveyGuid, createdOnString); 
-        String json = viewCache.getView(cacheKey, new Supplier<Survey>() {
+        byte[] json = viewCache.getViewBytes(cacheKey, new Supplier<Survey>() {
             @Override public Survey get() {
                 StudyIdentifier studyId = session.getStudyIdentifier();
                 long createdOn = DateUtils.convertToMillisFromEpoch(createdOnString);
@@ -94,7 +94,7 @@ public class SurveyController extends BaseController {
 
                 Survey survey = surveyService.getSurvey(keys);
                 verifySurveyIsInStudy(session, studyId, survey);
-                return surveyService.getSurvey(keys);
+                return survey;
             }
         });
         return ok(json).as(JSON_MIME_TYPE);
@@ -104,7 +104,7 @@ public class SurveyController extends BaseController {
         final UserSession session = getAuthenticatedAndConsentedSession();
         
         ViewCacheKey<Survey> cacheKey = viewCache.getCacheKey(Survey.class, surveyGuid, PUBLISHED_KEY);
-        String json = viewCache.getView(cacheKey, new Supplier<Survey>() {
+        byte[] json = viewCache.getViewBytes(cacheKey, new Supplier<Survey>() {
             @Override public Survey get() {
                 StudyIdentifier studyId = session.getStudyIdentifier();
                 Survey survey = surveyService.getSurveyMostRecentlyPublishedVersion(studyId, surveyGuid);
@@ -122,7 +122,7 @@ public class SurveyController extends BaseController {
         canAccessSurvey(session);
         
         ViewCacheKey<Survey> cacheKey = viewCache.getCacheKey(Survey.class, surveyGuid, createdOnString); 
-        String json = viewCache.getView(cacheKey, new Supplier<Survey>() {
+        byte[] json = viewCache.getViewBytes(cacheKey, new Supplier<Survey>() {
             @Override public Survey get() {
                 long createdOn = DateUtils.convertToMillisFromEpoch(createdOnString);
                 GuidCreatedOnVersionHolder keys = new GuidCreatedOnVersionHolderImpl(surveyGuid, createdOn);
@@ -139,7 +139,7 @@ public class SurveyController extends BaseController {
         final StudyIdentifier studyId = session.getStudyIdentifier();
         
         ViewCacheKey<Survey> cacheKey = viewCache.getCacheKey(Survey.class, surveyGuid, MOSTRECENT_KEY);
-        String json = viewCache.getView(cacheKey, new Supplier<Survey>() {
+        byte[] json = viewCache.getViewBytes(cacheKey, new Supplier<Survey>() {
             @Override public Survey get() {
                 Survey survey = surveyService.getSurveyMostRecentVersion(studyId, surveyGuid);
                 verifySurveyIsInStudy(session, studyId, survey);
@@ -155,7 +155,7 @@ public class SurveyController extends BaseController {
         canAccessSurvey(session);
         
         ViewCacheKey<Survey> cacheKey = viewCache.getCacheKey(Survey.class, surveyGuid, PUBLISHED_KEY);
-        String json = viewCache.getView(cacheKey, new Supplier<Survey>() {
+        byte[] json = viewCache.getViewBytes(cacheKey, new Supplier<Survey>() {
             @Override public Survey get() {
                 Survey survey = surveyService.getSurveyMostRecentlyPublishedVersion(studyId, surveyGuid);
                 verifySurveyIsInStudy(session, studyId, survey);
@@ -1,5 +1,8 @@
 package org.sagebionetworks.bridge.play.controllers;
 
+import static org.sagebionetworks.bridge.Roles.ADMIN;
+
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
 import org.sagebionetworks.bridge.models.Metrics;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
@@ -69,12 +72,26 @@ public class UploadController extends BaseController {
 
         // mark upload as complete
         Upload upload = uploadService.getUpload(session.getUser(), uploadId);
+        boolean markedComplete = upload.canBeValidated();
         uploadService.uploadComplete(upload);
 
         // kick off upload validation
-        uploadValidationService.validateUpload(session.getStudyIdentifier(), upload);
+        try {
+            uploadValidationService.validateUpload(session.getStudyIdentifier(), upload);
+        } catch (ServiceUnavailableException ex) {
+            // The validation queue is full. Undo marking the upload complete, so the client can retry this call.
+            if (markedComplete) {
+                uploadService.uploadValidationRejected(upload);
+            }
+            throw ex;
+        }
 
         return okResult("Upload " + uploadId + " complete!");
     }
 
+    /** Queue depth, queue wait time, and per-handler execution time for upload validation. Admin only. */
+    public Result getValidationStats() throws Exception {
+        getAuthenticatedSession(ADMIN);
+        return okResult(uploadValidationService.getValidationStats());
+    }
 }
@@ -48,7 +48,7 @@ public class UserProfileController extends BaseController {
         final Study study = studyService.getStudy(session.getStudyIdentifier());
         
         ViewCacheKey<UserProfile> cacheKey = viewCache.getCacheKey(UserProfile.class, session.getUser().getId(), study.getIdentifier());
-        String json = viewCache.getView(cacheKey, new Supplier<UserProfile>() {
+        byte[] json = viewCache.getViewBytes(cacheKey, new Supplier<UserProfile>() {
             @Override public UserProfile get() {
                 return userProfileService.getProfile(study, session.getUser().getEmail());
             }
@@ -1,17 +1,19 @@
 package org.sagebionetworks.bridge.play.interceptors;
 
 import static org.apache.http.HttpHeaders.USER_AGENT;
-import static org.sagebionetworks.bridge.BridgeConstants.METRICS_EXPIRE_SECONDS;
 import static org.sagebionetworks.bridge.BridgeConstants.X_FORWARDED_FOR_HEADER;
 
+import java.lang.reflect.Method;
+
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
 import org.sagebionetworks.bridge.models.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import play.cache.Cache;
 import play.mvc.Http;
 import play.mvc.Http.Request;
 import play.mvc.Result;
@@ -21,17 +23,28 @@ public class MetricsInterceptor implements MethodInterceptor {
 
     private static final Logger logger = LoggerFactory.getLogger(MetricsInterceptor.class);
 
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
     @Override
     public Object invoke(MethodInvocation method) throws Throwable {
         final Metrics metrics = initMetrics();
-        Cache.set(metrics.getCacheKey(), metrics, METRICS_EXPIRE_SECONDS);
+        // Controllers run on the request thread, so binding the metrics to the thread makes them request-scoped.
+        Metrics.setCurrent(metrics);
+        final long startNanos = System.nanoTime();
         try {
             final Result result = (Result)method.proceed();
             metrics.setStatus(result.toScala().header().status());
             return result;
         } finally {
-            Cache.remove(metrics.getCacheKey());
+            final long elapsedNanos = System.nanoTime() - startNanos;
+            Metrics.setCurrent(null);
             metrics.end();
+            metricsRegistry.recordRequest(getRoute(method.getMethod()), metrics.getStudy(), elapsedNanos);
             logger.info(metrics.toJsonString());
         }
     }
@@ -46,4 +59,12 @@ public class MetricsInterceptor implements MethodInterceptor {
         metrics.setUserAgent(RequestUtils.header(request, USER_AGENT, null));
         return metrics;
     }
+
+    /**
+     * Routes are identified by their controller method rather than by URI, since URIs contain IDs. This keeps the
+     * number of latency histograms small.
+     */
+    static String getRoute(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
 }
@@ -0,0 +1,165 @@
+package org.sagebionetworks.bridge.redis;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.function.Function;
+
+import javax.annotation.Resource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.metrics.Dependency;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
+
+import com.google.common.collect.ImmutableList;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+/**
+ * <p>
+ * Redis operations that take more than one command, each done in a single round trip, either by pipelining the
+ * commands or by using a single command or script that does the same thing. Use these instead of calling
+ * {@link JedisOps} several times in a row for one logical operation.
+ * </p>
+ * <p>
+ * Each operation is recorded as one call to Redis in the {@link MetricsRegistry}, along with the number of commands it
+ * sent, so the request log shows both the round trips and the commands per request.
+ * </p>
+ */
+@Component
+public class JedisPipelineOps {
+
+    // Deletes the key only if it still holds the given value, so a lock can only be released by its holder.
+    private static final String DELETE_IF_EQUALS_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
+    private JedisPool jedisPool;
+    private MetricsRegistry metricsRegistry;
+
+    /** Redis connection pool. This is configured by Spring. */
+    @Resource(name = "jedisPool")
+    public void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    @Autowired
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Gets the value of the given key and resets its TTL, in one round trip. Resetting the TTL of a key that doesn't
+     * exist does nothing.
+     *
+     * @param key
+     *         key to get
+     * @param seconds
+     *         new TTL of the key
+     * @return the value, or null if the key doesn't exist
+     */
+    public String getAndExpire(String key, int seconds) {
+        checkNotNull(key);
+        return execute(2, jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            Response<String> value = pipeline.get(key);
+            pipeline.expire(key, seconds);
+            pipeline.sync();
+            return value.get();
+        });
+    }
+
+    /**
+     * Resets the TTL of the given keys, in one round trip. Keys that don't exist are skipped.
+     *
+     * @param seconds
+     *         new TTL of the keys
+     * @param keys
+     *         keys to expire, must be non-empty
+     */
+    public void expire(int seconds, String... keys) {
+        checkNotNull(keys);
+        checkArgument(keys.length > 0);
+        execute(keys.length, jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            for (String key : keys) {
+                pipeline.expire(key, seconds);
+            }
+            pipeline.sync();
+            return null;
+        });
+    }
+
+    /**
+     * Sets the key with a TTL if it doesn't exist, with one SET NX EX. Unlike SETNX followed by EXPIRE, the key can
+     * never be left without a TTL.
+     *
+     * @param key
+     *         key to set
+     * @param value
+     *         value to set
+     * @param seconds
+     *         TTL of the key
+     * @return true if the key was set, false if it already existed
+     */
+    public boolean setIfAbsent(String key, String value, int seconds) {
+        checkNotNull(key);
+        checkNotNull(value);
+        return "OK".equals(execute(1, jedis -> jedis.set(key, value, "NX", "EX", seconds)));
+    }
+
+    /**
+     * Deletes the key if it holds the given value, atomically and in one round trip.
+     *
+     * @param key
+     *         key to delete
+     * @param value
+     *         value the key must hold
+     * @return true if the key was deleted, false if it doesn't exist or holds another value
+     */
+    public boolean deleteIfEquals(String key, String value) {
+        checkNotNull(key);
+        checkNotNull(value);
+        Object result = execute(1, jedis -> jedis.eval(DELETE_IF_EQUALS_SCRIPT, ImmutableList.of(key),
+                ImmutableList.of(value)));
+        return Long.valueOf(1L).equals(result);
+    }
+
+    /**
+     * Runs a Lua script, which Redis runs atomically, in one round trip.
+     *
+     * @param script
+     *         Lua script to run
+     * @param keys
+     *         keys the script reads or writes, passed to the script as KEYS
+     * @param args
+     *         other arguments, passed to the script as ARGV
+     * @return the script's reply; Lua numbers are returned as Long, and Lua strings as String
+     */
+    public Object eval(String script, List<String> keys, List<String> args) {
+        checkNotNull(script);
+        checkNotNull(keys);
+        checkNotNull(args);
+        return execute(1, jedis -> jedis.eval(script, keys, args));
+    }
+
+    /**
+     * Runs the given Redis call on a connection from the pool, and records it as one call that sent the given number
+     * of commands.
+     */
+    private <T> T execute(int commandCount, Function<Jedis, T> call) {
+        long startNanos = System.nanoTime();
+        try (Jedis jedis = jedisPool.getResource()) {
+            return call.apply(jedis);
+        } finally {
+            if (metricsRegistry != null) {
+                metricsRegistry.recordDependencyCall(Dependency.REDIS, System.nanoTime() - startNanos, commandCount);
+            }
+        }
+    }
+}
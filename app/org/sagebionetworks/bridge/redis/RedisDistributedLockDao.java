@@ -3,22 +3,29 @@ package org.sagebionetworks.bridge.redis;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.UUID;
+
 import org.sagebionetworks.bridge.dao.DistributedLockDao;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
-import org.sagebionetworks.bridge.lock.LockNotAvailableException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import redis.clients.jedis.exceptions.JedisException;
+
 @Component
 public class RedisDistributedLockDao implements DistributedLockDao {
 
     private static final int EXPIRATION_IN_SECONDS = 3 * 60;
-    private RedisLock redisLock;
+    private final JedisPipelineOps jedisPipelineOps;
 
+    /**
+     * Locks are set with a TTL in one SET NX EX, and released with a compare-and-delete script, so each takes one
+     * round trip, and a lock can't be left without a TTL.
+     */
     @Autowired
-    public RedisDistributedLockDao(JedisOps jedisOps) {
-        redisLock = new RedisLock(jedisOps);
+    public RedisDistributedLockDao(JedisPipelineOps jedisPipelineOps) {
+        this.jedisPipelineOps = jedisPipelineOps;
     }
 
     @Override
@@ -31,12 +38,12 @@ public class RedisDistributedLockDao implements DistributedLockDao {
         checkNotNull(clazz);
         checkNotNull(identifier);
         checkArgument(expireInSeconds > 0);
-        try {
-            final String redisKey = createRedisKey(clazz, identifier);
-            return redisLock.acquireLock(redisKey, expireInSeconds);
-        } catch (LockNotAvailableException e) {
+        final String redisKey = createRedisKey(clazz, identifier);
+        final String lock = UUID.randomUUID().toString();
+        if (!jedisPipelineOps.setIfAbsent(redisKey, lock, expireInSeconds)) {
             throw new ConcurrentModificationException("Lock already set.");
         }
+        return lock;
     }
 
     @Override
@@ -46,8 +53,8 @@ public class RedisDistributedLockDao implements DistributedLockDao {
         checkNotNull(lock);
         try {
             final String redisKey = createRedisKey(clazz, identifier);
-            return redisLock.releaseLock(redisKey, lock);
-        } catch (RedisException e) {
+            return jedisPipelineOps.deleteIfEquals(redisKey, lock);
+        } catch (JedisException e) {
             throw new BridgeServiceException("Lock not released.");
         }
     }
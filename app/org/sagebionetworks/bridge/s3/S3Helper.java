@@ -47,7 +47,15 @@ public class S3Helper {
      */
     public byte[] readS3FileAsBytes(@Nonnull String bucket, @Nonnull String key) throws IOException {
         S3Object s3File = s3Client.getObject(bucket, key);
+        long contentLength = s3File.getObjectMetadata().getContentLength();
         try (InputStream s3Stream = s3File.getObjectContent()) {
+            if (contentLength > 0 && contentLength <= Integer.MAX_VALUE) {
+                // We know the size up front, so read directly into an array of the right size. This avoids growing
+                // a buffer and then copying it, which would briefly hold the file in memory several times over.
+                byte[] bytes = new byte[(int) contentLength];
+                ByteStreams.readFully(s3Stream, bytes);
+                return bytes;
+            }
             return ByteStreams.toByteArray(s3Stream);
         }
     }
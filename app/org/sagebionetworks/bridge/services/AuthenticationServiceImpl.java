@@ -5,17 +5,31 @@ import static org.sagebionetworks.bridge.Roles.ADMIN;
 import static org.sagebionetworks.bridge.Roles.DEVELOPER;
 import static org.sagebionetworks.bridge.Roles.RESEARCHER;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import javax.annotation.Resource;
+
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.dao.AccountDao;
 import org.sagebionetworks.bridge.dao.DistributedLockDao;
+import org.sagebionetworks.bridge.dao.ParticipantOption.SharingScope;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConsentRequiredException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
 import org.sagebionetworks.bridge.exceptions.StudyLimitExceededException;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
+import org.sagebionetworks.bridge.models.Metrics;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.Email;
 import org.sagebionetworks.bridge.models.accounts.EmailVerification;
@@ -46,6 +60,13 @@ public class AuthenticationServiceImpl implements AuthenticationService {
 
     private final int LOCK_EXPIRE_IN_SECONDS = 5;
 
+    // Steps of building a session, as named in the session step metrics.
+    static final String SESSION_STEP = "session";
+    static final String HEALTH_CODE_STEP = "healthCode";
+    static final String SHARING_SCOPE_STEP = "sharingScope";
+    static final String SIGNED_MOST_RECENT_CONSENT_STEP = "signedMostRecentConsent";
+    static final String CONSENTED_STEP = "consented";
+
     private DistributedLockDao lockDao;
     private CacheProvider cacheProvider;
     private BridgeConfig config;
@@ -57,6 +78,8 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     private SignInValidator signInValidator;
     private PasswordResetValidator passwordResetValidator;
     private EmailValidator emailValidator;
+    private ExecutorService sessionExecutorService;
+    private MetricsRegistry metricsRegistry;
 
     @Autowired
     public void setDistributedLockDao(DistributedLockDao lockDao) {
@@ -102,6 +125,14 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     public void setEmailValidator(EmailValidator validator) {
         this.emailValidator = validator;
     }
+    @Resource(name = "sessionExecutorService")
+    public void setSessionExecutorService(ExecutorService sessionExecutorService) {
+        this.sessionExecutorService = sessionExecutorService;
+    }
+    @Autowired
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
 
     @Override
     public UserSession getSession(String sessionToken) {
@@ -227,22 +258,54 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         accountDao.resetPassword(passwordReset);
     }
 
+    /**
+     * Builds the session of a user who has just authenticated. The lookups are independent, except that the sharing
+     * scope and consent checks need the user's health code, so they run in two stages on the session executor: first
+     * the health code and any existing session, then the sharing scope and both consent checks. Building the session
+     * takes about as long as the slowest lookup of each stage, rather than the sum of all of them. Both stages
+     * together must finish within the session timeout, or sign in fails with a 503. The timeout is kept below the
+     * sign in lock, so a slow sign in can't outlive its lock.
+     */
     private UserSession getSessionFromAccount(final Study study, final Account account) {
+        final long deadlineNanos = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(config.getPropertyAsInt("session.timeout.millis"));
+        final List<Future<?>> steps = new ArrayList<>();
+        try {
+            return buildSession(study, account, deadlineNanos, steps);
+        } catch(RuntimeException e) {
+            // Once sign in has failed, the steps still queued or running are of no use. Cancel them, so they don't
+            // hold on to the session threads.
+            for (Future<?> step : steps) {
+                step.cancel(true);
+            }
+            throw e;
+        }
+    }
 
-        final UserSession session = getSession(account);
-        session.setAuthenticated(true);
-        session.setEnvironment(config.getEnvironment());
-        session.setStudyIdentifier(study.getStudyIdentifier());
-
+    private UserSession buildSession(final Study study, final Account account, final long deadlineNanos,
+            final List<Future<?>> steps) {
         final User user = new User(account);
         user.setStudyKey(study.getIdentifier());
 
-        final String healthCode = getHealthCode(study, account);
+        Future<UserSession> sessionStep = runStep(steps, SESSION_STEP, () -> getSession(account));
+        Future<String> healthCodeStep = runStep(steps, HEALTH_CODE_STEP, () -> getHealthCode(study, account));
+        final String healthCode = awaitStep(HEALTH_CODE_STEP, healthCodeStep, deadlineNanos);
         user.setHealthCode(healthCode);
 
-        user.setSharingScope(optionsService.getSharingScope(healthCode));
-        user.setSignedMostRecentConsent(consentService.hasUserSignedMostRecentConsent(study, user));
-        user.setConsent(consentService.hasUserConsentedToResearch(study, user));
+        Future<SharingScope> sharingScopeStep = runStep(steps, SHARING_SCOPE_STEP,
+                () -> optionsService.getSharingScope(healthCode));
+        Future<Boolean> signedMostRecentConsentStep = runStep(steps, SIGNED_MOST_RECENT_CONSENT_STEP,
+                () -> consentService.hasUserSignedMostRecentConsent(study, user));
+        Future<Boolean> consentedStep = runStep(steps, CONSENTED_STEP,
+                () -> consentService.hasUserConsentedToResearch(study, user));
+        // The consent checks read the user, so only update it once they're all done.
+        SharingScope sharingScope = awaitStep(SHARING_SCOPE_STEP, sharingScopeStep, deadlineNanos);
+        boolean signedMostRecentConsent = awaitStep(SIGNED_MOST_RECENT_CONSENT_STEP, signedMostRecentConsentStep,
+                deadlineNanos);
+        boolean consented = awaitStep(CONSENTED_STEP, consentedStep, deadlineNanos);
+        user.setSharingScope(sharingScope);
+        user.setSignedMostRecentConsent(signedMostRecentConsent);
+        user.setConsent(consented);
 
         // And now for some exceptions...
         // All administrators and all researchers are assumed to consent when using any API.
@@ -256,10 +319,49 @@ public class AuthenticationServiceImpl implements AuthenticationService {
             user.setConsent(true);
         }
 
+        // The session lookup started with the first stage, and has had until the same deadline to finish.
+        final UserSession session = awaitStep(SESSION_STEP, sessionStep, deadlineNanos);
+        session.setAuthenticated(true);
+        session.setEnvironment(config.getEnvironment());
+        session.setStudyIdentifier(study.getStudyIdentifier());
         session.setUser(user);
         return session;
     }
 
+    /**
+     * Starts one step of building a session on the session executor. The step's calls to backing services are added
+     * to the metrics of the request on this thread, and the time it takes is recorded as a session step metric. The
+     * step is added to the given list, so it can be cancelled if sign in fails.
+     */
+    private <T> Future<T> runStep(final List<Future<?>> steps, final String name, final Supplier<T> step) {
+        final Metrics requestMetrics = Metrics.getCurrent();
+        Future<T> future = sessionExecutorService.submit(() -> {
+            // If the executor is busy, the step runs on the request thread, which already has its metrics.
+            Metrics previousMetrics = Metrics.getCurrent();
+            Metrics.setCurrent(requestMetrics);
+            long startNanos = System.nanoTime();
+            try {
+                return step.get();
+            } finally {
+                metricsRegistry.recordSessionStep(name, System.nanoTime() - startNanos);
+                Metrics.setCurrent(previousMetrics);
+            }
+        });
+        steps.add(future);
+        return future;
+    }
+
+    /** Waits for a step until the deadline, and passes its exception through if it failed. */
+    private <T> T awaitStep(String name, Future<T> step, long deadlineNanos) {
+        try {
+            return BridgeUtils.getFutureResult(step, Math.max(0L, deadlineNanos - System.nanoTime()),
+                    TimeUnit.NANOSECONDS);
+        } catch(TimeoutException e) {
+            logger.warn("Timed out building session, at step " + name);
+            throw new ServiceUnavailableException("Sign in is taking too long. Please try again later.");
+        }
+    }
+
     private UserSession getSession(final Account account) {
         final UserSession session = cacheProvider.getUserSessionByUserId(account.getId());
         if (session != null) {
@@ -8,9 +8,12 @@ import java.nio.charset.StandardCharsets;
 import javax.annotation.Resource;
 
 import org.apache.commons.io.IOUtils;
+import org.sagebionetworks.bridge.cache.LoadCoalescer;
+import org.sagebionetworks.bridge.cache.TaskWindowCache;
 import org.sagebionetworks.bridge.dao.AccountDao;
 import org.sagebionetworks.bridge.dao.ParticipantOption.SharingScope;
 import org.sagebionetworks.bridge.dao.UserConsentDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.StudyLimitExceededException;
@@ -23,6 +26,7 @@ import org.sagebionetworks.bridge.models.studies.StudyConsent;
 import org.sagebionetworks.bridge.models.studies.StudyConsentView;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.redis.JedisPipelineOps;
 import org.sagebionetworks.bridge.redis.RedisKey;
 import org.sagebionetworks.bridge.services.email.ConsentEmailProvider;
 import org.sagebionetworks.bridge.services.email.MimeTypeEmailProvider;
@@ -32,18 +36,44 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.google.common.collect.ImmutableList;
+
 @Component
 public class ConsentServiceImpl implements ConsentService {
 
     private static final int TWENTY_FOUR_HOURS = (24 * 60 * 60);
 
+    // Replies of the enrollment scripts when the count isn't in Redis, or the study is at its enrollment limit.
+    private static final long COUNT_MISSING = -1L;
+    private static final long LIMIT_REACHED = -2L;
+    private static final int MAX_COUNT_REBUILDS = 3;
+
+    // Increments the count if it's below the limit (ARGV[1]), and returns the new count.
+    private static final String INCREMENT_IF_BELOW_LIMIT_SCRIPT =
+            "local count = redis.call('get', KEYS[1]) " +
+            "if not count then return " + COUNT_MISSING + " end " +
+            "if tonumber(count) >= tonumber(ARGV[1]) then return " + LIMIT_REACHED + " end " +
+            "return redis.call('incr', KEYS[1])";
+
+    // Decrements the count if it exists and is positive, and returns the new count.
+    private static final String DECREMENT_IF_POSITIVE_SCRIPT =
+            "local count = redis.call('get', KEYS[1]) " +
+            "if not count then return " + COUNT_MISSING + " end " +
+            "if tonumber(count) <= 0 then return 0 end " +
+            "return redis.call('decr', KEYS[1])";
+
+    // Enrollment counts being rebuilt on this node, by Redis key. Later callers wait on the first caller's rebuild.
+    private final LoadCoalescer<Long> countRebuilds = new LoadCoalescer<>();
+
     private AccountDao accountDao;
     private JedisOps jedisOps;
+    private JedisPipelineOps jedisPipelineOps;
     private ParticipantOptionsService optionsService;
     private SendMailService sendMailService;
     private StudyConsentService studyConsentService;
     private UserConsentDao userConsentDao;
     private TaskEventService taskEventService;
+    private TaskWindowCache taskWindowCache;
     private String consentTemplate;
     
     @Value("classpath:study-defaults/consent-page.xhtml")
@@ -55,6 +85,10 @@ public class ConsentServiceImpl implements ConsentService {
     public void setStringOps(JedisOps jedisOps) {
         this.jedisOps = jedisOps;
     }
+    @Autowired
+    public void setJedisPipelineOps(JedisPipelineOps jedisPipelineOps) {
+        this.jedisPipelineOps = jedisPipelineOps;
+    }
     @Resource(name="stormpathAccountDao")
     public void setAccountDao(AccountDao accountDao) {
         this.accountDao = accountDao;
@@ -79,6 +113,10 @@ public class ConsentServiceImpl implements ConsentService {
     public void setTaskEventService(TaskEventService taskEventService) {
         this.taskEventService = taskEventService;
     }
+    @Autowired
+    public void setTaskWindowCache(TaskWindowCache taskWindowCache) {
+        this.taskWindowCache = taskWindowCache;
+    }
     
     @Override
     public ConsentSignature getConsentSignature(final Study study, final User user) {
@@ -174,6 +212,7 @@ public class ConsentServiceImpl implements ConsentService {
             account.setConsentSignature(null);
             accountDao.updateAccount(study, account);
             user.setConsent(false);
+            taskWindowCache.removeTasks(user.getHealthCode());
         }
         optionsService.deleteAllParticipantOptions(user.getHealthCode());
     }
@@ -206,28 +245,35 @@ public class ConsentServiceImpl implements ConsentService {
         }
         String key = RedisKey.NUM_OF_PARTICIPANTS.getRedisKey(study.getIdentifier());
 
-        long count = Long.MAX_VALUE;
         String countString = jedisOps.get(key);
-        if (countString == null) {
-            // This is expensive but don't lock, it's better to do it twice slowly, than to throw an exception here.
-            count = userConsentDao.getNumberOfParticipants(study.getStudyIdentifier());
-            jedisOps.setex(key, TWENTY_FOUR_HOURS, Long.toString(count));
-        } else {
-            count = Long.parseLong(countString);
-        }
+        long count = (countString == null) ? rebuildEnrollmentCount(study, key) : Long.parseLong(countString);
         return (count >= study.getMaxNumOfParticipants());
     }
 
+    /**
+     * Checks the limit and increments the count in one atomic Redis call, so concurrent sign ups can't push the study
+     * past its limit.
+     */
     @Override
     public void incrementStudyEnrollment(Study study) throws StudyLimitExceededException {
         if (study.getMaxNumOfParticipants() == 0) {
             return;
         }
-        if (isStudyAtEnrollmentLimit(study)) {
+        String key = RedisKey.NUM_OF_PARTICIPANTS.getRedisKey(study.getIdentifier());
+
+        long result = incrementIfBelowLimit(study, key);
+        // The count can expire or be deleted again right after it is rebuilt, so rebuild it a few times at most.
+        for (int rebuilds = 0; result == COUNT_MISSING; rebuilds++) {
+            if (rebuilds == MAX_COUNT_REBUILDS) {
+                throw new BridgeServiceException("Enrollment count of study " + study.getIdentifier()
+                        + " could not be rebuilt");
+            }
+            rebuildEnrollmentCount(study, key);
+            result = incrementIfBelowLimit(study, key);
+        }
+        if (result == LIMIT_REACHED) {
             throw new StudyLimitExceededException(study);
         }
-        String key = RedisKey.NUM_OF_PARTICIPANTS.getRedisKey(study.getIdentifier());
-        jedisOps.incr(key);
     }
 
     @Override
@@ -236,9 +282,31 @@ public class ConsentServiceImpl implements ConsentService {
             return;
         }
         String key = RedisKey.NUM_OF_PARTICIPANTS.getRedisKey(study.getIdentifier());
-        String count = jedisOps.get(key);
-        if (count != null && Long.parseLong(count) > 0) {
-            jedisOps.decr(key);
-        }
+        // If the count isn't in Redis, there's nothing to do. It's rebuilt from DynamoDB when it's next needed.
+        jedisPipelineOps.eval(DECREMENT_IF_POSITIVE_SCRIPT, ImmutableList.of(key), ImmutableList.of());
+    }
+
+    private long incrementIfBelowLimit(Study study, String key) {
+        Object result = jedisPipelineOps.eval(INCREMENT_IF_BELOW_LIMIT_SCRIPT, ImmutableList.of(key),
+                ImmutableList.of(Integer.toString(study.getMaxNumOfParticipants())));
+        return (result == null) ? COUNT_MISSING : (Long)result;
+    }
+
+    /**
+     * Counts the study's participants in DynamoDB and stores the count in Redis, unless another node stored it first.
+     * Counting is expensive, so concurrent rebuilds on this node share one count.
+     */
+    private long rebuildEnrollmentCount(Study study, String key) {
+        return countRebuilds.load(key, () -> {
+            long count = userConsentDao.getNumberOfParticipants(study.getStudyIdentifier());
+            if (!jedisPipelineOps.setIfAbsent(key, Long.toString(count), TWENTY_FOUR_HOURS)) {
+                // Another node rebuilt the count first, and it may have been incremented since.
+                String countString = jedisOps.get(key);
+                if (countString != null) {
+                    count = Long.parseLong(countString);
+                }
+            }
+            return count;
+        });
     }
 }
@@ -1,5 +1,8 @@
 package org.sagebionetworks.bridge.services;
 
+import java.util.Collection;
+import java.util.Map;
+
 import org.sagebionetworks.bridge.models.accounts.HealthId;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 
@@ -8,5 +11,10 @@ public interface HealthCodeService {
     public HealthId createMapping(StudyIdentifier studyIdentifier);
 
     public HealthId getMapping(String healthId);
+
+    /**
+     * Gets the health codes of many health IDs at once, keyed by health ID. Health IDs without a mapping are left out.
+     */
+    public Map<String, String> getHealthCodes(Collection<String> healthIds);
     
 }
@@ -2,6 +2,8 @@ package org.sagebionetworks.bridge.services;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 
 import org.sagebionetworks.bridge.dao.HealthCodeDao;
@@ -51,6 +53,12 @@ public class HealthCodeServiceImpl implements HealthCodeService {
         return new HealthIdImpl(healthId, healthCode);
     }
     
+    @Override
+    public Map<String, String> getHealthCodes(Collection<String> healthIds) {
+        checkNotNull(healthIds);
+        return healthIdDao.getCodes(healthIds);
+    }
+    
     private String generateHealthCode(String studyId) {
         String code = UUID.randomUUID().toString();
         boolean isSet = healthCodeDao.setIfNotExist(code, studyId);
@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.services;
 
+import java.util.Collection;
 import java.util.Map;
 
 import org.sagebionetworks.bridge.dao.ParticipantOption;
@@ -74,6 +75,15 @@ public interface ParticipantOptionsService {
      */
     public Map<ParticipantOption,String> getAllParticipantOptions(String healthCode);
     
+    /**
+     * Get all options and their values for many participants at once, with batch reads. The result 
+     * has an entry for each of the given health codes. Options that were never set have their 
+     * default value, as do all options of participants who have never set any.
+     * @param healthCodes
+     * @return
+     */
+    public Map<String,Map<ParticipantOption,String>> getAllParticipantOptions(Collection<String> healthCodes);
+    
     /**
      * Get a map of all health codes to all values for an option (null if never set), for a 
      * given study. Useful for export and other batch tasks.
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.Collection;
 import java.util.Map;
 
 import org.sagebionetworks.bridge.dao.ParticipantOption;
@@ -80,6 +81,13 @@ public class ParticipantOptionsServiceImpl implements ParticipantOptionsService
         return optionsDao.getAllParticipantOptions(healthCode);
     }
 
+    @Override
+    public Map<String, Map<ParticipantOption, String>> getAllParticipantOptions(Collection<String> healthCodes) {
+        checkNotNull(healthCodes, Validate.CANNOT_BE_NULL, "healthCodes");
+        
+        return optionsDao.getAllParticipantOptions(healthCodes);
+    }
+
     @Override
     public OptionLookup getOptionForAllStudyParticipants(StudyIdentifier studyIdentifier, ParticipantOption option) {
         checkNotNull(studyIdentifier, Validate.CANNOT_BE_NULL, "studyIdentifier");
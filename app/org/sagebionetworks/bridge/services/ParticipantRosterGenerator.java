@@ -1,31 +1,64 @@
 package org.sagebionetworks.bridge.services;
 
-import java.util.Collections;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.sagebionetworks.bridge.dao.ParticipantOption;
 import org.sagebionetworks.bridge.dao.ParticipantOption.SharingScope;
-import org.sagebionetworks.bridge.dynamodb.OptionLookup;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyParticipant;
 import org.sagebionetworks.bridge.services.email.MimeTypeEmailProvider;
 import org.sagebionetworks.bridge.services.email.ParticipantRosterProvider;
+import org.sagebionetworks.bridge.util.ExternalLineSorter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
 
+/**
+ * Builds the roster of consented participants of a study and emails it. Accounts are read in batches; the accounts of a
+ * batch are decrypted in parallel, their health codes and then their options are looked up with batch reads, and
+ * their rows are handed to an external sort that spills to disk. The sorted roster is written to a temporary file that
+ * is attached to the email, so memory use does not grow with the size of the study.
+ */
 public class ParticipantRosterGenerator implements Runnable {
 
     private static final Logger logger = LoggerFactory.getLogger(ParticipantRosterGenerator.class);
 
-    private static final Comparator<StudyParticipant> STUDY_PARTICIPANT_COMPARATOR = new Comparator<StudyParticipant>() {
+    /** Number of accounts decrypted and resolved to health codes together. */
+    public static final int BATCH_SIZE = 100;
+
+    /** Number of threads decrypting accounts. */
+    private static final int WORKER_COUNT = 4;
+
+    /** Number of roster rows held in memory before they are sorted and spilled to disk. */
+    private static final int SORT_CHUNK_SIZE = 1000;
+
+    private static final String NEWLINE = "\n";
+
+    /** Rows start with the participant's email, so compare the first column. */
+    private static final Comparator<String> ROW_COMPARATOR = new Comparator<String>() {
         @Override
-        public int compare(StudyParticipant p1, StudyParticipant p2) {
-            return p1.getEmail().compareTo(p2.getEmail());
+        public int compare(String row1, String row2) {
+            return emailOf(row1).compareTo(emailOf(row2));
+        }
+        private String emailOf(String row) {
+            int tab = row.indexOf('\t');
+            return (tab < 0) ? row : row.substring(0, tab);
         }
     };
 
@@ -34,9 +67,9 @@ public class ParticipantRosterGenerator implements Runnable {
     private final Iterator<Account> accounts;
 
     private final SendMailService sendMailService;
-    
+
     private final HealthCodeService healthCodeService;
-    
+
     private final ParticipantOptionsService optionsService;
 
     public ParticipantRosterGenerator(Iterator<Account> accounts, Study study, SendMailService sendMailService,
@@ -51,48 +84,117 @@ public class ParticipantRosterGenerator implements Runnable {
     @Override
     public void run() {
         logger.debug("Running participant roster generator...");
-        try {
-            OptionLookup sharingLookup = optionsService.getOptionForAllStudyParticipants(
-                study, ParticipantOption.SHARING_SCOPE);
-            OptionLookup emailLookup = optionsService.getOptionForAllStudyParticipants(
-                study, ParticipantOption.EMAIL_NOTIFICATIONS);
-            
+        ExecutorService workers = Executors.newFixedThreadPool(WORKER_COUNT);
+        File rosterFile = null;
+        try (ExternalLineSorter sorter = new ExternalLineSorter(ROW_COMPARATOR, SORT_CHUNK_SIZE)) {
             int count = 0;
-            List<StudyParticipant> participants = Lists.newArrayList();
+            List<Account> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
             while (accounts.hasNext()) {
-                Account account = accounts.next();
-                if (account.getConsentSignature() != null) {
-                    
-                    String healthCode = healthCodeService.getMapping(account.getHealthId()).getCode();
-                    SharingScope sharing = sharingLookup.getSharingScope(healthCode);
-                    
-                    Boolean notifyByEmail = Boolean.valueOf(emailLookup.get(healthCode));
-
-                    StudyParticipant participant = new StudyParticipant();
-                    participant.setFirstName(account.getFirstName());
-                    participant.setLastName(account.getLastName());
-                    participant.setEmail(account.getEmail());
-                    participant.setSharingScope(sharing);
-                    participant.setNotifyByEmail(notifyByEmail);
-                    for (String attribute : study.getUserProfileAttributes()) {
-                        String value = account.getAttribute(attribute);
-                        // Whether present or not, add an entry.
-                        participant.put(attribute, value);
-                    }
-                    participants.add(participant);
-                    logger.debug("processing account #" + (count++));
-                } else {
-                    logger.debug("skipping account #" + (count++));
+                batch.add(accounts.next());
+                count++;
+                if (batch.size() == BATCH_SIZE || !accounts.hasNext()) {
+                    addBatch(workers, sorter, batch);
+                    logger.debug("processed " + count + " accounts");
+                    batch.clear();
                 }
             }
-            Collections.sort(participants, STUDY_PARTICIPANT_COMPARATOR);
 
-            MimeTypeEmailProvider roster = new ParticipantRosterProvider(study, participants);
+            rosterFile = File.createTempFile("participants", ".tsv");
+            try (BufferedWriter writer = Files.newBufferedWriter(rosterFile.toPath(), UTF_8)) {
+                writer.write(ParticipantRosterProvider.createHeaderRow(study));
+                writer.write(NEWLINE);
+                sorter.writeSorted(writer);
+            }
+
+            MimeTypeEmailProvider roster = new ParticipantRosterProvider(study, sorter.getLineCount(), rosterFile);
             logger.debug("sending roster to the sendMailService");
-            sendMailService.sendEmail(roster);
-            logger.debug("roster sent.");
+            // Wait until the email has been rendered, so the roster file can be deleted.
+            sendMailService.sendEmail(roster).join();
+            logger.debug("roster queued.");
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
+        } finally {
+            workers.shutdownNow();
+            if (rosterFile != null && !rosterFile.delete()) {
+                logger.warn("Could not delete roster file " + rosterFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Decrypts a batch of accounts in parallel, resolves their health codes and then their options with one lookup
+     * each, and adds a row to the sorter for each consented participant.
+     */
+    private void addBatch(ExecutorService workers, ExternalLineSorter sorter, List<Account> batch)
+            throws InterruptedException, ExecutionException, IOException {
+
+        List<Callable<RosterEntry>> tasks = Lists.newArrayListWithCapacity(batch.size());
+        for (Account account : batch) {
+            tasks.add(() -> toRosterEntry(account));
+        }
+        List<RosterEntry> entries = Lists.newArrayListWithCapacity(batch.size());
+        List<String> healthIds = Lists.newArrayListWithCapacity(batch.size());
+        for (Future<RosterEntry> future : workers.invokeAll(tasks)) {
+            RosterEntry entry = future.get();
+            // Accounts without a consent signature are not participants.
+            if (entry != null) {
+                entries.add(entry);
+                healthIds.add(entry.healthId);
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> healthCodes = healthCodeService.getHealthCodes(healthIds);
+        Map<String, Map<ParticipantOption, String>> options = optionsService.getAllParticipantOptions(
+                healthCodes.values());
+        for (RosterEntry entry : entries) {
+            String healthCode = healthCodes.get(entry.healthId);
+            Map<ParticipantOption, String> participantOptions = (healthCode == null) ? null : options.get(healthCode);
+            if (participantOptions == null) {
+                logger.warn("No health code for a participant in study " + study.getIdentifier()
+                        + ", reporting default options");
+            }
+            SharingScope sharing = SharingScope.valueOf(getOption(participantOptions, ParticipantOption.SHARING_SCOPE));
+            Boolean notifyByEmail = Boolean.valueOf(getOption(participantOptions,
+                    ParticipantOption.EMAIL_NOTIFICATIONS));
+            entry.participant.setSharingScope(sharing);
+            entry.participant.setNotifyByEmail(notifyByEmail);
+            sorter.add(ParticipantRosterProvider.createParticipantRow(study, entry.participant));
+        }
+    }
+
+    private static String getOption(Map<ParticipantOption, String> participantOptions, ParticipantOption option) {
+        return (participantOptions == null) ? option.getDefaultValue() : participantOptions.get(option);
+    }
+
+    /**
+     * Reads (and so decrypts) the account's roster fields, or returns null if the account has not consented.
+     */
+    private RosterEntry toRosterEntry(Account account) {
+        if (account.getConsentSignature() == null) {
+            return null;
+        }
+        StudyParticipant participant = new StudyParticipant();
+        participant.setFirstName(account.getFirstName());
+        participant.setLastName(account.getLastName());
+        participant.setEmail(account.getEmail());
+        for (String attribute : study.getUserProfileAttributes()) {
+            String value = account.getAttribute(attribute);
+            // Whether present or not, add an entry.
+            participant.put(attribute, value);
+        }
+        return new RosterEntry(account.getHealthId(), participant);
+    }
+
+    private static final class RosterEntry {
+        private final String healthId;
+        private final StudyParticipant participant;
+
+        RosterEntry(String healthId, StudyParticipant participant) {
+            this.healthId = healthId;
+            this.participant = participant;
         }
     }
 
@@ -3,11 +3,15 @@ package org.sagebionetworks.bridge.services;
 import static org.sagebionetworks.bridge.BridgeUtils.checkNewEntity;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
+import org.sagebionetworks.bridge.cache.SchedulePlanCache;
+import org.sagebionetworks.bridge.cache.TaskWindowCache;
 import org.sagebionetworks.bridge.dao.SchedulePlanDao;
 import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
 import org.sagebionetworks.bridge.validators.SchedulePlanValidator;
 import org.sagebionetworks.bridge.validators.Validate;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,6 +22,8 @@ public class SchedulePlanServiceImpl implements SchedulePlanService {
     
     private SchedulePlanDao schedulePlanDao;
     private SchedulePlanValidator validator;
+    private SchedulePlanCache schedulePlanCache;
+    private TaskWindowCache taskWindowCache;
 
     @Autowired
     public void setSchedulePlanDao(SchedulePlanDao schedulePlanDao) {
@@ -28,10 +34,25 @@ public class SchedulePlanServiceImpl implements SchedulePlanService {
     public void setValidator(SchedulePlanValidator validator) {
         this.validator = validator;
     }
+    
+    @Autowired
+    public void setSchedulePlanCache(SchedulePlanCache schedulePlanCache) {
+        this.schedulePlanCache = schedulePlanCache;
+    }
+    
+    @Autowired
+    public void setTaskWindowCache(TaskWindowCache taskWindowCache) {
+        this.taskWindowCache = taskWindowCache;
+    }
 
     @Override
     public List<SchedulePlan> getSchedulePlans(ClientInfo clientInfo, StudyIdentifier studyIdentifier) {
-        return schedulePlanDao.getSchedulePlans(clientInfo, studyIdentifier);
+        // All of the study's plans are cached, and filtered for the app version here.
+        List<SchedulePlan> plans = schedulePlanCache.getSchedulePlans(studyIdentifier, 
+            () -> schedulePlanDao.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, studyIdentifier));
+        return plans.stream().filter(plan -> {
+            return clientInfo.isTargetedAppVersion(plan.getMinAppVersion(), plan.getMaxAppVersion());
+        }).collect(Collectors.toList());
     }
 
     @Override
@@ -45,18 +66,28 @@ public class SchedulePlanServiceImpl implements SchedulePlanService {
         checkNewEntity(plan, plan.getGuid(), "Schedule plan has a GUID; it may already exist");
         checkNewEntity(plan, plan.getVersion(), "Schedule plan has a version value; it may already exist");
         
-        return schedulePlanDao.createSchedulePlan(plan);
+        SchedulePlan savedPlan = schedulePlanDao.createSchedulePlan(plan);
+        planChanged(new StudyIdentifierImpl(plan.getStudyKey()));
+        return savedPlan;
     }
 
     @Override
     public SchedulePlan updateSchedulePlan(SchedulePlan plan) {
         Validate.entityThrowingException(validator, plan);
-        return schedulePlanDao.updateSchedulePlan(plan);
+        SchedulePlan savedPlan = schedulePlanDao.updateSchedulePlan(plan);
+        planChanged(new StudyIdentifierImpl(plan.getStudyKey()));
+        return savedPlan;
     }
 
     @Override
     public void deleteSchedulePlan(StudyIdentifier studyIdentifier, String guid) {
         schedulePlanDao.deleteSchedulePlan(studyIdentifier, guid);
+        planChanged(studyIdentifier);
+    }
+    
+    private void planChanged(StudyIdentifier studyIdentifier) {
+        schedulePlanCache.removeSchedulePlans(studyIdentifier);
+        taskWindowCache.removeStudy(studyIdentifier);
     }
     
 }
@@ -1,9 +1,15 @@
 package org.sagebionetworks.bridge.services;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.sagebionetworks.bridge.services.email.MimeTypeEmailProvider;
 
 public interface SendMailService {
 
-    public void sendEmail(MimeTypeEmailProvider provider);
+    /**
+     * Queues the email to be sent. The returned future completes once the email has been rendered and queued, after
+     * which the provider and anything it reads from are no longer needed.
+     */
+    public CompletableFuture<Void> sendEmail(MimeTypeEmailProvider provider);
 
 }
@@ -1,12 +1,31 @@
 package org.sagebionetworks.bridge.services;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import javax.mail.Address;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Session;
@@ -15,7 +34,8 @@ import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 
-import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.config.BridgeConfigFactory;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
 import org.sagebionetworks.bridge.services.email.MimeTypeEmail;
 import org.sagebionetworks.bridge.services.email.MimeTypeEmailProvider;
 import org.slf4j.Logger;
@@ -23,7 +43,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
@@ -32,7 +51,31 @@ import com.amazonaws.services.simpleemail.model.RawMessage;
 import com.amazonaws.services.simpleemail.model.SendRawEmailRequest;
 import com.amazonaws.services.simpleemail.model.SendRawEmailResult;
 import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Lists;
 
+/**
+ * <p>
+ * Sends email through SES without holding up the caller. The email is rendered on a pool of mail workers, one message
+ * per recipient, and each message is written to a local spool directory before it is sent. It is deleted from the
+ * spool once SES accepts it, so messages that were spooled but not sent when the server stopped are sent again on
+ * the next start.
+ * </p>
+ * <p>
+ * Each host spools to its own directory under email.spool.dir, so a server only resends its own messages. This means
+ * the spool only survives a restart on the same host, with the same disk: messages spooled on a host that is replaced
+ * are never sent. A message is claimed before it is sent, by renaming it with a ".sending" suffix. The rename is
+ * atomic, so only one sender can claim a message even if two of them find it in the spool. Messages hold participants'
+ * email addresses and consent documents, so the spool can only be read by the server's own user.
+ * </p>
+ * <p>
+ * When SES throttles a send (we've exceeded our sending rate), the worker backs off exponentially, with jitter, and
+ * tries again, up to a maximum number of attempts. Messages that still can't be sent are counted as background errors
+ * in the metrics, and left in the spool with a ".failed" suffix, so they can be inspected and sent by hand. Failed
+ * messages are deleted once they are older than the failed message retention.
+ * </p>
+ */
 @Component("sendEmailViaAmazonService")
 public class SendMailViaAmazonService implements SendMailService {
 
@@ -40,8 +83,25 @@ public class SendMailViaAmazonService implements SendMailService {
 
     private static final Region REGION = Region.getRegion(Regions.US_EAST_1);
 
+    private static final Session MAIL_SESSION = Session.getInstance(new Properties(), null);
+
+    private static final String SPOOL_FILE_PREFIX = "mail-";
+    private static final String SPOOL_FILE_SUFFIX = ".eml";
+    private static final String CLAIMED_FILE_SUFFIX = ".sending";
+    private static final String FAILED_FILE_SUFFIX = ".failed";
+    private static final Set<PosixFilePermission> SPOOL_DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString(
+            "rwx------");
+    private static final String SEND_FAILED_ERROR = "email_send_failed";
+
+    private static final String THROTTLING_ERROR_CODE = "Throttling";
+    private static final int SERVICE_UNAVAILABLE_STATUS = 503;
+
     private String supportEmail;
     private AmazonSimpleEmailServiceClient emailClient;
+    private ExecutorService executorService;
+    private MetricsRegistry metricsRegistry;
+    private final Supplier<File> spoolDirectory = Suppliers.memoize(() -> new File(
+            BridgeConfigFactory.getConfig().getProperty("email.spool.dir"), getHostName()));
 
     @Resource(name="supportEmail")
     public void setSupportEmail(String supportEmail) {
@@ -50,23 +110,147 @@ public class SendMailViaAmazonService implements SendMailService {
     @Autowired
     public void setEmailClient(AmazonSimpleEmailServiceClient emailClient) {
         this.emailClient = emailClient;
+        emailClient.setRegion(REGION);
     }
-    
-    @Override
-    public void sendEmail(MimeTypeEmailProvider provider) {
+    /** Mail workers, which render and send the email. This is configured by Spring. */
+    @Resource(name="mailExecutorService")
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+    @Autowired
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Directory holding messages that have been rendered but not yet sent. This is a directory of this host's own
+     * under email.spool.dir, which stays the same across restarts.
+     */
+    protected File getSpoolDirectory() {
+        return spoolDirectory.get();
+    }
+
+    private static String getHostName() {
         try {
-            MimeTypeEmail email = provider.getEmail(supportEmail);
-            for (String recipient: email.getRecipientAddresses()) {
-                sendEmail(recipient, email);    
+            return InetAddress.getLocalHost().getHostName();
+        } catch(UnknownHostException e) {
+            throw new IllegalStateException("Can't name the mail spool directory of this host", e);
+        }
+    }
+
+    /** Max number of times a message is sent to SES while SES is throttling us. */
+    protected int getMaxAttempts() {
+        return BridgeConfigFactory.getConfig().getPropertyAsInt("email.send.max.attempts");
+    }
+
+    /** Wait before the first retry of a throttled send. The wait doubles for each retry after that. */
+    protected long getInitialBackoffMillis() {
+        return BridgeConfigFactory.getConfig().getPropertyAsInt("email.send.initial.backoff.millis");
+    }
+
+    /** How long failed messages are kept in the spool before they are deleted. */
+    protected long getFailedRetentionMillis() {
+        return TimeUnit.DAYS.toMillis(
+                BridgeConfigFactory.getConfig().getPropertyAsInt("email.spool.failed.retention.days"));
+    }
+
+    /**
+     * Queues the email and returns right away. The returned future completes when the email has been rendered and its
+     * messages are in the spool, or completes exceptionally if the email couldn't be rendered. Sending happens after
+     * that, and failures to send are logged.
+     */
+    @Override
+    public CompletableFuture<Void> sendEmail(MimeTypeEmailProvider provider) {
+        CompletableFuture<Void> spooled = new CompletableFuture<>();
+        executorService.execute(() -> {
+            List<SpooledMessage> messages;
+            try {
+                messages = spoolEmail(provider);
+                spooled.complete(null);
+            } catch(Throwable t) {
+                logger.error("Failed to render email: " + t.getMessage(), t);
+                spooled.completeExceptionally(t);
+                return;
             }
-        } catch(MessagingException | AmazonServiceException | IOException e) {
-            throw new BridgeServiceException(e);
+            for (SpooledMessage message : messages) {
+                sendSpooledMessage(message);
+            }
+        });
+        return spooled;
+    }
+
+    /**
+     * Sends the messages left in the spool when the server last stopped. This is called by Spring once the service
+     * is configured.
+     */
+    @PostConstruct
+    public void resendSpooledMessages() {
+        deleteExpiredFailedMessages();
+
+        // Messages this host was sending when it stopped. No other host sends from this directory.
+        File[] claimedFiles = getSpoolDirectory().listFiles(
+                (dir, name) -> name.endsWith(SPOOL_FILE_SUFFIX + CLAIMED_FILE_SUFFIX));
+        if (claimedFiles != null) {
+            for (File claimedFile : claimedFiles) {
+                String path = claimedFile.getPath();
+                File messageFile = new File(path.substring(0, path.length() - CLAIMED_FILE_SUFFIX.length()));
+                if (!claimedFile.renameTo(messageFile)) {
+                    logger.warn("Could not put email back in the spool: " + claimedFile.getAbsolutePath());
+                }
+            }
+        }
+
+        File[] messageFiles = getSpoolDirectory().listFiles((dir, name) -> name.endsWith(SPOOL_FILE_SUFFIX));
+        if (messageFiles == null || messageFiles.length == 0) {
+            return;
+        }
+        logger.info(String.format("Resending %d spooled email messages", messageFiles.length));
+        for (File messageFile : messageFiles) {
+            executorService.execute(() -> {
+                try {
+                    if (claim(messageFile)) {
+                        sendClaimedMessage(readSpooledMessage(messageFile));
+                    }
+                } catch(MessagingException | IOException e) {
+                    logger.error("Failed to read spooled email " + messageFile.getName() + ": " + e.getMessage(), e);
+                    markFailed(messageFile);
+                }
+            });
         }
     }
 
-    private void sendEmail(String recipient, MimeTypeEmail email) throws AmazonClientException, MessagingException, IOException {
-        Session mailSession = Session.getInstance(new Properties(), null);
-        MimeMessage mimeMessage = new MimeMessage(mailSession);
+    /** Renders the email and writes one message per recipient to the spool. */
+    private List<SpooledMessage> spoolEmail(MimeTypeEmailProvider provider) throws MessagingException, IOException {
+        MimeTypeEmail email = provider.getEmail(supportEmail);
+        Path spoolDirectory = createSpoolDirectory();
+
+        List<SpooledMessage> messages = Lists.newArrayListWithCapacity(email.getRecipientAddresses().size());
+        for (String recipient : email.getRecipientAddresses()) {
+            byte[] rawMessage = createRawMessage(recipient, email);
+            // Temp files can only be read and written by their owner.
+            File messageFile = Files.createTempFile(spoolDirectory, SPOOL_FILE_PREFIX, SPOOL_FILE_SUFFIX).toFile();
+            Files.write(messageFile.toPath(), rawMessage);
+            messages.add(new SpooledMessage(messageFile, rawMessage, email.getSenderAddress(),
+                    Collections.singletonList(recipient)));
+        }
+        return messages;
+    }
+
+    /**
+     * Creates the spool directory if it doesn't exist yet, and makes sure only the server's own user can use it, even
+     * if it was created before with wider permissions.
+     */
+    private Path createSpoolDirectory() throws IOException {
+        Path spoolDirectory = getSpoolDirectory().toPath();
+        FileAttribute<Set<PosixFilePermission>> permissions = PosixFilePermissions.asFileAttribute(
+                SPOOL_DIRECTORY_PERMISSIONS);
+        Files.createDirectories(spoolDirectory, permissions);
+        Files.setPosixFilePermissions(spoolDirectory, SPOOL_DIRECTORY_PERMISSIONS);
+        return spoolDirectory;
+    }
+
+    private byte[] createRawMessage(String recipient, MimeTypeEmail email) throws MessagingException, IOException {
+        MimeMessage mimeMessage = new MimeMessage(MAIL_SESSION);
         mimeMessage.setFrom(new InternetAddress(email.getSenderAddress()));
         mimeMessage.setSubject(email.getSubject(), Charsets.UTF_8.name());
         mimeMessage.addRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
@@ -74,7 +258,7 @@ public class SendMailViaAmazonService implements SendMailService {
         MimeMultipart mimeMultipart = new MimeMultipart();
         for (MimeBodyPart part : email.getMessageParts()) {
             if (part != null) {
-                mimeMultipart.addBodyPart(part);    
+                mimeMultipart.addBodyPart(part);
             }
         }
 
@@ -82,15 +266,137 @@ public class SendMailViaAmazonService implements SendMailService {
         mimeMessage.setContent(mimeMultipart);
         ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
         mimeMessage.writeTo(byteOutputStream);
-        RawMessage sesRawMessage = new RawMessage(ByteBuffer.wrap(byteOutputStream.toByteArray()));
+        return byteOutputStream.toByteArray();
+    }
 
-        SendRawEmailRequest req = new SendRawEmailRequest(sesRawMessage);
-        req.setSource(email.getSenderAddress());
-        req.setDestinations(Collections.singleton(recipient));
-        emailClient.setRegion(REGION);
-        SendRawEmailResult result = emailClient.sendRawEmail(req);
+    /**
+     * Reads a claimed message left in the spool. Its sender and recipient are read back from its headers.
+     */
+    private SpooledMessage readSpooledMessage(File messageFile) throws MessagingException, IOException {
+        byte[] rawMessage = Files.readAllBytes(getClaimedFile(messageFile).toPath());
+        MimeMessage mimeMessage = new MimeMessage(MAIL_SESSION, new ByteArrayInputStream(rawMessage));
+        List<String> destinations = Lists.newArrayList();
+        for (Address address : mimeMessage.getRecipients(Message.RecipientType.TO)) {
+            destinations.add(address.toString());
+        }
+        return new SpooledMessage(messageFile, rawMessage, mimeMessage.getFrom()[0].toString(), destinations);
+    }
+
+    /** Claims a message this worker just spooled, and sends it. */
+    private void sendSpooledMessage(SpooledMessage message) {
+        try {
+            if (claim(message.file)) {
+                sendClaimedMessage(message);
+            }
+        } catch(IOException e) {
+            logger.error("Failed to claim email " + message.file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Claims a spooled message by renaming it atomically. Returns false if another sender has already claimed it.
+     */
+    private static boolean claim(File messageFile) throws IOException {
+        try {
+            Files.move(messageFile.toPath(), getClaimedFile(messageFile).toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch(NoSuchFileException e) {
+            logger.info("Email " + messageFile.getName() + " was already claimed by another sender");
+            return false;
+        }
+    }
+
+    private static File getClaimedFile(File messageFile) {
+        return new File(messageFile.getPath() + CLAIMED_FILE_SUFFIX);
+    }
+
+    /** Sends a claimed message, and removes it from the spool once it's sent, or marks it failed. */
+    private void sendClaimedMessage(SpooledMessage message) {
+        File claimedFile = getClaimedFile(message.file);
+        try {
+            SendRawEmailRequest req = new SendRawEmailRequest(new RawMessage(ByteBuffer.wrap(message.rawMessage)));
+            req.setSource(message.source);
+            req.setDestinations(message.destinations);
+            SendRawEmailResult result = sendWithRetry(req);
+            logger.info(String.format("Sent email to SES with message ID %s", result.getMessageId()));
+            Files.delete(claimedFile.toPath());
+        } catch(InterruptedException e) {
+            // Shutting down. The message goes back in the spool, and is sent on the next start.
+            Thread.currentThread().interrupt();
+            if (!claimedFile.renameTo(message.file)) {
+                logger.warn("Could not put email back in the spool: " + claimedFile.getAbsolutePath());
+            }
+        } catch(Throwable t) {
+            logger.error("Failed to send email " + message.file.getName() + ": " + t.getMessage(), t);
+            markFailed(message.file);
+        }
+    }
+
+    /** Counts the failure, and leaves the message in the spool for inspection, until it expires. */
+    private void markFailed(File messageFile) {
+        if (metricsRegistry != null) {
+            metricsRegistry.recordBackgroundError(SEND_FAILED_ERROR);
+        }
+        File claimedFile = getClaimedFile(messageFile);
+        File failedFile = new File(messageFile.getPath() + FAILED_FILE_SUFFIX);
+        if (!claimedFile.renameTo(failedFile)) {
+            logger.warn("Could not mark email as failed: " + claimedFile.getAbsolutePath());
+        }
+        deleteExpiredFailedMessages();
+    }
+
+    /** Deletes failed messages older than the failed message retention, so they don't pile up in the spool. */
+    private void deleteExpiredFailedMessages() {
+        long expiredBefore = System.currentTimeMillis() - getFailedRetentionMillis();
+        File[] expiredFiles = getSpoolDirectory().listFiles(
+                file -> file.getName().endsWith(FAILED_FILE_SUFFIX) && file.lastModified() < expiredBefore);
+        if (expiredFiles == null) {
+            return;
+        }
+        for (File expiredFile : expiredFiles) {
+            if (expiredFile.delete()) {
+                logger.info("Deleted expired failed email " + expiredFile.getName());
+            } else {
+                logger.warn("Could not delete expired failed email: " + expiredFile.getAbsolutePath());
+            }
+        }
+    }
+
+    private SendRawEmailResult sendWithRetry(SendRawEmailRequest req) throws InterruptedException {
+        int maxAttempts = getMaxAttempts();
+        long backoffMillis = getInitialBackoffMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return emailClient.sendRawEmail(req);
+            } catch(AmazonServiceException e) {
+                if (!isThrottled(e) || attempt >= maxAttempts) {
+                    throw e;
+                }
+                // Full jitter, so workers throttled at the same time don't all retry at the same time.
+                long sleepMillis = ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+                logger.warn(String.format("SES throttled send attempt %d, retrying in %d ms", attempt, sleepMillis));
+                Thread.sleep(sleepMillis);
+                backoffMillis *= 2;
+            }
+        }
+    }
 
-        logger.info(String.format("Sent email to SES with message ID %s", result.getMessageId()));
+    private static boolean isThrottled(AmazonServiceException e) {
+        return THROTTLING_ERROR_CODE.equals(e.getErrorCode()) || e.getStatusCode() == SERVICE_UNAVAILABLE_STATUS;
+    }
+
+    /** A rendered message in the spool, with the sender and recipients to send it to. */
+    private static class SpooledMessage {
+        final File file;
+        final byte[] rawMessage;
+        final String source;
+        final List<String> destinations;
+
+        SpooledMessage(File file, byte[] rawMessage, String source, List<String> destinations) {
+            this.file = file;
+            this.rawMessage = rawMessage;
+            this.source = source;
+            this.destinations = destinations;
+        }
     }
-    
 }
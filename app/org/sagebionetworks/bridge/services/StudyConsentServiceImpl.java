@@ -19,6 +19,7 @@ import org.jsoup.nodes.Document.OutputSettings.Syntax;
 import org.jsoup.nodes.Entities.EscapeMode;
 import org.jsoup.safety.Whitelist;
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.StudyConsentCache;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.dao.StudyConsentDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
@@ -54,6 +55,7 @@ public class StudyConsentServiceImpl implements StudyConsentService {
     private Validator validator;
     private StudyConsentDao studyConsentDao;
     private S3Helper s3Helper;
+    private StudyConsentCache studyConsentCache;
     private static final String CONSENTS_BUCKET = BridgeConfigFactory.getConfig().getConsentsBucket();
     private static final String PUBLICATIONS_BUCKET = BridgeConfigFactory.getConfig().getHostnameWithPostfix("docs");
     private String fullPageTemplate;
@@ -77,6 +79,11 @@ public class StudyConsentServiceImpl implements StudyConsentService {
     public void set(S3Helper helper) {
         this.s3Helper = helper;
     }
+
+    @Autowired
+    public void setStudyConsentCache(StudyConsentCache studyConsentCache) {
+        this.studyConsentCache = studyConsentCache;
+    }
     
     @Override
     public StudyConsentView addConsent(StudyIdentifier studyIdentifier, StudyConsentForm form) {
@@ -92,6 +99,7 @@ public class StudyConsentServiceImpl implements StudyConsentService {
         try {
             s3Helper.writeBytesToS3(CONSENTS_BUCKET, storagePath, sanitizedContent.getBytes());
             StudyConsent consent = studyConsentDao.addConsent(studyIdentifier, storagePath, createdOn);
+            studyConsentCache.putDocumentContent(storagePath, sanitizedContent);
             return new StudyConsentView(consent, sanitizedContent);
         } catch(Throwable t) {
             throw new BridgeServiceException(t);
@@ -102,7 +110,8 @@ public class StudyConsentServiceImpl implements StudyConsentService {
     public StudyConsentView getActiveConsent(StudyIdentifier studyIdentifier) {
         checkNotNull(studyIdentifier, "StudyIdentifier is null");
         
-        StudyConsent consent = studyConsentDao.getActiveConsent(studyIdentifier);
+        StudyConsent consent = studyConsentCache.getActiveConsent(studyIdentifier,
+                () -> studyConsentDao.getActiveConsent(studyIdentifier));
         if (consent == null) {
             throw new EntityNotFoundException(StudyConsent.class);
         }
@@ -160,13 +169,21 @@ public class StudyConsentServiceImpl implements StudyConsentService {
         try {
             publishFormatsToS3(study, documentContent);
             consent = studyConsentDao.publish(consent);
+            studyConsentCache.removeActiveConsent(study.getStudyIdentifier());
         } catch(IOException | DocumentException e) {
             throw new BridgeServiceException(e.getMessage());
         }
         return new StudyConsentView(consent, documentContent);
     }
     
+    /**
+     * Documents are never rewritten once stored, so they are cached by storage path.
+     */
     private String loadDocumentContent(StudyConsent consent) {
+        return studyConsentCache.getDocumentContent(consent.getStoragePath(), () -> readDocumentContent(consent));
+    }
+
+    private String readDocumentContent(StudyConsent consent) {
         try {
             logger.info("Loading S3 key: " + consent.getStoragePath());
             return s3Helper.readS3FileAsString(CONSENTS_BUCKET, consent.getStoragePath());
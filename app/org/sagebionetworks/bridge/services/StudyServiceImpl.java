@@ -19,6 +19,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.safety.Whitelist;
 import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.cache.StudyConsentCache;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.dao.DirectoryDao;
 import org.sagebionetworks.bridge.dao.DistributedLockDao;
@@ -53,6 +54,7 @@ public class StudyServiceImpl implements StudyService {
     private CacheProvider cacheProvider;
     private StudyConsentService studyConsentService;
     private StudyConsentDao studyConsentDao;
+    private StudyConsentCache studyConsentCache;
 
     private StudyConsentForm defaultConsentDocument;
     private String defaultEmailVerificationTemplate;
@@ -112,6 +114,10 @@ public class StudyServiceImpl implements StudyService {
     final void setStudyConsentDao(StudyConsentDao studyConsentDao) {
         this.studyConsentDao = studyConsentDao;
     }
+    @Autowired
+    final void setStudyConsentCache(StudyConsentCache studyConsentCache) {
+        this.studyConsentCache = studyConsentCache;
+    }
     
     @Override
     public Study getStudy(String identifier) {
@@ -220,6 +226,7 @@ public class StudyServiceImpl implements StudyService {
             lockId = lockDao.acquireLock(Study.class, identifier);
             studyDao.deleteStudy(existing);
             studyConsentDao.deleteAllConsents(existing.getStudyIdentifier());
+            studyConsentCache.removeActiveConsent(existing.getStudyIdentifier());
             directoryDao.deleteDirectoryForStudy(existing);
             cacheProvider.removeStudy(identifier);
         } finally {
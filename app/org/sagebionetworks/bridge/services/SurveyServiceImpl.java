@@ -9,9 +9,11 @@ import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.UploadSchemaCache;
 import org.sagebionetworks.bridge.dao.SurveyDao;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolder;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
 import org.sagebionetworks.bridge.models.surveys.Survey;
 import org.sagebionetworks.bridge.validators.SurveyValidator;
 import org.sagebionetworks.bridge.validators.Validate;
@@ -24,12 +26,18 @@ public class SurveyServiceImpl implements SurveyService {
 
     private Validator validator;
     private SurveyDao surveyDao;
+    private UploadSchemaCache uploadSchemaCache;
     
     @Autowired
     public void setSurveyDao(SurveyDao surveyDao) {
         this.surveyDao = surveyDao;
     }
     
+    @Autowired
+    public void setUploadSchemaCache(UploadSchemaCache uploadSchemaCache) {
+        this.uploadSchemaCache = uploadSchemaCache;
+    }
+    
     @Autowired
     public void setValidator(SurveyValidator validator) {
         this.validator = validator;
@@ -91,7 +99,12 @@ public class SurveyServiceImpl implements SurveyService {
         checkArgument(StringUtils.isNotBlank(keys.getGuid()), "Survey GUID cannot be null/blank");
         checkArgument(keys.getCreatedOn() != 0L, "Survey createdOn timestamp cannot be 0");
 
+        // Deleting the survey permanently also deletes its schemas. Get the survey first, so we know which schemas
+        // to drop from the cache.
+        Survey survey = surveyDao.getSurvey(keys);
         surveyDao.deleteSurveyPermanently(keys);
+        uploadSchemaCache.removeUploadSchemas(new StudyIdentifierImpl(survey.getStudyIdentifier()),
+                survey.getIdentifier());
     }
 
     @Override
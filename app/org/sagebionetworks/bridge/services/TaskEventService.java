@@ -5,6 +5,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.util.Map;
 
 import org.joda.time.DateTime;
+import org.sagebionetworks.bridge.cache.TaskWindowCache;
 import org.sagebionetworks.bridge.dao.TaskEventDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoTaskEvent;
 import org.sagebionetworks.bridge.models.accounts.UserConsent;
@@ -23,11 +24,18 @@ public class TaskEventService {
 
     private TaskEventDao taskEventDao;
     
+    private TaskWindowCache taskWindowCache;
+    
     @Autowired
     public void setTaskEventDao(TaskEventDao taskEventDao) {
         this.taskEventDao = taskEventDao;
     }
     
+    @Autowired
+    public void setTaskWindowCache(TaskWindowCache taskWindowCache) {
+        this.taskWindowCache = taskWindowCache;
+    }
+    
     public void publishEnrollmentEvent(String healthCode, UserConsent consent) {
         checkNotNull(consent);
         
@@ -35,7 +43,7 @@ public class TaskEventService {
             .withHealthCode(healthCode)
             .withTimestamp(consent.getSignedOn())
             .withObjectType(TaskEventObjectType.ENROLLMENT).build();
-        taskEventDao.publishEvent(event);    
+        publish(event);
     }
     
     public void publishQuestionAnsweredEvent(String healthCode, SurveyAnswer answer) {
@@ -49,7 +57,7 @@ public class TaskEventService {
             .withObjectId(answer.getQuestionGuid())
             .withEventType(TaskEventType.ANSWERED)
             .withAnswerValue(Joiner.on(",").join(answer.getAnswers())).build();
-        taskEventDao.publishEvent(event);
+        publish(event);
     }
     
     public void publishSurveyFinishedEvent(SurveyResponse response) {
@@ -62,7 +70,7 @@ public class TaskEventService {
             .withObjectId(response.getSurveyGuid())
             .withEventType(TaskEventType.FINISHED)
             .build();
-        taskEventDao.publishEvent(event);
+        publish(event);
     }
     
     /**
@@ -75,7 +83,7 @@ public class TaskEventService {
      */
     public void publishTaskEvent(TaskEvent event) {
         checkNotNull(event);
-        taskEventDao.publishEvent(event);
+        publish(event);
     }
 
     /**
@@ -91,6 +99,15 @@ public class TaskEventService {
     public void deleteTaskEvents(String healthCode) {
         checkNotNull(healthCode);
         taskEventDao.deleteTaskEvents(healthCode);
+        taskWindowCache.removeTasks(healthCode);
+    }
+    
+    /**
+     * Events can start or change schedules, so the participant's tasks must be scheduled again on the next request.
+     */
+    private void publish(TaskEvent event) {
+        taskEventDao.publishEvent(event);
+        taskWindowCache.removeTasks(event.getHealthCode());
     }
 
 }
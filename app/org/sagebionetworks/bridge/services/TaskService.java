@@ -6,9 +6,11 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.joda.time.DateTime;
+import org.sagebionetworks.bridge.cache.TaskWindowCache;
 import org.sagebionetworks.bridge.dao.TaskDao;
 import org.sagebionetworks.bridge.dao.UserConsentDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
@@ -60,6 +62,8 @@ public class TaskService {
     
     private SurveyResponseService surveyResponseService;
     
+    private TaskWindowCache taskWindowCache;
+    
     @Autowired
     public void setTaskDao(TaskDao taskDao) {
         this.taskDao = taskDao;
@@ -84,6 +88,10 @@ public class TaskService {
     public void setSurveyResponseService(SurveyResponseService surveyResponseService) {
         this.surveyResponseService = surveyResponseService;
     }
+    @Autowired
+    public void setTaskWindowCache(TaskWindowCache taskWindowCache) {
+        this.taskWindowCache = taskWindowCache;
+    }
     
     public List<Task> getTasks(User user, ScheduleContext context) {
         checkNotNull(user);
@@ -91,6 +99,19 @@ public class TaskService {
         
         Validate.nonEntityThrowingException(VALIDATOR, context);
         
+        // Tasks are only scheduled and persisted if they haven't already been scheduled through this end time. 
+        // Either way, filter based on the endsOn time from the query. If the client dynamically adjusts the 
+        // lookahead window from a large number of days to a small number of days, the client would 
+        // still get back all the tasks scheduled into the longer time period, so we filter these. Cached 
+        // tasks may also have been hidden (expired) since they were read, so filter these as well.
+        long now = context.getNow().getMillis();
+        return taskWindowCache.getTasks(context, () -> scheduleAndGetTasks(user, context)).stream().filter(task -> {
+            return !task.getScheduledOn().isAfter(context.getEndsOn()) && 
+                task.getHidesOn() != null && task.getHidesOn() > now;
+        }).collect(Collectors.toList());
+    }
+    
+    private List<Task> scheduleAndGetTasks(User user, ScheduleContext context) {
         Map<String, DateTime> events = createEventsMap(context);
         
         // Get tasks from the scheduler. None of these tasks have been saved, some may be new,
@@ -100,9 +121,11 @@ public class TaskService {
             .withEvents(events).build();
         Multimap<String,Task> scheduledTasks = scheduleTasksForPlans(user, newContext);
         
+        Set<String> occurredRunKeys = taskDao.getRunKeysThatHaveOccurred(context.getHealthCode(), scheduledTasks.keySet());
+        
         List<Task> tasksToSave = Lists.newArrayList();
         for (String runKey : scheduledTasks.keySet()) {
-            if (taskDao.taskRunHasNotOccurred(context.getHealthCode(), runKey)) {
+            if (!occurredRunKeys.contains(runKey)) {
                 for (Task task : scheduledTasks.get(runKey)) {
                     // If they have not been persisted yet, get each task one by one, create a survey 
                     // response for survey tasks, and add the tasks to the list of tasks to save.
@@ -116,13 +139,8 @@ public class TaskService {
         // Finally, save these new tasks
         taskDao.saveTasks(tasksToSave);
         
-        // Now read back the tasks from the database to pick up persisted startedOn, finishedOn values, 
-        // but filter based on the endsOn time from the query. If the client dynamically adjusts the 
-        // lookahead window from a large number of days to a small number of days, the client would 
-        // still get back all the tasks scheduled into the longer time period, so we filter these.
-        return taskDao.getTasks(context).stream().filter(task -> {
-            return !task.getScheduledOn().isAfter(context.getEndsOn());
-        }).collect(Collectors.toList());
+        // Now read back the tasks from the database to pick up persisted startedOn, finishedOn values.
+        return taskDao.getTasks(context);
     }
     
     public void updateTasks(String healthCode, List<Task> tasks) {
@@ -138,12 +156,14 @@ public class TaskService {
             }
         }
         taskDao.updateTasks(healthCode, tasks);
+        taskWindowCache.removeTasks(healthCode);
     }
     
     public void deleteTasks(String healthCode) {
         checkArgument(isNotBlank(healthCode));
         
         taskDao.deleteTasks(healthCode);
+        taskWindowCache.removeTasks(healthCode);
     }
     
     /**
@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.services;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.cert.CertificateEncodingException;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -177,4 +178,34 @@ public class UploadArchiveService {
             throw new BadRequestException(e);
         }
     }
+
+    /**
+     * Unzips the given stream, passing each entry to the consumer as it is read, so that only one unzipped entry needs
+     * to be held in memory at a time. Validation and error handling are the same as {@link #unzip(byte[])}.
+     *
+     * @param source
+     *         stream containing the raw data to unzip, must be non-null
+     * @param consumer
+     *         callback for each unzipped entry, must be non-null
+     * @throws BridgeServiceException
+     *         if unzipping fails
+     */
+    public void unzip(@Nonnull InputStream source, @Nonnull Zipper.EntryConsumer consumer)
+            throws BridgeServiceException {
+        if (source == null) {
+            throw new BadRequestException(String.format(Validate.CANNOT_BE_NULL, "source"));
+        }
+        if (consumer == null) {
+            throw new BadRequestException(String.format(Validate.CANNOT_BE_NULL, "consumer"));
+        }
+        try {
+            ZIPPER.unzip(source, consumer);
+        } catch (IOException e) {
+            throw new BridgeServiceException(e);
+        } catch (ZipOverflowException e) {
+            throw new BadRequestException(e);
+        } catch (DuplicateZipEntryException e) {
+            throw new BadRequestException(e);
+        }
+    }
 }
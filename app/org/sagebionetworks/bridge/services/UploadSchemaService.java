@@ -5,6 +5,7 @@ import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.sagebionetworks.bridge.cache.UploadSchemaCache;
 import org.sagebionetworks.bridge.dao.UploadSchemaDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
@@ -18,8 +19,15 @@ import org.sagebionetworks.bridge.validators.Validate;
  */
 @Component
 public class UploadSchemaService {
+    private UploadSchemaCache uploadSchemaCache;
     private UploadSchemaDao uploadSchemaDao;
 
+    /** Cache of schema revisions used by upload validation, cleared when schemas are deleted. Configured by Spring. */
+    @Autowired
+    public void setUploadSchemaCache(UploadSchemaCache uploadSchemaCache) {
+        this.uploadSchemaCache = uploadSchemaCache;
+    }
+
     /** DAO for upload schemas. This is configured by Spring. */
     @Autowired
     public void setUploadSchemaDao(UploadSchemaDao uploadSchemaDao) {
@@ -76,6 +84,7 @@ public class UploadSchemaService {
             throw new BadRequestException("Schema revision must be positive");
         }
         uploadSchemaDao.deleteUploadSchemaByIdAndRev(studyIdentifier, schemaId, rev);
+        uploadSchemaCache.removeUploadSchemas(studyIdentifier, schemaId);
     }
 
     /**
@@ -97,6 +106,7 @@ public class UploadSchemaService {
             throw new BadRequestException(String.format("Invalid schema ID %s", schemaId));
         }
         uploadSchemaDao.deleteUploadSchemaById(studyIdentifier, schemaId);
+        uploadSchemaCache.removeUploadSchemas(studyIdentifier, schemaId);
     }
 
     /**
@@ -11,6 +11,7 @@ import java.util.Date;
 
 import com.amazonaws.AmazonClientException;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -24,6 +25,7 @@ import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
 import org.sagebionetworks.bridge.models.upload.Upload;
 import org.sagebionetworks.bridge.models.upload.UploadRequest;
 import org.sagebionetworks.bridge.models.upload.UploadSession;
+import org.sagebionetworks.bridge.models.upload.UploadStatus;
 import org.sagebionetworks.bridge.models.upload.UploadValidationStatus;
 import org.sagebionetworks.bridge.validators.UploadValidator;
 import org.sagebionetworks.bridge.validators.Validate;
@@ -203,4 +205,17 @@ public class UploadService {
         }
         uploadDao.uploadComplete(upload);
     }
+
+    /**
+     * Puts an upload that was marked complete back in the REQUESTED state, because its validation could not be
+     * started. The client can then call upload complete again.
+     *
+     * @param upload
+     *         upload whose validation was refused
+     */
+    public void uploadValidationRejected(@Nonnull Upload upload) {
+        uploadDao.writeValidationStatus(upload, UploadStatus.REQUESTED,
+                ImmutableList.of("Validation was not started because the server is busy. Please try again later."),
+                null);
+    }
 }
@@ -1,27 +1,27 @@
 package org.sagebionetworks.bridge.services;
 
-import javax.annotation.Nonnull;
-import javax.annotation.Resource;
+import java.util.Map;
 
-import java.util.concurrent.ExecutorService;
+import javax.annotation.Nonnull;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.models.upload.Upload;
+import org.sagebionetworks.bridge.upload.UploadValidationScheduler;
 import org.sagebionetworks.bridge.upload.UploadValidationTask;
 import org.sagebionetworks.bridge.upload.UploadValidationTaskFactory;
 
 /** Service handler for upload validation. */
 @Component
 public class UploadValidationService {
-    private ExecutorService asyncExecutorService;
+    private UploadValidationScheduler scheduler;
     private UploadValidationTaskFactory taskFactory;
 
-    /** Async thread pool. This is configured by Spring. */
-    @Resource(name = "asyncExecutorService")
-    public void setAsyncExecutorService(ExecutorService asyncExecutorService) {
-        this.asyncExecutorService = asyncExecutorService;
+    /** Dedicated scheduler for upload validation tasks. This is configured by Spring. */
+    @Autowired
+    public void setScheduler(UploadValidationScheduler scheduler) {
+        this.scheduler = scheduler;
     }
 
     /** Task factory. This is configured by Spring. */
@@ -44,9 +44,16 @@ public class UploadValidationService {
      *         study this upload lives in
      * @param upload
      *         upload metadata object for the upload
+     * @throws org.sagebionetworks.bridge.exceptions.ServiceUnavailableException
+     *         if the validation queue is full and the scheduler is configured to reject new tasks
      */
     public void validateUpload(@Nonnull StudyIdentifier study, @Nonnull Upload upload) {
         UploadValidationTask task = taskFactory.newTask(study, upload);
-        asyncExecutorService.execute(task);
+        scheduler.submit(task);
+    }
+
+    /** Queue depth, queue wait time, and per-handler execution time statistics for upload validation. */
+    public Map<String, Object> getValidationStats() {
+        return scheduler.getStats();
     }
 }
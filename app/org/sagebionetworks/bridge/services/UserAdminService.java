@@ -42,4 +42,16 @@ public interface UserAdminService {
      */
     public void deleteAllUsers(Roles role);
 
+    /**
+     * Deletes all participants of a study (every account that doesn't have the developer, researcher or admin role),
+     * several at a time. Progress is logged as participants are deleted. A participant that can't be deleted is logged
+     * and skipped.
+     *
+     * @param study
+     *            the study of the participants
+     * @return number of participants deleted
+     * @throws BridgeServiceException
+     */
+    public int deleteAllParticipants(Study study);
+
 }
@@ -2,11 +2,25 @@ package org.sagebionetworks.bridge.services;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import javax.annotation.Resource;
 
 import org.apache.commons.lang3.StringUtils;
 import org.sagebionetworks.bridge.Roles;
 import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.AccountDao;
 import org.sagebionetworks.bridge.dao.DistributedLockDao;
 import org.sagebionetworks.bridge.dao.HealthIdDao;
@@ -27,12 +41,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 
 @Component("userAdminService")
 public class UserAdminServiceImpl implements UserAdminService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserAdminServiceImpl.class);
 
+    // Accounts with any of these roles are not participants.
+    private static final Set<Roles> STAFF_ROLES = EnumSet.of(Roles.DEVELOPER, Roles.RESEARCHER, Roles.ADMIN);
+
     private AuthenticationServiceImpl authenticationService;
     private AccountDao accountDao;
     private ConsentService consentService;
@@ -44,6 +62,8 @@ public class UserAdminServiceImpl implements UserAdminService {
     private TaskEventService taskEventService;
     private DistributedLockDao lockDao;
     private CacheProvider cacheProvider;
+    private BridgeConfig config;
+    private ExecutorService executorService;
 
     @Autowired
     public void setAuthenticationService(AuthenticationServiceImpl authenticationService) {
@@ -89,6 +109,15 @@ public class UserAdminServiceImpl implements UserAdminService {
     public void setCacheProvider(CacheProvider cache) {
         this.cacheProvider = cache;
     }
+    @Autowired
+    public void setBridgeConfig(BridgeConfig config) {
+        this.config = config;
+    }
+    /** Deletion workers, which run the steps of deleting a user. This is configured by Spring. */
+    @Resource(name = "userDeletionExecutorService")
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
     @Override
     public UserSession createUser(SignUp signUp, Study study, boolean signUserIn, boolean consentUser) {
         checkNotNull(study, "Study cannot be null");
@@ -129,87 +158,178 @@ public class UserAdminServiceImpl implements UserAdminService {
 
     void deleteUser(Account account) {
         checkNotNull(account);
-        int retryCount = 0;
-        boolean shouldRetry = true;
-        while (shouldRetry) {
-            boolean deleted = deleteUserAttempt(account);
-            if (deleted) {
-                return;
-            }
-            shouldRetry = retryCount < 5;
-            retryCount++;
-            try {
-                Thread.sleep(100 * 2 ^ retryCount);
-            } catch(InterruptedException ie) {
-                throw new BridgeServiceException(ie);
-            }
+        try {
+            deleteUserAsync(account).join();
+        } catch(CompletionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), BridgeServiceException.class);
+            throw new BridgeServiceException(e.getCause());
         }
     }
 
     @Override
     public void deleteAllUsers(Roles role) {
-        Iterator<Account> iterator = accountDao.getAllAccounts();
-        while(iterator.hasNext()) {
-            Account account = iterator.next();
-            if (account.getRoles().contains(role)) {
-                deleteUser(account);
+        checkNotNull(role);
+        deleteUsers("users with role " + role, accountDao.getAllAccounts(),
+                account -> account.getRoles().contains(role));
+    }
+
+    @Override
+    public int deleteAllParticipants(Study study) {
+        checkNotNull(study);
+        return deleteUsers("participants of study " + study.getIdentifier(), accountDao.getStudyAccounts(study),
+                account -> Collections.disjoint(account.getRoles(), STAFF_ROLES));
+    }
+
+    /**
+     * Deletes the accounts that match the filter, with at most a configured number of users being deleted at once.
+     * Progress is logged as deletions complete. A user that can't be deleted is logged and skipped.
+     *
+     * @return number of users deleted
+     */
+    private int deleteUsers(String description, Iterator<Account> accounts, Predicate<Account> filter) {
+        final int concurrency = config.getPropertyAsInt("user.delete.bulk.concurrency");
+        final int progressInterval = config.getPropertyAsInt("user.delete.bulk.progress.interval");
+        final Semaphore permits = new Semaphore(concurrency);
+        final AtomicInteger deletedCount = new AtomicInteger();
+        final AtomicInteger failedCount = new AtomicInteger();
+        final AtomicInteger completedCount = new AtomicInteger();
+
+        logger.info("Deleting " + description);
+        try {
+            while (accounts.hasNext()) {
+                Account account = accounts.next();
+                if (!filter.test(account)) {
+                    continue;
+                }
+                permits.acquire();
+                deleteUserAsync(account).whenComplete((result, t) -> {
+                    if (t == null) {
+                        deletedCount.incrementAndGet();
+                    } else {
+                        failedCount.incrementAndGet();
+                        Throwable cause = (t instanceof CompletionException) ? t.getCause() : t;
+                        logger.error("Could not delete user " + account.getId() + ": " + cause.getMessage(), cause);
+                    }
+                    if (completedCount.incrementAndGet() % progressInterval == 0) {
+                        logger.info(String.format("Deleting %s: %d deleted, %d failed", description,
+                                deletedCount.get(), failedCount.get()));
+                    }
+                    permits.release();
+                });
             }
+            // Wait for the users still being deleted.
+            permits.acquire(concurrency);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException(e);
         }
+        logger.info(String.format("Finished deleting %s: %d deleted, %d failed", description, deletedCount.get(),
+                failedCount.get()));
+        return deletedCount.get();
     }
 
-    private boolean deleteUserAttempt(Account account) {
-        String key = RedisKey.USER_LOCK.getRedisKey(account.getEmail());
-        String lock = null;
-        boolean success = false;
+    /**
+     * <p>
+     * Starts deleting the user, while holding the user's lock. The user's data is deleted first, with each kind of data
+     * deleted in parallel on the deletion workers; the account is only deleted once all data is gone, so a deletion
+     * that fails part way can be run again. Each step is retried on its own, with jittered exponential backoff, and
+     * can safely be run more than once.
+     * </p>
+     * <p>
+     * The returned future completes when the user has been deleted, or completes exceptionally if a step still fails
+     * after the last retry.
+     * </p>
+     */
+    private CompletableFuture<Void> deleteUserAsync(Account account) {
+        final String key = RedisKey.USER_LOCK.getRedisKey(account.getEmail());
+        final String lock;
+        final Study study;
         try {
-            lock = lockDao.acquireLock(User.class, key);
-            if (account != null) {
-                Study study = studyService.getStudy(account.getStudyIdentifier());
-                deleteUserInStudy(study, account);
+            lock = withRetries("acquireLock", () -> lockDao.acquireLock(User.class, key));
+            study = studyService.getStudy(account.getStudyIdentifier());
+        } catch(Throwable t) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(t);
+            return failed;
+        }
+
+        CompletableFuture<Void> deletion;
+        // health id/code are not assigned until consent is given. They may not exist.
+        if (account.getHealthId() != null) {
+            deletion = supplyStep("getHealthCode", () -> healthIdDao.getCode(account.getHealthId()))
+                    .thenCompose(healthCode -> deleteUserData(study, account, healthCode));
+        } else {
+            deletion = CompletableFuture.completedFuture(null);
+        }
+        return deletion.thenCompose(result -> runStep("deleteAccount", () -> {
+            if (accountDao.getAccount(study, account.getEmail()) != null) {
                 accountDao.deleteAccount(study, account.getEmail());
                 // Check if the delete succeeded
-                success = accountDao.getAccount(study, account.getEmail()) == null ? true : false;
-                cacheProvider.removeSessionByUserId(account.getId());
-            }
-        } catch(Throwable t) {
-            success = false;
-            logger.error(t.getMessage(), t);
-        } finally {
-            // This used to silently fail, not there is a precondition check that
-            // throws an exception. If there has been an exception, lock == null
-            if (lock != null) {
-                lockDao.releaseLock(User.class, key, lock);
+                if (accountDao.getAccount(study, account.getEmail()) != null) {
+                    throw new BridgeServiceException("Account was not deleted");
+                }
             }
+            cacheProvider.removeSessionByUserId(account.getId());
+        })).whenComplete((result, t) -> lockDao.releaseLock(User.class, key, lock));
+    }
+
+    private CompletableFuture<Void> deleteUserData(Study study, Account account, String healthCode) {
+        // We expect to have health code, but when tests fail, we can get users who have signed in
+        // and do not have a health code.
+        if (StringUtils.isBlank(healthCode)) {
+            return CompletableFuture.completedFuture(null);
         }
-        return success;
+        User user = new User(account);
+        user.setHealthCode(healthCode);
+        return CompletableFuture.allOf(
+                // Also deletes the participant's options.
+                runStep("withdrawConsent", () -> consentService.withdrawConsent(study, user)),
+                runStep("deleteHealthData", () -> healthDataService.deleteRecordsForHealthCode(healthCode)),
+                runStep("deleteTasks", () -> taskService.deleteTasks(healthCode)),
+                runStep("deleteTaskEvents", () -> taskEventService.deleteTaskEvents(healthCode)),
+                runStep("deleteSurveyResponses", () -> surveyResponseService.deleteSurveyResponses(healthCode)));
     }
 
-    private boolean deleteUserInStudy(Study study, Account account) throws BridgeServiceException {
-        checkNotNull(study);
-        checkNotNull(account);
+    /** Runs a step of deleting a user on the deletion workers, retrying it if it fails. */
+    private CompletableFuture<Void> runStep(String step, Runnable runnable) {
+        return supplyStep(step, () -> {
+            runnable.run();
+            return null;
+        });
+    }
 
-        try {
-            // health id/code are not assigned until consent is given. They may not exist.
-            if (account.getHealthId() != null) {
-                // This is the fastest way to do this that I know of
-                String healthCode = healthIdDao.getCode(account.getHealthId());
-                // We expect to have health code, but when tests fail, we can get users who have signed in 
-                // and do not have a health code.
-                if (!StringUtils.isBlank(healthCode)) {
-                    User user = new User(account);
-                    user.setHealthCode(healthCode);
-                    consentService.withdrawConsent(study, user);
-                    
-                    healthDataService.deleteRecordsForHealthCode(healthCode);
-                    taskService.deleteTasks(healthCode);
-                    taskEventService.deleteTaskEvents(healthCode);
-                    surveyResponseService.deleteSurveyResponses(healthCode);
+    /** Runs a step of deleting a user that returns a result, like {@link #runStep}. */
+    private <T> CompletableFuture<T> supplyStep(String step, Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(() -> withRetries(step, supplier), executorService);
+    }
+
+    /**
+     * Calls the supplier until it succeeds, or until it has failed the configured max number of times, in which case
+     * the last exception is thrown. The wait between attempts doubles after each attempt, and is randomized (full
+     * jitter), so steps that fail at the same time, such as when DynamoDB throttles us, don't all retry at the same
+     * time.
+     */
+    private <T> T withRetries(String step, Supplier<T> supplier) {
+        final int maxAttempts = config.getPropertyAsInt("user.delete.max.attempts");
+        long backoffMillis = config.getPropertyAsInt("user.delete.initial.backoff.millis");
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return supplier.get();
+            } catch(RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                long sleepMillis = ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+                logger.warn(String.format("User deletion step %s failed on attempt %d, retrying in %d ms: %s", step,
+                        attempt, sleepMillis, e.getMessage()));
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch(InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new BridgeServiceException(ie);
                 }
+                backoffMillis *= 2;
             }
-            return true;
-        } catch (Throwable e) {
-            logger.error(e.getMessage(), e);
-            return false;
         }
     }
 }
@@ -2,15 +2,27 @@ package org.sagebionetworks.bridge.services.backfill;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
+import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.dao.BackfillDao;
 import org.sagebionetworks.bridge.dao.DistributedLockDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.models.backfill.BackfillRecord;
 import org.sagebionetworks.bridge.models.backfill.BackfillStatus;
 import org.sagebionetworks.bridge.models.backfill.BackfillTask;
 import org.slf4j.Logger;
@@ -18,12 +30,28 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
+
 @Component
 abstract class AsyncBackfillTemplate implements BackfillService {
 
     private final Logger logger = LoggerFactory.getLogger(AsyncBackfillTemplate.class);
 
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    /**
+     * A failed or interrupted task of the same backfill started within this window is resumed, unless a restart is
+     * asked for.
+     */
+    static final long RESUME_WINDOW_IN_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /** An in-process task whose node missed this many heartbeats is taken to have lost its node. */
+    static final int MISSED_HEARTBEATS_BEFORE_RESUME = 3;
+
+    // Different backfills run side by side; the distributed lock keeps each backfill to one run at a time.
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor();
+    // Task updates load and save a versioned item, so the heartbeat must not race the backfill's own updates.
+    private final Object taskUpdateLock = new Object();
 
     private DistributedLockDao lockDao;
     private BackfillDao backfillDao;
@@ -48,29 +76,37 @@ abstract class AsyncBackfillTemplate implements BackfillService {
     }
 
     @Override
-    public void backfill(final String user, final String name, final BackfillCallback callback) {
+    public void backfill(final String user, final String name, final boolean restart,
+            final BackfillCallback callback) {
         checkNotNull(user);
         checkNotNull(name);
         checkNotNull(callback);
-        async(user, name, callback);
+        async(user, name, restart, callback);
     }
 
-    private void async(final String user, final String name, final BackfillCallback callback) {
+    private void async(final String user, final String name, final boolean restart, final BackfillCallback callback) {
         executor.execute(new Runnable() {
             @Override
             public void run() {
-                lock(user, name, callback);
+                lock(user, name, restart, callback);
             }
         });
     }
 
-    private void lock(final String user, final String name, final BackfillCallback callback) {
+    private void lock(final String user, final String name, final boolean restart, final BackfillCallback callback) {
         final Class<? extends AsyncBackfillTemplate> clazz = getClass();
         final String obj = clazz.getSimpleName();
         String lock = null;
         try {
             lock = lockDao.acquireLock(clazz, obj, getLockExpireInSeconds());
-            backfillTask(user, name, callback);
+            final BackfillTask recentTask = getRecentTask(name);
+            if (recentTask != null && isRunning(recentTask)) {
+                // The lock has expired, but the node that took it is still running the task.
+                reportRecentTask(name, recentTask, callback);
+            } else {
+                boolean resume = !restart && isResumable(recentTask);
+                backfillTask(user, name, resume ? recentTask : null, callback);
+            }
         } catch (ConcurrentModificationException e) {
             long since = DateTime.now(DateTimeZone.UTC).getMillis() - getLockExpireInSeconds() * 1000L;
             List<? extends BackfillTask> tasks = backfillDao.getTasks(name, since);
@@ -81,13 +117,7 @@ abstract class AsyncBackfillTemplate implements BackfillService {
             // duration of lock expiration, we could get more than one backfill tasks. Only the most
             // recent one is blocking us; the rest should have finished. Check the most recent one and
             // report back the progress.
-            final BackfillTask recentTask = tasks.get(tasks.size() - 1);
-            final int count = backfillDao.getRecordCount(recentTask.getId());
-            final String msg = "Found a recent task of " + name
-                    + " started at " + (new DateTime(recentTask.getTimestamp())).toString()
-                    + " with status " + recentTask.getStatus()
-                    + " and " + count + " records processed.";
-            callback.newRecords(backfillRecordFactory.createOnly(recentTask, msg));
+            reportRecentTask(name, tasks.get(tasks.size() - 1), callback);
         } finally {
             if (lock != null) {
                 lockDao.releaseLock(clazz, obj, lock);
@@ -95,24 +125,314 @@ abstract class AsyncBackfillTemplate implements BackfillService {
         }
     }
 
-    private void backfillTask(final String user, final String name, final BackfillCallback callback) {
-        BackfillTask task = null;
+    private void reportRecentTask(String name, BackfillTask recentTask, BackfillCallback callback) {
+        final int count = backfillDao.getRecordCount(recentTask.getId());
+        final String msg = "Found a recent task of " + name
+                + " started at " + (new DateTime(recentTask.getTimestamp())).toString()
+                + " with status " + recentTask.getStatus()
+                + " and " + count + " records processed.";
+        callback.newRecords(backfillRecordFactory.createOnly(recentTask, msg));
+    }
+
+    private void backfillTask(final String user, final String name, final BackfillTask resumableTask,
+            final BackfillCallback clientCallback) {
+        final BackfillCallback callback = new SynchronizedBackfillCallback(clientCallback);
+        BackfillTask task = resumableTask;
+        ScheduledFuture<?> heartbeat = null;
         try {
-            task = backfillDao.createTask(name, user);
-            callback.start(task);
-            backfillDao.updateTaskStatus(task.getId(), BackfillStatus.IN_PROCESS);
+            if (task == null) {
+                task = backfillDao.createTask(name, user);
+                callback.start(task);
+            } else {
+                callback.start(task);
+                recordMessage(task, callback, "Resuming task " + task.getId() + " with status " + task.getStatus()
+                        + " from item " + backfillDao.getTaskCheckpoint(task.getId()));
+            }
+            updateTaskStatus(task, BackfillStatus.IN_PROCESS);
+            heartbeat = startHeartbeat(task);
             doBackfill(task, callback);
-            backfillDao.updateTaskStatus(task.getId(), BackfillStatus.COMPLETED);
+            updateTaskStatus(task, BackfillStatus.COMPLETED);
         } catch (Throwable t) {
             logger.error("Backfill task " + name + " has failed.", t);
             if (task != null) {
-                backfillDao.updateTaskStatus(task.getId(), BackfillStatus.FAILED);
+                updateTaskStatus(task, BackfillStatus.FAILED);
             }
         } finally {
+            if (heartbeat != null) {
+                heartbeat.cancel(false);
+            }
             callback.done();
         }
     }
 
+    /** The most recent task of this backfill, if it started within the resume window. */
+    private BackfillTask getRecentTask(String name) {
+        long since = DateTime.now(DateTimeZone.UTC).getMillis() - RESUME_WINDOW_IN_MILLIS;
+        List<? extends BackfillTask> tasks = backfillDao.getTasks(name, since);
+        if (tasks == null || tasks.isEmpty()) {
+            return null;
+        }
+        return tasks.get(tasks.size() - 1);
+    }
+
+    /**
+     * True if the task is in process and its node recorded a heartbeat recently. The lock may have expired while
+     * the task is still running, so holding the lock does not mean the task was abandoned.
+     */
+    private boolean isRunning(BackfillTask task) {
+        if (!BackfillStatus.IN_PROCESS.name().equals(task.getStatus())) {
+            return false;
+        }
+        long heartbeatTimeoutMillis = MISSED_HEARTBEATS_BEFORE_RESUME * getHeartbeatIntervalInSeconds() * 1000L;
+        long sinceHeartbeat = DateTime.now(DateTimeZone.UTC).getMillis() - backfillDao.getTaskHeartbeat(task.getId());
+        return sinceHeartbeat < heartbeatTimeoutMillis;
+    }
+
+    /** True if the task failed, or was in process on a node that went away. */
+    private boolean isResumable(BackfillTask task) {
+        if (task == null) {
+            return false;
+        }
+        String status = task.getStatus();
+        return BackfillStatus.FAILED.name().equals(status) || BackfillStatus.IN_PROCESS.name().equals(status);
+    }
+
+    /** Records a heartbeat now, so the task is seen as running from the start, then every heartbeat interval. */
+    private ScheduledFuture<?> startHeartbeat(BackfillTask task) {
+        recordHeartbeat(task);
+        final long interval = getHeartbeatIntervalInSeconds();
+        return heartbeatScheduler.scheduleAtFixedRate(() -> recordHeartbeat(task), interval, interval,
+                TimeUnit.SECONDS);
+    }
+
+    private void recordHeartbeat(BackfillTask task) {
+        try {
+            synchronized (taskUpdateLock) {
+                backfillDao.updateTaskHeartbeat(task.getId());
+            }
+        } catch (RuntimeException ex) {
+            // A missed heartbeat is harmless unless several in a row are missed. Keep the schedule going.
+            logger.warn("Failed to record heartbeat of backfill task " + task.getId(), ex);
+        }
+    }
+
+    private void updateTaskStatus(BackfillTask task, BackfillStatus status) {
+        synchronized (taskUpdateLock) {
+            backfillDao.updateTaskStatus(task.getId(), status);
+        }
+    }
+
+    private void updateTaskCheckpoint(BackfillTask task, int checkpoint) {
+        synchronized (taskUpdateLock) {
+            backfillDao.updateTaskCheckpoint(task.getId(), checkpoint);
+        }
+    }
+
+    /**
+     * Processes items whose input can't be hashed, like a scan of a table. A resumed task skips the items before its
+     * checkpoint, so the items must come in the same order on each run. See
+     * {@link #processItems(BackfillTask, BackfillCallback, String, Iterator, Consumer)}.
+     */
+    protected <T> void processItems(BackfillTask task, BackfillCallback callback, Iterator<T> items,
+            Consumer<T> processor) {
+        processItems(task, callback, null, items, processor);
+    }
+
+    /**
+     * <p>
+     * Processes the items on a pool of {@link #getParallelism()} threads, starting at most
+     * {@link #getMaxItemsPerSecond()} items per second. Items are processed in chunks of
+     * {@link #getCheckpointInterval()}; after each chunk the position in the input is checkpointed to the task and
+     * the throughput is reported. If the task is being resumed on an input with the same hash, the items before its
+     * checkpoint are skipped. If the input has changed, for example because an operator replaced the input file, all
+     * items are processed.
+     * </p>
+     * <p>
+     * The processor is called concurrently; the callback passed to {@link #doBackfill} may be called from it. An
+     * item refused because the server is busy ({@link ServiceUnavailableException} or
+     * {@link RejectedExecutionException}) is retried with exponential backoff. If it stays refused, the checkpoint
+     * doesn't move past it, and this throws once all items have been tried, so the task fails and can be resumed to
+     * retry it. An item that fails with any other exception won't succeed on a retry either, so it is recorded on the
+     * task and skipped.
+     * </p>
+     *
+     * @param inputHash
+     *         hash of all items, in order, or null if the input can't be hashed
+     */
+    protected <T> void processItems(BackfillTask task, BackfillCallback callback, String inputHash,
+            Iterator<T> items, Consumer<T> processor) {
+        final int checkpointInterval = getCheckpointInterval();
+        final RateLimiter rateLimiter = RateLimiter.create(getMaxItemsPerSecond());
+
+        int position = 0;
+        int checkpoint = getResumeCheckpoint(task, callback, inputHash);
+        while (position < checkpoint && items.hasNext()) {
+            items.next();
+            position++;
+        }
+
+        final long start = System.currentTimeMillis();
+        int processed = 0;
+        int skipped = 0;
+        int busy = 0;
+        ExecutorService workers = Executors.newFixedThreadPool(getParallelism());
+        try {
+            List<Future<ItemResult>> chunk = Lists.newArrayListWithCapacity(checkpointInterval);
+            while (items.hasNext()) {
+                final T item = items.next();
+                rateLimiter.acquire();
+                chunk.add(workers.submit(() -> processItem(task, callback, item, processor)));
+                if (chunk.size() == checkpointInterval || !items.hasNext()) {
+                    final int lastCheckpoint = checkpoint;
+                    for (ItemResult result : awaitAll(chunk)) {
+                        position++;
+                        if (result == ItemResult.BUSY) {
+                            busy++;
+                        } else {
+                            if (result == ItemResult.SKIPPED) {
+                                skipped++;
+                            }
+                            if (busy == 0) {
+                                // The checkpoint stops at the first busy item, so a resume retries it.
+                                checkpoint = position;
+                            }
+                        }
+                    }
+                    processed += chunk.size();
+                    chunk.clear();
+                    if (checkpoint > lastCheckpoint) {
+                        updateTaskCheckpoint(task, checkpoint);
+                    }
+
+                    long elapsedMillis = Math.max(System.currentTimeMillis() - start, 1L);
+                    String msg = String.format(
+                            "Processed %d items (%.1f items/second), %d skipped after errors, %d refused while busy, "
+                                    + "checkpoint at item %d",
+                            processed, processed * 1000.0 / elapsedMillis, skipped, busy, checkpoint);
+                    logger.info("Backfill " + task.getName() + ": " + msg);
+                    recordMessage(task, callback, msg);
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        if (skipped > 0) {
+            recordMessage(task, callback, skipped + " items were skipped after errors. They are listed in the "
+                    + "records of task " + task.getId());
+        }
+        if (busy > 0) {
+            String msg = busy + " items were refused while the server was busy. Resume the backfill to retry from "
+                    + "item " + checkpoint;
+            recordMessage(task, callback, msg);
+            throw new BridgeServiceException(msg);
+        }
+    }
+
+    /**
+     * Number of items to skip. A checkpoint only applies to the input it was taken on: if the task recorded the hash
+     * of another input, the checkpoint is reset and all items are processed.
+     */
+    private int getResumeCheckpoint(BackfillTask task, BackfillCallback callback, String inputHash) {
+        int checkpoint = backfillDao.getTaskCheckpoint(task.getId());
+        if (inputHash == null || inputHash.equals(backfillDao.getTaskInputHash(task.getId()))) {
+            return checkpoint;
+        }
+        if (checkpoint > 0) {
+            recordMessage(task, callback, "The input has changed since item " + checkpoint
+                    + " was checkpointed. Processing all items.");
+            updateTaskCheckpoint(task, 0);
+        }
+        synchronized (taskUpdateLock) {
+            backfillDao.updateTaskInputHash(task.getId(), inputHash);
+        }
+        return 0;
+    }
+
+    /** Processes one item, retrying it while the server is busy. */
+    private <T> ItemResult processItem(BackfillTask task, BackfillCallback callback, T item,
+            Consumer<T> processor) {
+        final int maxAttempts = getBusyMaxAttempts();
+        long backoffMillis = getBusyInitialBackoffMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                processor.accept(item);
+                return ItemResult.PROCESSED;
+            } catch (ServiceUnavailableException | RejectedExecutionException ex) {
+                if (attempt >= maxAttempts) {
+                    reportItemError(task, callback, "Server stayed busy backfilling ", item, ex);
+                    return ItemResult.BUSY;
+                }
+                logger.info("Server is busy backfilling " + item + ", retrying in " + backoffMillis + " ms");
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    reportItemError(task, callback, "Interrupted while backfilling ", item, ex);
+                    return ItemResult.BUSY;
+                }
+                backoffMillis *= 2;
+            } catch (RuntimeException ex) {
+                // Retrying won't help, and the item must not hold the checkpoint back. It is recorded instead.
+                reportItemError(task, callback, "Skipped ", item, ex);
+                return ItemResult.SKIPPED;
+            }
+        }
+    }
+
+    private <T> void reportItemError(BackfillTask task, BackfillCallback callback, String prefix, T item,
+            RuntimeException ex) {
+        String errMsg = prefix + item + ": " + ex.getMessage();
+        logger.error(errMsg, ex);
+        recordMessage(task, callback, errMsg);
+    }
+
+    /** Waits for the items of a chunk and returns their results, in order. */
+    private static List<ItemResult> awaitAll(List<Future<ItemResult>> futures) {
+        try {
+            List<ItemResult> results = Lists.newArrayListWithCapacity(futures.size());
+            for (Future<ItemResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException(ex);
+        } catch (ExecutionException ex) {
+            // processItem() catches runtime exceptions, so this is an Error.
+            throw new BridgeServiceException(ex.getCause());
+        }
+    }
+
+    /** Number of threads {@link #processItems} uses. */
+    int getParallelism() {
+        return BridgeConfigFactory.getConfig().getPropertyAsInt("backfill.parallelism");
+    }
+
+    /** Maximum number of items per second {@link #processItems} starts. */
+    int getMaxItemsPerSecond() {
+        return BridgeConfigFactory.getConfig().getPropertyAsInt("backfill.max.items.per.second");
+    }
+
+    /** Number of items {@link #processItems} processes between checkpoints. */
+    int getCheckpointInterval() {
+        return BridgeConfigFactory.getConfig().getPropertyAsInt("backfill.checkpoint.interval");
+    }
+
+    /** Number of times {@link #processItems} tries an item that is refused because the server is busy. */
+    int getBusyMaxAttempts() {
+        return BridgeConfigFactory.getConfig().getPropertyAsInt("backfill.busy.max.attempts");
+    }
+
+    /** How long {@link #processItems} waits before retrying a refused item the first time. Doubles on each retry. */
+    long getBusyInitialBackoffMillis() {
+        return BridgeConfigFactory.getConfig().getPropertyAsInt("backfill.busy.initial.backoff.millis");
+    }
+
+    /** How often a running backfill records a heartbeat on its task. */
+    long getHeartbeatIntervalInSeconds() {
+        return BridgeConfigFactory.getConfig().getPropertyAsInt("backfill.heartbeat.interval.seconds");
+    }
+
     /**
      * Records the specified message. This is a convenience method that wraps calling the BackfillRecordFactory to
      * create a message on a task and calls the callback with the BackfillRecord.
@@ -131,4 +451,34 @@ abstract class AsyncBackfillTemplate implements BackfillService {
      * Does the actual backfill for the task. Reports back progress as the backfill goes.
      */
     abstract void doBackfill(BackfillTask task, BackfillCallback callback);
+
+    /** What became of an item passed to {@link #processItems}. */
+    private enum ItemResult {
+        PROCESSED,
+        /** Failed with an error that a retry won't fix. Recorded on the task, and not retried on resume. */
+        SKIPPED,
+        /** Refused while the server was busy. Retried on resume. */
+        BUSY
+    }
+
+    /** Worker threads report progress concurrently; the callbacks (e.g. HTTP chunks) are not thread safe. */
+    private static final class SynchronizedBackfillCallback implements BackfillCallback {
+        private final BackfillCallback callback;
+
+        SynchronizedBackfillCallback(BackfillCallback callback) {
+            this.callback = callback;
+        }
+        @Override
+        public synchronized void start(BackfillTask task) {
+            callback.start(task);
+        }
+        @Override
+        public synchronized void newRecords(BackfillRecord... records) {
+            callback.newRecords(records);
+        }
+        @Override
+        public synchronized void done() {
+            callback.done();
+        }
+    }
 }
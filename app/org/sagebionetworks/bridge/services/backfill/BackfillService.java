@@ -5,7 +5,9 @@ public interface BackfillService {
     /**
      * @param user User email or user name of the user who starts the backfill.
      * @param name The name of the backfill, can be the name of backfill bean.
+     * @param restart True to start a new task even if a recent task of this backfill failed or was
+     *          interrupted. Otherwise that task is resumed from its checkpoint.
      * @param callback Callback for backfill updates.
      */
-    void backfill(String user, String name, BackfillCallback callback);
+    void backfill(String user, String name, boolean restart, BackfillCallback callback);
 }
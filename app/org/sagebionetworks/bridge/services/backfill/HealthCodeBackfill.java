@@ -1,9 +1,6 @@
 package org.sagebionetworks.bridge.services.backfill;
 
-import java.util.Iterator;
-
 import org.sagebionetworks.bridge.dao.AccountDao;
-import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.HealthId;
 import org.sagebionetworks.bridge.models.backfill.BackfillTask;
 import org.sagebionetworks.bridge.models.studies.Study;
@@ -42,9 +39,8 @@ public class HealthCodeBackfill extends AsyncBackfillTemplate {
     }
 
     @Override
-    void doBackfill(final BackfillTask task, BackfillCallback callback) {
-        for (Iterator<Account> i = accountDao.getAllAccounts(); i.hasNext();) {
-            Account account = i.next();
+    void doBackfill(final BackfillTask task, final BackfillCallback callback) {
+        processItems(task, callback, accountDao.getAllAccounts(), account -> {
             Study study = studyService.getStudy(account.getStudyIdentifier());
             
             HealthId mapping = healthCodeService.getMapping(account.getHealthId());
@@ -58,6 +54,6 @@ public class HealthCodeBackfill extends AsyncBackfillTemplate {
                 callback.newRecords(getBackfillRecordFactory().createAndSave(
                         task, study, account, "health code created"));
             } 
-        }
+        });
     }
 }
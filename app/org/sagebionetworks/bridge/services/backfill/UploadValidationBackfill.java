@@ -4,6 +4,9 @@ import java.io.IOException;
 import java.util.List;
 import javax.annotation.Resource;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hashing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -60,7 +63,7 @@ public abstract class UploadValidationBackfill extends AsyncBackfillTemplate {
 
     @Override
     int getLockExpireInSeconds() {
-        // We do roughly one upload per second. One hour should be enough for most cases.
+        // Uploads are rate limited to backfill.max.items.per.second. One hour should be enough for most cases.
         return 3600;
     }
 
@@ -75,34 +78,24 @@ public abstract class UploadValidationBackfill extends AsyncBackfillTemplate {
             throw new RuntimeException(ex);
         }
 
-        for (String oneUploadId : uploadIdList) {
-            // rate limit so we down starve threads or brown out DDB
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException ex) {
-                logger.error("Interrupted while sleeping: " + ex.getMessage(), ex);
-            }
-
-            try {
-                // Get upload.
-                Upload oneUpload = uploadDao.getUpload(oneUploadId);
-
-                // Get study ID from health code. Upload validation needs this.
-                String studyId = healthCodeDao.getStudyIdentifier(oneUpload.getHealthCode());
-                StudyIdentifier studyIdentifier = new StudyIdentifierImpl(studyId);
-
-                // Kick off upload validation.
-                uploadValidationService.validateUpload(studyIdentifier, oneUpload);
-
-                recordMessage(task, callback, "Backfilled upload ID " + oneUploadId);
-                logger.info("Backfilled upload ID " + oneUploadId);
-            } catch (RuntimeException ex) {
-                // Ensure that errors won't fail the entire backfill. Log an error and move on.
-                String errMsg = "Error backfilling upload ID " + oneUploadId + ": " + ex.getMessage();
-                logger.error(errMsg, ex);
-                recordMessage(task, callback, errMsg);
-            }
-        }
+        // The list is read from a file that operators replace between runs, so a checkpoint only applies to the same
+        // list.
+        String inputHash = Hashing.sha256().hashString(Joiner.on('\n').join(uploadIdList), Charsets.UTF_8)
+                .toString();
+        processItems(task, callback, inputHash, uploadIdList.iterator(), oneUploadId -> {
+            // Get upload.
+            Upload oneUpload = uploadDao.getUpload(oneUploadId);
+
+            // Get study ID from health code. Upload validation needs this.
+            String studyId = healthCodeDao.getStudyIdentifier(oneUpload.getHealthCode());
+            StudyIdentifier studyIdentifier = new StudyIdentifierImpl(studyId);
+
+            // Kick off upload validation.
+            uploadValidationService.validateUpload(studyIdentifier, oneUpload);
+
+            recordMessage(task, callback, "Backfilled upload ID " + oneUploadId);
+            logger.info("Backfilled upload ID " + oneUploadId);
+        });
 
         logger.info("UploadValidationBackfill complete");
     }
@@ -7,6 +7,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.activation.DataHandler;
 import javax.activation.DataSource;
@@ -29,6 +30,8 @@ import org.sagebionetworks.bridge.services.StudyConsentService;
 import org.xhtmlrenderer.pdf.ITextRenderer;
 
 import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.google.common.base.Joiner;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import com.lowagie.text.DocumentException;
 
@@ -42,6 +45,12 @@ public class ConsentEmailProvider implements MimeTypeEmailProvider {
     private static final String HEADER_CONTENT_TRANSFER_ENCODING_VALUE = "base64";
     private static final String SUB_TYPE_HTML = "html";
     private static final String MIME_TYPE_PDF = "application/pdf";
+    private static final Joiner KEY_JOINER = Joiner.on(":").useForNull("");
+
+    // Consent documents assembled with the study's details, keyed by consent version and those details, with only the
+    // participant's signature block left to fill in.
+    private static final ConcurrentMap<String, String> SIGNING_TEMPLATES = CacheBuilder.newBuilder()
+            .maximumSize(100).<String, String>build().asMap();
 
     private User user;
     private Study study;
@@ -49,6 +58,7 @@ public class ConsentEmailProvider implements MimeTypeEmailProvider {
     private SharingScope sharingScope;
     private StudyConsentService studyConsentService;
     private String consentTemplate;
+    private String signingDate;
 
     public ConsentEmailProvider(Study study, User user, ConsentSignature consentSignature, SharingScope sharingScope,
         StudyConsentService studyConsentService, String consentTemplate) {
@@ -58,6 +68,8 @@ public class ConsentEmailProvider implements MimeTypeEmailProvider {
         this.sharingScope = sharingScope;
         this.studyConsentService = studyConsentService;
         this.consentTemplate = consentTemplate;
+        // The email may be rendered after a delay, so note the date the participant signed.
+        this.signingDate = FORMATTER.print(DateUtils.getCurrentMillisFromEpoch());
     }
 
     @Override
@@ -124,7 +136,6 @@ public class ConsentEmailProvider implements MimeTypeEmailProvider {
     private String createSignedDocument() {
         StudyConsentView consent = studyConsentService.getActiveConsent(study.getStudyIdentifier());
         String consentAgreementHTML = consent.getDocumentContent();
-        String signingDate = FORMATTER.print(DateUtils.getCurrentMillisFromEpoch());
         String sharingLabel = (sharingScope == null) ? "" : sharingScope.getLabel();
         
         if (consentAgreementHTML.contains("<html")) {
@@ -136,23 +147,41 @@ public class ConsentEmailProvider implements MimeTypeEmailProvider {
             return html;
         } else {
             // This is now a fragment, assemble accordingly
+            String signingTemplate = getSigningTemplate(consent);
+
+            Map<String,String> map = Maps.newHashMap();
+            map.put("participant.name", consentSignature.getName());
+            map.put("participant.signing.date", signingDate);
+            map.put("participant.email", user.getEmail());
+            map.put("participant.sharing", sharingLabel);
+            
+            return BridgeUtils.resolveTemplate(signingTemplate, map);
+        }
+    }
+
+    /**
+     * The study's details are the same for every participant who signs a given version of the consent, so the
+     * document is assembled with them once, leaving the participant's details to be filled in.
+     */
+    private String getSigningTemplate(StudyConsentView consent) {
+        String key = KEY_JOINER.join(study.getIdentifier(), consent.getCreatedOn(), study.getName(),
+                study.getSupportEmail(), study.getTechnicalEmail(), study.getSponsorName());
+        String signingTemplate = SIGNING_TEMPLATES.get(key);
+        if (signingTemplate == null) {
             Map<String,String> map = Maps.newHashMap();
             map.put("studyName", study.getName());
             map.put("supportEmail", study.getSupportEmail());
             map.put("technicalEmail", study.getTechnicalEmail());
             map.put("sponsorName", study.getSponsorName());
-            String resolvedConsentAgreementHTML = BridgeUtils.resolveTemplate(consentAgreementHTML, map);
+            String resolvedConsentAgreementHTML = BridgeUtils.resolveTemplate(consent.getDocumentContent(), map);
 
             map = Maps.newHashMap();
             map.put("studyName", study.getName());
             map.put("consent.body", resolvedConsentAgreementHTML);
-            map.put("participant.name", consentSignature.getName());
-            map.put("participant.signing.date", signingDate);
-            map.put("participant.email", user.getEmail());
-            map.put("participant.sharing", sharingLabel);
-            
-            return BridgeUtils.resolveTemplate(consentTemplate, map);
+            signingTemplate = BridgeUtils.resolveTemplate(consentTemplate, map);
+            SIGNING_TEMPLATES.put(key, signingTemplate);
         }
+        return signingTemplate;
     }
 
     private byte[] createPdf(final String consentDoc) {
@@ -1,15 +1,28 @@
 package org.sagebionetworks.bridge.services.email;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.List;
 
+import javax.activation.DataHandler;
+import javax.activation.FileDataSource;
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeBodyPart;
 
 import org.apache.commons.lang3.StringUtils;
 import org.sagebionetworks.bridge.dao.ParticipantOption.SharingScope;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyParticipant;
 
+/**
+ * Emails the participant roster of a study as a TSV attachment. The roster is either built from a list of participants, 
+ * or, for large studies, read from a TSV file that has already been written (see {@link #createHeaderRow} and 
+ * {@link #createParticipantRow}), so the roster never has to be held in memory as objects.
+ */
 public class ParticipantRosterProvider implements MimeTypeEmailProvider {
 
     private static final String PARTICIPANTS_EMAIL_SUBJECT = "Study participants for %s";
@@ -25,12 +38,29 @@ public class ParticipantRosterProvider implements MimeTypeEmailProvider {
     
     private Study study;
     private List<StudyParticipant> participants;
+    private int participantCount;
+    private File participantTSVFile;
     
     public ParticipantRosterProvider(Study study, List<StudyParticipant> participants) {
         this.study = study;
         this.participants = participants;
     }
     
+    /**
+     * @param study
+     *         study of the roster
+     * @param participantCount
+     *         number of participants in the file
+     * @param participantTSVFile
+     *         the complete roster TSV, including the header row; it is read when the email is sent, so the caller 
+     *         must not delete it until then
+     */
+    public ParticipantRosterProvider(Study study, int participantCount, File participantTSVFile) {
+        this.study = study;
+        this.participantCount = participantCount;
+        this.participantTSVFile = participantTSVFile;
+    }
+    
     @Override
     public MimeTypeEmail getEmail(String defaultSender) throws MessagingException {
         MimeTypeEmailBuilder builder = new MimeTypeEmailBuilder();
@@ -48,7 +78,15 @@ public class ParticipantRosterProvider implements MimeTypeEmailProvider {
         tsvFile.setContentID(HEADER_CONTENT_ID_PARTICIPANTS_VALUE);
         tsvFile.setHeader(HEADER_CONTENT_DISPOSITION, HEADER_CONTENT_DISPOSITION_PARTICIPANTS_VALUE);
         tsvFile.setHeader(HEADER_CONTENT_TRANSFER_ENCODING, HEADER_CONTENT_TRANSFER_ENCODING_VALUE); 
-        tsvFile.setContent(createParticipantTSV(), MIME_TYPE_TSV);
+        if (participantTSVFile != null) {
+            tsvFile.setDataHandler(new DataHandler(new FileDataSource(participantTSVFile) {
+                @Override public String getContentType() {
+                    return MIME_TYPE_TSV;
+                }
+            }));
+        } else {
+            tsvFile.setContent(createParticipantTSV(), MIME_TYPE_TSV);
+        }
         builder.withMessageParts(tsvFile);
         
         return builder.build();
@@ -58,20 +96,46 @@ public class ParticipantRosterProvider implements MimeTypeEmailProvider {
         return participants;
     }
     
+    int getParticipantCount() {
+        return (participants != null) ? participants.size() : participantCount;
+    }
+    
     String createInlineParticipantRoster() {
+        int participantCount = getParticipantCount();
         StringBuilder sb = new StringBuilder();
-        if (participants.size() == 0) {
+        if (participantCount == 0) {
             sb.append("There are no users enrolled in this study.");
-        } else if (participants.size() == 1) {
+        } else if (participantCount == 1) {
             sb.append("There is 1 user enrolled in this study. Please see the attached TSV file.");
         } else {
-            sb.append("There are "+participants.size()+" users enrolled in this study. Please see the attached TSV file.");
+            sb.append("There are "+participantCount+" users enrolled in this study. Please see the attached TSV file.");
         }
         sb.append(NEWLINE);
         return sb.toString();
     }
 
     String createParticipantTSV() {
+        if (participantTSVFile != null) {
+            try {
+                return new String(Files.readAllBytes(participantTSVFile.toPath()), UTF_8);
+            } catch(IOException e) {
+                throw new BridgeServiceException(e);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(createHeaderRow(study));
+        sb.append(NEWLINE);
+        for (int i=0; i < participants.size(); i++) {
+            sb.append(createParticipantRow(study, participants.get(i)));
+            sb.append(NEWLINE);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * The header row of the roster TSV, without a line break.
+     */
+    public static String createHeaderRow(Study study) {
         StringBuilder sb = new StringBuilder();
         append(sb, "Email", false);
         append(sb, "First Name", true);
@@ -81,30 +145,35 @@ public class ParticipantRosterProvider implements MimeTypeEmailProvider {
         for (String attribute : study.getUserProfileAttributes()) {
             append(sb, StringUtils.capitalize(attribute), true);
         }
-        sb.append(NEWLINE);
-        for (int i=0; i < participants.size(); i++) {
-            StudyParticipant participant = participants.get(i);
-            SharingScope scope = participant.getSharingScope();
-            Boolean notifyByEmail = participant.getNotifyByEmail();
-            
-            append(sb, participant.getEmail(), false);
-            append(sb, participant.getFirstName(), true);
-            append(sb, participant.getLastName(), true);
-            append(sb, (scope == null) ? "" : scope.getLabel(), true);
-            append(sb, (notifyByEmail == null) ? "" : notifyByEmail.toString().toLowerCase(), true);
-            for (String attribute : study.getUserProfileAttributes()) {
-                append(sb, participant.getEmpty(attribute), true);
-            }
-            sb.append(NEWLINE);
+        return sb.toString();
+    }
+    
+    /**
+     * The participant's row of the roster TSV, without a line break. The participant's email is the first column, so 
+     * rows sort by email.
+     */
+    public static String createParticipantRow(Study study, StudyParticipant participant) {
+        StringBuilder sb = new StringBuilder();
+        SharingScope scope = participant.getSharingScope();
+        Boolean notifyByEmail = participant.getNotifyByEmail();
+        
+        append(sb, participant.getEmail(), false);
+        append(sb, participant.getFirstName(), true);
+        append(sb, participant.getLastName(), true);
+        append(sb, (scope == null) ? "" : scope.getLabel(), true);
+        append(sb, (notifyByEmail == null) ? "" : notifyByEmail.toString().toLowerCase(), true);
+        for (String attribute : study.getUserProfileAttributes()) {
+            append(sb, participant.getEmpty(attribute), true);
         }
         return sb.toString();
     }
     
-    private void append(StringBuilder sb, String value, boolean withComma) {
+    private static void append(StringBuilder sb, String value, boolean withComma) {
         if (withComma) {
             sb.append(DELIMITER);
         }
-        sb.append(value.replaceAll("\t", " "));
+        // Line breaks would split the participant's row.
+        sb.append(value.replaceAll("[\\t\\r\\n]", " "));
     }
 
 }
@@ -18,6 +18,7 @@ import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Sets;
 
 /**
  * Account values are decrypted with the appropriate Encryptor implementation based on the version 
@@ -55,6 +56,19 @@ class StormpathAccount implements Account {
     
     StormpathAccount(StudyIdentifier studyIdentifier, com.stormpath.sdk.account.Account acct,
             SortedMap<Integer, BridgeEncryptor> encryptors) {
+        this(studyIdentifier, checkNotNull(acct), encryptors, BridgeUtils.convertRolesQuietly(acct.getGroups()));
+    }
+    
+    /**
+     * Copies an account, over a separately fetched instance of the same Stormpath account, so the copy can be changed
+     * without changing the original. The roles are copied rather than read from the Stormpath account's groups again.
+     */
+    StormpathAccount(StormpathAccount account, com.stormpath.sdk.account.Account acct) {
+        this(account.studyIdentifier, acct, account.encryptors, Sets.newHashSet(account.roles));
+    }
+    
+    private StormpathAccount(StudyIdentifier studyIdentifier, com.stormpath.sdk.account.Account acct,
+            SortedMap<Integer, BridgeEncryptor> encryptors, Set<Roles> roles) {
         checkNotNull(studyIdentifier);
         checkNotNull(acct);
         checkNotNull(encryptors);
@@ -68,7 +82,7 @@ class StormpathAccount implements Account {
         this.consentSignatureKey = studyId + CONSENT_SIGNATURE_SUFFIX;
         this.oldHealthIdVersionKey = studyId + OLD_VERSION_SUFFIX;
         this.oldConsentSignatureKey = studyId + CONSENT_SIGNATURE_SUFFIX;
-        this.roles = BridgeUtils.convertRolesQuietly(acct.getGroups());
+        this.roles = roles;
     }
     
     com.stormpath.sdk.account.Account getAccount() {
@@ -6,8 +6,10 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.function.Supplier;
 
 import javax.annotation.Resource;
 
@@ -19,6 +21,8 @@ import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.metrics.Dependency;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.Email;
 import org.sagebionetworks.bridge.models.accounts.EmailVerification;
@@ -60,6 +64,8 @@ public class StormpathAccountDao implements AccountDao {
     private Application application;
     private Client client;
     private StudyService studyService;
+    private StormpathResourceCache resourceCache;
+    private MetricsRegistry metricsRegistry;
     private SortedMap<Integer, BridgeEncryptor> encryptors = Maps.newTreeMap();
 
     @Resource(name = "stormpathApplication")
@@ -74,6 +80,14 @@ public class StormpathAccountDao implements AccountDao {
     public void setStudyService(StudyService studyService) {
         this.studyService = studyService;
     }
+    @Autowired
+    public void setResourceCache(StormpathResourceCache resourceCache) {
+        this.resourceCache = resourceCache;
+    }
+    @Autowired
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
     @Resource(name="encryptorList")
     public void setEncryptors(List<BridgeEncryptor> list) {
         for (BridgeEncryptor encryptor : list) {
@@ -103,8 +117,10 @@ public class StormpathAccountDao implements AccountDao {
         // Also eagerly fetch custom data, which we typically examine every time for every user.
         AccountCriteria criteria = Accounts.criteria().limitTo(100).withCustomData().withGroupMemberships();
         
-        Directory directory = client.getResource(study.getStormpathHref(), Directory.class);
-        return new StormpathAccountIterator(study, encryptors, directory.getAccounts(criteria).iterator());
+        Directory directory = getDirectory(study);
+        // Only the first page is timed. Later pages are fetched as the caller iterates.
+        return new StormpathAccountIterator(study, encryptors,
+                callStormpath(() -> directory.getAccounts(criteria).iterator()));
     }
 
     @Override
@@ -113,8 +129,14 @@ public class StormpathAccountDao implements AccountDao {
         checkNotNull(verification);
         
         try {
-            com.stormpath.sdk.account.Account acct = client.verifyAccountEmail(verification.getSptoken());
-            return (acct == null) ? null : new StormpathAccount(study, acct, encryptors);
+            com.stormpath.sdk.account.Account acct = callStormpath(
+                    () -> client.verifyAccountEmail(verification.getSptoken()));
+            if (acct == null) {
+                return null;
+            }
+            // The account's status has changed.
+            resourceCache.removeAccount(study, acct.getEmail());
+            return new StormpathAccount(study, acct, encryptors);
         } catch(ResourceException e) {
             rethrowResourceException(e, null);
         }
@@ -126,7 +148,7 @@ public class StormpathAccountDao implements AccountDao {
         checkNotNull(studyIdentifier);
         checkNotNull(email);
         final Study study = studyService.getStudy(studyIdentifier);
-        final Directory directory = client.getResource(study.getStormpathHref(), Directory.class);
+        final Directory directory = getDirectory(study);
         VerificationEmailRequestBuilder requestBuilder = Applications.verificationEmailBuilder();
         VerificationEmailRequest request = requestBuilder
                 .setAccountStore(directory)
@@ -134,7 +156,7 @@ public class StormpathAccountDao implements AccountDao {
                 .build();
 
         try {
-            application.sendVerificationEmail(request);
+            callStormpath(() -> application.sendVerificationEmail(request));
         } catch (ResourceException e) {
             rethrowResourceException(e, null);
         }
@@ -146,8 +168,8 @@ public class StormpathAccountDao implements AccountDao {
         checkNotNull(email);
 
         try {
-            Directory directory = client.getResource(study.getStormpathHref(), Directory.class);
-            application.sendPasswordResetEmail(email.getEmail(), directory);
+            Directory directory = getDirectory(study);
+            callStormpath(() -> application.sendPasswordResetEmail(email.getEmail(), directory));
         } catch (ResourceException e) {
             rethrowResourceException(e, null);
         }
@@ -158,7 +180,7 @@ public class StormpathAccountDao implements AccountDao {
         checkNotNull(passwordReset);
         
         try {
-            application.resetPassword(passwordReset.getSptoken(), passwordReset.getPassword());
+            callStormpath(() -> application.resetPassword(passwordReset.getSptoken(), passwordReset.getPassword()));
         } catch (ResourceException e) {
             rethrowResourceException(e, null);
         }
@@ -172,10 +194,10 @@ public class StormpathAccountDao implements AccountDao {
         checkArgument(isNotBlank(signIn.getPassword()));
         
         try {
-            Directory directory = client.getResource(study.getStormpathHref(), Directory.class);
+            Directory directory = getDirectory(study);
             
             UsernamePasswordRequest request = new UsernamePasswordRequest(signIn.getUsername(), signIn.getPassword(), directory);
-            AuthenticationResult result = application.authenticateAccount(request);
+            AuthenticationResult result = callStormpath(() -> application.authenticateAccount(request));
             if (result.getAccount() != null) {
                 return new StormpathAccount(study.getStudyIdentifier(), result.getAccount(), encryptors);
             }
@@ -190,15 +212,21 @@ public class StormpathAccountDao implements AccountDao {
         checkNotNull(study);
         checkArgument(isNotBlank(email));
 
-        Directory directory = client.getResource(study.getStormpathHref(), Directory.class);
-        
-        AccountList accounts = directory.getAccounts(Accounts.where(Accounts.email().eqIgnoreCase(email))
-                .withCustomData().withGroups().withGroupMemberships());
-        if (accounts.iterator().hasNext()) {
-            com.stormpath.sdk.account.Account acct = accounts.iterator().next();
-            return new StormpathAccount(study.getStudyIdentifier(), acct, encryptors);
-        }
-        return null;
+        return resourceCache.getAccount(study.getStudyIdentifier(), email, () -> {
+            Directory directory = getDirectory(study);
+
+            // The search is sent when the results are first iterated.
+            com.stormpath.sdk.account.Account acct = callStormpath(() -> {
+                AccountList accounts = directory.getAccounts(Accounts.where(Accounts.email().eqIgnoreCase(email))
+                        .withCustomData().withGroups().withGroupMemberships());
+                Iterator<com.stormpath.sdk.account.Account> iterator = accounts.iterator();
+                return iterator.hasNext() ? iterator.next() : null;
+            });
+            if (acct != null) {
+                return new StormpathAccount(study.getStudyIdentifier(), acct, encryptors);
+            }
+            return null;
+        }, this::copyAccount);
     }
     
     @Override 
@@ -217,8 +245,8 @@ public class StormpathAccountDao implements AccountDao {
             account.getRoles().addAll(signUp.getRoles());
         }
         try {
-            Directory directory = client.getResource(study.getStormpathHref(), Directory.class);
-            directory.createAccount(acct, sendEmail);
+            Directory directory = getDirectory(study);
+            callStormpath(() -> directory.createAccount(acct, sendEmail));
             if (!account.getRoles().isEmpty()) {
                 updateGroups(directory, account);
             }
@@ -237,10 +265,10 @@ public class StormpathAccountDao implements AccountDao {
             throw new BridgeServiceException("Account has not been initialized correctly (use new account methods)");
         }
         try {
-            Directory directory = client.getResource(study.getStormpathHref(), Directory.class);
+            Directory directory = getDirectory(study);
             updateGroups(directory, account);
             
-            acct.getCustomData().save();
+            callStormpath(() -> acct.getCustomData().save());
             
             // This will throw an exception if the account object has not changed, which it may not have
             // if this call was made simply to persist a change in the groups. To get around this, we dig 
@@ -248,10 +276,15 @@ public class StormpathAccountDao implements AccountDao {
             // dirty state of the object.
             AbstractResource res = (AbstractResource)acct;
             if (res.isDirty()) {
-                acct.save();
+                callStormpath(acct::save);
             }
         } catch(ResourceException e) {
             rethrowResourceException(e, account);
+        } finally {
+            // Even a failed update may have changed the cached account object, or some of its groups.
+            if (account.getEmail() != null) {
+                resourceCache.removeAccount(study.getStudyIdentifier(), account.getEmail());
+            }
         }
     }
 
@@ -262,7 +295,11 @@ public class StormpathAccountDao implements AccountDao {
         
         Account account = getAccount(study, email);
         com.stormpath.sdk.account.Account acct =((StormpathAccount)account).getAccount();
-        acct.delete();
+        try {
+            callStormpath(acct::delete);
+        } finally {
+            resourceCache.removeAccount(study.getStudyIdentifier(), email);
+        }
     }
     
     private void rethrowResourceException(ResourceException e, Account account) {
@@ -298,18 +335,64 @@ public class StormpathAccountDao implements AccountDao {
             String groupName = membership.getGroup().getName();
             if (!roles.contains(groupName)) {
                 // In membership, but not the current list of roles... remove from memberships
-                membership.delete();
+                callStormpath(membership::delete);
             } else {
                 roles.remove(groupName);
             }
         }
         // Any roles left over need to be added if the group exists
-        for (Group group : directory.getGroups()) {
-            String groupName = group.getName();
-            if (roles.contains(groupName)) {
+        Map<String, Group> groups = resourceCache.getGroups(directory.getHref(), () -> callStormpath(() -> {
+            Map<String, Group> groupsByName = Maps.newHashMap();
+            for (Group group : directory.getGroups()) {
+                groupsByName.put(group.getName(), group);
+            }
+            return groupsByName;
+        }));
+        for (String role : roles) {
+            Group group = groups.get(role);
+            if (group != null) {
                 // In roles, but not currently in membership... add to memberships
-                acct.addGroup(group);
+                callStormpath(() -> acct.addGroup(group));
+            }
+        }
+    }
+    
+    /**
+     * Copies a cached account, over a new instance of its Stormpath account. Fetching the account by its href is served
+     * from the Stormpath client's own cache, which the search for the account populated, so it isn't timed as a call
+     * to Stormpath.
+     */
+    private Account copyAccount(Account account) {
+        StormpathAccount cachedAccount = (StormpathAccount)account;
+        com.stormpath.sdk.account.Account acct = client.getResource(cachedAccount.getAccount().getHref(),
+                com.stormpath.sdk.account.Account.class);
+        return new StormpathAccount(cachedAccount, acct);
+    }
+    
+    private Directory getDirectory(Study study) {
+        return resourceCache.getDirectory(study.getStormpathHref(),
+                () -> callStormpath(() -> client.getResource(study.getStormpathHref(), Directory.class)));
+    }
+
+    /**
+     * Makes a call to Stormpath, and records the time it takes as a Stormpath call. Only calls that go to Stormpath are
+     * timed this way, so accounts, directories and groups served from the {@link StormpathResourceCache} don't count.
+     */
+    private <T> T callStormpath(Supplier<T> call) {
+        long startNanos = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            if (metricsRegistry != null) {
+                metricsRegistry.recordDependencyCall(Dependency.STORMPATH, System.nanoTime() - startNanos);
             }
         }
     }
+
+    private void callStormpath(Runnable call) {
+        callStormpath(() -> {
+            call.run();
+            return null;
+        });
+    }
 }
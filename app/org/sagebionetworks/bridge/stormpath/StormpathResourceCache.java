@@ -0,0 +1,149 @@
+package org.sagebionetworks.bridge.stormpath;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import javax.annotation.Resource;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.stormpath.sdk.directory.Directory;
+import com.stormpath.sdk.group.Group;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.cache.CacheInvalidationChannel;
+import org.sagebionetworks.bridge.cache.InvalidatingCache;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.config.BridgeConfigFactory;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
+import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+
+/**
+ * <p>
+ * In-process cache of the Stormpath resources we fetch on almost every account call, so they don't each cost a round
+ * trip to Stormpath: each study's directory (keyed by its href), the groups of each directory (by name), and recently
+ * fetched accounts (keyed by study and email).
+ * </p>
+ * <p>
+ * Directories and their groups are created with the study and never change, so those entries only expire after a TTL.
+ * Accounts do change, so they are kept only briefly, and are dropped when an account is updated or deleted. Stormpath account objects are mutable and
+ * not thread-safe, so a cached account is never handed out: each caller gets its own copy, which it can change and
+ * save without affecting other callers.
+ * </p>
+ * <p>
+ * Hit and miss counts of all three caches are exported through the {@link MetricsRegistry}.
+ * </p>
+ */
+@Component
+public class StormpathResourceCache {
+    private static final BridgeConfig CONFIG = BridgeConfigFactory.getConfig();
+
+    private final Cache<String, Directory> directoryCache = CacheBuilder.newBuilder()
+            .maximumSize(CONFIG.getPropertyAsInt("stormpath.directory.cache.max.size"))
+            .expireAfterWrite(CONFIG.getPropertyAsInt("stormpath.directory.cache.ttl.seconds"), TimeUnit.SECONDS)
+            .recordStats().build();
+
+    private final Cache<String, Map<String, Group>> groupCache = CacheBuilder.newBuilder()
+            .maximumSize(CONFIG.getPropertyAsInt("stormpath.directory.cache.max.size"))
+            .expireAfterWrite(CONFIG.getPropertyAsInt("stormpath.directory.cache.ttl.seconds"), TimeUnit.SECONDS)
+            .recordStats().build();
+
+    private final InvalidatingCache<Account> accountCache = new InvalidatingCache<>("stormpath.account.cache");
+
+    /** Channel used to drop changed accounts on every node. This is configured by Spring. */
+    @Resource(name = "stormpathAccountCacheInvalidationChannel")
+    public void setInvalidationChannel(CacheInvalidationChannel invalidationChannel) {
+        accountCache.setInvalidationChannel(invalidationChannel);
+    }
+
+    /** Registers the hit and miss counts of these caches for export. This is configured by Spring. */
+    @Autowired
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        metricsRegistry.registerCache("stormpath_directory", directoryCache);
+        metricsRegistry.registerCache("stormpath_group", groupCache);
+        accountCache.registerMetrics(metricsRegistry, "stormpath_account");
+    }
+
+    /**
+     * Gets the directory with the given href, calling the loader if it isn't cached.
+     *
+     * @param directoryHref
+     *         Stormpath href of the study's directory
+     * @param loader
+     *         fetches the directory on a cache miss; exceptions are passed through to the caller
+     * @return the directory
+     */
+    public Directory getDirectory(String directoryHref, Supplier<Directory> loader) {
+        Directory directory = directoryCache.getIfPresent(directoryHref);
+        if (directory == null) {
+            directory = loader.get();
+            if (directory != null) {
+                directoryCache.put(directoryHref, directory);
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Gets the groups of the directory with the given href, calling the loader if they aren't cached.
+     *
+     * @param directoryHref
+     *         Stormpath href of the study's directory
+     * @param loader
+     *         fetches the groups on a cache miss, as a map of group name to group; exceptions are passed through to the
+     *         caller
+     * @return the groups of the directory, by name
+     */
+    public Map<String, Group> getGroups(String directoryHref, Supplier<Map<String, Group>> loader) {
+        Map<String, Group> groups = groupCache.getIfPresent(directoryHref);
+        if (groups == null) {
+            groups = loader.get();
+            if (groups != null) {
+                groupCache.put(directoryHref, groups);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Gets a copy of the account with the given email in the study, calling the loader if it isn't cached. Emails are
+     * matched without regard to case, as Stormpath does. A missing account is not cached.
+     *
+     * @param studyIdentifier
+     *         study of the account
+     * @param email
+     *         email of the account
+     * @param loader
+     *         fetches the account on a cache miss, or returns null if there is none; exceptions are passed through to
+     *         the caller
+     * @param copier
+     *         makes a copy of a cached account that the caller can change
+     * @return a copy of the account that belongs to the caller, or null if there is none
+     */
+    public Account getAccount(StudyIdentifier studyIdentifier, String email, Supplier<Account> loader,
+            UnaryOperator<Account> copier) {
+        String key = getAccountKey(studyIdentifier, email);
+        Account account = accountCache.getIfPresent(key);
+        if (account != null) {
+            return copier.apply(account);
+        }
+        long stamp = accountCache.stamp();
+        account = loader.get();
+        if (account != null && accountCache.putIfCurrent(key, account, stamp)) {
+            return copier.apply(account);
+        }
+        return account;
+    }
+
+    /** Drops the cached account with the given email in the study, on this node and on all other nodes. */
+    public void removeAccount(StudyIdentifier studyIdentifier, String email) {
+        accountCache.remove(getAccountKey(studyIdentifier, email));
+    }
+
+    private static String getAccountKey(StudyIdentifier studyIdentifier, String email) {
+        return studyIdentifier.getIdentifier() + ":" + email.toLowerCase();
+    }
+}
@@ -10,7 +10,9 @@ import org.sagebionetworks.bridge.services.UploadArchiveService;
 /**
  * Validation handler for decrypting the upload. This handler reads from
  * {@link org.sagebionetworks.bridge.upload.UploadValidationContext#getData}, decrypts it, and writes the decrypted
- * data to {@link org.sagebionetworks.bridge.upload.UploadValidationContext#setDecryptedData }.
+ * data to {@link org.sagebionetworks.bridge.upload.UploadValidationContext#setDecryptedData }. Once the data is
+ * decrypted, the raw data is cleared from the context, so that only one copy of the upload is held in memory by the
+ * rest of the handlers.
  */
 @Component
 public class DecryptHandler implements UploadValidationHandler {
@@ -27,5 +29,8 @@ public class DecryptHandler implements UploadValidationHandler {
     public void handle(@Nonnull UploadValidationContext context) {
         byte[] decryptedData = uploadArchiveService.decrypt(context.getStudy().getIdentifier(), context.getData());
         context.setDecryptedData(decryptedData);
+
+        // No handler reads the raw data after this one. Release it, so it can be garbage collected.
+        context.setData(null);
     }
 }
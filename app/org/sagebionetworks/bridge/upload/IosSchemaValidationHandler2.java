@@ -24,10 +24,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeConstants;
+import org.sagebionetworks.bridge.cache.UploadSchemaCache;
 import org.sagebionetworks.bridge.dao.HealthDataDao;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.json.DateUtils;
 import org.sagebionetworks.bridge.json.JsonUtils;
+import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolder;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolderImpl;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecordBuilder;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
@@ -91,6 +93,7 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
     private Map<String, Map<String, Integer>> defaultSchemaRevisionMap;
     private HealthDataDao healthDataDao;
     private SurveyService surveyService;
+    private UploadSchemaCache uploadSchemaCache;
     private UploadSchemaService uploadSchemaService;
 
     @Resource(name = "defaultSchemaRevisionMap")
@@ -116,6 +119,15 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
         this.uploadSchemaService = uploadSchemaService;
     }
 
+    /**
+     * Cache of schema revisions and published surveys, shared with {@link StrictValidationHandler}, so most uploads
+     * don't need to read DynamoDB to find their schema. This is configured by Spring.
+     */
+    @Autowired
+    public final void setUploadSchemaCache(UploadSchemaCache uploadSchemaCache) {
+        this.uploadSchemaCache = uploadSchemaCache;
+    }
+
     /**
      * Processes iOS data into health data records. iOS data comes from a third party, and we have no control over the
      * data format. So our data validation needs to be as flexible as possible. Which means our error handling strategy
@@ -217,7 +229,8 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
 
         // Get survey. We use the survey identifier as the schema ID and the schema revision. Both of these must be
         // specified.
-        Survey survey = surveyService.getSurvey(new GuidCreatedOnVersionHolderImpl(surveyGuid, surveyCreatedOnMillis));
+        GuidCreatedOnVersionHolder surveyKeys = new GuidCreatedOnVersionHolderImpl(surveyGuid, surveyCreatedOnMillis);
+        Survey survey = surveyService.getSurvey(surveyKeys);
         String schemaId = survey.getIdentifier();
         Integer schemaRev = survey.getSchemaRevision();
         if (StringUtils.isBlank(schemaId) || schemaRev == null) {
@@ -226,7 +239,7 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
         }
 
         // Get the schema with the schema ID and rev.
-        return uploadSchemaService.getUploadSchemaByIdAndRev(study, schemaId, schemaRev);
+        return getUploadSchemaByIdAndRev(study, schemaId, schemaRev);
     }
 
     private UploadSchema getUploadSchemaByItemAndRev(StudyIdentifier study, String item, Integer schemaRev) {
@@ -245,7 +258,12 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
         }
 
         // get schema
-        return uploadSchemaService.getUploadSchemaByIdAndRev(study, item, schemaRev);
+        return getUploadSchemaByIdAndRev(study, item, schemaRev);
+    }
+
+    private UploadSchema getUploadSchemaByIdAndRev(StudyIdentifier study, String schemaId, int schemaRev) {
+        return uploadSchemaCache.getUploadSchema(study, schemaId, schemaRev,
+                () -> uploadSchemaService.getUploadSchemaByIdAndRev(study, schemaId, schemaRev));
     }
 
     private static JsonNode getInfoJsonFile(UploadValidationContext context, String uploadId,
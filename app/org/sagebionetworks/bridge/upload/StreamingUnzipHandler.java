@@ -0,0 +1,72 @@
+package org.sagebionetworks.bridge.upload;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.services.UploadArchiveService;
+
+/**
+ * <p>
+ * Validation handler that combines {@link UnzipHandler} and {@link ParseJsonHandler} into a single streaming pass.
+ * This handler reads decrypted data from
+ * {@link org.sagebionetworks.bridge.upload.UploadValidationContext#getDecryptedData} and unzips it one entry at a
+ * time. Each entry that can be parsed as JSON is written to
+ * {@link org.sagebionetworks.bridge.upload.UploadValidationContext#getJsonDataMap} and its raw bytes are discarded.
+ * All other entries are written to
+ * {@link org.sagebionetworks.bridge.upload.UploadValidationContext#getUnzippedDataMap}, exactly as ParseJsonHandler
+ * would leave them.
+ * </p>
+ * <p>
+ * Once the archive has been unzipped, the decrypted archive bytes are no longer needed by any downstream handler, so
+ * this handler clears them from the context (the raw bytes were already cleared by {@link DecryptHandler}). This way,
+ * the JSON entries never exist as bytes and as a parsed tree at the same time, and the archive itself doesn't stay
+ * reachable for the rest of the handler chain.
+ * </p>
+ */
+@Component
+public class StreamingUnzipHandler implements UploadValidationHandler {
+    private UploadArchiveService uploadArchiveService;
+
+    /** Upload archive service, which handles decrypting and unzipping of files. This is configured by Spring. */
+    @Autowired
+    public void setUploadArchiveService(UploadArchiveService uploadArchiveService) {
+        this.uploadArchiveService = uploadArchiveService;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void handle(@Nonnull UploadValidationContext context) throws UploadValidationException {
+        Map<String, byte[]> unzippedDataMap = new HashMap<>();
+        Map<String, JsonNode> jsonDataMap = new HashMap<>();
+
+        try (InputStream decryptedStream = new ByteArrayInputStream(context.getDecryptedData())) {
+            uploadArchiveService.unzip(decryptedStream, (entryName, content) -> {
+                try {
+                    JsonNode jsonNode = BridgeObjectMapper.get().readTree(content);
+                    jsonDataMap.put(entryName, jsonNode);
+                } catch (Exception ex) {
+                    // Can't parse this as a JSON node. This could be normal (for example, for audio files). Keep the
+                    // raw bytes and move on.
+                    unzippedDataMap.put(entryName, content);
+                }
+            });
+        } catch (IOException ex) {
+            throw new UploadValidationException(ex);
+        }
+
+        context.setUnzippedDataMap(unzippedDataMap);
+        context.setJsonDataMap(jsonDataMap);
+
+        // Release the archive, so it can be garbage collected while the rest of the handlers run.
+        context.setDecryptedData(null);
+    }
+}
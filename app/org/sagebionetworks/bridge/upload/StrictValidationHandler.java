@@ -14,6 +14,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import org.sagebionetworks.bridge.cache.UploadSchemaCache;
 import org.sagebionetworks.bridge.json.DateUtils;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecordBuilder;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
@@ -48,8 +49,15 @@ public class StrictValidationHandler implements UploadValidationHandler {
 
     private static final Joiner ERROR_MESSAGE_JOINER = Joiner.on("; ");
 
+    private UploadSchemaCache uploadSchemaCache;
     private UploadSchemaService uploadSchemaService;
 
+    /** Cache of schema revisions, shared with {@link IosSchemaValidationHandler2}. This is configured by Spring. */
+    @Autowired
+    public final void setUploadSchemaCache(UploadSchemaCache uploadSchemaCache) {
+        this.uploadSchemaCache = uploadSchemaCache;
+    }
+
     /** Upload Schema Service, used to get the schema to validate against the upload. */
     @Autowired
     public final void setUploadSchemaService(UploadSchemaService uploadSchemaService) {
@@ -71,7 +79,8 @@ public class StrictValidationHandler implements UploadValidationHandler {
         Set<String> attachmentFieldNameSet = context.getAttachmentsByFieldName().keySet();
 
         // get schema
-        UploadSchema schema = uploadSchemaService.getUploadSchemaByIdAndRev(studyIdentifier, schemaId, schemaRev);
+        UploadSchema schema = uploadSchemaCache.getUploadSchema(studyIdentifier, schemaId, schemaRev,
+                () -> uploadSchemaService.getUploadSchemaByIdAndRev(studyIdentifier, schemaId, schemaRev));
         List<UploadFieldDefinition> fieldDefList = schema.getFieldDefinitions();
 
         List<String> errorList = validateAllFields(fieldDefList, attachmentFieldNameSet, recordDataNode);
@@ -3,15 +3,21 @@ package org.sagebionetworks.bridge.upload;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.annotation.Nonnull;
 import javax.annotation.Resource;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Throwables;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataAttachment;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
@@ -27,6 +33,7 @@ public class UploadArtifactsHandler implements UploadValidationHandler {
 
     private HealthDataService healthDataService;
     private S3Helper s3Helper;
+    private ExecutorService executorService;
 
     @Autowired
     public void setHealthDataService(HealthDataService healthDataService) {
@@ -38,65 +45,90 @@ public class UploadArtifactsHandler implements UploadValidationHandler {
         this.s3Helper = s3Helper;
     }
 
+    /**
+     * Executor that uploads attachments in parallel. It's shared by all upload validation workers, so its thread count
+     * bounds the number of concurrent attachment uploads on this node. This is configured by Spring.
+     */
+    @Resource(name = "uploadArtifactsExecutorService")
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
     @Override
-    public void handle(@Nonnull UploadValidationContext context) {
+    public void handle(@Nonnull UploadValidationContext context) throws UploadValidationException {
         String uploadId = context.getUpload().getUploadId();
-
-        // step 1: upload health data record
         HealthDataRecordBuilder recordBuilder = context.getHealthDataRecordBuilder();
-        HealthDataRecord record = recordBuilder.build();
-        String recordId = healthDataService.createOrUpdateRecord(record);
-        context.setRecordId(recordId);
+
+        // Assign the record ID up front, so attachments can point at the record before it's written. This lets us
+        // write the record once, with the attachment IDs already in it.
+        String recordId = recordBuilder.getId();
+        if (StringUtils.isBlank(recordId)) {
+            recordId = BridgeUtils.generateGuid();
+        }
 
         Map<String, byte[]> attachmentMap = context.getAttachmentsByFieldName();
         if (!attachmentMap.isEmpty()) {
-            // step 2: upload health data attachments
+            // step 1: upload health data attachments, in parallel
+            // Each attachment gets its ID here. The metadata row and the S3 object are written by the executor.
             Map<String, String> attachmentIdsByFieldName = new HashMap<>();
+            Map<String, Future<?>> futuresByFieldName = new HashMap<>();
             for (Map.Entry<String, byte[]> oneAttachment : attachmentMap.entrySet()) {
                 String fieldName = oneAttachment.getKey();
                 byte[] data = oneAttachment.getValue();
+                String attachmentId = BridgeUtils.generateGuid();
+                attachmentIdsByFieldName.put(fieldName, attachmentId);
 
-                // step 2a: upload attachments to metadata table
                 HealthDataAttachment attachmentMetadata = healthDataService.getAttachmentBuilder()
-                        .withRecordId(recordId).build();
-                String attachmentId = healthDataService.createOrUpdateAttachment(attachmentMetadata);
-                attachmentIdsByFieldName.put(fieldName, attachmentId);
+                        .withId(attachmentId).withRecordId(recordId).build();
+                futuresByFieldName.put(fieldName, executorService.submit(() -> uploadAttachment(attachmentMetadata,
+                        data)));
+            }
 
-                // step 2b: upload attachments to S3
+            // Wait for all attachments. As before, errors writing to S3 are only recorded in the context, while
+            // errors writing the metadata fail the upload.
+            for (Map.Entry<String, Future<?>> oneFuture : futuresByFieldName.entrySet()) {
                 try {
-                    s3Helper.writeBytesToS3(ATTACHMENT_BUCKET, attachmentId, data);
-                } catch (IOException ex) {
-                    addMessageAndWarn(context, String.format("Upload ID %s error uploading attachment for field %s: %s",
-                            uploadId, fieldName, ex.getMessage()), ex);
+                    oneFuture.getValue().get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new UploadValidationException(String.format(
+                            "Upload ID %s interrupted uploading attachment for field %s", uploadId,
+                            oneFuture.getKey()), ex);
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException) {
+                        addMessageAndWarn(context, String.format(
+                                "Upload ID %s error uploading attachment for field %s: %s", uploadId,
+                                oneFuture.getKey(), cause.getMessage()), cause);
+                    } else {
+                        Throwables.propagateIfPossible(cause);
+                        throw new UploadValidationException(cause);
+                    }
                 }
             }
 
-            // step 3: add attachment IDs to health data record
-
-            // Get the record back from the health data table (as it might have added new fields, like a record ID and
-            // a version.
-            HealthDataRecord downloadedRecord = healthDataService.getRecordById(recordId);
-            HealthDataRecordBuilder updatedRecordBuilder = healthDataService.getRecordBuilder().copyOf(
-                    downloadedRecord);
-
-            // For code hygiene, make a deep copy of the dataMap. This shouldn't be too expensive, since all the large
-            // fields are shunted off into attachments.
+            // step 2: add attachment IDs (foreign keys / S3 keys) to the record data
+            // For code hygiene, make a deep copy of the dataMap, since other handlers may still hold the original.
+            // This shouldn't be too expensive, since all the large fields are shunted off into attachments.
             // IosSchemaValidationHandler guarantees getData() to return an ObjectNode.
-            ObjectNode downloadedDataMap = (ObjectNode) downloadedRecord.getData();
-            ObjectNode updatedDataMap = downloadedDataMap.deepCopy();
-
-            // write attachment fields and IDs (foreign keys / S3 keys) to the updated data map
+            ObjectNode dataMap = ((ObjectNode) recordBuilder.getData()).deepCopy();
             for (Map.Entry<String, String> oneAttachmentId : attachmentIdsByFieldName.entrySet()) {
-                String fieldName = oneAttachmentId.getKey();
-                String attachmentId = oneAttachmentId.getValue();
-                updatedDataMap.put(fieldName, attachmentId);
+                dataMap.put(oneAttachmentId.getKey(), oneAttachmentId.getValue());
             }
-
-            // Write the updated data map to the record. Write the record to the record table.
-            updatedRecordBuilder.withData(updatedDataMap);
-            HealthDataRecord updatedRecord = updatedRecordBuilder.build();
-            healthDataService.createOrUpdateRecord(updatedRecord);
+            recordBuilder.withData(dataMap);
         }
+
+        // step 3: write the health data record
+        HealthDataRecord record = recordBuilder.withId(recordId).build();
+        context.setRecordId(healthDataService.createOrUpdateRecord(record));
+    }
+
+    // Writes the attachment metadata, then the attachment to S3. Called on the executor, so it doesn't touch the
+    // context. Returns null so it can be submitted as a Callable, which can throw the IOException.
+    private Void uploadAttachment(HealthDataAttachment attachmentMetadata, byte[] data) throws IOException {
+        healthDataService.createOrUpdateAttachment(attachmentMetadata);
+        s3Helper.writeBytesToS3(ATTACHMENT_BUCKET, attachmentMetadata.getId(), data);
+        return null;
     }
 
     private static void addMessageAndWarn(UploadValidationContext context, String message, Throwable ex) {
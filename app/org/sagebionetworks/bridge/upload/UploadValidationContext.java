@@ -80,7 +80,9 @@ public class UploadValidationContext {
         messageList.add(msg);
     }
 
-    /** Raw upload data as bytes. This is created by S3DownloadHandler and read by the DecryptHandler. */
+    /**
+     * Raw upload data as bytes. This is created by S3DownloadHandler, then read and cleared by the DecryptHandler.
+     */
     public byte[] getData() {
         return data;
     }
@@ -90,7 +92,10 @@ public class UploadValidationContext {
         this.data = data;
     }
 
-    /** Decrypted upload data as bytes. This is created by DecryptHandler and read by UnzipHandler. */
+    /**
+     * Decrypted upload data as bytes. This is created by DecryptHandler and read by UnzipHandler. In streaming mode,
+     * this is read and then cleared by the StreamingUnzipHandler.
+     */
     public byte[] getDecryptedData() {
         return decryptedData;
     }
@@ -103,7 +108,8 @@ public class UploadValidationContext {
     /**
      * Unzipped data as bytes, keyed by filename. This is initially created by the UnzipHandler. The ParseJsonHandler
      * will read this and remove entries that can be parsed into JSON. Non-JSON entries will still remain in this map.
-     * This is also read by the IosSchemaValidationHandler.
+     * In streaming mode, the StreamingUnzipHandler creates this with only the non-JSON entries. This is also read by
+     * the IosSchemaValidationHandler.
      */
     public Map<String, byte[]> getUnzippedDataMap() {
         return unzippedDataMap;
@@ -115,8 +121,8 @@ public class UploadValidationContext {
     }
 
     /**
-     * Parsed JSON data, keyed by filename. This is created by the ParseJsonHandler and read by the
-     * IosSchemaValidationHandler.
+     * Parsed JSON data, keyed by filename. This is created by the ParseJsonHandler (or the StreamingUnzipHandler in
+     * streaming mode) and read by the IosSchemaValidationHandler.
      */
     public Map<String, JsonNode> getJsonDataMap() {
         return jsonDataMap;
@@ -0,0 +1,254 @@
+package org.sagebionetworks.bridge.upload;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.util.TimingStats;
+
+/**
+ * <p>
+ * Dedicated scheduler for upload validation tasks. Upload validation runs on its own pool of worker threads, so a
+ * burst of uploads can't starve other asynchronous work in the server.
+ * </p>
+ * <p>
+ * Tasks are queued per study and workers take tasks from the studies in round-robin order, so a study with a large
+ * backlog of uploads cannot monopolize the workers. The queue is bounded both in total and per study. When it's full,
+ * the {@link RejectionPolicy} determines whether the caller gets a 503 (and can retry the upload complete call), or
+ * runs the validation on its own thread, which slows down callers while the workers catch up.
+ * </p>
+ * <p>
+ * The scheduler also keeps statistics on queue depth, time spent waiting in the queue, and time spent in each
+ * validation handler. These are available through {@link #getStats}.
+ * </p>
+ */
+public class UploadValidationScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(UploadValidationScheduler.class);
+
+    /** What to do with a task when the queue is full. */
+    public enum RejectionPolicy {
+        /** Throw a ServiceUnavailableException (503) back to the caller. */
+        REJECT,
+        /** Run the task on the calling thread. */
+        CALLER_RUNS
+    }
+
+    private final int queueCapacity;
+    private final int maxQueuedPerStudy;
+    private final RejectionPolicy rejectionPolicy;
+    private final List<Thread> workerList;
+
+    // Per-study FIFO queues, plus the order in which studies get their next turn. Both are guarded by queueLock.
+    private final Object queueLock = new Object();
+    private final Map<String, Deque<QueuedTask>> queuesByStudy = new HashMap<>();
+    private final Deque<String> studyRotation = new ArrayDeque<>();
+    private int queueDepth = 0;
+    private boolean shutdown = false;
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final TimingStats queueWaitStats = new TimingStats();
+    private final ConcurrentMap<String, TimingStats> handlerStats = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the scheduler and starts its worker threads. This is configured by Spring.
+     *
+     * @param workerCount
+     *         number of worker threads, must be positive
+     * @param queueCapacity
+     *         max number of tasks waiting in the queue across all studies, must be positive
+     * @param maxQueuedPerStudy
+     *         max number of tasks waiting in the queue for any one study, must be positive
+     * @param rejectionPolicy
+     *         what to do when the queue is full, must be non-null
+     */
+    public UploadValidationScheduler(int workerCount, int queueCapacity, int maxQueuedPerStudy,
+            @Nonnull RejectionPolicy rejectionPolicy) {
+        checkArgument(workerCount > 0);
+        checkArgument(queueCapacity > 0);
+        checkArgument(maxQueuedPerStudy > 0);
+        checkNotNull(rejectionPolicy);
+
+        this.queueCapacity = queueCapacity;
+        this.maxQueuedPerStudy = maxQueuedPerStudy;
+        this.rejectionPolicy = rejectionPolicy;
+
+        ImmutableList.Builder<Thread> workerListBuilder = ImmutableList.builder();
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::workerLoop, "upload-validation-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workerListBuilder.add(worker);
+        }
+        this.workerList = workerListBuilder.build();
+    }
+
+    /**
+     * Queues the task for validation. If the queue is full, this either throws or runs the task on the calling
+     * thread, depending on the rejection policy.
+     *
+     * @param task
+     *         upload validation task, must be non-null
+     * @throws ServiceUnavailableException
+     *         if the queue is full and the rejection policy is REJECT
+     */
+    public void submit(@Nonnull UploadValidationTask task) {
+        checkNotNull(task);
+        String studyId = task.getContext().getStudy().getIdentifier();
+        if (offer(studyId, new QueuedTask(task))) {
+            return;
+        }
+
+        rejectedCount.incrementAndGet();
+        logger.warn(String.format("Upload validation queue full, queue depth %d, study %s, upload %s, policy %s",
+                getQueueDepth(), studyId, task.getContext().getUpload().getUploadId(), rejectionPolicy));
+        if (rejectionPolicy == RejectionPolicy.CALLER_RUNS) {
+            runTask(task);
+        } else {
+            throw new ServiceUnavailableException("Upload validation is busy. Please try again later.");
+        }
+    }
+
+    /** Number of tasks waiting to run. */
+    public int getQueueDepth() {
+        synchronized (queueLock) {
+            return queueDepth;
+        }
+    }
+
+    /** Snapshot of the scheduler's statistics, suitable for serializing as JSON. */
+    public Map<String, Object> getStats() {
+        Map<String, Integer> queueDepthByStudy = new HashMap<>();
+        int depth;
+        synchronized (queueLock) {
+            depth = queueDepth;
+            for (Map.Entry<String, Deque<QueuedTask>> oneStudyQueue : queuesByStudy.entrySet()) {
+                queueDepthByStudy.put(oneStudyQueue.getKey(), oneStudyQueue.getValue().size());
+            }
+        }
+
+        return ImmutableMap.<String, Object>builder().put("workerCount", workerList.size())
+                .put("activeCount", activeCount.get()).put("queueCapacity", queueCapacity)
+                .put("maxQueuedPerStudy", maxQueuedPerStudy).put("queueDepth", depth)
+                .put("queueDepthByStudy", queueDepthByStudy).put("rejectedCount", rejectedCount.get())
+                .put("rejectionPolicy", rejectionPolicy).put("queueWait", queueWaitStats)
+                .put("handlers", ImmutableMap.copyOf(handlerStats)).build();
+    }
+
+    /**
+     * Stops the workers. Tasks still in the queue are dropped, and their uploads stay in validation in progress. This
+     * is called by Spring when the context is closed.
+     */
+    public void shutdown() {
+        synchronized (queueLock) {
+            shutdown = true;
+            queueLock.notifyAll();
+        }
+        for (Thread worker : workerList) {
+            worker.interrupt();
+        }
+    }
+
+    private boolean offer(String studyId, QueuedTask queuedTask) {
+        synchronized (queueLock) {
+            if (shutdown || queueDepth >= queueCapacity) {
+                return false;
+            }
+            Deque<QueuedTask> studyQueue = queuesByStudy.get(studyId);
+            if (studyQueue == null) {
+                studyQueue = new ArrayDeque<>();
+                queuesByStudy.put(studyId, studyQueue);
+                studyRotation.addLast(studyId);
+            } else if (studyQueue.size() >= maxQueuedPerStudy) {
+                return false;
+            }
+            studyQueue.addLast(queuedTask);
+            queueDepth++;
+            queueLock.notify();
+            return true;
+        }
+    }
+
+    private QueuedTask take() throws InterruptedException {
+        synchronized (queueLock) {
+            while (studyRotation.isEmpty()) {
+                if (shutdown) {
+                    return null;
+                }
+                queueLock.wait();
+            }
+
+            // Take the next task from the study at the front of the rotation. If the study still has tasks, send it to
+            // the back of the rotation, so every other study with queued tasks gets a turn first.
+            String studyId = studyRotation.pollFirst();
+            Deque<QueuedTask> studyQueue = queuesByStudy.get(studyId);
+            QueuedTask queuedTask = studyQueue.pollFirst();
+            if (studyQueue.isEmpty()) {
+                queuesByStudy.remove(studyId);
+            } else {
+                studyRotation.addLast(studyId);
+            }
+            queueDepth--;
+            return queuedTask;
+        }
+    }
+
+    private void workerLoop() {
+        while (true) {
+            QueuedTask queuedTask;
+            try {
+                queuedTask = take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            if (queuedTask == null) {
+                return;
+            }
+
+            queueWaitStats.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedTask.enqueuedNanos));
+            runTask(queuedTask.task);
+        }
+    }
+
+    private void runTask(UploadValidationTask task) {
+        activeCount.incrementAndGet();
+        try {
+            task.setHandlerStats(handlerStats);
+            task.run();
+        } catch (RuntimeException ex) {
+            // UploadValidationTask handles its own errors, so this should never happen. But if it does, make sure it
+            // doesn't kill the worker thread.
+            logger.error("Unexpected error running upload validation task: " + ex.getMessage(), ex);
+        } finally {
+            activeCount.decrementAndGet();
+        }
+    }
+
+    /** A task waiting in the queue, along with when it was queued, so we can measure queue wait time. */
+    private static class QueuedTask {
+        final UploadValidationTask task;
+        final long enqueuedNanos = System.nanoTime();
+
+        QueuedTask(UploadValidationTask task) {
+            this.task = task;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.sagebionetworks.bridge.upload;
 
 import javax.annotation.Nonnull;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Stopwatch;
@@ -10,6 +11,7 @@ import org.slf4j.LoggerFactory;
 
 import org.sagebionetworks.bridge.dao.UploadDao;
 import org.sagebionetworks.bridge.models.upload.UploadStatus;
+import org.sagebionetworks.bridge.util.TimingStats;
 
 /**
  * This class represents an asynchronous upload validation task, corresponding with exactly one upload. It implements
@@ -22,6 +24,7 @@ public class UploadValidationTask implements Runnable {
 
     private List<UploadValidationHandler> handlerList;
     private UploadDao uploadDao;
+    private ConcurrentMap<String, TimingStats> handlerStats;
 
     /**
      * Constructs an upload validation task instance with the given context. This should only be called by the
@@ -57,6 +60,14 @@ public class UploadValidationTask implements Runnable {
         return uploadDao;
     }
 
+    /**
+     * Per-handler execution time statistics, keyed by handler class name. This is optional and is set by the
+     * UploadValidationScheduler right before it runs the task.
+     */
+    /* package-scoped */ void setHandlerStats(ConcurrentMap<String, TimingStats> handlerStats) {
+        this.handlerStats = handlerStats;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void run() {
@@ -91,7 +102,9 @@ public class UploadValidationTask implements Runnable {
             } finally {
                 long elapsedMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
                 stopwatch.reset();
-                // TODO: send this to somewhere other than the logs
+                if (handlerStats != null) {
+                    handlerStats.computeIfAbsent(handlerName, key -> new TimingStats()).record(elapsedMillis);
+                }
                 logger.info(String.format("Upload validation handler %s took %d ms", handlerName, elapsedMillis));
             }
         }
@@ -0,0 +1,152 @@
+package org.sagebionetworks.bridge.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * Sorts lines of text that may not all fit in memory. Lines are buffered in memory up to a limit, then sorted and
+ * spilled to a temporary file. When all lines have been added, the spilled files are merged, so memory use is bounded
+ * by the limit plus one line per spilled file.
+ * </p>
+ * <p>
+ * Lines must not contain line breaks. Close the sorter when done to delete the temporary files. This class is not
+ * thread safe.
+ * </p>
+ */
+public class ExternalLineSorter implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ExternalLineSorter.class);
+
+    private static final String NEWLINE = "\n";
+
+    private final Comparator<String> comparator;
+    private final int maxLinesInMemory;
+    private final List<String> lines = Lists.newArrayList();
+    private final List<File> spillFiles = Lists.newArrayList();
+    private int lineCount = 0;
+
+    /**
+     * @param comparator
+     *         order of the sorted lines
+     * @param maxLinesInMemory
+     *         number of lines buffered in memory before they are spilled to a temporary file, must be positive
+     */
+    public ExternalLineSorter(Comparator<String> comparator, int maxLinesInMemory) {
+        checkNotNull(comparator);
+        checkArgument(maxLinesInMemory > 0);
+        this.comparator = comparator;
+        this.maxLinesInMemory = maxLinesInMemory;
+    }
+
+    /** Adds a line. If the in-memory buffer is full, the buffered lines are sorted and spilled to disk. */
+    public void add(String line) throws IOException {
+        checkNotNull(line);
+        checkArgument(!line.contains(NEWLINE) && !line.contains("\r"), "line must not contain line breaks");
+        lines.add(line);
+        lineCount++;
+        if (lines.size() >= maxLinesInMemory) {
+            spill();
+        }
+    }
+
+    /** Total number of lines added. */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /** Writes all lines added so far, in sorted order, each followed by a newline. */
+    public void writeSorted(Writer writer) throws IOException {
+        lines.sort(comparator);
+        if (spillFiles.isEmpty()) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write(NEWLINE);
+            }
+            return;
+        }
+        spill();
+
+        // Merge the spilled files, taking the lowest line from the head of each file each time.
+        List<BufferedReader> readers = Lists.newArrayListWithCapacity(spillFiles.size());
+        try {
+            PriorityQueue<MergeEntry> heads = new PriorityQueue<>(spillFiles.size(),
+                    (entry1, entry2) -> comparator.compare(entry1.line, entry2.line));
+            for (File spillFile : spillFiles) {
+                BufferedReader reader = Files.newBufferedReader(spillFile.toPath(), UTF_8);
+                readers.add(reader);
+                String line = reader.readLine();
+                if (line != null) {
+                    heads.add(new MergeEntry(line, reader));
+                }
+            }
+            while (!heads.isEmpty()) {
+                MergeEntry lowest = heads.poll();
+                writer.write(lowest.line);
+                writer.write(NEWLINE);
+                String next = lowest.reader.readLine();
+                if (next != null) {
+                    heads.add(new MergeEntry(next, lowest.reader));
+                }
+            }
+        } finally {
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /** Deletes the temporary files. */
+    @Override
+    public void close() {
+        for (File spillFile : spillFiles) {
+            if (!spillFile.delete()) {
+                logger.warn("Could not delete temporary file " + spillFile.getAbsolutePath());
+            }
+        }
+        spillFiles.clear();
+        lines.clear();
+    }
+
+    private void spill() throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        lines.sort(comparator);
+        File spillFile = File.createTempFile("sort", ".txt");
+        spillFiles.add(spillFile);
+        try (BufferedWriter writer = Files.newBufferedWriter(spillFile.toPath(), UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write(NEWLINE);
+            }
+        }
+        lines.clear();
+    }
+
+    private static final class MergeEntry {
+        private final String line;
+        private final BufferedReader reader;
+
+        MergeEntry(String line, BufferedReader reader) {
+            this.line = line;
+            this.reader = reader;
+        }
+    }
+}
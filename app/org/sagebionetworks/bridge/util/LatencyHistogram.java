@@ -0,0 +1,92 @@
+package org.sagebionetworks.bridge.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Thread-safe latency histogram with fixed buckets, from 100 microseconds to 60 seconds in 1-2-5 steps, plus an
+ * overflow bucket. Recording is a binary search and two atomic adds, so it's cheap enough to update on every request
+ * and every call to a backing service.
+ * </p>
+ * <p>
+ * Like an HDR histogram, it covers a wide range of latencies with bounded relative error, so tail latencies (p99 and
+ * above) can be estimated from it. Unlike one, its buckets are fixed, so histograms from different nodes can be added
+ * together, and it can be exported as-is in the Prometheus text format.
+ * </p>
+ */
+public class LatencyHistogram {
+    /** Upper bounds of the buckets, in microseconds. The last bucket has no upper bound. */
+    private static final long[] BUCKET_UPPER_BOUNDS_MICROS = { 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 20_000,
+            50_000, 100_000, 200_000, 500_000, 1_000_000, 2_000_000, 5_000_000, 10_000_000, 20_000_000, 60_000_000 };
+
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_UPPER_BOUNDS_MICROS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+
+    /** Upper bounds of the buckets, in seconds, not counting the last (unbounded) bucket. */
+    public static double[] getBucketUpperBoundsSeconds() {
+        return Arrays.stream(BUCKET_UPPER_BOUNDS_MICROS).mapToDouble(micros -> micros / 1_000_000.0).toArray();
+    }
+
+    /** Records one operation that took the given number of nanoseconds. */
+    public void record(long elapsedNanos) {
+        long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        int index = Arrays.binarySearch(BUCKET_UPPER_BOUNDS_MICROS, elapsedMicros);
+        if (index < 0) {
+            // Not an exact match. binarySearch() returns -(insertion point) - 1, and the insertion point is the first
+            // bucket whose upper bound is greater than the value.
+            index = -index - 1;
+        }
+        bucketCounts.incrementAndGet(index);
+        count.increment();
+        totalMicros.add(elapsedMicros);
+    }
+
+    /**
+     * Number of operations in each bucket, not cumulative. The array has one more element than
+     * {@link #getBucketUpperBoundsSeconds}; the last one counts operations slower than the last upper bound.
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[bucketCounts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = bucketCounts.get(i);
+        }
+        return counts;
+    }
+
+    /** Number of operations recorded. */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** Sum of the elapsed time of all recorded operations, in seconds. */
+    public double getTotalSeconds() {
+        return totalMicros.sum() / 1_000_000.0;
+    }
+
+    /**
+     * Estimates the given percentile (between 0 and 100), in seconds. This is the upper bound of the bucket the
+     * percentile falls in, so it over-estimates by at most one bucket. Returns zero if nothing has been recorded, and
+     * the last upper bound if the percentile falls in the overflow bucket.
+     */
+    public double getPercentileSeconds(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = Arrays.stream(counts).sum();
+        if (total == 0) {
+            return 0.0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MICROS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return BUCKET_UPPER_BOUNDS_MICROS[i] / 1_000_000.0;
+            }
+        }
+        return BUCKET_UPPER_BOUNDS_MICROS[BUCKET_UPPER_BOUNDS_MICROS.length - 1] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,43 @@
+package org.sagebionetworks.bridge.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe running totals for a timed operation: how many times it ran, the total and the maximum elapsed time.
+ * This is cheap enough to update on every call, and the getters make it directly serializable as JSON for admin
+ * endpoints.
+ */
+public class TimingStats {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+    private final AtomicLong maxMillis = new AtomicLong();
+
+    /** Records one timed operation that took the given number of milliseconds. */
+    public void record(long elapsedMillis) {
+        count.increment();
+        totalMillis.add(elapsedMillis);
+        maxMillis.accumulateAndGet(elapsedMillis, Math::max);
+    }
+
+    /** Number of operations recorded. */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** Sum of the elapsed time of all recorded operations, in milliseconds. */
+    public long getTotalMillis() {
+        return totalMillis.sum();
+    }
+
+    /** Longest elapsed time recorded, in milliseconds. */
+    public long getMaxMillis() {
+        return maxMillis.get();
+    }
+
+    /** Mean elapsed time of all recorded operations, in milliseconds, or zero if nothing has been recorded. */
+    public long getMeanMillis() {
+        long countValue = getCount();
+        return (countValue == 0) ? 0 : getTotalMillis() / countValue;
+    }
+}
@@ -6,7 +6,9 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -51,6 +53,18 @@ public class Zipper {
         }
     }
 
+    /**
+     * Callback for {@link Zipper#unzip(InputStream, EntryConsumer)}. This is called once per zip entry, in the order
+     * the entries appear in the archive.
+     */
+    public interface EntryConsumer {
+        /**
+         * Consumes one unzipped entry. The content array is owned by the consumer, and no reference to it is retained
+         * by the Zipper, so it becomes garbage as soon as the consumer is done with it.
+         */
+        void accept(String entryName, byte[] content) throws IOException;
+    }
+
     /**
      * Unzips the given byte array. The resulting map keys are the filenames of the data entries. The values are the
      * unzipped data entries as a byte array.
@@ -62,27 +76,49 @@ public class Zipper {
     public Map<String, byte[]> unzip(@Nonnull byte[] bytes)
             throws IOException, ZipOverflowException, DuplicateZipEntryException {
         final Map<String, byte[]> dataMap = new HashMap<>();
-        try (final ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-                final ZipInputStream zis = new ZipInputStream(bais)) {
-            ZipEntry zipEntry = zis.getNextEntry();
-            while (zipEntry != null) {
-                if (dataMap.size() >= maxNumZipEntries) {
-                    throw new ZipOverflowException("The number of zip entries is over the max allowed");
-                }
-                final String entryName = zipEntry.getName();
-                if (dataMap.containsKey(entryName)) {
-                    throw new DuplicateZipEntryException(String.format("Duplicate filename %s", entryName));
-                }
-                final long entrySize = zipEntry.getSize();
-                if (entrySize > maxZipEntrySize) {
-                    throw new ZipOverflowException("Zip entry size is over the max allowed size. The entry " + entryName +
-                            " has size " + entrySize + ". The max allowed size is" + maxZipEntrySize + ".");
-                }
-                byte[] content = toByteArray(entryName, zis);
-                dataMap.put(entryName, content);
-                zipEntry = zis.getNextEntry();
+        try (final ByteArrayInputStream bais = new ByteArrayInputStream(bytes)) {
+            unzip(bais, dataMap::put);
+        }
+        return dataMap;
+    }
+
+    /**
+     * Unzips the given stream one entry at a time, handing each entry to the consumer as soon as it has been read.
+     * Unlike {@link #unzip(byte[])}, this never holds more than one unzipped entry in memory, so memory use is bounded
+     * by the largest entry rather than by the size of the whole archive. The same limits on entry count, entry size,
+     * and duplicate filenames apply. The source stream is not closed by this method.
+     *
+     * @param source
+     *         stream of zipped data, must be non-null
+     * @param consumer
+     *         callback for each unzipped entry, must be non-null
+     * @throws ZipOverflowException
+     *         if there are too many entries, or an entry is too large
+     * @throws DuplicateZipEntryException
+     *         if the archive contains the same filename twice
+     */
+    public void unzip(@Nonnull InputStream source, @Nonnull EntryConsumer consumer)
+            throws IOException, ZipOverflowException, DuplicateZipEntryException {
+        final Set<String> entryNameSet = new HashSet<>();
+        // Not in a try-with-resources, because closing the ZipInputStream would close the caller's stream.
+        final ZipInputStream zis = new ZipInputStream(source);
+        ZipEntry zipEntry = zis.getNextEntry();
+        while (zipEntry != null) {
+            if (entryNameSet.size() >= maxNumZipEntries) {
+                throw new ZipOverflowException("The number of zip entries is over the max allowed");
+            }
+            final String entryName = zipEntry.getName();
+            if (!entryNameSet.add(entryName)) {
+                throw new DuplicateZipEntryException(String.format("Duplicate filename %s", entryName));
+            }
+            final long entrySize = zipEntry.getSize();
+            if (entrySize > maxZipEntrySize) {
+                throw new ZipOverflowException("Zip entry size is over the max allowed size. The entry " + entryName +
+                        " has size " + entrySize + ". The max allowed size is" + maxZipEntrySize + ".");
             }
-            return dataMap;
+            byte[] content = toByteArray(entryName, zis);
+            consumer.accept(entryName, content);
+            zipEntry = zis.getNextEntry();
         }
     }
 
@@ -0,0 +1,54 @@
+package org.sagebionetworks.bridge.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.sagebionetworks.bridge.models.ClientInfo;
+
+/**
+ * User-Agent parsing, which runs on every request. Most requests come from a handful of app versions, so they hit
+ * the cache. The miss benchmark cycles through more distinct User-Agents than the cache holds, so every call parses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClientInfoBenchmark {
+    private static final String USER_AGENT = "Asthma/26 (iPhone Simulator; iPhone OS/9.1) BridgeSDK/4";
+    private static final int DISTINCT_USER_AGENT_COUNT = 2000;
+
+    private String[] distinctUserAgents;
+    private int nextIndex;
+
+    @Setup
+    public void setup() {
+        distinctUserAgents = new String[DISTINCT_USER_AGENT_COUNT];
+        for (int i = 0; i < DISTINCT_USER_AGENT_COUNT; i++) {
+            distinctUserAgents[i] = "Asthma/" + i + " (iPhone Simulator; iPhone OS/9.1) BridgeSDK/4";
+        }
+    }
+
+    @Benchmark
+    public ClientInfo cacheHit() {
+        return ClientInfo.fromUserAgentCache(USER_AGENT);
+    }
+
+    @Benchmark
+    public ClientInfo cacheMiss() {
+        String userAgent = distinctUserAgents[nextIndex];
+        nextIndex = (nextIndex + 1) % DISTINCT_USER_AGENT_COUNT;
+        return ClientInfo.fromUserAgentCache(userAgent);
+    }
+}
@@ -0,0 +1,146 @@
+package org.sagebionetworks.bridge.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.sagebionetworks.bridge.cache.UploadSchemaCache;
+import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataDao;
+import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
+import org.sagebionetworks.bridge.dynamodb.DynamoUploadFieldDefinition;
+import org.sagebionetworks.bridge.dynamodb.DynamoUploadSchema;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.models.upload.UploadFieldDefinition;
+import org.sagebionetworks.bridge.models.upload.UploadFieldType;
+import org.sagebionetworks.bridge.models.upload.UploadSchema;
+import org.sagebionetworks.bridge.models.upload.UploadSchemaType;
+import org.sagebionetworks.bridge.services.UploadSchemaService;
+import org.sagebionetworks.bridge.upload.IosSchemaValidationHandler2;
+import org.sagebionetworks.bridge.upload.UploadValidationContext;
+
+/**
+ * Schema validation of a canned iOS upload: an activity with an info.json, two JSON data files with several fields
+ * each, and a JSON file that's stored as an attachment. The schema lookup is served from memory, so this measures
+ * only the handler's own work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IosSchemaValidationHandlerBenchmark {
+    private static final String STUDY_ID = "benchmark-study";
+    private static final String SCHEMA_ID = "tapping-activity";
+
+    private final StudyIdentifier study = new StudyIdentifierImpl(STUDY_ID);
+    private IosSchemaValidationHandler2 handler;
+    private Map<String, JsonNode> jsonDataMap;
+
+    @Setup
+    public void setup() throws Exception {
+        DynamoUploadSchema schema = new DynamoUploadSchema();
+        schema.setStudyId(STUDY_ID);
+        schema.setSchemaId(SCHEMA_ID);
+        schema.setRevision(1);
+        schema.setName("Tapping Activity");
+        schema.setSchemaType(UploadSchemaType.IOS_DATA);
+        schema.setFieldDefinitions(ImmutableList.<UploadFieldDefinition>of(
+                new DynamoUploadFieldDefinition.Builder().withName("tapping_results.json.ButtonRectLeft")
+                        .withType(UploadFieldType.STRING).build(),
+                new DynamoUploadFieldDefinition.Builder().withName("tapping_results.json.ButtonRectRight")
+                        .withType(UploadFieldType.STRING).build(),
+                new DynamoUploadFieldDefinition.Builder().withName("tapping_results.json.TappingViewSize")
+                        .withType(UploadFieldType.STRING).build(),
+                new DynamoUploadFieldDefinition.Builder().withName("tapping_results.json.TappingSamples")
+                        .withType(UploadFieldType.ATTACHMENT_JSON_BLOB).build(),
+                new DynamoUploadFieldDefinition.Builder().withName("momentInDayFormat.json.choiceAnswers")
+                        .withType(UploadFieldType.ATTACHMENT_JSON_BLOB).build(),
+                new DynamoUploadFieldDefinition.Builder().withName("momentInDayFormat.json.endDate")
+                        .withType(UploadFieldType.TIMESTAMP).build(),
+                new DynamoUploadFieldDefinition.Builder().withName("accel_tapping.json.items")
+                        .withType(UploadFieldType.ATTACHMENT_JSON_BLOB).build()));
+
+        UploadSchemaService schemaService = new UploadSchemaService() {
+            @Override
+            public UploadSchema getUploadSchemaByIdAndRev(StudyIdentifier studyIdentifier, String schemaId,
+                    int schemaRev) {
+                return schema;
+            }
+        };
+
+        handler = new IosSchemaValidationHandler2();
+        handler.setUploadSchemaService(schemaService);
+        handler.setUploadSchemaCache(new UploadSchemaCache());
+        handler.setDefaultSchemaRevisionMap(ImmutableMap.<String, Map<String, Integer>>of());
+        // health data dao is only used for getBuilder(), so we can just create one without any depedencies
+        handler.setHealthDataDao(new DynamoHealthDataDao());
+
+        StringBuilder tappingSamples = new StringBuilder("[");
+        StringBuilder accelItems = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) {
+                tappingSamples.append(',');
+                accelItems.append(',');
+            }
+            tappingSamples.append(String.format(
+                    "{\"TapTimeStamp\":%.3f,\"TapCoordinate\":\"{%d, %d}\",\"TappedButtonId\":\"TappedButtonLeft\"}",
+                    i * 0.1, 100 + i % 50, 300 + i % 30));
+            accelItems.append(String.format("{\"timestamp\":%.3f,\"x\":0.01,\"y\":-0.98,\"z\":0.12}", i * 0.01));
+        }
+        tappingSamples.append(']');
+        accelItems.append(']');
+
+        BridgeObjectMapper mapper = BridgeObjectMapper.get();
+        jsonDataMap = ImmutableMap.of(
+                "info.json", mapper.readTree("{\"files\":["
+                        + "{\"filename\":\"tapping_results.json\",\"timestamp\":\"2015-04-02T03:26:59-07:00\"},"
+                        + "{\"filename\":\"momentInDayFormat.json\",\"timestamp\":\"2015-04-02T03:26:50-07:00\"},"
+                        + "{\"filename\":\"accel_tapping.json\",\"timestamp\":\"2015-04-02T03:26:59-07:00\"}],"
+                        + "\"item\":\"" + SCHEMA_ID + "\",\"schemaRevision\":1,"
+                        + "\"appVersion\":\"version 1.0, build 26\"}"),
+                "tapping_results.json", mapper.readTree("{\"ButtonRectLeft\":\"{{20, 400}, {100, 100}}\","
+                        + "\"ButtonRectRight\":\"{{200, 400}, {100, 100}}\",\"TappingViewSize\":\"{320, 568}\","
+                        + "\"TappingSamples\":" + tappingSamples + "}"),
+                "momentInDayFormat.json", mapper.readTree("{\"questionType\":1,\"choiceAnswers\":[\"0\"],"
+                        + "\"startDate\":\"2015-04-02T03:26:45-07:00\",\"endDate\":\"2015-04-02T03:26:50-07:00\","
+                        + "\"item\":\"momentInDayFormat\"}"),
+                "accel_tapping.json", mapper.readTree("{\"items\":" + accelItems + "}"));
+    }
+
+    @Benchmark
+    public UploadValidationContext handle() throws Exception {
+        DynamoUpload2 upload = new DynamoUpload2();
+        upload.setUploadId("benchmark-upload");
+        upload.setHealthCode("benchmark-health-code");
+        upload.setUploadDate(LocalDate.parse("2015-04-02"));
+
+        // The handler writes its results to the context and renames entries in the data maps, so each invocation
+        // needs a fresh context and fresh maps. The parsed JSON itself can be shared.
+        UploadValidationContext context = new UploadValidationContext();
+        context.setStudy(study);
+        context.setUpload(upload);
+        context.setJsonDataMap(new HashMap<>(jsonDataMap));
+        context.setUnzippedDataMap(new HashMap<>());
+
+        handler.handle(context);
+        return context;
+    }
+}
@@ -0,0 +1,131 @@
+package org.sagebionetworks.bridge.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.sagebionetworks.bridge.Roles;
+import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.SessionCodec;
+import org.sagebionetworks.bridge.config.Environment;
+import org.sagebionetworks.bridge.dao.ParticipantOption.SharingScope;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.accounts.User;
+import org.sagebionetworks.bridge.models.accounts.UserSession;
+import org.sagebionetworks.bridge.models.studies.Study;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.models.surveys.Survey;
+import org.sagebionetworks.bridge.models.surveys.TestSurvey;
+
+/**
+ * Serialization and deserialization of the objects we move through Redis and the API most often: the user session
+ * (read on every authenticated request, in both session codecs), the study (read on nearly every request) and a
+ * survey with one question of every type. The size of the session in each codec is printed at the start of the run,
+ * since Redis memory and network use depend on it as much as on the encoding time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+    private final BridgeObjectMapper mapper = BridgeObjectMapper.get();
+
+    private UserSession session;
+    private byte[] sessionJson;
+    private byte[] sessionSmile;
+    private Study study;
+    private String studyJson;
+    private Survey survey;
+    private String surveyJson;
+
+    @Setup
+    public void setup() throws Exception {
+        session = makeSession();
+        sessionJson = SessionCodec.JSON.encode(session);
+        sessionSmile = SessionCodec.SMILE.encode(session);
+        System.out.println(String.format("Session size: %d bytes as JSON, %d bytes as SMILE (%.0f%%)",
+                sessionJson.length, sessionSmile.length, 100.0 * sessionSmile.length / sessionJson.length));
+
+        study = TestUtils.getValidStudy(JsonBenchmark.class);
+        studyJson = mapper.writeValueAsString(study);
+
+        survey = new TestSurvey(false);
+        surveyJson = mapper.writeValueAsString(survey);
+    }
+
+    @Benchmark
+    public byte[] serializeSessionJson() throws Exception {
+        return SessionCodec.JSON.encode(session);
+    }
+
+    @Benchmark
+    public UserSession deserializeSessionJson() throws Exception {
+        return SessionCodec.JSON.decode(sessionJson);
+    }
+
+    @Benchmark
+    public byte[] serializeSessionSmile() throws Exception {
+        return SessionCodec.SMILE.encode(session);
+    }
+
+    @Benchmark
+    public UserSession deserializeSessionSmile() throws Exception {
+        return SessionCodec.SMILE.decode(sessionSmile);
+    }
+
+    @Benchmark
+    public String serializeStudy() throws Exception {
+        return mapper.writeValueAsString(study);
+    }
+
+    @Benchmark
+    public Study deserializeStudy() throws Exception {
+        return mapper.readValue(studyJson, Study.class);
+    }
+
+    @Benchmark
+    public String serializeSurvey() throws Exception {
+        return mapper.writeValueAsString(survey);
+    }
+
+    @Benchmark
+    public Survey deserializeSurvey() throws Exception {
+        return mapper.readValue(surveyJson, Survey.class);
+    }
+
+    /** A session that looks like a typical signed in, consented participant's. */
+    private static UserSession makeSession() {
+        User user = new User();
+        user.setId("6ZSpYrUqwV4YKLtVxUhWAC");
+        user.setEmail("participant+benchmark@sagebase.org");
+        user.setFirstName("Benchmark");
+        user.setLastName("Participant");
+        user.setHealthCode("1c3bba2a-3b26-4b6e-9a40-d41bb9c4d1d2");
+        user.setStudyKey("api");
+        user.setSignedMostRecentConsent(true);
+        user.setConsent(true);
+        user.setSharingScope(SharingScope.SPONSORS_AND_PARTNERS);
+        user.setRoles(ImmutableSet.of(Roles.TEST_USERS));
+
+        UserSession session = new UserSession();
+        session.setSessionToken("d7a9ad9e-8d0f-4cb4-a0c5-5f2c1bfb3f39");
+        session.setInternalSessionToken("0c5b0c3f-2b1f-4c54-8f4c-2d3b0b53c1a7");
+        session.setAuthenticated(true);
+        session.setEnvironment(Environment.LOCAL);
+        session.setStudyIdentifier(new StudyIdentifierImpl("api"));
+        session.setUser(user);
+        return session;
+    }
+}
@@ -0,0 +1,115 @@
+package org.sagebionetworks.bridge.benchmarks;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.validation.Errors;
+import org.springframework.validation.MapBindingResult;
+
+import org.sagebionetworks.bridge.models.surveys.DataType;
+import org.sagebionetworks.bridge.models.surveys.Survey;
+import org.sagebionetworks.bridge.models.surveys.SurveyAnswer;
+import org.sagebionetworks.bridge.models.surveys.SurveyQuestion;
+import org.sagebionetworks.bridge.models.surveys.TestSurvey;
+import org.sagebionetworks.bridge.validators.SurveyAnswerValidator;
+
+/**
+ * Validating one valid answer for each of the common question types, the way a survey response submission does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SurveyAnswerValidatorBenchmark {
+    private SurveyAnswerValidator booleanValidator;
+    private SurveyAnswer booleanAnswer;
+    private SurveyAnswerValidator integerValidator;
+    private SurveyAnswer integerAnswer;
+    private SurveyAnswerValidator decimalValidator;
+    private SurveyAnswer decimalAnswer;
+    private SurveyAnswerValidator stringValidator;
+    private SurveyAnswer stringAnswer;
+    private SurveyAnswerValidator multiValueValidator;
+    private SurveyAnswer multiValueAnswer;
+
+    @Setup
+    public void setup() {
+        Survey survey = new TestSurvey(false);
+
+        SurveyQuestion booleanQuestion = TestSurvey.selectBy(survey, DataType.BOOLEAN);
+        booleanValidator = new SurveyAnswerValidator(booleanQuestion);
+        booleanAnswer = makeAnswer(booleanQuestion, ImmutableList.of("true"));
+
+        SurveyQuestion integerQuestion = TestSurvey.selectBy(survey, DataType.INTEGER);
+        integerValidator = new SurveyAnswerValidator(integerQuestion);
+        integerAnswer = makeAnswer(integerQuestion, ImmutableList.of("3"));
+
+        SurveyQuestion decimalQuestion = TestSurvey.selectBy(survey, DataType.DECIMAL);
+        decimalValidator = new SurveyAnswerValidator(decimalQuestion);
+        decimalAnswer = makeAnswer(decimalQuestion, ImmutableList.of("4.5"));
+
+        SurveyQuestion stringQuestion = TestSurvey.selectBy(survey, DataType.STRING);
+        stringValidator = new SurveyAnswerValidator(stringQuestion);
+        stringAnswer = makeAnswer(stringQuestion, ImmutableList.of("206-555-1212"));
+
+        // The multi-value question has integer options, so selectBy(INTEGER) would be ambiguous. Look it up by name.
+        SurveyQuestion multiValueQuestion = survey.getUnmodifiableQuestionList().stream()
+                .filter(question -> question.getIdentifier().equals("feeling")).findFirst().get();
+        multiValueValidator = new SurveyAnswerValidator(multiValueQuestion);
+        multiValueAnswer = makeAnswer(multiValueQuestion, ImmutableList.of("2", "4"));
+    }
+
+    @Benchmark
+    public Errors validateBoolean() {
+        return validate(booleanValidator, booleanAnswer);
+    }
+
+    @Benchmark
+    public Errors validateInteger() {
+        return validate(integerValidator, integerAnswer);
+    }
+
+    @Benchmark
+    public Errors validateDecimal() {
+        return validate(decimalValidator, decimalAnswer);
+    }
+
+    @Benchmark
+    public Errors validateString() {
+        return validate(stringValidator, stringAnswer);
+    }
+
+    @Benchmark
+    public Errors validateMultiValue() {
+        return validate(multiValueValidator, multiValueAnswer);
+    }
+
+    private static Errors validate(SurveyAnswerValidator validator, SurveyAnswer answer) {
+        Errors errors = new MapBindingResult(new HashMap<>(), "SurveyAnswer");
+        validator.validate(answer, errors);
+        return errors;
+    }
+
+    private static SurveyAnswer makeAnswer(SurveyQuestion question, List<String> values) {
+        SurveyAnswer answer = new SurveyAnswer();
+        answer.setQuestionGuid(question.getGuid());
+        answer.setAnswers(values);
+        answer.setClient("mobile");
+        answer.setAnsweredOn(System.currentTimeMillis());
+        return answer;
+    }
+}
@@ -0,0 +1,93 @@
+package org.sagebionetworks.bridge.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.dynamodb.DynamoSchedulePlan;
+import org.sagebionetworks.bridge.models.schedules.Schedule;
+import org.sagebionetworks.bridge.models.schedules.ScheduleContext;
+import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
+import org.sagebionetworks.bridge.models.schedules.ScheduleType;
+import org.sagebionetworks.bridge.models.schedules.Task;
+
+/**
+ * Task generation for the kinds of schedules studies actually use: a one-time task after enrollment, a daily
+ * interval schedule with several times of day, and a cron schedule. Each generates tasks for a participant who
+ * enrolled a month ago, looking four days ahead, which is what the tasks API does by default.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskSchedulerBenchmark {
+    private SchedulePlan plan;
+    private ScheduleContext context;
+    private Schedule onceSchedule;
+    private Schedule intervalSchedule;
+    private Schedule cronSchedule;
+
+    @Setup
+    public void setup() {
+        plan = new DynamoSchedulePlan();
+        plan.setGuid("benchmark-plan-guid");
+
+        DateTime now = DateTime.now(DateTimeZone.UTC);
+        Map<String, DateTime> events = ImmutableMap.of("enrollment", now.minusMonths(1));
+        context = new ScheduleContext.Builder().withStudyIdentifier(TestConstants.TEST_STUDY)
+                .withTimeZone(DateTimeZone.forOffsetHours(-7)).withEndsOn(now.plusDays(4))
+                .withHealthCode("benchmark-health-code").withEvents(events).build();
+
+        onceSchedule = new Schedule();
+        onceSchedule.setScheduleType(ScheduleType.ONCE);
+        onceSchedule.addActivity(TestConstants.TEST_1_ACTIVITY);
+        onceSchedule.setDelay("P1D");
+        onceSchedule.setExpires("P1W");
+
+        intervalSchedule = new Schedule();
+        intervalSchedule.setScheduleType(ScheduleType.RECURRING);
+        intervalSchedule.addActivity(TestConstants.TEST_2_ACTIVITY);
+        intervalSchedule.addActivity(TestConstants.TEST_3_ACTIVITY);
+        intervalSchedule.setInterval("P1D");
+        intervalSchedule.addTimes("08:00", "12:00", "18:00");
+        intervalSchedule.setExpires("PT4H");
+
+        cronSchedule = new Schedule();
+        cronSchedule.setScheduleType(ScheduleType.RECURRING);
+        cronSchedule.addActivity(TestConstants.TEST_3_ACTIVITY);
+        cronSchedule.setCronTrigger("0 0 10,14 ? * MON-FRI *");
+        cronSchedule.setExpires("PT2H");
+    }
+
+    @Benchmark
+    public List<Task> once() {
+        return onceSchedule.getScheduler().getTasks(plan, context);
+    }
+
+    @Benchmark
+    public List<Task> interval() {
+        return intervalSchedule.getScheduler().getTasks(plan, context);
+    }
+
+    @Benchmark
+    public List<Task> cron() {
+        return cronSchedule.getScheduler().getTasks(plan, context);
+    }
+}
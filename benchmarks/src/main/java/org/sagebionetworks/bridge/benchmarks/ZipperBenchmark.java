@@ -0,0 +1,75 @@
+package org.sagebionetworks.bridge.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.sagebionetworks.bridge.util.Zipper;
+
+/**
+ * Unzipping an upload archive shaped like a typical iOS activity upload: info.json, a few small JSON files and one
+ * larger sensor data file. Compares the in-memory unzip with the streaming unzip used by StreamingUnzipHandler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ZipperBenchmark {
+    private static final int MAX_ZIP_ENTRY_SIZE = 50 * 1024 * 1024;
+    private static final int MAX_NUM_ZIP_ENTRIES = 100;
+
+    private final Zipper zipper = new Zipper(MAX_ZIP_ENTRY_SIZE, MAX_NUM_ZIP_ENTRIES);
+    private byte[] archive;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, byte[]> entries = new HashMap<>();
+        entries.put("info.json", ("{\"files\":[{\"filename\":\"accel.json\",\"timestamp\":\"2015-04-02T03:26:59-07:00\"}],"
+                + "\"item\":\"Tapping Activity\",\"appVersion\":\"version 1.0, build 26\"}").getBytes("UTF-8"));
+        for (int i = 0; i < 5; i++) {
+            entries.put("answer" + i + ".json", ("{\"questionType\":0,\"textAnswer\":\"answer " + i
+                    + "\",\"item\":\"q" + i + "\"}").getBytes("UTF-8"));
+        }
+
+        // About 200KB of accelerometer-like readings. Fixed seed, so every run unzips the same archive.
+        Random random = new Random(42);
+        StringBuilder accel = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < 2500; i++) {
+            if (i > 0) {
+                accel.append(',');
+            }
+            accel.append(String.format("{\"timestamp\":%.3f,\"x\":%.6f,\"y\":%.6f,\"z\":%.6f}", i * 0.01,
+                    random.nextGaussian(), random.nextGaussian(), random.nextGaussian()));
+        }
+        accel.append("]}");
+        entries.put("accel.json", accel.toString().getBytes("UTF-8"));
+
+        archive = zipper.zip(entries);
+    }
+
+    @Benchmark
+    public Map<String, byte[]> unzip() throws Exception {
+        return zipper.unzip(archive);
+    }
+
+    @Benchmark
+    public void unzipStreaming(Blackhole blackhole) throws Exception {
+        zipper.unzip(new ByteArrayInputStream(archive), (entryName, content) -> blackhole.consume(content));
+    }
+}
@@ -1,10 +1,17 @@
 package org.sagebionetworks.bridge;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.junit.Test;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 
 import com.google.common.collect.Maps;
 
@@ -46,4 +53,40 @@ public class BridgeUtilsTest {
         assertEquals("${baz}", result);
     }
 
+    @Test
+    public void getFutureResultReturnsResult() {
+        assertEquals("result", BridgeUtils.getFutureResult(CompletableFuture.completedFuture("result")));
+    }
+    
+    @Test
+    public void getFutureResultThrowsUncheckedExceptionAsIs() {
+        IllegalStateException exception = new IllegalStateException();
+        CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(exception);
+        try {
+            BridgeUtils.getFutureResult(future);
+            fail("expected exception");
+        } catch(IllegalStateException e) {
+            assertSame(exception, e);
+        }
+    }
+    
+    @Test
+    public void getFutureResultWrapsCheckedException() {
+        IOException exception = new IOException();
+        CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(exception);
+        try {
+            BridgeUtils.getFutureResult(future);
+            fail("expected exception");
+        } catch(BridgeServiceException e) {
+            assertSame(exception, e.getCause());
+        }
+    }
+    
+    @Test(expected = TimeoutException.class)
+    public void getFutureResultTimesOut() throws Exception {
+        BridgeUtils.getFutureResult(new CompletableFuture<String>(), 10, TimeUnit.MILLISECONDS);
+    }
+
 }
@@ -0,0 +1,118 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.google.common.collect.ImmutableList;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+public class CacheInvalidationBusTest {
+    private static final String REDIS_CHANNEL = "test-channel";
+
+    private Jedis jedis;
+    private CacheInvalidationBus bus;
+    private CacheInvalidationChannel studyChannel;
+    private List<String> invalidatedKeys;
+    private List<String> otherCacheKeys;
+
+    @Before
+    public void before() {
+        jedis = mock(Jedis.class);
+        JedisPool jedisPool = mock(JedisPool.class);
+        when(jedisPool.getResource()).thenReturn(jedis);
+
+        bus = new CacheInvalidationBus(jedisPool, REDIS_CHANNEL);
+        studyChannel = new CacheInvalidationChannel(bus, "study");
+        invalidatedKeys = new CopyOnWriteArrayList<>();
+        studyChannel.addListener(invalidatedKeys::add);
+        otherCacheKeys = new CopyOnWriteArrayList<>();
+        new CacheInvalidationChannel(bus, "survey").addListener(otherCacheKeys::add);
+    }
+
+    @After
+    public void after() {
+        bus.shutdown();
+    }
+
+    @Test
+    public void otherNodesMessagesAreDeliveredToTheirCache() {
+        bus.onMessage("other-node|study|study-a");
+        bus.onMessage("other-node|study|study-b");
+        assertEquals(ImmutableList.of("study-a", "study-b"), invalidatedKeys);
+        assertTrue(otherCacheKeys.isEmpty());
+    }
+
+    @Test
+    public void keysCanContainTheSeparator() {
+        bus.onMessage("other-node|study|a|b");
+        assertEquals(ImmutableList.of("a|b"), invalidatedKeys);
+    }
+
+    @Test
+    public void ownMessagesAreIgnored() {
+        studyChannel.publish("study-a");
+
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(jedis).publish(eq(REDIS_CHANNEL), messageCaptor.capture());
+        String message = messageCaptor.getValue();
+        assertTrue(message.endsWith("|study|study-a"));
+
+        bus.onMessage(message);
+        assertTrue(invalidatedKeys.isEmpty());
+    }
+
+    @Test
+    public void malformedMessagesAreIgnored() {
+        bus.onMessage("no-separator");
+        bus.onMessage("other-node|no-cache");
+        bus.onMessage("other-node|unknown-cache|key");
+        assertTrue(invalidatedKeys.isEmpty());
+    }
+
+    @Test
+    public void publishErrorsAreSwallowed() {
+        when(jedis.publish(eq(REDIS_CHANNEL), anyString())).thenThrow(new RuntimeException());
+        studyChannel.publish("study-a");
+    }
+
+    @Test
+    public void reconnectInvalidatesEveryCache() {
+        bus.onReconnect();
+        assertEquals(Arrays.asList((String) null), invalidatedKeys);
+        assertEquals(Arrays.asList((String) null), otherCacheKeys);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cacheNameCanOnlyBeUsedOnce() {
+        new CacheInvalidationChannel(bus, "study");
+    }
+
+    @Test
+    public void listenerErrorsDontStopOtherListeners() {
+        studyChannel.addListener(key -> {
+            throw new RuntimeException();
+        });
+        List<String> secondListenerKeys = new CopyOnWriteArrayList<>();
+        studyChannel.addListener(secondListenerKeys::add);
+
+        bus.onMessage("other-node|study|study-a");
+        assertEquals(ImmutableList.of("study-a"), invalidatedKeys);
+        assertEquals(ImmutableList.of("study-a"), secondListenerKeys);
+    }
+}
@@ -2,13 +2,18 @@ package org.sagebionetworks.bridge.cache;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
-import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -16,27 +21,43 @@ import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.TestUtils;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.accounts.User;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.redis.JedisPipelineOps;
 import org.sagebionetworks.bridge.redis.JedisTransaction;
 import org.sagebionetworks.bridge.redis.RedisKey;
 
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Transaction;
+import redis.clients.util.SafeEncoder;
 
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class CacheProviderTest {
 
     private final String userId = "userId";
     private final String sessionToken = "sessionToken";
     private JedisTransaction transaction;
+    private JedisOps jedisOps;
+    private JedisPipelineOps jedisPipelineOps;
+    private Transaction redisTransaction;
+    private Pipeline pipeline;
+    private Jedis jedis;
+    private JedisPool jedisPool;
     private CacheProvider cacheProvider;
 
     @Before
@@ -46,12 +67,26 @@ public class CacheProviderTest {
         when(transaction.expire(any(String.class), anyInt())).thenReturn(transaction);
         when(transaction.del(any(String.class))).thenReturn(transaction);
         when(transaction.exec()).thenReturn(Arrays.asList((Object)"OK", "OK"));
-        JedisOps jedisOps = mock(JedisOps.class);
+        jedisOps = mock(JedisOps.class);
         when(jedisOps.getTransaction()).thenReturn(transaction);
         String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
         when(jedisOps.get(userKey)).thenReturn(sessionToken);
+
+        redisTransaction = mock(Transaction.class);
+        when(redisTransaction.exec()).thenReturn(Arrays.asList((Object)"OK", "OK"));
+        pipeline = mock(Pipeline.class);
+        jedis = mock(Jedis.class);
+        when(jedis.multi()).thenReturn(redisTransaction);
+        when(jedis.pipelined()).thenReturn(pipeline);
+        jedisPool = mock(JedisPool.class);
+        when(jedisPool.getResource()).thenReturn(jedis);
+
+        jedisPipelineOps = mock(JedisPipelineOps.class);
+
         cacheProvider = new CacheProvider();
         cacheProvider.setJedisOps(jedisOps);
+        cacheProvider.setJedisPipelineOps(jedisPipelineOps);
+        cacheProvider.setJedisPool(jedisPool);
         cacheProvider.setBridgeObjectMapper(BridgeObjectMapper.get());
     }
 
@@ -67,9 +102,37 @@ public class CacheProviderTest {
         cacheProvider.setUserSession(session);
         String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
         String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
-        verify(transaction, times(1)).setex(eq(sessionKey), anyInt(), anyString());
-        verify(transaction, times(1)).setex(eq(userKey), anyInt(), eq(sessionToken));
-        verify(transaction, times(1)).exec();
+        verify(redisTransaction, times(1)).setex(aryEq(SafeEncoder.encode(sessionKey)), anyInt(), any(byte[].class));
+        verify(redisTransaction, times(1)).setex(eq(userKey), anyInt(), eq(sessionToken));
+        verify(redisTransaction, times(1)).exec();
+    }
+
+    @Test
+    public void testUserSessionCodecs() throws Exception {
+        String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
+        UserSession session = BridgeObjectMapper.get().readValue(getSessionJson(), UserSession.class);
+        cacheProvider.setExecutorService(MoreExecutors.newDirectExecutorService());
+
+        for (SessionCodec writeCodec : SessionCodec.values()) {
+            cacheProvider.setSessionCodec(writeCodec);
+            cacheProvider.setUserSession(session);
+        }
+        ArgumentCaptor<byte[]> serCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(redisTransaction, times(2)).setex(aryEq(SafeEncoder.encode(sessionKey)), anyInt(),
+                serCaptor.capture());
+        byte[] jsonSer = serCaptor.getAllValues().get(0);
+        byte[] smileSer = serCaptor.getAllValues().get(1);
+        assertEquals(getSessionJson(), new String(jsonSer, "UTF-8"));
+        assertTrue(smileSer.length < jsonSer.length);
+
+        // Sessions in either format can be read, whatever the codec used for writing.
+        for (byte[] ser : Arrays.asList(jsonSer, smileSer)) {
+            when(jedis.get(aryEq(SafeEncoder.encode(sessionKey)))).thenReturn(ser);
+            UserSession cachedSession = cacheProvider.getUserSession(sessionToken);
+            assertEquals(sessionToken, cachedSession.getSessionToken());
+            assertEquals(userId, cachedSession.getUser().getId());
+            assertEquals("healthCode", cachedSession.getUser().getHealthCode());
+        }
     }
 
     @Test
@@ -89,9 +152,9 @@ public class CacheProviderTest {
         }
         String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
         String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
-        verify(transaction, times(0)).setex(eq(sessionKey), anyInt(), anyString());
-        verify(transaction, times(0)).setex(eq(userKey), anyInt(), eq(sessionToken));
-        verify(transaction, times(0)).exec();
+        verify(redisTransaction, times(0)).setex(aryEq(SafeEncoder.encode(sessionKey)), anyInt(), any(byte[].class));
+        verify(redisTransaction, times(0)).setex(eq(userKey), anyInt(), eq(sessionToken));
+        verify(redisTransaction, times(0)).exec();
     }
 
     @Test
@@ -107,9 +170,9 @@ public class CacheProviderTest {
         }
         String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
         String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
-        verify(transaction, times(0)).setex(eq(sessionKey), anyInt(), anyString());
-        verify(transaction, times(0)).setex(eq(userKey), anyInt(), eq(sessionToken));
-        verify(transaction, times(0)).exec();
+        verify(redisTransaction, times(0)).setex(aryEq(SafeEncoder.encode(sessionKey)), anyInt(), any(byte[].class));
+        verify(redisTransaction, times(0)).setex(eq(userKey), anyInt(), eq(sessionToken));
+        verify(redisTransaction, times(0)).exec();
     }
 
     @Test
@@ -129,30 +192,74 @@ public class CacheProviderTest {
         }
         String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
         String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
-        verify(transaction, times(0)).setex(eq(sessionKey), anyInt(), anyString());
-        verify(transaction, times(0)).setex(eq(userKey), anyInt(), eq(sessionToken));
-        verify(transaction, times(0)).exec();
+        verify(redisTransaction, times(0)).setex(aryEq(SafeEncoder.encode(sessionKey)), anyInt(), any(byte[].class));
+        verify(redisTransaction, times(0)).setex(eq(userKey), anyInt(), eq(sessionToken));
+        verify(redisTransaction, times(0)).exec();
     }
 
     @Test
     public void testGetUserSession() throws Exception {
         String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
-        JedisOps jedisOps = mock(JedisOps.class);
-        when(jedisOps.getTransaction(sessionKey)).thenReturn(transaction);
-        when(jedisOps.get(sessionKey)).thenReturn("userSessionString");
-        cacheProvider.setJedisOps(jedisOps);
-        User mockUser = mock(User.class);
-        when(mockUser.getId()).thenReturn(userId);
-        UserSession mockUserSession = mock(UserSession.class);
-        when(mockUserSession.getUser()).thenReturn(mockUser);
-        BridgeObjectMapper mockObjectMapper = mock(BridgeObjectMapper.class);
-        when(mockObjectMapper.readValue("userSessionString",  UserSession.class)).thenReturn(mockUserSession);
-        cacheProvider.setBridgeObjectMapper(mockObjectMapper);
+        when(jedis.get(aryEq(SafeEncoder.encode(sessionKey)))).thenReturn(getSessionJson().getBytes("UTF-8"));
+        cacheProvider.setLazySessionRefresh(false);
         cacheProvider.getUserSession(sessionToken);
         String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
-        verify(transaction, times(1)).expire(eq(sessionKey), anyInt());
-        verify(transaction, times(1)).expire(eq(userKey), anyInt());
-        verify(transaction, times(1)).exec();
+        verify(jedisPipelineOps, times(1)).expire(BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, userKey,
+                sessionKey);
+    }
+
+    @Test
+    public void testGetUserSessionLazyRefresh() throws Exception {
+        String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
+        String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
+        when(jedis.get(aryEq(SafeEncoder.encode(sessionKey)))).thenReturn(getSessionJson().getBytes("UTF-8"));
+        cacheProvider.setExecutorService(MoreExecutors.newDirectExecutorService());
+        cacheProvider.setLazySessionRefresh(true);
+
+        // This node hasn't seen the session before, so the first read refreshes it.
+        UserSession session = cacheProvider.getUserSession(sessionToken);
+        assertEquals(userId, session.getUser().getId());
+        verify(jedisPipelineOps, times(1)).expire(BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, userKey,
+                sessionKey);
+
+        // The session was just refreshed, so later reads are a single GET.
+        cacheProvider.getUserSession(sessionToken);
+        cacheProvider.getUserSession(sessionToken);
+        verify(jedisPipelineOps, times(1)).expire(anyInt(), anyVararg());
+    }
+
+    @Test
+    public void testGetUserSessionLazyRefreshRejected() throws Exception {
+        String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
+        String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
+        when(jedis.get(aryEq(SafeEncoder.encode(sessionKey)))).thenReturn(getSessionJson().getBytes("UTF-8"));
+        ExecutorService executorService = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException()).doAnswer(invocation -> {
+            ((Runnable)invocation.getArguments()[0]).run();
+            return null;
+        }).when(executorService).execute(any(Runnable.class));
+        cacheProvider.setExecutorService(executorService);
+        cacheProvider.setLazySessionRefresh(true);
+
+        // The refresh queue is full, so the refresh is dropped, and the next read tries again.
+        cacheProvider.getUserSession(sessionToken);
+        verify(jedisPipelineOps, never()).expire(anyInt(), anyVararg());
+        cacheProvider.getUserSession(sessionToken);
+        verify(jedisPipelineOps, times(1)).expire(BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, userKey,
+                sessionKey);
+    }
+
+    @Test
+    public void testGetUserSessionLazyRefreshAfterSet() throws Exception {
+        String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
+        when(jedis.get(aryEq(SafeEncoder.encode(sessionKey)))).thenReturn(getSessionJson().getBytes("UTF-8"));
+        cacheProvider.setExecutorService(MoreExecutors.newDirectExecutorService());
+        cacheProvider.setLazySessionRefresh(true);
+
+        // Setting the session sets the full TTL, so reading it right after doesn't need a refresh.
+        cacheProvider.setUserSession(BridgeObjectMapper.get().readValue(getSessionJson(), UserSession.class));
+        cacheProvider.getUserSession(sessionToken);
+        verify(jedisPipelineOps, never()).expire(anyInt(), anyVararg());
     }
 
     @Test
@@ -173,9 +280,7 @@ public class CacheProviderTest {
         cacheProvider.getUserSession(sessionToken);
         String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
         String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
-        verify(transaction, times(1)).del(sessionKey);
-        verify(transaction, times(1)).del(userKey);
-        verify(transaction, times(1)).exec();
+        verify(jedisOps, times(1)).del(sessionKey, userKey);
     }
 
     @Test
@@ -183,9 +288,7 @@ public class CacheProviderTest {
         cacheProvider.removeSessionByUserId(userId);
         String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
         String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
-        verify(transaction, times(1)).del(sessionKey);
-        verify(transaction, times(1)).del(userKey);
-        verify(transaction, times(1)).exec();
+        verify(jedisOps, times(1)).del(sessionKey, userKey);
     }
 
     @Test
@@ -217,6 +320,68 @@ public class CacheProviderTest {
         assertNull(cachedString);
     }
 
+    @Test
+    public void studyIsServedFromLocalCache() throws Exception {
+        final Study study = TestUtils.getValidStudy(CacheProviderTest.class);
+        String redisKey = RedisKey.STUDY.getRedisKey(study.getIdentifier());
+
+        when(jedisPipelineOps.getAndExpire(redisKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS))
+                .thenReturn(BridgeObjectMapper.get().writeValueAsString(study));
+
+        Study first = cacheProvider.getStudy(study.getIdentifier());
+        Study second = cacheProvider.getStudy(study.getIdentifier());
+        assertEquals(study.getIdentifier(), first.getIdentifier());
+        assertSame(first, second);
+        verify(jedisPipelineOps, times(1)).getAndExpire(redisKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
+    }
+
+    @Test
+    public void removeStudyInvalidatesLocalCacheAndPublishes() throws Exception {
+        final Study study = TestUtils.getValidStudy(CacheProviderTest.class);
+
+        CacheInvalidationChannel channel = mock(CacheInvalidationChannel.class);
+        cacheProvider.setStudyInvalidationChannel(channel);
+        cacheProvider.setJedisOps(getJedisOps());
+
+        cacheProvider.setStudy(study);
+        assertSame(study, cacheProvider.getStudy(study.getIdentifier()));
+        verify(channel).publish(study.getIdentifier());
+
+        cacheProvider.removeStudy(study.getIdentifier());
+        assertNull(cacheProvider.getStudy(study.getIdentifier()));
+        verify(channel, times(2)).publish(study.getIdentifier());
+    }
+
+    @Test
+    public void readDuringRemoveStudyIsNotKeptLocally() throws Exception {
+        final Study study = TestUtils.getValidStudy(CacheProviderTest.class);
+        String redisKey = RedisKey.STUDY.getRedisKey(study.getIdentifier());
+        int ttl = BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS;
+        when(jedisPipelineOps.getAndExpire(redisKey, ttl))
+                .thenReturn(BridgeObjectMapper.get().writeValueAsString(study));
+
+        // Another request reads the study while it is being deleted from Redis.
+        doAnswer(invocation -> {
+            cacheProvider.getStudy(study.getIdentifier());
+            return 1L;
+        }).when(jedisOps).del(redisKey);
+        cacheProvider.removeStudy(study.getIdentifier());
+
+        cacheProvider.getStudy(study.getIdentifier());
+        verify(jedisPipelineOps, times(2)).getAndExpire(redisKey, ttl);
+    }
+
+    private String getSessionJson() throws Exception {
+        User user = new User();
+        user.setEmail("userEmail");
+        user.setId(userId);
+        user.setHealthCode("healthCode");
+        UserSession session = new UserSession();
+        session.setUser(user);
+        session.setSessionToken(sessionToken);
+        return BridgeObjectMapper.get().writeValueAsString(session);
+    }
+
     private JedisOps getJedisOps() {
         return new JedisOps(new JedisPool()) {
             private Map<String,String> map = Maps.newHashMap();
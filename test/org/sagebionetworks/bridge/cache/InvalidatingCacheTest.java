@@ -0,0 +1,203 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class InvalidatingCacheTest {
+    private static final String CACHE_NAME = "test-cache";
+    private static final String CONFIG_PREFIX = "survey.cache";
+
+    private CacheInvalidationBus mockBus;
+    private CacheInvalidationChannel channel;
+    private InvalidatingCache<String> cache;
+    private Supplier<String> mockLoader;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void before() {
+        mockBus = mock(CacheInvalidationBus.class);
+        channel = new CacheInvalidationChannel(mockBus, CACHE_NAME);
+        cache = new InvalidatingCache<>(CONFIG_PREFIX);
+        cache.setInvalidationChannel(channel);
+
+        mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn("value");
+    }
+
+    @Test
+    public void valueIsLoadedOnce() {
+        assertEquals("value", cache.get("key", mockLoader));
+        assertEquals("value", cache.get("key", mockLoader));
+        verify(mockLoader, times(1)).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void nullValueIsNotCached() {
+        Supplier<String> nullLoader = mock(Supplier.class);
+        assertNull(cache.get("key", nullLoader));
+        assertNull(cache.get("key", nullLoader));
+        verify(nullLoader, times(2)).get();
+    }
+
+    @Test
+    public void valueThatIsNotCacheableIsReturnedButNotCached() {
+        assertEquals("value", cache.get("key", mockLoader, value -> false));
+        assertEquals("value", cache.get("key", mockLoader, value -> false));
+        verify(mockLoader, times(2)).get();
+    }
+
+    @Test
+    public void removeDropsEntryOnAllNodes() {
+        cache.get("key", mockLoader);
+        cache.remove("key");
+        verify(mockBus).publish(CACHE_NAME, "key");
+
+        cache.get("key", mockLoader);
+        verify(mockLoader, times(2)).get();
+    }
+
+    @Test
+    public void putReplacesEntryAndDropsItOnOtherNodes() {
+        cache.get("key", mockLoader);
+        cache.put("key", "new value");
+        verify(mockBus).publish(CACHE_NAME, "key");
+
+        assertEquals("new value", cache.get("key", mockLoader));
+        verify(mockLoader, times(1)).get();
+    }
+
+    @Test
+    public void otherNodesInvalidationsAreApplied() {
+        cache.get("key", mockLoader);
+        cache.get("other-key", mockLoader);
+
+        channel.notifyListeners("key");
+        cache.get("key", mockLoader);
+        cache.get("other-key", mockLoader);
+        verify(mockLoader, times(3)).get();
+        // Invalidations heard from other nodes are not published again.
+        verify(mockBus, never()).publish(anyString(), anyString());
+    }
+
+    @Test
+    public void invalidationOfAllKeysDropsAllEntries() {
+        cache.get("key", mockLoader);
+        cache.get("other-key", mockLoader);
+
+        channel.notifyListeners(null);
+        cache.get("key", mockLoader);
+        cache.get("other-key", mockLoader);
+        verify(mockLoader, times(4)).get();
+    }
+
+    @Test
+    public void invalidationDuringLoadDiscardsLoad() {
+        Supplier<String> racingLoader = () -> {
+            cache.remove("key");
+            return "stale value";
+        };
+        assertEquals("stale value", cache.get("key", racingLoader));
+
+        assertEquals("value", cache.get("key", mockLoader));
+        verify(mockLoader, times(1)).get();
+    }
+
+    @Test
+    public void invalidationOfOtherKeyDoesNotDiscardLoad() {
+        Supplier<String> racingLoader = () -> {
+            cache.remove("other-key");
+            return "value";
+        };
+        cache.get("key", racingLoader);
+
+        cache.get("key", mockLoader);
+        verify(mockLoader, never()).get();
+    }
+
+    @Test
+    public void putIfCurrentChecksOtherKeys() {
+        long stamp = cache.stamp();
+        cache.remove("study-key");
+        assertFalse(cache.putIfCurrent("key", "value", stamp, "study-key"));
+        assertNull(cache.getIfPresent("key"));
+
+        stamp = cache.stamp();
+        assertTrue(cache.putIfCurrent("key", "value", stamp, "study-key"));
+        assertEquals("value", cache.getIfPresent("key"));
+    }
+
+    @Test
+    public void evictCanDropDependentEntries() {
+        InvalidatingCache<String> prefixCache = new InvalidatingCache<String>(CONFIG_PREFIX) {
+            @Override
+            protected void evict(ConcurrentMap<String, String> map, String keyPrefix) {
+                map.keySet().removeIf(key -> key.startsWith(keyPrefix));
+            }
+        };
+        prefixCache.get("a:1", mockLoader);
+        prefixCache.get("a:2", mockLoader);
+        prefixCache.get("b:1", mockLoader);
+
+        prefixCache.remove("a:");
+        assertNull(prefixCache.getIfPresent("a:1"));
+        assertNull(prefixCache.getIfPresent("a:2"));
+        assertEquals("value", prefixCache.getIfPresent("b:1"));
+    }
+
+    @Test
+    public void concurrentLoadsAreCoalesced() throws Exception {
+        InvalidatingCache<String> coalescingCache = new InvalidatingCache<>(CONFIG_PREFIX, true);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loadCount = new AtomicInteger();
+        Supplier<String> loader = () -> {
+            loadCount.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return "value";
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> coalescingCache.get("key", loader));
+            loading.await(5, TimeUnit.SECONDS);
+            Future<String> second = executor.submit(() -> coalescingCache.get("key", loader));
+            // Give the second caller time to start waiting on the first caller's load.
+            Thread.sleep(100);
+            release.countDown();
+
+            String firstValue = first.get(5, TimeUnit.SECONDS);
+            assertEquals("value", firstValue);
+            assertSame(firstValue, second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loadCount.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
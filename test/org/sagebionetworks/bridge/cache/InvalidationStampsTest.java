@@ -0,0 +1,57 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class InvalidationStampsTest {
+
+    @Test
+    public void loadIsCurrentWithoutInvalidation() {
+        InvalidationStamps stamps = new InvalidationStamps();
+        long stamp = stamps.stamp();
+        assertTrue(stamps.isCurrent(stamp, "a"));
+    }
+
+    @Test
+    public void invalidationDuringLoadMakesLoadStale() {
+        InvalidationStamps stamps = new InvalidationStamps();
+        long stamp = stamps.stamp();
+        stamps.invalidate("a");
+        assertFalse(stamps.isCurrent(stamp, "a"));
+    }
+
+    @Test
+    public void invalidationOfOtherKeyDoesNotAffectLoad() {
+        InvalidationStamps stamps = new InvalidationStamps();
+        long stamp = stamps.stamp();
+        stamps.invalidate("b");
+        assertTrue(stamps.isCurrent(stamp, "a"));
+    }
+
+    @Test
+    public void invalidationBeforeLoadDoesNotAffectLoad() {
+        InvalidationStamps stamps = new InvalidationStamps();
+        stamps.invalidate("a");
+        long stamp = stamps.stamp();
+        assertTrue(stamps.isCurrent(stamp, "a"));
+    }
+
+    @Test
+    public void anyKeyOfTheValueCanMakeLoadStale() {
+        InvalidationStamps stamps = new InvalidationStamps();
+        long stamp = stamps.stamp();
+        stamps.invalidate("study:api");
+        assertFalse(stamps.isCurrent(stamp, "healthCode:a", "study:api"));
+    }
+
+    @Test
+    public void invalidateAllMakesEveryLoadStale() {
+        InvalidationStamps stamps = new InvalidationStamps();
+        long stamp = stamps.stamp();
+        stamps.invalidateAll();
+        assertFalse(stamps.isCurrent(stamp, "a"));
+        assertTrue(stamps.isCurrent(stamps.stamp(), "a"));
+    }
+}
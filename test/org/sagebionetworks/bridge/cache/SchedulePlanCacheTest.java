@@ -0,0 +1,52 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.dynamodb.DynamoSchedulePlan;
+import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
+
+public class SchedulePlanCacheTest {
+    private CacheInvalidationChannel mockChannel;
+    private SchedulePlanCache cache;
+    private Supplier<List<SchedulePlan>> mockLoader;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void before() {
+        mockChannel = mock(CacheInvalidationChannel.class);
+        cache = new SchedulePlanCache();
+        cache.setInvalidationChannel(mockChannel);
+
+        mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn(ImmutableList.<SchedulePlan>of(new DynamoSchedulePlan()));
+    }
+
+    @Test
+    public void plansAreLoadedOnce() {
+        assertEquals(1, cache.getSchedulePlans(TestConstants.TEST_STUDY, mockLoader).size());
+        assertEquals(1, cache.getSchedulePlans(TestConstants.TEST_STUDY, mockLoader).size());
+        verify(mockLoader, times(1)).get();
+    }
+
+    @Test
+    public void removeSchedulePlans() {
+        cache.getSchedulePlans(TestConstants.TEST_STUDY, mockLoader);
+        cache.removeSchedulePlans(TestConstants.TEST_STUDY);
+        verify(mockChannel).publish(TestConstants.TEST_STUDY_IDENTIFIER);
+
+        cache.getSchedulePlans(TestConstants.TEST_STUDY, mockLoader);
+        verify(mockLoader, times(2)).get();
+    }
+}
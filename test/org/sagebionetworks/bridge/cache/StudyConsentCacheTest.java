@@ -0,0 +1,86 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.dynamodb.DynamoStudyConsent1;
+import org.sagebionetworks.bridge.models.studies.StudyConsent;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+
+public class StudyConsentCacheTest {
+    private static final StudyIdentifier STUDY_ID = new StudyIdentifierImpl("test-study");
+
+    private CacheInvalidationChannel mockChannel;
+    private StudyConsentCache cache;
+
+    @Before
+    public void before() {
+        mockChannel = mock(CacheInvalidationChannel.class);
+        cache = new StudyConsentCache();
+        cache.setInvalidationChannel(mockChannel);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void activeConsentIsCachedUntilRemoved() {
+        StudyConsent consent = new DynamoStudyConsent1();
+        Supplier<StudyConsent> mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn(consent);
+
+        assertSame(consent, cache.getActiveConsent(STUDY_ID, mockLoader));
+        assertSame(consent, cache.getActiveConsent(STUDY_ID, mockLoader));
+        verify(mockLoader, times(1)).get();
+
+        cache.removeActiveConsent(STUDY_ID);
+        verify(mockChannel).publish("test-study");
+        cache.getActiveConsent(STUDY_ID, mockLoader);
+        verify(mockLoader, times(2)).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void missingActiveConsentIsNotCached() {
+        Supplier<StudyConsent> mockLoader = mock(Supplier.class);
+
+        assertNull(cache.getActiveConsent(STUDY_ID, mockLoader));
+        assertNull(cache.getActiveConsent(STUDY_ID, mockLoader));
+        verify(mockLoader, times(2)).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void documentContentIsCachedByStoragePath() {
+        Supplier<String> mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn("<p>document</p>");
+
+        assertEquals("<p>document</p>", cache.getDocumentContent("test-study.1000", mockLoader));
+        assertEquals("<p>document</p>", cache.getDocumentContent("test-study.1000", mockLoader));
+        verify(mockLoader, times(1)).get();
+
+        // Publishing a consent does not drop documents.
+        cache.removeActiveConsent(STUDY_ID);
+        cache.getDocumentContent("test-study.1000", mockLoader);
+        verify(mockLoader, times(1)).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void storedDocumentIsNotReadBack() {
+        Supplier<String> mockLoader = mock(Supplier.class);
+        cache.putDocumentContent("test-study.2000", "<p>new document</p>");
+
+        assertEquals("<p>new document</p>", cache.getDocumentContent("test-study.2000", mockLoader));
+        verify(mockLoader, times(0)).get();
+    }
+}
@@ -0,0 +1,63 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.dynamodb.DynamoSurvey;
+import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolder;
+import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolderImpl;
+import org.sagebionetworks.bridge.models.surveys.Survey;
+
+public class SurveyCacheTest {
+    private static final GuidCreatedOnVersionHolder SURVEY_KEYS = new GuidCreatedOnVersionHolderImpl("test-guid",
+            1234L);
+
+    private CacheInvalidationChannel mockChannel;
+    private SurveyCache cache;
+
+    @Before
+    public void before() {
+        mockChannel = mock(CacheInvalidationChannel.class);
+        cache = new SurveyCache();
+        cache.setInvalidationChannel(mockChannel);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void publishedSurveyIsCached() {
+        DynamoSurvey survey = new DynamoSurvey();
+        survey.setPublished(true);
+        Supplier<Survey> mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn(survey);
+
+        assertSame(survey, cache.getSurvey(SURVEY_KEYS, mockLoader));
+        assertSame(survey, cache.getSurvey(SURVEY_KEYS, mockLoader));
+        verify(mockLoader, times(1)).get();
+
+        cache.removeSurvey(SURVEY_KEYS);
+        verify(mockChannel).publish("test-guid:1234");
+        cache.getSurvey(SURVEY_KEYS, mockLoader);
+        verify(mockLoader, times(2)).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void unpublishedSurveyIsNotCached() {
+        Supplier<Survey> mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn(new DynamoSurvey());
+
+        cache.getSurvey(SURVEY_KEYS, mockLoader);
+        cache.getSurvey(SURVEY_KEYS, mockLoader);
+        verify(mockLoader, times(2)).get();
+        verify(mockChannel, times(0)).publish(any(String.class));
+    }
+}
@@ -0,0 +1,114 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.google.common.collect.ImmutableList;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.dynamodb.DynamoTask;
+import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.schedules.ScheduleContext;
+import org.sagebionetworks.bridge.models.schedules.Task;
+
+public class TaskWindowCacheTest {
+    private static final String HEALTH_CODE = "test-health-code";
+    private static final DateTime ENDS_ON = DateTime.now(DateTimeZone.UTC).plusDays(2);
+
+    private CacheInvalidationChannel mockChannel;
+    private TaskWindowCache cache;
+    private Supplier<List<Task>> mockLoader;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void before() {
+        mockChannel = mock(CacheInvalidationChannel.class);
+        cache = new TaskWindowCache();
+        cache.setInvalidationChannel(mockChannel);
+
+        mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn(ImmutableList.<Task>of(new DynamoTask()));
+    }
+
+    @Test
+    public void requestWithinWindowIsCached() {
+        assertEquals(1, cache.getTasks(createContext(ENDS_ON, DateTimeZone.UTC), mockLoader).size());
+        assertEquals(1, cache.getTasks(createContext(ENDS_ON.minusDays(1), DateTimeZone.UTC), mockLoader).size());
+        verify(mockLoader, times(1)).get();
+    }
+
+    @Test
+    public void requestOutsideWindowIsLoaded() {
+        cache.getTasks(createContext(ENDS_ON, DateTimeZone.UTC), mockLoader);
+        cache.getTasks(createContext(ENDS_ON.plusHours(1), DateTimeZone.UTC), mockLoader);
+        verify(mockLoader, times(2)).get();
+    }
+
+    @Test
+    public void requestFromAnotherTimeZoneIsLoaded() {
+        cache.getTasks(createContext(ENDS_ON, DateTimeZone.UTC), mockLoader);
+        cache.getTasks(createContext(ENDS_ON, DateTimeZone.forOffsetHours(-7)), mockLoader);
+        verify(mockLoader, times(2)).get();
+    }
+
+    @Test
+    public void removeTasks() {
+        cache.getTasks(createContext(ENDS_ON, DateTimeZone.UTC), mockLoader);
+        cache.removeTasks(HEALTH_CODE);
+        verify(mockChannel).publish("healthCode:" + HEALTH_CODE);
+
+        cache.getTasks(createContext(ENDS_ON, DateTimeZone.UTC), mockLoader);
+        verify(mockLoader, times(2)).get();
+    }
+
+    @Test
+    public void removeStudy() {
+        cache.getTasks(createContext(ENDS_ON, DateTimeZone.UTC), mockLoader);
+        cache.removeStudy(TestConstants.TEST_STUDY);
+        verify(mockChannel).publish("study:" + TestConstants.TEST_STUDY_IDENTIFIER);
+
+        cache.getTasks(createContext(ENDS_ON, DateTimeZone.UTC), mockLoader);
+        verify(mockLoader, times(2)).get();
+    }
+
+    @Test
+    public void otherParticipantsChangesDoNotDiscardLoad() {
+        // Another participant's tasks change while this participant's tasks are being scheduled.
+        Supplier<List<Task>> racingLoader = () -> {
+            cache.removeTasks("other-health-code");
+            return ImmutableList.<Task>of(new DynamoTask());
+        };
+        cache.getTasks(createContext(ENDS_ON, DateTimeZone.UTC), racingLoader);
+
+        cache.getTasks(createContext(ENDS_ON, DateTimeZone.UTC), mockLoader);
+        verify(mockLoader, times(0)).get();
+    }
+
+    @Test
+    public void studyChangeDuringLoadDiscardsLoad() {
+        Supplier<List<Task>> racingLoader = () -> {
+            cache.removeStudy(TestConstants.TEST_STUDY);
+            return ImmutableList.<Task>of(new DynamoTask());
+        };
+        cache.getTasks(createContext(ENDS_ON, DateTimeZone.UTC), racingLoader);
+
+        cache.getTasks(createContext(ENDS_ON, DateTimeZone.UTC), mockLoader);
+        verify(mockLoader, times(1)).get();
+    }
+
+    private static ScheduleContext createContext(DateTime endsOn, DateTimeZone zone) {
+        return new ScheduleContext.Builder().withStudyIdentifier(TestConstants.TEST_STUDY)
+                .withClientInfo(ClientInfo.UNKNOWN_CLIENT).withTimeZone(zone).withEndsOn(endsOn)
+                .withHealthCode(HEALTH_CODE).build();
+    }
+}
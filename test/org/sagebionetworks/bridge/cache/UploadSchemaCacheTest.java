@@ -0,0 +1,86 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.dynamodb.DynamoUploadSchema;
+import org.sagebionetworks.bridge.models.upload.UploadSchema;
+
+public class UploadSchemaCacheTest {
+    private CacheInvalidationChannel mockChannel;
+    private UploadSchemaCache cache;
+
+    @Before
+    public void before() {
+        mockChannel = mock(CacheInvalidationChannel.class);
+        cache = new UploadSchemaCache();
+        cache.setInvalidationChannel(mockChannel);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void schemaIsLoadedOnce() {
+        UploadSchema schema = new DynamoUploadSchema();
+        Supplier<UploadSchema> mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn(schema);
+
+        assertSame(schema, cache.getUploadSchema(TestConstants.TEST_STUDY, "test-schema", 2, mockLoader));
+        assertSame(schema, cache.getUploadSchema(TestConstants.TEST_STUDY, "test-schema", 2, mockLoader));
+        verify(mockLoader, times(1)).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void deleteDropsAllRevisions() {
+        Supplier<UploadSchema> mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn(new DynamoUploadSchema());
+        cache.getUploadSchema(TestConstants.TEST_STUDY, "test-schema", 1, mockLoader);
+        cache.getUploadSchema(TestConstants.TEST_STUDY, "test-schema", 2, mockLoader);
+
+        cache.removeUploadSchemas(TestConstants.TEST_STUDY, "test-schema");
+        verify(mockChannel).publish("api:test-schema:");
+
+        cache.getUploadSchema(TestConstants.TEST_STUDY, "test-schema", 1, mockLoader);
+        cache.getUploadSchema(TestConstants.TEST_STUDY, "test-schema", 2, mockLoader);
+        verify(mockLoader, times(4)).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void deleteOfOtherSchemaDoesNotDiscardLoad() {
+        // Another schema is deleted while this one is being loaded.
+        Supplier<UploadSchema> racingLoader = () -> {
+            cache.removeUploadSchemas(TestConstants.TEST_STUDY, "other-schema");
+            return new DynamoUploadSchema();
+        };
+        cache.getUploadSchema(TestConstants.TEST_STUDY, "test-schema", 1, racingLoader);
+
+        Supplier<UploadSchema> mockLoader = mock(Supplier.class);
+        cache.getUploadSchema(TestConstants.TEST_STUDY, "test-schema", 1, mockLoader);
+        verify(mockLoader, times(0)).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void deleteDuringLoadDiscardsLoad() {
+        Supplier<UploadSchema> racingLoader = () -> {
+            cache.removeUploadSchemas(TestConstants.TEST_STUDY, "test-schema");
+            return new DynamoUploadSchema();
+        };
+        cache.getUploadSchema(TestConstants.TEST_STUDY, "test-schema", 1, racingLoader);
+
+        Supplier<UploadSchema> mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn(new DynamoUploadSchema());
+        cache.getUploadSchema(TestConstants.TEST_STUDY, "test-schema", 1, mockLoader);
+        verify(mockLoader, times(1)).get();
+    }
+}
@@ -1,8 +1,12 @@
 package org.sagebionetworks.bridge.cache;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Map;
@@ -116,6 +120,58 @@ public class ViewCacheTest {
         assertEquals("Test Study 2", foundStudy.getName());
     }
     
+    @Test
+    public void viewIsServedFromLocalCache() throws Exception {
+        String originalStudyJson = mapper.writeValueAsString(study);
+        
+        ViewCache cache = new ViewCache();
+        ViewCacheKey<Study> cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        when(provider.getString(cacheKey.getKey())).thenReturn(originalStudyJson);
+        cache.setCacheProvider(provider);
+        
+        byte[] first = cache.getViewBytes(cacheKey, () -> study);
+        byte[] second = cache.getViewBytes(cacheKey, () -> study);
+        assertSame(first, second);
+        assertEquals(originalStudyJson, cache.getView(cacheKey, () -> study));
+        verify(provider, times(1)).getString(cacheKey.getKey());
+    }
+    
+    @Test
+    public void removeViewDropsLocalCopyAndPublishes() throws Exception {
+        ViewCache cache = new ViewCache();
+        ViewCacheKey<Study> cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        cache.setCacheProvider(provider);
+        CacheInvalidationChannel channel = mock(CacheInvalidationChannel.class);
+        cache.setInvalidationChannel(channel);
+        
+        cache.getViewBytes(cacheKey, () -> study);
+        cache.removeView(cacheKey);
+        verify(provider).removeString(cacheKey.getKey());
+        verify(channel).publish(cacheKey.getKey());
+        cache.getViewBytes(cacheKey, () -> study);
+        verify(provider, times(2)).getString(cacheKey.getKey());
+    }
+    
+    @Test
+    public void readDuringRemoveViewIsNotKeptLocally() throws Exception {
+        String originalStudyJson = mapper.writeValueAsString(study);
+        
+        ViewCache cache = new ViewCache();
+        ViewCacheKey<Study> cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
+        CacheProvider provider = mock(CacheProvider.class);
+        when(provider.getString(cacheKey.getKey())).thenReturn(originalStudyJson);
+        // Another request reads the view while it is being deleted from Redis.
+        doAnswer(invocation -> cache.getViewBytes(cacheKey, () -> study)).when(provider)
+                .removeString(cacheKey.getKey());
+        cache.setCacheProvider(provider);
+        
+        cache.removeView(cacheKey);
+        cache.getViewBytes(cacheKey, () -> study);
+        verify(provider, times(2)).getString(cacheKey.getKey());
+    }
+    
     @Test
     public void getCacheKeyWorks() {
         ViewCache cache = new ViewCache();
@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.dynamodb;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Iterator;
@@ -79,6 +80,41 @@ public class DynamoBackfillDaoTest {
         assertEquals(BackfillStatus.COMPLETED.name(), task.getStatus());
     }
 
+    @Test
+    public void testTaskCheckpoint() {
+        BackfillTask task = backfillDao.createTask("name", "user");
+        assertEquals(0, backfillDao.getTaskCheckpoint(task.getId()));
+        backfillDao.updateTaskCheckpoint(task.getId(), 100);
+        assertEquals(100, backfillDao.getTaskCheckpoint(task.getId()));
+        // Status updates keep the checkpoint
+        backfillDao.updateTaskStatus(task.getId(), BackfillStatus.FAILED);
+        assertEquals(100, backfillDao.getTaskCheckpoint(task.getId()));
+    }
+
+    @Test
+    public void testTaskInputHash() {
+        BackfillTask task = backfillDao.createTask("name", "user");
+        assertNull(backfillDao.getTaskInputHash(task.getId()));
+        backfillDao.updateTaskInputHash(task.getId(), "hash");
+        assertEquals("hash", backfillDao.getTaskInputHash(task.getId()));
+        // Checkpoint updates keep the input hash
+        backfillDao.updateTaskCheckpoint(task.getId(), 100);
+        assertEquals("hash", backfillDao.getTaskInputHash(task.getId()));
+    }
+
+    @Test
+    public void testTaskHeartbeat() {
+        BackfillTask task = backfillDao.createTask("name", "user");
+        // Without a heartbeat, the task was last known to be running when it was created
+        assertEquals(task.getTimestamp(), backfillDao.getTaskHeartbeat(task.getId()));
+        backfillDao.updateTaskHeartbeat(task.getId());
+        assertTrue(backfillDao.getTaskHeartbeat(task.getId()) >= task.getTimestamp());
+        // Status updates keep the heartbeat
+        long heartbeat = backfillDao.getTaskHeartbeat(task.getId());
+        backfillDao.updateTaskStatus(task.getId(), BackfillStatus.IN_PROCESS);
+        assertEquals(heartbeat, backfillDao.getTaskHeartbeat(task.getId()));
+    }
+
     @Test
     public void testRecord() throws Exception {
         // Create
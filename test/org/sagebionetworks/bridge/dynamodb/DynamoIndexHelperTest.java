@@ -1,21 +1,27 @@
 package org.sagebionetworks.bridge.dynamodb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import javax.annotation.Nonnull;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.RangeKeyCondition;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -126,6 +132,25 @@ public class DynamoIndexHelperTest {
         assertEquals(4, count);
     }
 
+    @Test
+    public void testForEachItem() {
+        mockResultsOfQuery(null);
+        List<String> keys = new ArrayList<>();
+        helper.forEachItem("test key", "test value", null, item -> keys.add(item.getString("key")));
+        assertEquals(ImmutableList.of("foo key", "bar key", "asdf key", "jkl; key"), keys);
+    }
+
+    @Test
+    public void testAttributeValues() {
+        List<Item> mockItemList = ImmutableList.of(new Item().with("key", "foo key"),
+                new Item().with("key", "bar key"), new Item().with("key", "foo key"),
+                new Item().with("otherKey", "asdf key"));
+        helper = new TestDynamoIndexHelper("test key", "test value", null, mockItemList);
+        
+        Set<String> values = helper.queryAttributeValues("key", "test key", "test value", null);
+        assertEquals(ImmutableSet.of("foo key", "bar key"), values);
+    }
+
     private static void validateKeyObjects(List<Thing> keyList) {
         assertEquals(4, keyList.size());
 
@@ -141,4 +166,28 @@ public class DynamoIndexHelperTest {
         assertEquals("jkl; key", keyList.get(3).key);
         assertNull(keyList.get(3).value);
     }
+
+    @Test
+    public void backfillingIndexIsUnavailable() {
+        AmazonServiceException ex = new AmazonServiceException(
+                "Cannot read from backfilling global secondary index: study-index");
+        ex.setErrorCode("ValidationException");
+        assertTrue(DynamoIndexHelper.isIndexUnavailable(ex));
+    }
+
+    @Test
+    public void missingIndexIsUnavailable() {
+        AmazonServiceException ex = new AmazonServiceException(
+                "The table does not have the specified index: study-index");
+        ex.setErrorCode("ValidationException");
+        assertTrue(DynamoIndexHelper.isIndexUnavailable(ex));
+    }
+
+    @Test
+    public void otherValidationErrorIsNotIndexUnavailable() {
+        AmazonServiceException ex = new AmazonServiceException(
+                "One or more parameter values were invalid: Condition parameter type does not match schema type");
+        ex.setErrorCode("ValidationException");
+        assertFalse(DynamoIndexHelper.isIndexUnavailable(ex));
+    }
 }
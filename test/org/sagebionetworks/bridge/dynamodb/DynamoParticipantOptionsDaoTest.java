@@ -1,13 +1,19 @@
 package org.sagebionetworks.bridge.dynamodb;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import javax.annotation.Resource;
 
@@ -15,6 +21,7 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.dao.ParticipantOption;
 import org.sagebionetworks.bridge.dao.ParticipantOption.SharingScope;
@@ -24,9 +31,15 @@ import org.sagebionetworks.bridge.services.StudyServiceImpl;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
-import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedScanList;
+import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedParallelScanList;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.RangeKeyCondition;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
 @ContextConfiguration("classpath:test-context.xml")
@@ -88,29 +101,84 @@ public class DynamoParticipantOptionsDaoTest {
     }
     
     @SuppressWarnings("unchecked")
+    @Test
+    public void getAllParticipantOptionsForManyParticipants() {
+        DynamoParticipantOptions options = getOptionsForUser();
+        options.getOptions().put(ParticipantOption.SHARING_SCOPE.name(), SharingScope.SPONSORS_AND_PARTNERS.name());
+        
+        DynamoDBMapper mapper = mock(DynamoDBMapper.class);
+        when(mapper.batchLoad(any(List.class))).thenReturn(
+                ImmutableMap.<String,List<Object>>of("ParticipantOptions", ImmutableList.<Object>of(options)));
+
+        DynamoParticipantOptionsDao optionsDao = new DynamoParticipantOptionsDao();
+        optionsDao.setMapper(mapper);
+        
+        Map<String,Map<ParticipantOption,String>> optionsByHealthCode = optionsDao.getAllParticipantOptions(
+                ImmutableList.of("aaa", "bbb", "aaa"));
+        
+        // One batch read, asking for each health code once
+        ArgumentCaptor<List> keys = ArgumentCaptor.forClass(List.class);
+        verify(mapper).batchLoad(keys.capture());
+        verifyNoMoreInteractions(mapper);
+        assertEquals(2, keys.getValue().size());
+        
+        assertEquals(2, optionsByHealthCode.size());
+        assertEquals(SharingScope.SPONSORS_AND_PARTNERS.name(),
+                optionsByHealthCode.get("aaa").get(ParticipantOption.SHARING_SCOPE));
+        assertEquals(Boolean.TRUE.toString(),
+                optionsByHealthCode.get("aaa").get(ParticipantOption.EMAIL_NOTIFICATIONS));
+        // Participants without a record get the defaults
+        assertEquals(SharingScope.NO_SHARING.name(),
+                optionsByHealthCode.get("bbb").get(ParticipantOption.SHARING_SCOPE));
+    }
+    
     @Test
     public void getOptionForAllStudyParticipants() {
-        // Verify we're only calling scan
+        // Verify we're only querying the study index
+        List<Item> items = ImmutableList.of(
+            new Item().with("healthDataCode", "aaa").with("studyKey", "api").with("data", "{\"SHARING_SCOPE\":\"ALL_QUALIFIED_RESEARCHERS\"}"),
+            new Item().with("healthDataCode", "bbb").with("studyKey", "api"));
+        DynamoIndexHelper index = new DynamoIndexHelper() {
+            @Override
+            protected Iterable<Item> queryHelper(String indexKeyName, Object indexKeyValue, RangeKeyCondition rangeKeyCondition) {
+                assertEquals("studyKey", indexKeyName);
+                assertEquals("api", indexKeyValue);
+                return items;
+            }
+        };
+        DynamoDBMapper mapper = mock(DynamoDBMapper.class);
 
-        PaginatedScanList<DynamoParticipantOptions> results = mock(PaginatedScanList.class);
-        when(results.iterator()).thenReturn(new ArrayList<DynamoParticipantOptions>().iterator());
+        DynamoParticipantOptionsDao optionsDao = new DynamoParticipantOptionsDao();
+        optionsDao.setMapper(mapper);
+        optionsDao.setStudyIndex(index);
         
+        OptionLookup lookup = optionsDao.getOptionForAllStudyParticipants(new StudyIdentifierImpl("api"), ParticipantOption.SHARING_SCOPE);
+        assertEquals(SharingScope.ALL_QUALIFIED_RESEARCHERS, lookup.getSharingScope("aaa"));
+        assertEquals(SharingScope.NO_SHARING, lookup.getSharingScope("bbb"));
+        verifyNoMoreInteractions(mapper);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getOptionForAllStudyParticipantsScansWhileIndexIsBackfilling() {
+        DynamoIndexHelper index = mock(DynamoIndexHelper.class);
+        AmazonServiceException exception = new AmazonServiceException("Cannot read from backfilling global secondary index");
+        exception.setErrorCode("ValidationException");
+        doThrow(exception).when(index).forEachItem(anyString(), any(), any(RangeKeyCondition.class), any(Consumer.class));
+        
+        PaginatedParallelScanList<DynamoParticipantOptions> results = mock(PaginatedParallelScanList.class);
+        when(results.iterator()).thenReturn(new ArrayList<DynamoParticipantOptions>().iterator());
         DynamoDBMapper mapper = mock(DynamoDBMapper.class);
-        when(mapper.scan(
-            (Class<DynamoParticipantOptions>)any(Class.class), 
-            any(DynamoDBScanExpression.class)
-        )).thenReturn(results);
+        when(mapper.parallelScan((Class<DynamoParticipantOptions>)any(Class.class), any(DynamoDBScanExpression.class),
+                anyInt(), any(DynamoDBMapperConfig.class))).thenReturn(results);
 
         DynamoParticipantOptionsDao optionsDao = new DynamoParticipantOptionsDao();
         optionsDao.setMapper(mapper);
+        optionsDao.setStudyIndex(index);
         
         optionsDao.getOptionForAllStudyParticipants(new StudyIdentifierImpl("api"), ParticipantOption.SHARING_SCOPE);
-        
-        verify(mapper).scan(
-            (Class<DynamoParticipantOptions>)any(Class.class), 
-            any(DynamoDBScanExpression.class)
-        );
-        verifyNoMoreInteractions(mapper);
+        verify(mapper).parallelScan((Class<DynamoParticipantOptions>)any(Class.class), any(DynamoDBScanExpression.class),
+                anyInt(), any(DynamoDBMapperConfig.class));
     }
 
     private DynamoParticipantOptions getOptionsForUser() {
@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.dynamodb;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -14,6 +15,7 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
@@ -39,8 +41,11 @@ import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
+import com.amazonaws.services.dynamodbv2.document.RangeKeyCondition;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 public class DynamoTaskDaoMockTest {
 
@@ -282,6 +287,42 @@ public class DynamoTaskDaoMockTest {
         assertEquals(TaskStatus.FINISHED, savedTask2.getStatus());
     }
     
+    @Test
+    public void runKeysAreQueriedWithinEachPlansWindow() {
+        DynamoIndexHelper index = mock(DynamoIndexHelper.class);
+        when(index.queryAttributeValues(eq("runKey"), eq("healthCode"), eq(HEALTH_CODE), any(RangeKeyCondition.class)))
+                .thenReturn(Sets.newHashSet("AAA:2015-04-12T13:00:00.000", "BBB:2015-04-13T13:00:00.000"));
+        taskDao.setTaskIndex(index);
+
+        Set<String> runKeys = Sets.newHashSet("AAA:2015-04-12T13:00:00.000", "AAA:2015-04-14T13:00:00.000",
+                "BBB:2015-04-12T13:00:00.000", "BBB:2015-04-13T13:00:00.000");
+        Set<String> occurred = taskDao.getRunKeysThatHaveOccurred(HEALTH_CODE, runKeys);
+        assertEquals(Sets.newHashSet("AAA:2015-04-12T13:00:00.000", "BBB:2015-04-13T13:00:00.000"), occurred);
+
+        // One query per plan, bounded by that plan's earliest and latest run.
+        ArgumentCaptor<RangeKeyCondition> conditions = ArgumentCaptor.forClass(RangeKeyCondition.class);
+        verify(index, times(2)).queryAttributeValues(eq("runKey"), eq("healthCode"), eq(HEALTH_CODE),
+                conditions.capture());
+        Set<List<Object>> bounds = Sets.newHashSet();
+        for (RangeKeyCondition condition : conditions.getAllValues()) {
+            assertEquals("runKey", condition.getAttrName());
+            assertEquals(ComparisonOperator.BETWEEN.toString(), condition.getKeyCondition().toString());
+            bounds.add(Lists.newArrayList(condition.getValues()));
+        }
+        assertEquals(Sets.newHashSet(
+                Lists.newArrayList("AAA:2015-04-12T13:00:00.000", "AAA:2015-04-14T13:00:00.000"),
+                Lists.newArrayList("BBB:2015-04-12T13:00:00.000", "BBB:2015-04-13T13:00:00.000")), bounds);
+    }
+
+    @Test
+    public void noRunKeysAreNotQueried() {
+        DynamoIndexHelper index = mock(DynamoIndexHelper.class);
+        taskDao.setTaskIndex(index);
+
+        assertTrue(taskDao.getRunKeysThatHaveOccurred(HEALTH_CODE, Sets.newHashSet()).isEmpty());
+        verifyNoMoreInteractions(index);
+    }
+
     private void assertTask(Task task, String ref, String dateString) {
         DateTime date = DateTime.parse(dateString);
         assertTrue(date.isEqual(task.getScheduledOn()));
@@ -9,6 +9,7 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Resource;
 
@@ -38,6 +39,7 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 @ContextConfiguration("classpath:test-context.xml")
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -113,6 +115,16 @@ public class DynamoTaskDaoTest {
         int collectionSize = tasks.size();
         assertFalse("tasks were created", tasks.isEmpty());
         
+        // All the runKeys that were saved are reported as having occurred, and an unknown one is not
+        Set<String> runKeys = Sets.newHashSet();
+        for (Task task : tasksToSchedule) {
+            runKeys.add(task.getRunKey());
+        }
+        runKeys.add("not-a-real-run-key");
+        Set<String> occurred = taskDao.getRunKeysThatHaveOccurred(user.getHealthCode(), runKeys);
+        assertFalse(occurred.contains("not-a-real-run-key"));
+        assertEquals(runKeys.size()-1, occurred.size());
+        
         // Should not increase the number of tasks
         tasks = taskDao.getTasks(context);
         assertEquals("tasks did not grow afer repeated getTask()", collectionSize, tasks.size());
@@ -0,0 +1,85 @@
+package org.sagebionetworks.bridge.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.models.Metrics;
+
+public class MetricsRegistryTest {
+    @Test
+    public void recordRequest() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.recordRequest("StudyController.getStudy", "api", 3000000L);
+        registry.recordRequest("StudyController.getStudy", null, 4000000L);
+
+        assertEquals(2, registry.getRouteHistogram("StudyController.getStudy").getCount());
+        assertNull(registry.getRouteHistogram("StudyController.updateStudy"));
+
+        String text = registry.toPrometheusText();
+        assertTrue(text.contains("# TYPE bridge_request_duration_seconds histogram\n"));
+        assertTrue(text.contains(
+                "bridge_request_duration_seconds_bucket{route=\"StudyController.getStudy\",le=\"0.002\"} 0\n"));
+        assertTrue(text.contains(
+                "bridge_request_duration_seconds_bucket{route=\"StudyController.getStudy\",le=\"0.005\"} 2\n"));
+        assertTrue(text.contains(
+                "bridge_request_duration_seconds_bucket{route=\"StudyController.getStudy\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("bridge_request_duration_seconds_count{route=\"StudyController.getStudy\"} 2\n"));
+        assertTrue(text.contains("bridge_study_request_duration_seconds_count{study=\"api\"} 1\n"));
+    }
+
+    @Test
+    public void recordDependencyCall() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Metrics metrics = new Metrics("12345");
+        Metrics.setCurrent(metrics);
+        try {
+            registry.recordDependencyCall(Dependency.DYNAMODB, 1500000L);
+        } finally {
+            Metrics.setCurrent(null);
+        }
+        // Calls made outside of a request are still recorded globally.
+        registry.recordDependencyCall(Dependency.DYNAMODB, 1500000L);
+        registry.recordDependencyCall(Dependency.REDIS, 1000000L, 3);
+
+        assertEquals(1500000L, metrics.getDependencyNanos(Dependency.DYNAMODB));
+        String text = registry.toPrometheusText();
+        assertTrue(text.contains("bridge_dependency_call_duration_seconds_count{dependency=\"dynamodb\"} 2\n"));
+        assertTrue(text.contains("# TYPE bridge_dependency_commands_total counter\n"));
+        assertTrue(text.contains("bridge_dependency_commands_total{dependency=\"dynamodb\"} 2\n"));
+        assertTrue(text.contains("bridge_dependency_commands_total{dependency=\"redis\"} 3\n"));
+    }
+
+    @Test
+    public void recordSessionStep() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.recordSessionStep("healthCode", 2000000L);
+        registry.recordSessionStep("healthCode", 3000000L);
+
+        assertEquals(2, registry.getSessionStepHistogram("healthCode").getCount());
+        assertNull(registry.getSessionStepHistogram("sharingScope"));
+        String text = registry.toPrometheusText();
+        assertTrue(text.contains("# TYPE bridge_session_step_duration_seconds histogram\n"));
+        assertTrue(text.contains("bridge_session_step_duration_seconds_count{step=\"healthCode\"} 2\n"));
+    }
+
+    @Test
+    public void recordBackgroundError() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.recordBackgroundError("email_send_failed");
+        registry.recordBackgroundError("email_send_failed");
+
+        String text = registry.toPrometheusText();
+        assertTrue(text.contains("# TYPE bridge_background_errors_total counter\n"));
+        assertTrue(text.contains("bridge_background_errors_total{error=\"email_send_failed\"} 2\n"));
+    }
+
+    @Test
+    public void labelValuesAreEscaped() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.recordRequest("route", "a\"b", 1000L);
+        assertTrue(registry.toPrometheusText().contains("{study=\"a\\\"b\"}"));
+    }
+}
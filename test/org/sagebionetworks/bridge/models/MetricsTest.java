@@ -3,9 +3,12 @@ package org.sagebionetworks.bridge.models;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
+import org.sagebionetworks.bridge.metrics.Dependency;
 import org.sagebionetworks.bridge.models.Metrics;
 
 public class MetricsTest {
@@ -15,8 +18,6 @@ public class MetricsTest {
         String requestId = "12345";
         Metrics metrics = new Metrics(requestId);
         assertNotNull(metrics);
-        assertEquals("12345:Metrics", metrics.getCacheKey());
-        assertEquals("12345:Metrics", Metrics.getCacheKey(requestId));
         final String json = metrics.toJsonString();
         assertNotNull(json);
         assertTrue(json.contains("\"version\":1"));
@@ -70,13 +71,42 @@ public class MetricsTest {
         new Metrics(" ");
     }
 
-    @Test(expected = IllegalArgumentException.class)
-    public void testGetCacheKeyRequestIdMustNotBeNull() {
-        Metrics.getCacheKey(null);
+    @Test
+    public void testGetStudy() {
+        Metrics metrics = new Metrics("12345");
+        assertNull(metrics.getStudy());
+        metrics.setStudy("api");
+        assertEquals("api", metrics.getStudy());
     }
 
-    @Test(expected = IllegalArgumentException.class)
-    public void testGetCacheKeyRequestIdMustNotBeEmpty() {
-        Metrics.getCacheKey(" ");
+    @Test
+    public void testDependencyTimes() {
+        Metrics metrics = new Metrics("12345");
+        metrics.end();
+        assertFalse(metrics.toJsonString().contains("\"dependencies\":"));
+
+        metrics.addDependencyTime(Dependency.REDIS, 2000000L);
+        metrics.addDependencyTime(Dependency.REDIS, 3000000L, 4);
+        metrics.addDependencyTime(Dependency.DYNAMODB, 7000000L);
+        assertEquals(5000000L, metrics.getDependencyNanos(Dependency.REDIS));
+        assertEquals(5L, metrics.getDependencyCommands(Dependency.REDIS));
+        assertEquals(0L, metrics.getDependencyNanos(Dependency.S3));
+
+        metrics.end();
+        String json = metrics.toJsonString();
+        assertTrue(json.contains("\"redis\":{\"calls\":2,\"commands\":5,\"millis\":5}"));
+        assertTrue(json.contains("\"dynamodb\":{\"calls\":1,\"commands\":1,\"millis\":7}"));
+    }
+
+    @Test
+    public void testCurrent() {
+        Metrics metrics = new Metrics("12345");
+        Metrics.setCurrent(metrics);
+        try {
+            assertSame(metrics, Metrics.getCurrent());
+        } finally {
+            Metrics.setCurrent(null);
+        }
+        assertNull(Metrics.getCurrent());
     }
 }
@@ -162,4 +162,16 @@ public class ScheduleTest {
         schedule.setDelay((Period)null);
         assertTrue(schedule.getPersistent());
     }
+    
+    @Test
+    public void eventIdsAreSplitWhenSet() {
+        Schedule schedule = new Schedule();
+        assertEquals(Lists.newArrayList("enrollment"), schedule.getEventIds());
+        
+        schedule.setEventId(" task:AAA:finished , enrollment");
+        assertEquals(Lists.newArrayList("task:AAA:finished", "enrollment"), schedule.getEventIds());
+        
+        schedule.setEventId(null);
+        assertEquals(Lists.newArrayList("enrollment"), schedule.getEventIds());
+    }
 }
@@ -0,0 +1,97 @@
+package org.sagebionetworks.bridge.play.controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import play.mvc.Result;
+
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.models.accounts.User;
+import org.sagebionetworks.bridge.models.accounts.UserSession;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.models.upload.Upload;
+import org.sagebionetworks.bridge.services.UploadService;
+import org.sagebionetworks.bridge.services.UploadValidationService;
+
+public class UploadControllerTest {
+    private static final String TEST_UPLOAD_ID = "controller-test-upload";
+    private static final StudyIdentifier TEST_STUDY = new StudyIdentifierImpl("upload-controller-test-study");
+
+    private UploadService mockUploadService;
+    private UploadValidationService mockValidationService;
+    private Upload mockUpload;
+    private UploadController controller;
+
+    @Before
+    public void setup() throws Exception {
+        User user = new User();
+        UserSession session = new UserSession();
+        session.setStudyIdentifier(TEST_STUDY);
+        session.setUser(user);
+
+        mockUpload = mock(Upload.class);
+        mockUploadService = mock(UploadService.class);
+        when(mockUploadService.getUpload(user, TEST_UPLOAD_ID)).thenReturn(mockUpload);
+        mockValidationService = mock(UploadValidationService.class);
+
+        controller = spy(new UploadController());
+        controller.setUploadService(mockUploadService);
+        controller.setUploadValidationService(mockValidationService);
+        doReturn(session).when(controller).getAuthenticatedAndConsentedSession();
+    }
+
+    @Test
+    public void uploadCompleteStartsValidation() throws Exception {
+        when(mockUpload.canBeValidated()).thenReturn(true);
+
+        Result result = controller.uploadComplete(TEST_UPLOAD_ID);
+        assertEquals(200, result.status());
+
+        verify(mockUploadService).uploadComplete(mockUpload);
+        verify(mockValidationService).validateUpload(TEST_STUDY, mockUpload);
+        verify(mockUploadService, never()).uploadValidationRejected(mockUpload);
+    }
+
+    @Test
+    public void rejectedValidationPutsUploadBack() throws Exception {
+        when(mockUpload.canBeValidated()).thenReturn(true);
+        doThrow(new ServiceUnavailableException("busy")).when(mockValidationService).validateUpload(TEST_STUDY,
+                mockUpload);
+
+        try {
+            controller.uploadComplete(TEST_UPLOAD_ID);
+            fail("expected exception");
+        } catch (ServiceUnavailableException ex) {
+            // expected
+        }
+        verify(mockUploadService).uploadComplete(mockUpload);
+        verify(mockUploadService).uploadValidationRejected(mockUpload);
+    }
+
+    @Test
+    public void rejectedValidationOfCompletedUploadLeavesItAlone() throws Exception {
+        // The upload was already marked complete by an earlier call, which started its validation.
+        when(mockUpload.canBeValidated()).thenReturn(false);
+        doThrow(new ServiceUnavailableException("busy")).when(mockValidationService).validateUpload(TEST_STUDY,
+                mockUpload);
+
+        try {
+            controller.uploadComplete(TEST_UPLOAD_ID);
+            fail("expected exception");
+        } catch (ServiceUnavailableException ex) {
+            // expected
+        }
+        verify(mockUploadService, never()).uploadValidationRejected(mockUpload);
+    }
+}
@@ -1,6 +1,5 @@
 package org.sagebionetworks.bridge.play.interceptors;
 
-import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -44,7 +43,6 @@ public class MetricsInterceptorTest {
         MetricsInterceptor interceptor = new MetricsInterceptor();
         Metrics metrics = interceptor.initMetrics();
         assertNotNull(metrics);
-        assertEquals("12345:Metrics", metrics.getCacheKey());
         final String json = metrics.toJsonString();
         assertNotNull(json);
         assertTrue(json.contains("\"version\":1"));
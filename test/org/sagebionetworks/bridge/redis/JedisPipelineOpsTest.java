@@ -0,0 +1,97 @@
+package org.sagebionetworks.bridge.redis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.metrics.Dependency;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
+
+import com.google.common.collect.ImmutableList;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+public class JedisPipelineOpsTest {
+
+    private Jedis jedis;
+    private Pipeline pipeline;
+    private MetricsRegistry metricsRegistry;
+    private JedisPipelineOps ops;
+
+    @Before
+    public void before() {
+        jedis = mock(Jedis.class);
+        pipeline = mock(Pipeline.class);
+        when(jedis.pipelined()).thenReturn(pipeline);
+        JedisPool jedisPool = mock(JedisPool.class);
+        when(jedisPool.getResource()).thenReturn(jedis);
+        metricsRegistry = mock(MetricsRegistry.class);
+
+        ops = new JedisPipelineOps();
+        ops.setJedisPool(jedisPool);
+        ops.setMetricsRegistry(metricsRegistry);
+    }
+
+    @Test
+    public void getAndExpireIsOneRoundTrip() {
+        Response<String> response = mockResponse("value");
+        when(pipeline.get("key")).thenReturn(response);
+
+        assertEquals("value", ops.getAndExpire("key", 60));
+        verify(pipeline).expire("key", 60);
+        verify(pipeline, times(1)).sync();
+        verify(jedis).close();
+        verify(metricsRegistry).recordDependencyCall(eq(Dependency.REDIS), anyLong(), eq(2));
+    }
+
+    @Test
+    public void expireAllKeysInOneRoundTrip() {
+        ops.expire(60, "key1", "key2", "key3");
+        verify(pipeline).expire("key1", 60);
+        verify(pipeline).expire("key2", 60);
+        verify(pipeline).expire("key3", 60);
+        verify(pipeline, times(1)).sync();
+        verify(metricsRegistry).recordDependencyCall(eq(Dependency.REDIS), anyLong(), eq(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expireNoKeys() {
+        ops.expire(60);
+    }
+
+    @Test
+    public void setIfAbsent() {
+        when(jedis.set("key", "value", "NX", "EX", 60)).thenReturn("OK");
+        assertTrue(ops.setIfAbsent("key", "value", 60));
+
+        when(jedis.set("key", "value", "NX", "EX", 60)).thenReturn(null);
+        assertFalse(ops.setIfAbsent("key", "value", 60));
+    }
+
+    @Test
+    public void deleteIfEquals() {
+        when(jedis.eval(anyString(), eq(ImmutableList.of("key")), eq(ImmutableList.of("value")))).thenReturn(1L);
+        assertTrue(ops.deleteIfEquals("key", "value"));
+        assertFalse(ops.deleteIfEquals("key", "other value"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Response<String> mockResponse(String value) {
+        Response<String> response = mock(Response.class);
+        when(response.get()).thenReturn(value);
+        return response;
+    }
+}
@@ -29,6 +29,17 @@ public class S3HelperTest {
         assertEquals(content, new String(retValBytes, Charsets.UTF_8));
     }
 
+    @Test
+    public void readAsBytesWithContentLength() throws Exception {
+        String bucket = "bucket-with-length";
+        String key = "key-with-length";
+        String content = "this is the answer with a known length";
+
+        S3Helper testS3Helper = setupWithMockS3(bucket, key, content, true);
+        byte[] retValBytes = testS3Helper.readS3FileAsBytes(bucket, key);
+        assertEquals(content, new String(retValBytes, Charsets.UTF_8));
+    }
+
     @Test
     public void readAsString() throws Exception {
         String bucket = "test-bucket";
@@ -55,6 +66,10 @@ public class S3HelperTest {
     }
 
     private static S3Helper setupWithMockS3(String bucket, String key, String content) {
+        return setupWithMockS3(bucket, key, content, false);
+    }
+
+    private static S3Helper setupWithMockS3(String bucket, String key, String content, boolean setContentLength) {
         // mock S3 stream
         byte[] contentBytes = content.getBytes(Charsets.UTF_8);
         InputStream contentStream = new ByteArrayInputStream(contentBytes);
@@ -65,6 +80,9 @@ public class S3HelperTest {
         // mock S3 object
         S3Object mockS3Object = new S3Object();
         mockS3Object.setObjectContent(mockS3Stream);
+        if (setContentLength) {
+            mockS3Object.getObjectMetadata().setContentLength(contentBytes.length);
+        }
 
         // mock S3 client
         AmazonS3Client mockS3Client = mock(AmazonS3Client.class);
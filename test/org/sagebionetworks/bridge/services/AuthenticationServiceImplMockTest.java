@@ -0,0 +1,192 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.dao.AccountDao;
+import org.sagebionetworks.bridge.dao.DistributedLockDao;
+import org.sagebionetworks.bridge.dao.ParticipantOption.SharingScope;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
+import org.sagebionetworks.bridge.models.Metrics;
+import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.HealthId;
+import org.sagebionetworks.bridge.models.accounts.SignIn;
+import org.sagebionetworks.bridge.models.accounts.User;
+import org.sagebionetworks.bridge.models.accounts.UserSession;
+import org.sagebionetworks.bridge.models.studies.Study;
+import org.sagebionetworks.bridge.validators.SignInValidator;
+
+public class AuthenticationServiceImplMockTest {
+
+    private static final SignIn SIGN_IN = new SignIn("test-user", "P4ssword");
+
+    private AuthenticationServiceImpl authService;
+    private ExecutorService executorService;
+    private MetricsRegistry metricsRegistry;
+    private BridgeConfig config;
+    private DistributedLockDao lockDao;
+    private ConsentService consentService;
+    private ParticipantOptionsService optionsService;
+    private HealthCodeService healthCodeService;
+    private Study study;
+
+    @Before
+    public void before() {
+        study = TestUtils.getValidStudy(AuthenticationServiceImplMockTest.class);
+
+        Account account = mock(Account.class);
+        when(account.getId()).thenReturn("test-user-id");
+        when(account.getHealthId()).thenReturn("test-health-id");
+        AccountDao accountDao = mock(AccountDao.class);
+        when(accountDao.authenticate(study, SIGN_IN)).thenReturn(account);
+
+        HealthId healthId = mock(HealthId.class);
+        when(healthId.getCode()).thenReturn("test-health-code");
+        healthCodeService = mock(HealthCodeService.class);
+        when(healthCodeService.getMapping("test-health-id")).thenReturn(healthId);
+
+        config = mock(BridgeConfig.class);
+        when(config.getPropertyAsInt("session.timeout.millis")).thenReturn(10000);
+        lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(eq(SignIn.class), anyString(), anyInt())).thenReturn("lock-id");
+        consentService = mock(ConsentService.class);
+        optionsService = mock(ParticipantOptionsService.class);
+        executorService = Executors.newFixedThreadPool(4);
+        metricsRegistry = new MetricsRegistry();
+
+        authService = new AuthenticationServiceImpl();
+        authService.setAccountDao(accountDao);
+        authService.setHealthCodeService(healthCodeService);
+        authService.setBridgeConfig(config);
+        authService.setDistributedLockDao(lockDao);
+        authService.setCacheProvider(mock(CacheProvider.class));
+        authService.setConsentService(consentService);
+        authService.setOptionsService(optionsService);
+        authService.setSignInValidator(new SignInValidator());
+        authService.setSessionExecutorService(executorService);
+        authService.setMetricsRegistry(metricsRegistry);
+    }
+
+    @After
+    public void after() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void sessionLookupsRunInParallel() {
+        // Each lookup only succeeds if all three are running at the same time.
+        CountDownLatch allStarted = new CountDownLatch(3);
+        when(optionsService.getSharingScope("test-health-code")).thenAnswer(invocation -> {
+            allStarted.countDown();
+            return allStarted.await(5, TimeUnit.SECONDS) ? SharingScope.ALL_QUALIFIED_RESEARCHERS : null;
+        });
+        when(consentService.hasUserSignedMostRecentConsent(eq(study), any(User.class))).thenAnswer(invocation -> {
+            allStarted.countDown();
+            return allStarted.await(5, TimeUnit.SECONDS);
+        });
+        when(consentService.hasUserConsentedToResearch(eq(study), any(User.class))).thenAnswer(invocation -> {
+            allStarted.countDown();
+            return allStarted.await(5, TimeUnit.SECONDS);
+        });
+
+        UserSession session = authService.signIn(study, SIGN_IN);
+
+        User user = session.getUser();
+        assertEquals("test-health-code", user.getHealthCode());
+        assertEquals(SharingScope.ALL_QUALIFIED_RESEARCHERS, user.getSharingScope());
+        assertTrue(user.isSignedMostRecentConsent());
+        assertTrue(user.doesConsent());
+        assertTrue(session.isAuthenticated());
+        assertEquals(study.getStudyIdentifier(), session.getStudyIdentifier());
+
+        String text = metricsRegistry.toPrometheusText();
+        assertTrue(text.contains("bridge_session_step_duration_seconds_count{step=\"healthCode\"} 1\n"));
+        assertTrue(text.contains("bridge_session_step_duration_seconds_count{step=\"consented\"} 1\n"));
+    }
+
+    @Test
+    public void stepsSeeRequestMetrics() {
+        AtomicReference<Metrics> stepMetrics = new AtomicReference<>();
+        when(consentService.hasUserConsentedToResearch(eq(study), any(User.class))).thenAnswer(invocation -> {
+            stepMetrics.set(Metrics.getCurrent());
+            return true;
+        });
+
+        Metrics metrics = new Metrics("12345");
+        Metrics.setCurrent(metrics);
+        try {
+            authService.signIn(study, SIGN_IN);
+        } finally {
+            Metrics.setCurrent(null);
+        }
+        assertSame(metrics, stepMetrics.get());
+    }
+
+    @Test
+    public void slowStepTimesOutAndIsCancelled() throws Exception {
+        when(config.getPropertyAsInt("session.timeout.millis")).thenReturn(50);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(healthCodeService.getMapping("test-health-id")).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(2000);
+            } catch(InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+
+        try {
+            authService.signIn(study, SIGN_IN);
+            fail("expected exception");
+        } catch(ServiceUnavailableException e) {
+            // expected
+        }
+        verify(lockDao).releaseLock(SignIn.class, study.getIdentifier() + ":test-user", "lock-id");
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void timeoutCoversBothStages() {
+        // Each stage alone finishes within the timeout, but not both of them together.
+        when(config.getPropertyAsInt("session.timeout.millis")).thenReturn(300);
+        HealthId healthId = mock(HealthId.class);
+        when(healthId.getCode()).thenReturn("test-health-code");
+        when(healthCodeService.getMapping("test-health-id")).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return healthId;
+        });
+        when(optionsService.getSharingScope("test-health-code")).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return SharingScope.NO_SHARING;
+        });
+
+        try {
+            authService.signIn(study, SIGN_IN);
+            fail("expected exception");
+        } catch(ServiceUnavailableException e) {
+            // expected
+        }
+    }
+}
@@ -1,8 +1,16 @@
 package org.sagebionetworks.bridge.services;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -13,8 +21,10 @@ import org.sagebionetworks.bridge.TestUtils;
 import org.sagebionetworks.bridge.dao.AccountDao;
 import org.sagebionetworks.bridge.dao.UserConsentDao;
 import org.sagebionetworks.bridge.dao.ParticipantOption.SharingScope;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
+import org.sagebionetworks.bridge.exceptions.StudyLimitExceededException;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.User;
 import org.sagebionetworks.bridge.models.accounts.UserConsent;
@@ -23,6 +33,8 @@ import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyConsent;
 import org.sagebionetworks.bridge.models.studies.StudyConsentView;
 import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.redis.JedisPipelineOps;
+import org.sagebionetworks.bridge.redis.RedisKey;
 
 public class ConsentServiceImplMockTest {
 
@@ -30,6 +42,7 @@ public class ConsentServiceImplMockTest {
 
     private AccountDao accountDao;
     private JedisOps jedisOps;
+    private JedisPipelineOps jedisPipelineOps;
     private ParticipantOptionsService optionsService;
     private SendMailService sendMailService;
     private StudyConsentService studyConsentService;
@@ -44,6 +57,8 @@ public class ConsentServiceImplMockTest {
     public void before() {
         accountDao = mock(AccountDao.class);
         jedisOps = mock(JedisOps.class);
+        jedisPipelineOps = mock(JedisPipelineOps.class);
+        when(jedisPipelineOps.eval(anyString(), anyListOf(String.class), anyListOf(String.class))).thenReturn(1L);
         optionsService = mock(ParticipantOptionsService.class);
         sendMailService = mock(SendMailService.class);
         userConsentDao = mock(UserConsentDao.class);
@@ -53,6 +68,7 @@ public class ConsentServiceImplMockTest {
         consentService = new ConsentServiceImpl();
         consentService.setAccountDao(accountDao);
         consentService.setStringOps(jedisOps);
+        consentService.setJedisPipelineOps(jedisPipelineOps);
         consentService.setOptionsService(optionsService);
         consentService.setSendMailService(sendMailService);
         consentService.setUserConsentDao(userConsentDao);
@@ -118,4 +134,71 @@ public class ConsentServiceImplMockTest {
         }
     }
     
-}
\ No newline at end of file
+    @Test
+    public void enrollmentLimitIsCheckedAndIncrementedInOneCall() {
+        consentService.incrementStudyEnrollment(study);
+        
+        verify(jedisPipelineOps, times(1)).eval(anyString(), anyListOf(String.class), anyListOf(String.class));
+        verify(jedisOps, never()).get(anyString());
+        verifyNoMoreInteractions(userConsentDao);
+    }
+    
+    @Test(expected = StudyLimitExceededException.class)
+    public void enrollmentLimitReached() {
+        when(jedisPipelineOps.eval(anyString(), anyListOf(String.class), anyListOf(String.class))).thenReturn(-2L);
+        consentService.incrementStudyEnrollment(study);
+    }
+    
+    @Test
+    public void missingEnrollmentCountIsRebuilt() {
+        String key = RedisKey.NUM_OF_PARTICIPANTS.getRedisKey(study.getIdentifier());
+        when(jedisPipelineOps.eval(anyString(), anyListOf(String.class), anyListOf(String.class))).thenReturn(-1L,
+                6L);
+        when(userConsentDao.getNumberOfParticipants(study.getStudyIdentifier())).thenReturn(5L);
+        when(jedisPipelineOps.setIfAbsent(eq(key), eq("5"), anyInt())).thenReturn(true);
+        
+        consentService.incrementStudyEnrollment(study);
+        
+        verify(userConsentDao, times(1)).getNumberOfParticipants(study.getStudyIdentifier());
+        verify(jedisPipelineOps).setIfAbsent(eq(key), eq("5"), anyInt());
+        verify(jedisPipelineOps, times(2)).eval(anyString(), anyListOf(String.class), anyListOf(String.class));
+    }
+    
+    @Test
+    public void enrollmentCountThatKeepsDisappearingFails() {
+        String key = RedisKey.NUM_OF_PARTICIPANTS.getRedisKey(study.getIdentifier());
+        when(jedisPipelineOps.eval(anyString(), anyListOf(String.class), anyListOf(String.class))).thenReturn(-1L);
+        when(userConsentDao.getNumberOfParticipants(study.getStudyIdentifier())).thenReturn(5L);
+        when(jedisPipelineOps.setIfAbsent(eq(key), eq("5"), anyInt())).thenReturn(true);
+        
+        try {
+            consentService.incrementStudyEnrollment(study);
+            fail("expected exception");
+        } catch(BridgeServiceException e) {
+            // expected
+        }
+        verify(userConsentDao, times(3)).getNumberOfParticipants(study.getStudyIdentifier());
+        verify(jedisPipelineOps, times(4)).eval(anyString(), anyListOf(String.class), anyListOf(String.class));
+    }
+    
+    @Test
+    public void rebuiltEnrollmentCountDefersToAnotherNode() {
+        String key = RedisKey.NUM_OF_PARTICIPANTS.getRedisKey(study.getIdentifier());
+        when(jedisOps.get(key)).thenReturn(null, Integer.toString(study.getMaxNumOfParticipants()));
+        when(userConsentDao.getNumberOfParticipants(study.getStudyIdentifier())).thenReturn(5L);
+        when(jedisPipelineOps.setIfAbsent(eq(key), eq("5"), anyInt())).thenReturn(false);
+        
+        // Another node stored a count first, and that count is at the limit.
+        assertTrue(consentService.isStudyAtEnrollmentLimit(study));
+    }
+    
+    @Test
+    public void enrollmentLimitNotReached() {
+        String key = RedisKey.NUM_OF_PARTICIPANTS.getRedisKey(study.getIdentifier());
+        when(jedisOps.get(key)).thenReturn("5");
+        
+        assertFalse(consentService.isStudyAtEnrollmentLimit(study));
+        verifyNoMoreInteractions(userConsentDao);
+    }
+    
+}
@@ -55,7 +55,7 @@ public class SendEmailIntegTest {
         final Study study = studyService.getStudy(TestConstants.TEST_STUDY_IDENTIFIER);
         
         sendEmailService.sendEmail(new ConsentEmailProvider(study, user, signature, 
-            SharingScope.SPONSORS_AND_PARTNERS, studyConsentService, consentBodyTemplate));
+            SharingScope.SPONSORS_AND_PARTNERS, studyConsentService, consentBodyTemplate)).join();
     }
     
 }
\ No newline at end of file
@@ -8,10 +8,14 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.nio.file.Files;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -31,6 +35,7 @@ import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClient;
 import com.amazonaws.services.simpleemail.model.SendRawEmailRequest;
 import com.amazonaws.services.simpleemail.model.SendRawEmailResult;
 import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Set-up here for consent-specific tests is extensive, so tests for the participant roster
@@ -43,6 +48,7 @@ public class SendMailViaAmazonServiceConsentTest {
     private static final String FROM_DEFAULT_AS_FORMATTED = "\"Sage Bionetworks\" <test-sender@sagebase.org>";
 
     private SendMailViaAmazonService service;
+    private File spoolDirectory;
     private AmazonSimpleEmailServiceClient emailClient;
     private StudyService studyService;
     private StudyConsentService studyConsentService;
@@ -67,7 +73,15 @@ public class SendMailViaAmazonServiceConsentTest {
             new SendRawEmailResult().withMessageId("test message id"));
         argument = ArgumentCaptor.forClass(SendRawEmailRequest.class);
 
-        service = new SendMailViaAmazonService();
+        spoolDirectory = Files.createTempDirectory("mail-spool").toFile();
+        service = new SendMailViaAmazonService() {
+            @Override
+            protected File getSpoolDirectory() {
+                return spoolDirectory;
+            }
+        };
+        // Send on the test thread.
+        service.setExecutorService(MoreExecutors.newDirectExecutorService());
         service.setSupportEmail(FROM_DEFAULT_UNFORMATTED);
         service.setEmailClient(emailClient);
         
@@ -78,6 +92,11 @@ public class SendMailViaAmazonServiceConsentTest {
         when(studyConsentService.getActiveConsent(any(StudyIdentifier.class))).thenReturn(view);
     }
     
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(spoolDirectory);
+    }
+
     @Test
     public void whenNoStudySupportEmailUsesDefaultSupportEmail() {
         study.setSupportEmail(""); // just a blank string, tricky
@@ -7,8 +7,12 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -24,12 +28,14 @@ import com.amazonaws.services.simpleemail.model.SendRawEmailResult;
 import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.collect.Sets;
 
 public class SendMailViaAmazonServiceParticipantRosterTest {
     
     private Study study;
     private SendMailViaAmazonService service;
+    private File spoolDirectory;
     private AmazonSimpleEmailServiceClient emailClient;
     private ArgumentCaptor<SendRawEmailRequest> argument;
 
@@ -43,12 +49,25 @@ public class SendMailViaAmazonServiceParticipantRosterTest {
             new SendRawEmailResult().withMessageId("test-message-id"));
         argument = ArgumentCaptor.forClass(SendRawEmailRequest.class);
 
-        service = new SendMailViaAmazonService();
+        spoolDirectory = Files.createTempDirectory("mail-spool").toFile();
+        service = new SendMailViaAmazonService() {
+            @Override
+            protected File getSpoolDirectory() {
+                return spoolDirectory;
+            }
+        };
+        // Send on the test thread.
+        service.setExecutorService(MoreExecutors.newDirectExecutorService());
         // Note that this is the Bridge aministrative support email
         service.setSupportEmail("bridge-testing+emailadmin@sagebase.org");
         service.setEmailClient(emailClient);
     }
     
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(spoolDirectory);
+    }
+
     @Test
     public void sendParticipantRoster() {
         StudyParticipant participant = new StudyParticipant();
@@ -0,0 +1,250 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sagebionetworks.bridge.dao.ParticipantOption.SharingScope;
+import org.sagebionetworks.bridge.dynamodb.DynamoStudy;
+import org.sagebionetworks.bridge.dynamodb.DynamoStudyConsent1;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
+import org.sagebionetworks.bridge.models.accounts.User;
+import org.sagebionetworks.bridge.models.studies.ConsentSignature;
+import org.sagebionetworks.bridge.models.studies.Study;
+import org.sagebionetworks.bridge.models.studies.StudyConsentView;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.services.email.ConsentEmailProvider;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClient;
+import com.amazonaws.services.simpleemail.model.SendRawEmailRequest;
+import com.amazonaws.services.simpleemail.model.SendRawEmailResult;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class SendMailViaAmazonServiceSpoolTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String SENDER = "bridge-testing+emailadmin@sagebase.org";
+    private static final String RECIPIENT = "bridge-testing+consent@sagebase.org";
+
+    private File spoolDirectory;
+    private SendMailViaAmazonService service;
+    private AmazonSimpleEmailServiceClient emailClient;
+    private MetricsRegistry metricsRegistry;
+
+    @Before
+    public void setUp() throws Exception {
+        emailClient = mock(AmazonSimpleEmailServiceClient.class);
+
+        spoolDirectory = Files.createTempDirectory("mail-spool").toFile();
+        service = new SendMailViaAmazonService() {
+            @Override
+            protected File getSpoolDirectory() {
+                return spoolDirectory;
+            }
+            @Override
+            protected int getMaxAttempts() {
+                return MAX_ATTEMPTS;
+            }
+            @Override
+            protected long getInitialBackoffMillis() {
+                return 1;
+            }
+            @Override
+            protected long getFailedRetentionMillis() {
+                return TimeUnit.DAYS.toMillis(1);
+            }
+        };
+        // Send on the test thread.
+        service.setExecutorService(MoreExecutors.newDirectExecutorService());
+        service.setSupportEmail(SENDER);
+        service.setEmailClient(emailClient);
+        metricsRegistry = new MetricsRegistry();
+        service.setMetricsRegistry(metricsRegistry);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(spoolDirectory);
+    }
+
+    @Test
+    public void throttledSendIsRetried() {
+        when(emailClient.sendRawEmail(any(SendRawEmailRequest.class))).thenThrow(throttlingException())
+                .thenReturn(new SendRawEmailResult().withMessageId("test-message-id"));
+
+        service.sendEmail(createEmail()).join();
+
+        verify(emailClient, times(2)).sendRawEmail(any(SendRawEmailRequest.class));
+        assertEquals(0, spoolDirectory.list().length);
+    }
+
+    @Test
+    public void messageIsMarkedFailedAfterMaxAttempts() {
+        when(emailClient.sendRawEmail(any(SendRawEmailRequest.class))).thenThrow(throttlingException());
+
+        service.sendEmail(createEmail()).join();
+
+        verify(emailClient, times(MAX_ATTEMPTS)).sendRawEmail(any(SendRawEmailRequest.class));
+        String[] spooledFiles = spoolDirectory.list();
+        assertEquals(1, spooledFiles.length);
+        assertTrue(spooledFiles[0].endsWith(".failed"));
+        assertTrue(metricsRegistry.toPrometheusText().contains(
+                "bridge_background_errors_total{error=\"email_send_failed\"} 1\n"));
+    }
+
+    @Test
+    public void spoolCanOnlyBeReadByOwner() throws Exception {
+        // A spool directory left over with wider permissions is locked down.
+        Files.setPosixFilePermissions(spoolDirectory.toPath(), PosixFilePermissions.fromString("rwxr-xr-x"));
+        when(emailClient.sendRawEmail(any(SendRawEmailRequest.class))).thenThrow(throttlingException());
+
+        service.sendEmail(createEmail()).join();
+
+        assertEquals("rwx------", PosixFilePermissions.toString(
+                Files.getPosixFilePermissions(spoolDirectory.toPath())));
+        assertEquals("rw-------", PosixFilePermissions.toString(
+                Files.getPosixFilePermissions(spoolDirectory.listFiles()[0].toPath())));
+    }
+
+    @Test
+    public void expiredFailedMessagesAreDeleted() throws Exception {
+        File expiredFile = new File(spoolDirectory, "mail-expired.eml.failed");
+        File recentFile = new File(spoolDirectory, "mail-recent.eml.failed");
+        Files.write(expiredFile.toPath(), new byte[0]);
+        Files.write(recentFile.toPath(), new byte[0]);
+        assertTrue(expiredFile.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)));
+
+        service.resendSpooledMessages();
+
+        assertFalse(expiredFile.exists());
+        assertTrue(recentFile.exists());
+    }
+
+    @Test
+    public void otherErrorsAreNotRetried() {
+        AmazonServiceException e = new AmazonServiceException("Email address is not verified.");
+        e.setErrorCode("MessageRejected");
+        e.setStatusCode(400);
+        when(emailClient.sendRawEmail(any(SendRawEmailRequest.class))).thenThrow(e);
+
+        service.sendEmail(createEmail()).join();
+
+        verify(emailClient, times(1)).sendRawEmail(any(SendRawEmailRequest.class));
+        assertTrue(spoolDirectory.list()[0].endsWith(".failed"));
+    }
+
+    @Test
+    public void spooledMessagesAreResentOnStart() throws Exception {
+        when(emailClient.sendRawEmail(any(SendRawEmailRequest.class))).thenThrow(throttlingException());
+        service.sendEmail(createEmail()).join();
+
+        // As if the server stopped before the message could be sent.
+        File failedFile = spoolDirectory.listFiles()[0];
+        File spooledFile = new File(failedFile.getPath().replace(".failed", ""));
+        assertTrue(failedFile.renameTo(spooledFile));
+
+        AmazonSimpleEmailServiceClient newEmailClient = mock(AmazonSimpleEmailServiceClient.class);
+        when(newEmailClient.sendRawEmail(any(SendRawEmailRequest.class))).thenReturn(
+                new SendRawEmailResult().withMessageId("test-message-id"));
+        service.setEmailClient(newEmailClient);
+        service.resendSpooledMessages();
+
+        ArgumentCaptor<SendRawEmailRequest> argument = ArgumentCaptor.forClass(SendRawEmailRequest.class);
+        verify(newEmailClient).sendRawEmail(argument.capture());
+        assertEquals(SENDER, argument.getValue().getSource());
+        assertEquals(Lists.newArrayList(RECIPIENT), argument.getValue().getDestinations());
+        assertEquals(0, spoolDirectory.list().length);
+    }
+
+    @Test
+    public void messagesLeftBeingSentAreResentOnStart() throws Exception {
+        when(emailClient.sendRawEmail(any(SendRawEmailRequest.class))).thenThrow(throttlingException());
+        service.sendEmail(createEmail()).join();
+
+        // As if the server stopped while it was sending the message.
+        File failedFile = spoolDirectory.listFiles()[0];
+        File claimedFile = new File(failedFile.getPath().replace(".failed", ".sending"));
+        assertTrue(failedFile.renameTo(claimedFile));
+
+        AmazonSimpleEmailServiceClient newEmailClient = mock(AmazonSimpleEmailServiceClient.class);
+        when(newEmailClient.sendRawEmail(any(SendRawEmailRequest.class))).thenReturn(
+                new SendRawEmailResult().withMessageId("test-message-id"));
+        service.setEmailClient(newEmailClient);
+        service.resendSpooledMessages();
+
+        verify(newEmailClient, times(1)).sendRawEmail(any(SendRawEmailRequest.class));
+        assertEquals(0, spoolDirectory.list().length);
+    }
+
+    @Test
+    public void messageClaimedByAnotherSenderIsNotResent() throws Exception {
+        when(emailClient.sendRawEmail(any(SendRawEmailRequest.class))).thenThrow(throttlingException());
+        service.sendEmail(createEmail()).join();
+        File failedFile = spoolDirectory.listFiles()[0];
+        File spooledFile = new File(failedFile.getPath().replace(".failed", ""));
+        assertTrue(failedFile.renameTo(spooledFile));
+
+        // Another sender claims the message after this one finds it in the spool.
+        File claimedFile = new File(spooledFile.getPath() + ".sending");
+        ExecutorService executorService = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>()) {
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                assertTrue(spooledFile.renameTo(claimedFile));
+            }
+        };
+        AmazonSimpleEmailServiceClient newEmailClient = mock(AmazonSimpleEmailServiceClient.class);
+        service.setEmailClient(newEmailClient);
+        service.setExecutorService(executorService);
+        service.resendSpooledMessages();
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+
+        verify(newEmailClient, never()).sendRawEmail(any(SendRawEmailRequest.class));
+        // The other sender's claim is left alone.
+        assertTrue(claimedFile.exists());
+    }
+
+    private ConsentEmailProvider createEmail() {
+        Study study = new DynamoStudy();
+        study.setName("Test Study");
+        User user = new User();
+        user.setEmail(RECIPIENT);
+        ConsentSignature signature = ConsentSignature.create("Test Person", "1970-01-01", null, null);
+
+        StudyConsentView view = new StudyConsentView(new DynamoStudyConsent1(),
+                "<html><body>Test consent: @@name@@</body></html>");
+        StudyConsentService studyConsentService = mock(StudyConsentService.class);
+        when(studyConsentService.getActiveConsent(any(StudyIdentifier.class))).thenReturn(view);
+
+        return new ConsentEmailProvider(study, user, signature, SharingScope.NO_SHARING, studyConsentService, "");
+    }
+
+    private static AmazonServiceException throttlingException() {
+        AmazonServiceException e = new AmazonServiceException("Maximum sending rate exceeded.");
+        e.setErrorCode("Throttling");
+        e.setStatusCode(400);
+        return e;
+    }
+}
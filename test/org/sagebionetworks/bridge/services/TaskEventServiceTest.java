@@ -14,6 +14,7 @@ import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.sagebionetworks.bridge.cache.TaskWindowCache;
 import org.sagebionetworks.bridge.dao.TaskEventDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurveyResponse;
 import org.sagebionetworks.bridge.dynamodb.DynamoTaskEvent.Builder;
@@ -38,6 +39,7 @@ public class TaskEventServiceTest {
         
         taskEventDao = mock(TaskEventDao.class);
         service.setTaskEventDao(taskEventDao);
+        service.setTaskWindowCache(mock(TaskWindowCache.class));
     }
     
     @Test
@@ -2,8 +2,10 @@ package org.sagebionetworks.bridge.services;
 
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anySetOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -18,6 +20,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.CacheInvalidationChannel;
+import org.sagebionetworks.bridge.cache.TaskWindowCache;
 import org.sagebionetworks.bridge.dao.TaskDao;
 import org.sagebionetworks.bridge.dao.UserConsentDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurvey;
@@ -40,6 +44,7 @@ import org.sagebionetworks.bridge.models.surveys.SurveyResponseView;
 import org.sagebionetworks.bridge.validators.ScheduleContextValidator;
 
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 public class TaskServiceMockTest {
 
@@ -90,7 +95,7 @@ public class TaskServiceMockTest {
 
         taskDao = mock(DynamoTaskDao.class);
         when(taskDao.getTasks(context)).thenReturn(tasks);
-        when(taskDao.taskRunHasNotOccurred(anyString(), anyString())).thenReturn(true);
+        when(taskDao.getRunKeysThatHaveOccurred(anyString(), anySetOf(String.class))).thenReturn(Sets.newHashSet());
 
         Survey survey = new DynamoSurvey();
         survey.setGuid("guid");
@@ -114,6 +119,10 @@ public class TaskServiceMockTest {
         service.setSurveyResponseService(surveyResponseService);
         service.setTaskDao(taskDao);
         service.setTaskEventService(taskEventService);
+        
+        TaskWindowCache taskWindowCache = new TaskWindowCache();
+        taskWindowCache.setInvalidationChannel(mock(CacheInvalidationChannel.class));
+        service.setTaskWindowCache(taskWindowCache);
     }
     
     @Test(expected = BadRequestException.class)
@@ -193,6 +202,43 @@ public class TaskServiceMockTest {
         assertTrue("Found task with tapTest ref", foundTask3);
     }
     
+    @Test
+    public void repeatRequestWithinScheduledWindowIsNotRescheduled() {
+        service.getTasks(user, createRequestContext(endsOn.plusDays(2)));
+        service.getTasks(user, createRequestContext(endsOn.plusDays(2)));
+        // A shorter lookahead is also within the window that has already been scheduled.
+        service.getTasks(user, createRequestContext(endsOn.plusDays(1)));
+        
+        verify(schedulePlanService, times(1)).getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, STUDY_IDENTIFIER);
+        verify(taskDao, times(1)).getTasks(any(ScheduleContext.class));
+    }
+    
+    @Test
+    public void requestBeyondScheduledWindowIsRescheduled() {
+        service.getTasks(user, createRequestContext(endsOn));
+        service.getTasks(user, createRequestContext(endsOn.plusDays(1)));
+        
+        verify(taskDao, times(2)).getTasks(any(ScheduleContext.class));
+    }
+    
+    @Test
+    public void updatingTasksReschedulesOnNextRequest() {
+        service.getTasks(user, createRequestContext(endsOn));
+        service.updateTasks(HEALTH_CODE, TestUtils.runSchedulerForTasks(user, createScheduleContext(endsOn)));
+        service.getTasks(user, createRequestContext(endsOn));
+        
+        verify(taskDao, times(2)).getTasks(any(ScheduleContext.class));
+    }
+    
+    private ScheduleContext createRequestContext(DateTime endsOn) {
+        return new ScheduleContext.Builder()
+            .withStudyIdentifier(TEST_STUDY)
+            .withClientInfo(ClientInfo.UNKNOWN_CLIENT)
+            .withTimeZone(DateTimeZone.UTC)
+            .withEndsOn(endsOn)
+            .withHealthCode(HEALTH_CODE).build();
+    }
+    
     private ScheduleContext createScheduleContext(DateTime endsOn) {
         Map<String,DateTime> events = Maps.newHashMap();
         events.put("enrollment", ENROLLMENT);
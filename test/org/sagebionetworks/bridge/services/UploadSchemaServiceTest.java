@@ -11,6 +11,7 @@ import java.util.List;
 import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 
+import org.sagebionetworks.bridge.cache.UploadSchemaCache;
 import org.sagebionetworks.bridge.dao.UploadSchemaDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoUploadFieldDefinition;
 import org.sagebionetworks.bridge.dynamodb.DynamoUploadSchema;
@@ -95,11 +96,14 @@ public class UploadSchemaServiceTest {
         UploadSchemaDao mockDao = mock(UploadSchemaDao.class);
         UploadSchemaService svc = new UploadSchemaService();
         svc.setUploadSchemaDao(mockDao);
+        UploadSchemaCache mockCache = mock(UploadSchemaCache.class);
+        svc.setUploadSchemaCache(mockCache);
 
         // execute and verify delete call
         StudyIdentifier studyIdentifier = makeTestStudy();
         svc.deleteUploadSchemaByIdAndRev(studyIdentifier, "delete-schema", 1);
         verify(mockDao).deleteUploadSchemaByIdAndRev(studyIdentifier, "delete-schema", 1);
+        verify(mockCache).removeUploadSchemas(studyIdentifier, "delete-schema");
     }
 
     @Test(expected = BadRequestException.class)
@@ -123,11 +127,14 @@ public class UploadSchemaServiceTest {
         UploadSchemaDao mockDao = mock(UploadSchemaDao.class);
         UploadSchemaService svc = new UploadSchemaService();
         svc.setUploadSchemaDao(mockDao);
+        UploadSchemaCache mockCache = mock(UploadSchemaCache.class);
+        svc.setUploadSchemaCache(mockCache);
 
         // execute and verify delete call
         StudyIdentifier studyIdentifier = makeTestStudy();
         svc.deleteUploadSchemaById(studyIdentifier, "delete-schema");
         verify(mockDao).deleteUploadSchemaById(studyIdentifier, "delete-schema");
+        verify(mockCache).removeUploadSchemas(studyIdentifier, "delete-schema");
     }
 
     @Test(expected = BadRequestException.class)
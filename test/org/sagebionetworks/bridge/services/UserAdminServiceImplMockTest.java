@@ -0,0 +1,197 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.bridge.Roles;
+import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.dao.AccountDao;
+import org.sagebionetworks.bridge.dao.DistributedLockDao;
+import org.sagebionetworks.bridge.dao.HealthIdDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.User;
+import org.sagebionetworks.bridge.models.studies.Study;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class UserAdminServiceImplMockTest {
+
+    private static final String EMAIL = "test-user@example.com";
+
+    private UserAdminServiceImpl userAdminService;
+    private ExecutorService executorService;
+    private AccountDao accountDao;
+    private DistributedLockDao lockDao;
+    private CacheProvider cacheProvider;
+    private ConsentService consentService;
+    private HealthDataService healthDataService;
+    private TaskService taskService;
+    private TaskEventService taskEventService;
+    private SurveyResponseService surveyResponseService;
+    private Study study;
+    private Set<String> deletedEmails;
+
+    @Before
+    public void before() {
+        study = TestUtils.getValidStudy(UserAdminServiceImplMockTest.class);
+
+        // Accounts can be looked up until they are deleted.
+        deletedEmails = Sets.newConcurrentHashSet();
+        accountDao = mock(AccountDao.class);
+        doAnswer(invocation -> {
+            deletedEmails.add((String)invocation.getArguments()[1]);
+            return null;
+        }).when(accountDao).deleteAccount(eq(study), anyString());
+
+        HealthIdDao healthIdDao = mock(HealthIdDao.class);
+        when(healthIdDao.getCode(anyString())).thenAnswer(invocation -> "code-" + invocation.getArguments()[0]);
+
+        StudyService studyService = mock(StudyService.class);
+        when(studyService.getStudy(study.getStudyIdentifier())).thenReturn(study);
+
+        BridgeConfig config = mock(BridgeConfig.class);
+        when(config.getPropertyAsInt("user.delete.max.attempts")).thenReturn(3);
+        when(config.getPropertyAsInt("user.delete.initial.backoff.millis")).thenReturn(1);
+        when(config.getPropertyAsInt("user.delete.bulk.concurrency")).thenReturn(2);
+        when(config.getPropertyAsInt("user.delete.bulk.progress.interval")).thenReturn(1);
+
+        lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(eq(User.class), anyString())).thenReturn("lock-id");
+        cacheProvider = mock(CacheProvider.class);
+        consentService = mock(ConsentService.class);
+        healthDataService = mock(HealthDataService.class);
+        taskService = mock(TaskService.class);
+        taskEventService = mock(TaskEventService.class);
+        surveyResponseService = mock(SurveyResponseService.class);
+        executorService = Executors.newFixedThreadPool(5);
+
+        userAdminService = new UserAdminServiceImpl();
+        userAdminService.setAccountDao(accountDao);
+        userAdminService.setHealthIdDao(healthIdDao);
+        userAdminService.setStudyService(studyService);
+        userAdminService.setBridgeConfig(config);
+        userAdminService.setDistributedLockDao(lockDao);
+        userAdminService.setCacheProvider(cacheProvider);
+        userAdminService.setConsentService(consentService);
+        userAdminService.setHealthDataService(healthDataService);
+        userAdminService.setTaskService(taskService);
+        userAdminService.setTaskEventService(taskEventService);
+        userAdminService.setSurveyResponseService(surveyResponseService);
+        userAdminService.setExecutorService(executorService);
+    }
+
+    @After
+    public void after() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void userDataIsDeletedInParallelThenAccount() {
+        mockAccount(EMAIL, "test-user");
+
+        // Each delete only succeeds if all five are running at the same time.
+        CountDownLatch allStarted = new CountDownLatch(5);
+        doAnswer(invocation -> awaitAll(allStarted)).when(consentService).withdrawConsent(eq(study), any(User.class));
+        doAnswer(invocation -> awaitAll(allStarted)).when(healthDataService).deleteRecordsForHealthCode("code-test-user");
+        doAnswer(invocation -> awaitAll(allStarted)).when(taskService).deleteTasks("code-test-user");
+        doAnswer(invocation -> awaitAll(allStarted)).when(taskEventService).deleteTaskEvents("code-test-user");
+        doAnswer(invocation -> awaitAll(allStarted)).when(surveyResponseService)
+                .deleteSurveyResponses("code-test-user");
+
+        userAdminService.deleteUser(study, EMAIL);
+
+        verify(accountDao).deleteAccount(study, EMAIL);
+        verify(cacheProvider).removeSessionByUserId("id-test-user");
+        verify(lockDao).releaseLock(eq(User.class), anyString(), eq("lock-id"));
+    }
+
+    @Test
+    public void failedStepIsRetried() {
+        mockAccount(EMAIL, "test-user");
+        doThrow(new RuntimeException("throttled")).doNothing().when(taskService).deleteTasks("code-test-user");
+
+        userAdminService.deleteUser(study, EMAIL);
+
+        verify(taskService, times(2)).deleteTasks("code-test-user");
+        // Steps that succeeded are not run again.
+        verify(healthDataService, times(1)).deleteRecordsForHealthCode("code-test-user");
+        verify(accountDao).deleteAccount(study, EMAIL);
+    }
+
+    @Test
+    public void accountIsKeptIfDataCannotBeDeleted() {
+        mockAccount(EMAIL, "test-user");
+        doThrow(new RuntimeException("throttled")).when(taskService).deleteTasks("code-test-user");
+
+        try {
+            userAdminService.deleteUser(study, EMAIL);
+            fail("expected exception");
+        } catch(BridgeServiceException e) {
+            // expected
+        }
+        verify(taskService, times(3)).deleteTasks("code-test-user");
+        verify(accountDao, never()).deleteAccount(eq(study), anyString());
+        verify(lockDao).releaseLock(eq(User.class), anyString(), eq("lock-id"));
+    }
+
+    @Test
+    public void deleteAllParticipantsSkipsStaffAndFailures() {
+        Account participant1 = mockAccount("participant1@example.com", "participant1");
+        Account participant2 = mockAccount("participant2@example.com", "participant2");
+        Account testUser = mockAccount("test-user@example.com", "test-user");
+        when(testUser.getRoles()).thenReturn(Sets.newHashSet(Roles.TEST_USERS));
+        Account researcher = mockAccount("researcher@example.com", "researcher");
+        when(researcher.getRoles()).thenReturn(Sets.newHashSet(Roles.RESEARCHER));
+        when(accountDao.getStudyAccounts(study)).thenReturn(
+                Lists.newArrayList(participant1, researcher, participant2, testUser).iterator());
+        doThrow(new RuntimeException("throttled")).when(taskService).deleteTasks("code-participant2");
+
+        assertEquals(2, userAdminService.deleteAllParticipants(study));
+
+        assertEquals(Sets.newHashSet("participant1@example.com", "test-user@example.com"), deletedEmails);
+        verify(consentService, times(3)).withdrawConsent(eq(study), any(User.class));
+    }
+
+    private Account mockAccount(String email, String healthId) {
+        Account account = mock(Account.class);
+        when(account.getId()).thenReturn("id-" + healthId);
+        when(account.getEmail()).thenReturn(email);
+        when(account.getHealthId()).thenReturn(healthId);
+        when(account.getStudyIdentifier()).thenReturn(study.getStudyIdentifier());
+        when(account.getRoles()).thenReturn(Sets.newHashSet());
+        when(accountDao.getAccount(study, email)).thenAnswer(
+                invocation -> deletedEmails.contains(email) ? null : account);
+        return account;
+    }
+
+    private static Object awaitAll(CountDownLatch allStarted) throws InterruptedException {
+        allStarted.countDown();
+        if (!allStarted.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("steps did not run in parallel");
+        }
+        return null;
+    }
+}
@@ -1,35 +1,51 @@
 package org.sagebionetworks.bridge.services.backfill;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.longThat;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hamcrest.Matcher;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sagebionetworks.bridge.dao.BackfillDao;
 import org.sagebionetworks.bridge.dao.DistributedLockDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
 import org.sagebionetworks.bridge.models.backfill.BackfillRecord;
 import org.sagebionetworks.bridge.models.backfill.BackfillStatus;
 import org.sagebionetworks.bridge.models.backfill.BackfillTask;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
 
 public class AsyncBackfillTemplateTest {
 
@@ -60,7 +76,7 @@ public class AsyncBackfillTemplateTest {
 
         // Mock callback
         BackfillCallback callback = mock(BackfillCallback.class);
-        backfillTemplate.backfill(user, taskName, callback);
+        backfillTemplate.backfill(user, taskName, false, callback);
         Thread.sleep(200L);
 
         // Verify callback
@@ -77,6 +93,7 @@ public class AsyncBackfillTemplateTest {
         verify(backfillDao, times(1)).createTask(taskName, user);
         verify(backfillDao, times(1)).updateTaskStatus(taskId, BackfillStatus.IN_PROCESS);
         verify(backfillDao, times(1)).updateTaskStatus(taskId, BackfillStatus.COMPLETED);
+        verify(backfillDao, times(1)).updateTaskHeartbeat(taskId);
     }
 
     @SuppressWarnings("unchecked")
@@ -133,7 +150,7 @@ public class AsyncBackfillTemplateTest {
         // Do backfill
         final long beforeBackfill = DateTime.now(DateTimeZone.UTC).getMillis();
         BackfillCallback callback = mock(BackfillCallback.class);
-        backfillTemplate.backfill(user, taskName, callback);
+        backfillTemplate.backfill(user, taskName, false, callback);
         Thread.sleep(200L);
         final long afterBackfill = DateTime.now(DateTimeZone.UTC).getMillis();
 
@@ -188,13 +205,313 @@ public class AsyncBackfillTemplateTest {
         doThrow(RuntimeException.class).when(backfillTemplate).doBackfill(
                 any(BackfillTask.class), any(BackfillCallback.class));
 
-        backfillTemplate.backfill(user, taskName, callback);
+        backfillTemplate.backfill(user, taskName, false, callback);
         Thread.sleep(200L);
 
         // Verify
         verify(backfillDao, times(1)).updateTaskStatus(taskId, BackfillStatus.FAILED);
     }
 
+    @Test
+    public void resumesFailedTask() throws Exception {
+        final AsyncBackfillTemplate backfillTemplate = new TestBackfillService();
+
+        final DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(TestBackfillService.class, TestBackfillService.class.getSimpleName(),
+                TestBackfillService.EXPIRE)).thenReturn("lock");
+        backfillTemplate.setDistributedLockDao(lockDao);
+        backfillTemplate.setBackfillRecordFactory(new BackfillRecordFactory());
+
+        final String taskName = "taskName";
+        final BackfillTask failedTask = createBackfillTask(taskName, "user", DateTime.now(DateTimeZone.UTC)
+                .getMillis(), "failedTaskId", BackfillStatus.FAILED);
+        BackfillDao backfillDao = mock(BackfillDao.class);
+        doReturn(Collections.singletonList(failedTask)).when(backfillDao).getTasks(eq(taskName), anyLong());
+        backfillTemplate.setBackfillDao(backfillDao);
+
+        BackfillCallback callback = mock(BackfillCallback.class);
+        backfillTemplate.backfill("user", taskName, false, callback);
+        Thread.sleep(200L);
+
+        verify(backfillDao, never()).createTask(any(String.class), any(String.class));
+        verify(callback, times(1)).start(failedTask);
+        verify(backfillDao, times(1)).updateTaskStatus("failedTaskId", BackfillStatus.IN_PROCESS);
+        verify(backfillDao, times(1)).updateTaskStatus("failedTaskId", BackfillStatus.COMPLETED);
+    }
+
+    @Test
+    public void restartIgnoresFailedTask() throws Exception {
+        final AsyncBackfillTemplate backfillTemplate = new TestBackfillService();
+
+        final DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(TestBackfillService.class, TestBackfillService.class.getSimpleName(),
+                TestBackfillService.EXPIRE)).thenReturn("lock");
+        backfillTemplate.setDistributedLockDao(lockDao);
+        backfillTemplate.setBackfillRecordFactory(new BackfillRecordFactory());
+
+        final String taskName = "taskName";
+        final long now = DateTime.now(DateTimeZone.UTC).getMillis();
+        final BackfillTask failedTask = createBackfillTask(taskName, "user", now, "failedTaskId",
+                BackfillStatus.FAILED);
+        final BackfillTask newTask = createBackfillTask(taskName, "user", now, "newTaskId", BackfillStatus.SUBMITTED);
+        BackfillDao backfillDao = mock(BackfillDao.class);
+        doReturn(Collections.singletonList(failedTask)).when(backfillDao).getTasks(eq(taskName), anyLong());
+        when(backfillDao.createTask(taskName, "user")).thenReturn(newTask);
+        backfillTemplate.setBackfillDao(backfillDao);
+
+        BackfillCallback callback = mock(BackfillCallback.class);
+        backfillTemplate.backfill("user", taskName, true, callback);
+        Thread.sleep(200L);
+
+        verify(callback, times(1)).start(newTask);
+        verify(backfillDao, times(1)).updateTaskStatus("newTaskId", BackfillStatus.COMPLETED);
+        verify(backfillDao, never()).updateTaskStatus(eq("failedTaskId"), any(BackfillStatus.class));
+    }
+
+    @Test
+    public void resumesTaskThatStoppedHeartbeating() throws Exception {
+        final AsyncBackfillTemplate backfillTemplate = new TestBackfillService();
+
+        final DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(TestBackfillService.class, TestBackfillService.class.getSimpleName(),
+                TestBackfillService.EXPIRE)).thenReturn("lock");
+        backfillTemplate.setDistributedLockDao(lockDao);
+        backfillTemplate.setBackfillRecordFactory(new BackfillRecordFactory());
+
+        final String taskName = "taskName";
+        final long now = DateTime.now(DateTimeZone.UTC).getMillis();
+        final BackfillTask abandonedTask = createBackfillTask(taskName, "user", now - 60 * 60 * 1000L,
+                "abandonedTaskId", BackfillStatus.IN_PROCESS);
+        BackfillDao backfillDao = mock(BackfillDao.class);
+        doReturn(Collections.singletonList(abandonedTask)).when(backfillDao).getTasks(eq(taskName), anyLong());
+        // The last heartbeat is older than the allowed number of missed heartbeats.
+        when(backfillDao.getTaskHeartbeat("abandonedTaskId")).thenReturn(now - (AsyncBackfillTemplate
+                .MISSED_HEARTBEATS_BEFORE_RESUME + 1) * TestBackfillService.HEARTBEAT_INTERVAL * 1000L);
+        backfillTemplate.setBackfillDao(backfillDao);
+
+        BackfillCallback callback = mock(BackfillCallback.class);
+        backfillTemplate.backfill("user", taskName, false, callback);
+        Thread.sleep(200L);
+
+        verify(backfillDao, never()).createTask(any(String.class), any(String.class));
+        verify(callback, times(1)).start(abandonedTask);
+        verify(backfillDao, times(1)).updateTaskStatus("abandonedTaskId", BackfillStatus.COMPLETED);
+    }
+
+    @Test
+    public void doesNotResumeTaskStillRunningElsewhere() throws Exception {
+        final AsyncBackfillTemplate backfillTemplate = new TestBackfillService();
+
+        // The lock has expired while another node is still running the task.
+        final DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(TestBackfillService.class, TestBackfillService.class.getSimpleName(),
+                TestBackfillService.EXPIRE)).thenReturn("lock");
+        backfillTemplate.setDistributedLockDao(lockDao);
+        backfillTemplate.setBackfillRecordFactory(new BackfillRecordFactory());
+
+        final String taskName = "taskName";
+        final long now = DateTime.now(DateTimeZone.UTC).getMillis();
+        final BackfillTask runningTask = createBackfillTask(taskName, "user", now - 60 * 60 * 1000L,
+                "runningTaskId", BackfillStatus.IN_PROCESS);
+        BackfillDao backfillDao = mock(BackfillDao.class);
+        doReturn(Collections.singletonList(runningTask)).when(backfillDao).getTasks(eq(taskName), anyLong());
+        when(backfillDao.getTaskHeartbeat("runningTaskId")).thenReturn(now);
+        backfillTemplate.setBackfillDao(backfillDao);
+
+        BackfillCallback callback = mock(BackfillCallback.class);
+        backfillTemplate.backfill("user", taskName, false, callback);
+        Thread.sleep(200L);
+
+        verify(backfillDao, never()).createTask(any(String.class), any(String.class));
+        verify(backfillDao, never()).updateTaskStatus(any(String.class), any(BackfillStatus.class));
+        verify(callback, never()).start(any(BackfillTask.class));
+        // The running task is reported instead.
+        verify(backfillDao, times(1)).getRecordCount("runningTaskId");
+        verify(callback, times(1)).newRecords(any(BackfillRecord.class));
+        verify(lockDao, times(1)).releaseLock(TestBackfillService.class, TestBackfillService.class.getSimpleName(),
+                "lock");
+    }
+
+    @Test
+    public void processItemsInParallelFromCheckpoint() throws Exception {
+        final AsyncBackfillTemplate backfillTemplate = new TestBackfillService() {
+            @Override int getParallelism() {
+                return 3;
+            }
+            @Override int getMaxItemsPerSecond() {
+                return 1000;
+            }
+            @Override int getCheckpointInterval() {
+                return 2;
+            }
+        };
+        backfillTemplate.setBackfillRecordFactory(new BackfillRecordFactory());
+        final BackfillTask task = createBackfillTask("taskName", "user", DateTime.now(DateTimeZone.UTC).getMillis(),
+                "taskId", BackfillStatus.IN_PROCESS);
+        BackfillDao backfillDao = mock(BackfillDao.class);
+        when(backfillDao.getTaskCheckpoint("taskId")).thenReturn(2);
+        backfillTemplate.setBackfillDao(backfillDao);
+
+        final Set<String> processed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        List<String> items = ImmutableList.of("a", "b", "c", "d", "e", "f", "g");
+        BackfillCallback callback = mock(BackfillCallback.class);
+        backfillTemplate.processItems(task, callback, items.iterator(), item -> {
+            if ("e".equals(item)) {
+                // One failed item does not stop the backfill.
+                throw new RuntimeException("bad item");
+            }
+            processed.add(item);
+        });
+
+        // Items before the checkpoint are skipped.
+        assertEquals(ImmutableList.of("c", "d", "f", "g"), ImmutableList.copyOf(new TreeSet<>(processed)));
+
+        // The failed item is recorded, and doesn't hold the checkpoint back.
+        verify(callback, times(1)).newRecords(argThat(recordWithMessage("Skipped e: bad item")));
+        ArgumentCaptor<Integer> checkpoints = ArgumentCaptor.forClass(Integer.class);
+        verify(backfillDao, times(3)).updateTaskCheckpoint(eq("taskId"), checkpoints.capture());
+        assertEquals(ImmutableList.of(4, 6, 7), checkpoints.getAllValues());
+    }
+
+    @Test
+    public void processItemsResumesFromCheckpointOnSameInput() throws Exception {
+        final AsyncBackfillTemplate backfillTemplate = new TestBackfillService() {
+            @Override int getMaxItemsPerSecond() {
+                return 1000;
+            }
+        };
+        backfillTemplate.setBackfillRecordFactory(new BackfillRecordFactory());
+        final BackfillTask task = createBackfillTask("taskName", "user", DateTime.now(DateTimeZone.UTC).getMillis(),
+                "taskId", BackfillStatus.IN_PROCESS);
+        BackfillDao backfillDao = mock(BackfillDao.class);
+        when(backfillDao.getTaskCheckpoint("taskId")).thenReturn(2);
+        when(backfillDao.getTaskInputHash("taskId")).thenReturn("hash");
+        backfillTemplate.setBackfillDao(backfillDao);
+
+        final Set<String> processed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        backfillTemplate.processItems(task, mock(BackfillCallback.class), "hash",
+                ImmutableList.of("a", "b", "c").iterator(), processed::add);
+
+        assertEquals(ImmutableList.of("c"), ImmutableList.copyOf(new TreeSet<>(processed)));
+        verify(backfillDao, never()).updateTaskInputHash(any(String.class), any(String.class));
+    }
+
+    @Test
+    public void processItemsStartsOverOnChangedInput() throws Exception {
+        final AsyncBackfillTemplate backfillTemplate = new TestBackfillService() {
+            @Override int getMaxItemsPerSecond() {
+                return 1000;
+            }
+        };
+        backfillTemplate.setBackfillRecordFactory(new BackfillRecordFactory());
+        final BackfillTask task = createBackfillTask("taskName", "user", DateTime.now(DateTimeZone.UTC).getMillis(),
+                "taskId", BackfillStatus.IN_PROCESS);
+        BackfillDao backfillDao = mock(BackfillDao.class);
+        when(backfillDao.getTaskCheckpoint("taskId")).thenReturn(2);
+        when(backfillDao.getTaskInputHash("taskId")).thenReturn("old hash");
+        backfillTemplate.setBackfillDao(backfillDao);
+
+        // The input file was replaced since the task was checkpointed.
+        final Set<String> processed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        backfillTemplate.processItems(task, mock(BackfillCallback.class), "new hash",
+                ImmutableList.of("x", "y", "z").iterator(), processed::add);
+
+        assertEquals(ImmutableList.of("x", "y", "z"), ImmutableList.copyOf(new TreeSet<>(processed)));
+        verify(backfillDao).updateTaskInputHash("taskId", "new hash");
+        verify(backfillDao).updateTaskCheckpoint("taskId", 0);
+    }
+
+    @Test
+    public void processItemsRetriesBusyItems() throws Exception {
+        final AsyncBackfillTemplate backfillTemplate = new TestBackfillService() {
+            @Override int getParallelism() {
+                return 2;
+            }
+            @Override int getMaxItemsPerSecond() {
+                return 1000;
+            }
+            @Override int getCheckpointInterval() {
+                return 2;
+            }
+            @Override int getBusyMaxAttempts() {
+                return 3;
+            }
+            @Override long getBusyInitialBackoffMillis() {
+                return 1;
+            }
+        };
+        backfillTemplate.setBackfillRecordFactory(new BackfillRecordFactory());
+        final BackfillTask task = createBackfillTask("taskName", "user", DateTime.now(DateTimeZone.UTC).getMillis(),
+                "taskId", BackfillStatus.IN_PROCESS);
+        BackfillDao backfillDao = mock(BackfillDao.class);
+        backfillTemplate.setBackfillDao(backfillDao);
+
+        // Item "b" is refused twice, then accepted.
+        final AtomicInteger refusals = new AtomicInteger();
+        final Set<String> processed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        List<String> items = ImmutableList.of("a", "b", "c");
+        backfillTemplate.processItems(task, mock(BackfillCallback.class), items.iterator(), item -> {
+            if ("b".equals(item) && refusals.getAndIncrement() < 2) {
+                throw new ServiceUnavailableException("busy");
+            }
+            processed.add(item);
+        });
+
+        assertEquals(ImmutableList.of("a", "b", "c"), ImmutableList.copyOf(new TreeSet<>(processed)));
+        ArgumentCaptor<Integer> checkpoints = ArgumentCaptor.forClass(Integer.class);
+        verify(backfillDao, times(2)).updateTaskCheckpoint(eq("taskId"), checkpoints.capture());
+        assertEquals(ImmutableList.of(2, 3), checkpoints.getAllValues());
+    }
+
+    @Test
+    public void processItemsGivesUpOnItemThatStaysBusy() throws Exception {
+        final AsyncBackfillTemplate backfillTemplate = new TestBackfillService() {
+            @Override int getParallelism() {
+                return 1;
+            }
+            @Override int getMaxItemsPerSecond() {
+                return 1000;
+            }
+            @Override int getCheckpointInterval() {
+                return 10;
+            }
+            @Override int getBusyMaxAttempts() {
+                return 3;
+            }
+            @Override long getBusyInitialBackoffMillis() {
+                return 1;
+            }
+        };
+        backfillTemplate.setBackfillRecordFactory(new BackfillRecordFactory());
+        final BackfillTask task = createBackfillTask("taskName", "user", DateTime.now(DateTimeZone.UTC).getMillis(),
+                "taskId", BackfillStatus.IN_PROCESS);
+        BackfillDao backfillDao = mock(BackfillDao.class);
+        backfillTemplate.setBackfillDao(backfillDao);
+
+        final AtomicInteger attempts = new AtomicInteger();
+        try {
+            backfillTemplate.processItems(task, mock(BackfillCallback.class), ImmutableList.of("a").iterator(),
+                    item -> {
+                        attempts.incrementAndGet();
+                        throw new RejectedExecutionException();
+                    });
+            fail("expected exception");
+        } catch (BridgeServiceException ex) {
+            // expected
+        }
+        assertEquals(3, attempts.get());
+        verify(backfillDao, never()).updateTaskCheckpoint(any(String.class), anyInt());
+    }
+
+    private static Matcher<BackfillRecord> recordWithMessage(final String message) {
+        return new ArgumentMatcher<BackfillRecord>() {
+            @Override
+            public boolean matches(Object item) {
+                return message.equals(((BackfillRecord) item).toJsonNode().asText());
+            }
+        };
+    }
+
     private BackfillTask createBackfillTask(final String taskName, final String user, final long timestamp,
             final String taskId, final BackfillStatus status) {
         return new BackfillTask() {
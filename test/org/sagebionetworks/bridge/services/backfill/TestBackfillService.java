@@ -22,12 +22,18 @@ public class TestBackfillService extends AsyncBackfillTemplate {
     static final String OPERATION_2 = "recreated";
     static final String OPERATION_3 = "deleted";
     static final int EXPIRE = 60;
+    static final long HEARTBEAT_INTERVAL = 60;
 
     @Override
     int getLockExpireInSeconds() {
         return EXPIRE;
     }
 
+    @Override
+    long getHeartbeatIntervalInSeconds() {
+        return HEARTBEAT_INTERVAL;
+    }
+
     @Override
     void doBackfill(final BackfillTask task, final BackfillCallback callback) {
 
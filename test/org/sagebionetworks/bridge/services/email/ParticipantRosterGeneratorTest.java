@@ -1,14 +1,19 @@
 package org.sagebionetworks.bridge.services.email;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNull;
-import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -16,9 +21,7 @@ import org.mockito.ArgumentCaptor;
 import org.sagebionetworks.bridge.TestUtils;
 import org.sagebionetworks.bridge.dao.ParticipantOption;
 import org.sagebionetworks.bridge.dao.ParticipantOption.SharingScope;
-import org.sagebionetworks.bridge.dynamodb.OptionLookup;
 import org.sagebionetworks.bridge.models.accounts.Account;
-import org.sagebionetworks.bridge.models.accounts.HealthId;
 import org.sagebionetworks.bridge.models.studies.ConsentSignature;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyParticipant;
@@ -27,6 +30,7 @@ import org.sagebionetworks.bridge.services.ParticipantOptionsService;
 import org.sagebionetworks.bridge.services.ParticipantRosterGenerator;
 import org.sagebionetworks.bridge.services.SendMailService;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
@@ -44,6 +48,8 @@ public class ParticipantRosterGeneratorTest {
     
     private ParticipantOptionsService optionsService;
     
+    private String tsv;
+    
     @Before
     public void before() {
         study = TestUtils.getValidStudy(ParticipantRosterGeneratorTest.class);
@@ -57,23 +63,14 @@ public class ParticipantRosterGeneratorTest {
         healthCodeService = mock(HealthCodeService.class);
         optionsService = mock(ParticipantOptionsService.class);
         
-        HealthId healthId = new HealthId() {
-            @Override public String getId() {
-                return "healthId";
-            }
-            @Override public String getCode() {
-                return "healthCode";
-            }
-        };
-        
-        OptionLookup emailLookup = mock(OptionLookup.class);
-        when(emailLookup.get(anyString())).thenReturn(Boolean.TRUE.toString());
-        when(optionsService.getOptionForAllStudyParticipants(study, ParticipantOption.EMAIL_NOTIFICATIONS)).thenReturn(emailLookup);
-
-        OptionLookup sharingLookup = mock(OptionLookup.class);
-        when(sharingLookup.getSharingScope(anyString())).thenReturn(SharingScope.ALL_QUALIFIED_RESEARCHERS);
-        when(healthCodeService.getMapping(anyString())).thenReturn(healthId);
-        when(optionsService.getOptionForAllStudyParticipants(study, ParticipantOption.SHARING_SCOPE)).thenReturn(sharingLookup);
+        Map<String, String> healthCodes = ImmutableMap.of("zanadine@test.com", "healthCode1",
+                "first.last@test.com", "healthCode2");
+        when(healthCodeService.getHealthCodes(anyCollectionOf(String.class))).thenReturn(healthCodes);
+        Map<ParticipantOption, String> participantOptions = ImmutableMap.of(
+                ParticipantOption.SHARING_SCOPE, SharingScope.ALL_QUALIFIED_RESEARCHERS.name(),
+                ParticipantOption.EMAIL_NOTIFICATIONS, Boolean.TRUE.toString());
+        when(optionsService.getAllParticipantOptions(anyCollectionOf(String.class))).thenReturn(ImmutableMap.of(
+                "healthCode1", participantOptions, "healthCode2", participantOptions));
         
         Account account1 = createAccount("zanadine@test.com", "FirstZ", "LastZ", "(206) 333-444", true);
         Account account2 = createAccount("first.last@test.com", "First", "Last", "(206) 111-2222", true);
@@ -82,6 +79,12 @@ public class ParticipantRosterGeneratorTest {
         
         Iterator<Account> iterator = Lists.newArrayList(account1, account2, account3).iterator();
         
+        // The roster file is deleted once the email is sent, so read it while sending.
+        doAnswer(invocation -> {
+            tsv = ((ParticipantRosterProvider)invocation.getArguments()[0]).createParticipantTSV();
+            return CompletableFuture.completedFuture(null);
+        }).when(sendMailService).sendEmail(any(MimeTypeEmailProvider.class));
+        
         generator = new ParticipantRosterGenerator(iterator, study, sendMailService, healthCodeService, optionsService);
     }
     
@@ -92,23 +95,47 @@ public class ParticipantRosterGeneratorTest {
         
         ParticipantRosterProvider provider = argument.getValue();
         
-        List<StudyParticipant> participants = provider.getParticipants();
-        
         // They're all there
-        assertEquals(2, participants.size());
+        assertEquals(2, provider.getParticipantCount());
         
-        // Should be sorted by email addresses
-        assertEquals("first.last@test.com", participants.get(0).getEmail());
-        assertEquals("zanadine@test.com", participants.get(1).getEmail());
+        // Should be sorted by email addresses, and fully realized
+        String[] rows = tsv.split("\n");
+        assertEquals(3, rows.length);
+        assertEquals(ParticipantRosterProvider.createHeaderRow(study), rows[0]);
+        assertRow(rows[1], "first.last@test.com", "First", "Last", "(206) 111-2222");
+        assertRow(rows[2], "zanadine@test.com", "FirstZ", "LastZ", "(206) 333-444");
+    }
+    
+    @Test
+    public void generatorReadsAccountsInBatches() {
+        List<Account> accounts = Lists.newArrayList();
+        for (int i=0; i < ParticipantRosterGenerator.BATCH_SIZE + 1; i++) {
+            accounts.add(createAccount("user"+i+"@test.com", "First", "Last", null, true));
+        }
+        generator = new ParticipantRosterGenerator(accounts.iterator(), study, sendMailService, healthCodeService,
+                optionsService);
+        generator.run();
         
-        // These objects should be fully realized
-        StudyParticipant p = participants.get(0);
-        assertEquals("First", p.getFirstName());
-        assertEquals("Last", p.getLastName());
-        assertEquals("first.last@test.com", p.getEmail());
-        assertEquals("(206) 111-2222", p.get("phone"));
-        assertEquals("true", p.get("can_recontact"));
-        assertNull(p.get("another_attribute"));
+        verify(healthCodeService, times(2)).getHealthCodes(anyCollectionOf(String.class));
+        // Options are read for each batch, never for the whole study.
+        verify(optionsService, times(2)).getAllParticipantOptions(anyCollectionOf(String.class));
+        verify(optionsService, never()).getOptionForAllStudyParticipants(any(Study.class),
+                any(ParticipantOption.class));
+        verify(sendMailService).sendEmail(argument.capture());
+        assertEquals(ParticipantRosterGenerator.BATCH_SIZE + 1, argument.getValue().getParticipantCount());
+        assertEquals(ParticipantRosterGenerator.BATCH_SIZE + 2, tsv.split("\n").length);
+    }
+    
+    private void assertRow(String row, String email, String firstName, String lastName, String phone) {
+        StudyParticipant participant = new StudyParticipant();
+        participant.setEmail(email);
+        participant.setFirstName(firstName);
+        participant.setLastName(lastName);
+        participant.setSharingScope(SharingScope.ALL_QUALIFIED_RESEARCHERS);
+        participant.setNotifyByEmail(Boolean.TRUE);
+        participant.put("phone", phone);
+        participant.put("can_recontact", "true");
+        assertEquals(ParticipantRosterProvider.createParticipantRow(study, participant), row);
     }
 
     private Account createAccount(String email, String firstName, String lastName, String phone, boolean hasConsented) {
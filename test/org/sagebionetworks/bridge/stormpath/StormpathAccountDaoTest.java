@@ -200,6 +200,7 @@ public class StormpathAccountDaoTest {
     @Test
     public void verifyEmail() {
         StormpathAccountDao dao = new StormpathAccountDao();
+        dao.setResourceCache(new StormpathResourceCache());
         
         EmailVerification verification = new EmailVerification("tokenAAA");
         
@@ -222,6 +223,7 @@ public class StormpathAccountDaoTest {
         when(client.getResource(study.getStormpathHref(), Directory.class)).thenReturn(directory);
         
         StormpathAccountDao dao = new StormpathAccountDao();
+        dao.setResourceCache(new StormpathResourceCache());
         dao.setStormpathApplication(application);
         dao.setStormpathClient(client);
         
@@ -241,6 +243,7 @@ public class StormpathAccountDaoTest {
         when(client.getResource(study.getStormpathHref(), Directory.class)).thenReturn(directory);
         
         StormpathAccountDao dao = new StormpathAccountDao();
+        dao.setResourceCache(new StormpathResourceCache());
         dao.setStormpathApplication(application);
         dao.setStormpathClient(client);
         
@@ -255,6 +258,7 @@ public class StormpathAccountDaoTest {
     @Test
     public void resetPassword() {
         StormpathAccountDao dao = new StormpathAccountDao();
+        dao.setResourceCache(new StormpathResourceCache());
         PasswordReset passwordReset = new PasswordReset("password", "sptoken");
         
         Application application = mock(Application.class);
@@ -268,6 +272,7 @@ public class StormpathAccountDaoTest {
     @Test
     public void stormpathAccountCorrectlyInitialized() {
         StormpathAccountDao dao = new StormpathAccountDao();
+        dao.setResourceCache(new StormpathResourceCache());
         
         Directory directory = mock(Directory.class);
         com.stormpath.sdk.account.Account account = mock(com.stormpath.sdk.account.Account.class);
@@ -83,6 +83,7 @@ public class StormpathAccountIteratorTest {
         
         accountDao.setStormpathClient(client);
         accountDao.setStudyService(studyService);
+        accountDao.setResourceCache(new StormpathResourceCache());
         return accountDao;
     }
     
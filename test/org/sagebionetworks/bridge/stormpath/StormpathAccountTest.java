@@ -234,4 +234,22 @@ public class StormpathAccountTest {
         assertEquals(1, acct.getRoles().size());
         assertEquals(DEVELOPER, acct.getRoles().iterator().next());
     }
+    
+    @Test
+    public void copyCanBeChangedWithoutChangingOriginal() {
+        acct.getRoles().add(DEVELOPER);
+        Account copiedAccount = mock(Account.class);
+        StubCustomData copiedData = new StubCustomData();
+        when(copiedAccount.getCustomData()).thenReturn(copiedData);
+        
+        StormpathAccount copy = new StormpathAccount(acct, copiedAccount);
+        copy.setFirstName("Test");
+        copy.setAttribute("phone", "555-555-5555");
+        copy.getRoles().clear();
+        
+        verify(copiedAccount).setGivenName("Test");
+        assertEquals("555-555-5555", copy.getAttribute("phone"));
+        assertTrue(data.isEmpty());
+        assertEquals(1, acct.getRoles().size());
+    }
 }
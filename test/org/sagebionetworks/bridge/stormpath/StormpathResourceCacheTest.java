@@ -0,0 +1,143 @@
+package org.sagebionetworks.bridge.stormpath;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.cache.CacheInvalidationChannel;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
+import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+
+import com.google.common.collect.ImmutableMap;
+import com.stormpath.sdk.directory.Directory;
+import com.stormpath.sdk.group.Group;
+
+public class StormpathResourceCacheTest {
+    private static final StudyIdentifier STUDY_ID = new StudyIdentifierImpl("test-study");
+    private static final String DIRECTORY_HREF = "https://api.stormpath.com/v1/directories/test-directory";
+
+    private UnaryOperator<Account> copier;
+    private CacheInvalidationChannel mockChannel;
+    private MetricsRegistry metricsRegistry;
+    private StormpathResourceCache cache;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void before() {
+        copier = mock(UnaryOperator.class);
+        when(copier.apply(any())).thenAnswer(invocation -> mock(Account.class));
+        mockChannel = mock(CacheInvalidationChannel.class);
+        metricsRegistry = new MetricsRegistry();
+        cache = new StormpathResourceCache();
+        cache.setInvalidationChannel(mockChannel);
+        cache.setMetricsRegistry(metricsRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void directoryIsCachedByHref() {
+        Directory directory = mock(Directory.class);
+        Supplier<Directory> mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn(directory);
+
+        assertSame(directory, cache.getDirectory(DIRECTORY_HREF, mockLoader));
+        assertSame(directory, cache.getDirectory(DIRECTORY_HREF, mockLoader));
+        verify(mockLoader, times(1)).get();
+
+        String text = metricsRegistry.toPrometheusText();
+        assertTrue(text.contains("bridge_cache_requests_total{cache=\"stormpath_directory\",result=\"hit\"} 1\n"));
+        assertTrue(text.contains("bridge_cache_requests_total{cache=\"stormpath_directory\",result=\"miss\"} 1\n"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void groupsAreCachedByDirectoryHref() {
+        Map<String, Group> groups = ImmutableMap.of("admin", mock(Group.class));
+        Supplier<Map<String, Group>> mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn(groups);
+
+        assertSame(groups, cache.getGroups(DIRECTORY_HREF, mockLoader));
+        assertSame(groups, cache.getGroups(DIRECTORY_HREF, mockLoader));
+        verify(mockLoader, times(1)).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void accountIsCachedUntilRemoved() {
+        Account account = mock(Account.class);
+        Supplier<Account> mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn(account);
+
+        Account copy = cache.getAccount(STUDY_ID, "Test@Example.com", mockLoader, copier);
+        verify(copier).apply(account);
+        // Emails are matched without regard to case.
+        cache.getAccount(STUDY_ID, "test@example.com", mockLoader, copier);
+        verify(mockLoader, times(1)).get();
+        verify(copier, times(2)).apply(account);
+        assertNotSame(account, copy);
+
+        cache.removeAccount(STUDY_ID, "TEST@example.com");
+        verify(mockChannel).publish("test-study:test@example.com");
+        cache.getAccount(STUDY_ID, "test@example.com", mockLoader, copier);
+        verify(mockLoader, times(2)).get();
+
+        String text = metricsRegistry.toPrometheusText();
+        assertTrue(text.contains("bridge_cache_requests_total{cache=\"stormpath_account\",result=\"hit\"} 1\n"));
+        assertTrue(text.contains("bridge_cache_requests_total{cache=\"stormpath_account\",result=\"miss\"} 2\n"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void eachCallerGetsItsOwnCopy() {
+        Supplier<Account> mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn(mock(Account.class));
+
+        Account first = cache.getAccount(STUDY_ID, "test@example.com", mockLoader, copier);
+        Account second = cache.getAccount(STUDY_ID, "test@example.com", mockLoader, copier);
+        assertNotSame(first, second);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void missingAccountIsNotCached() {
+        Supplier<Account> mockLoader = mock(Supplier.class);
+
+        assertNull(cache.getAccount(STUDY_ID, "test@example.com", mockLoader, copier));
+        assertNull(cache.getAccount(STUDY_ID, "test@example.com", mockLoader, copier));
+        verify(mockLoader, times(2)).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void staleAccountLoadIsNotCached() {
+        Account account = mock(Account.class);
+        // The account is updated while it is being loaded.
+        Supplier<Account> racingLoader = () -> {
+            cache.removeAccount(STUDY_ID, "test@example.com");
+            return account;
+        };
+        // The load isn't cached, so the caller can have it as is.
+        assertSame(account, cache.getAccount(STUDY_ID, "test@example.com", racingLoader, copier));
+
+        Supplier<Account> mockLoader = mock(Supplier.class);
+        when(mockLoader.get()).thenReturn(account);
+        cache.getAccount(STUDY_ID, "test@example.com", mockLoader, copier);
+        verify(mockLoader).get();
+        verify(mockChannel, times(1)).publish(any());
+    }
+}
@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.upload;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -26,7 +27,8 @@ public class DecryptHandlerTest {
 
         // mock UploadArchiveService
         UploadArchiveService mockSvc = mock(UploadArchiveService.class);
-        when(mockSvc.decrypt(study.getIdentifier(), ctx.getData())).thenReturn("decrypted test data".getBytes(Charsets.UTF_8));
+        byte[] data = ctx.getData();
+        when(mockSvc.decrypt(study.getIdentifier(), data)).thenReturn("decrypted test data".getBytes(Charsets.UTF_8));
 
         // set up test handler
         DecryptHandler handler = new DecryptHandler();
@@ -35,5 +37,6 @@ public class DecryptHandlerTest {
         // execute and validate
         handler.handle(ctx);
         assertEquals("decrypted test data", new String(ctx.getDecryptedData(), Charsets.UTF_8));
+        assertNull(ctx.getData());
     }
 }
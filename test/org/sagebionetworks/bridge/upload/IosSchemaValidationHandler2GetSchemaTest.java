@@ -13,6 +13,7 @@ import org.joda.time.DateTime;
 import org.junit.Test;
 
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.cache.UploadSchemaCache;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurvey;
 import org.sagebionetworks.bridge.dynamodb.DynamoUploadSchema;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
@@ -50,6 +51,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
+        handler.setUploadSchemaCache(new UploadSchemaCache());
         handler.setDefaultSchemaRevisionMap(DEFAULT_SCHEMA_REV_MAP);
         handler.setSurveyService(mockSurveyService);
         handler.setUploadSchemaService(mockSchemaSvc);
@@ -78,6 +80,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
+        handler.setUploadSchemaCache(new UploadSchemaCache());
         handler.setDefaultSchemaRevisionMap(DEFAULT_SCHEMA_REV_MAP);
         handler.setSurveyService(mockSurveyService);
 
@@ -104,6 +107,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
+        handler.setUploadSchemaCache(new UploadSchemaCache());
         handler.setDefaultSchemaRevisionMap(DEFAULT_SCHEMA_REV_MAP);
         handler.setSurveyService(mockSurveyService);
 
@@ -126,6 +130,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
+        handler.setUploadSchemaCache(new UploadSchemaCache());
         handler.setDefaultSchemaRevisionMap(DEFAULT_SCHEMA_REV_MAP);
         handler.setUploadSchemaService(mockSchemaSvc);
 
@@ -148,6 +153,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
+        handler.setUploadSchemaCache(new UploadSchemaCache());
         handler.setDefaultSchemaRevisionMap(DEFAULT_SCHEMA_REV_MAP);
         handler.setUploadSchemaService(mockSchemaSvc);
 
@@ -170,6 +176,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
+        handler.setUploadSchemaCache(new UploadSchemaCache());
         handler.setDefaultSchemaRevisionMap(DEFAULT_SCHEMA_REV_MAP);
         handler.setUploadSchemaService(mockSchemaSvc);
 
@@ -193,6 +200,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
+        handler.setUploadSchemaCache(new UploadSchemaCache());
         handler.setDefaultSchemaRevisionMap(DEFAULT_SCHEMA_REV_MAP);
         handler.setUploadSchemaService(mockSchemaSvc);
 
@@ -19,6 +19,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import org.sagebionetworks.bridge.BridgeConstants;
+import org.sagebionetworks.bridge.cache.UploadSchemaCache;
 import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurvey;
 import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
@@ -168,6 +169,7 @@ public class IosSchemaValidationHandler2Test {
 
         // set up handler
         handler = new IosSchemaValidationHandler2();
+        handler.setUploadSchemaCache(new UploadSchemaCache());
         handler.setUploadSchemaService(mockSchemaService);
         handler.setDefaultSchemaRevisionMap(DEFAULT_SCHEMA_REV_MAP);
 
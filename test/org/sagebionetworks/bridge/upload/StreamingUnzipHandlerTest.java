@@ -0,0 +1,54 @@
+package org.sagebionetworks.bridge.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.InputStream;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Charsets;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.services.UploadArchiveService;
+import org.sagebionetworks.bridge.util.Zipper;
+
+public class StreamingUnzipHandlerTest {
+    @Test
+    public void test() throws Exception {
+        // inputs
+        UploadValidationContext ctx = new UploadValidationContext();
+        ctx.setDecryptedData("zipped test data".getBytes(Charsets.UTF_8));
+
+        // mock UploadArchiveService to stream two entries, one JSON and one not
+        UploadArchiveService mockSvc = mock(UploadArchiveService.class);
+        doAnswer(invocation -> {
+            Zipper.EntryConsumer consumer = invocation.getArgumentAt(1, Zipper.EntryConsumer.class);
+            consumer.accept("foo", "{\"isJson\":true}".getBytes(Charsets.UTF_8));
+            consumer.accept("bar", "This is not JSON".getBytes(Charsets.UTF_8));
+            return null;
+        }).when(mockSvc).unzip(any(InputStream.class), any(Zipper.EntryConsumer.class));
+
+        // set up test handler
+        StreamingUnzipHandler handler = new StreamingUnzipHandler();
+        handler.setUploadArchiveService(mockSvc);
+
+        // execute and validate
+        handler.handle(ctx);
+
+        Map<String, byte[]> byteMap = ctx.getUnzippedDataMap();
+        assertEquals(1, byteMap.size());
+        assertEquals("This is not JSON", new String(byteMap.get("bar"), Charsets.UTF_8));
+
+        Map<String, JsonNode> jsonDataMap = ctx.getJsonDataMap();
+        assertEquals(1, jsonDataMap.size());
+        assertTrue(jsonDataMap.get("foo").get("isJson").booleanValue());
+
+        // archive bytes are released
+        assertNull(ctx.getDecryptedData());
+    }
+}
@@ -23,6 +23,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.cache.UploadSchemaCache;
 import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataRecord;
 import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
 import org.sagebionetworks.bridge.dynamodb.DynamoUploadFieldDefinition;
@@ -45,6 +46,7 @@ public class StrictValidationHandlerTest {
         // Mock out shouldThrow to always return true. This forces strict validation in tests, which is what we want.
         // TODO: replace this when we implement per-study config lookup
         handler = spy(new StrictValidationHandler());
+        handler.setUploadSchemaCache(new UploadSchemaCache());
         doReturn(true).when(handler).shouldThrow(notNull(StudyIdentifier.class));
 
         // Set up common context attributes.
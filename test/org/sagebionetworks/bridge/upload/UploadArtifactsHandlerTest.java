@@ -1,19 +1,32 @@
 package org.sagebionetworks.bridge.upload;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Charsets;
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
@@ -33,8 +46,6 @@ import org.sagebionetworks.bridge.s3.S3Helper;
 import org.sagebionetworks.bridge.services.HealthDataService;
 
 public class UploadArtifactsHandlerTest {
-    private static final String ATTACHMENT_ID_BAR = "attachment-bar";
-    private static final String ATTACHMENT_ID_FOO = "attachment-foo";
     private static final String ATTACHMENT_TEXT_BAR = "This is bar";
     private static final String ATTACHMENT_TEXT_FOO = "This is foo";
     private static final byte[] BYTES_BAR = ATTACHMENT_TEXT_BAR.getBytes(Charsets.UTF_8);
@@ -42,48 +53,44 @@ public class UploadArtifactsHandlerTest {
     private static final String TEST_RECORD_ID = "test-record";
     private static final String TEST_UPLOAD_ID = "test-upload";
 
+    private ExecutorService executorService;
+
+    @Before
+    public void before() {
+        executorService = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void after() {
+        executorService.shutdown();
+    }
+
     @Test
     public void test() throws Exception {
-        // Intermediate record w/o attachments.
+        // Record w/o attachments.
         String dataJsonText = "{\n" +
                 "   \"json.json.string\":\"This is a string\",\n" +
                 "   \"json.json.int\":42\n" +
                 "}";
         JsonNode dataJson = BridgeObjectMapper.get().readTree(dataJsonText);
-        HealthDataRecord intermediateRecord = createValidRecordBuilder(dataJson).withId(TEST_RECORD_ID).build();
 
         // mock health data service
-        HealthDataService mockHealthDataService = mock(HealthDataService.class);
+        HealthDataService mockHealthDataService = mockHealthDataService();
 
         ArgumentCaptor<HealthDataRecord> createRecordArgCaptor = ArgumentCaptor.forClass(HealthDataRecord.class);
         when(mockHealthDataService.createOrUpdateRecord(createRecordArgCaptor.capture())).thenReturn(TEST_RECORD_ID);
 
         ArgumentCaptor<HealthDataAttachment> createAttachmentArgCaptor = ArgumentCaptor.forClass(
                 HealthDataAttachment.class);
-        when(mockHealthDataService.createOrUpdateAttachment(createAttachmentArgCaptor.capture())).thenReturn(
-                ATTACHMENT_ID_BAR, ATTACHMENT_ID_FOO);
-
-        when(mockHealthDataService.getRecordById(TEST_RECORD_ID)).thenReturn(intermediateRecord);
-
-        when(mockHealthDataService.getAttachmentBuilder()).thenAnswer(new Answer<HealthDataAttachmentBuilder>() {
-            @Override
-            public HealthDataAttachmentBuilder answer(InvocationOnMock invocation) {
-                return new DynamoHealthDataAttachment.Builder();
-            }
-        });
-
-        when(mockHealthDataService.getRecordBuilder()).thenAnswer(new Answer<HealthDataRecordBuilder>() {
-            @Override
-            public HealthDataRecordBuilder answer(InvocationOnMock invocation) {
-                return new DynamoHealthDataRecord.Builder();
-            }
-        });
+        when(mockHealthDataService.createOrUpdateAttachment(createAttachmentArgCaptor.capture())).thenAnswer(
+                invocation -> ((HealthDataAttachment) invocation.getArguments()[0]).getId());
 
         // mock S3 helper
         S3Helper mockS3Helper = mock(S3Helper.class);
 
         // set up handler
         UploadArtifactsHandler handler = new UploadArtifactsHandler();
+        handler.setExecutorService(executorService);
         handler.setHealthDataService(mockHealthDataService);
         handler.setS3Helper(mockS3Helper);
 
@@ -94,55 +101,46 @@ public class UploadArtifactsHandlerTest {
         attachmentMap.put("bar.txt", "This is bar".getBytes(Charsets.UTF_8));
         attachmentMap.put("foo.txt", "This is foo".getBytes(Charsets.UTF_8));
 
-        // Most important thing in the record builder is the data map. It's the same as the one we expect back in the
-        // intermediate record
-        HealthDataRecordBuilder recordBuilder = createValidRecordBuilder(dataJson);
-
-        // only need upload ID from upload
-        DynamoUpload2 upload = new DynamoUpload2();
-        upload.setUploadId(TEST_UPLOAD_ID);
-
-        UploadValidationContext context = new UploadValidationContext();
-        context.setAttachmentsByFieldName(attachmentMap);
-        context.setHealthDataRecordBuilder(recordBuilder);
-        context.setUpload(upload);
+        UploadValidationContext context = makeContext(createValidRecordBuilder(dataJson), attachmentMap);
 
         // execute
         handler.handle(context);
 
-        // validate result - create record
-        List<HealthDataRecord> createRecordArgList = createRecordArgCaptor.getAllValues();
-        assertEquals(2, createRecordArgList.size());
-
-        // First record is the intermediate record. This will have data, but no record ID, since record ID is assigned
-        // by this call.
-        HealthDataRecord createIntermediateRecordArg = createRecordArgList.get(0);
-        JsonNode createIntermediateRecordDataJson = createIntermediateRecordArg.getData();
-        assertEquals(2, createIntermediateRecordDataJson.size());
-        assertEquals("This is a string", createIntermediateRecordDataJson.get("json.json.string").textValue());
-        assertEquals(42, createIntermediateRecordDataJson.get("json.json.int").intValue());
-
-        // Second record is the final record. This has data (with attachments) and record ID;
-        HealthDataRecord createFinalRecordArg = createRecordArgList.get(1);
-        assertEquals(TEST_RECORD_ID, createFinalRecordArg.getId());
-        JsonNode createFinalRecordDataJson = createFinalRecordArg.getData();
-        assertEquals(4, createFinalRecordDataJson.size());
-        assertEquals("This is a string", createFinalRecordDataJson.get("json.json.string").textValue());
-        assertEquals(42, createFinalRecordDataJson.get("json.json.int").intValue());
-        assertEquals(ATTACHMENT_ID_BAR, createFinalRecordDataJson.get("bar.txt").textValue());
-        assertEquals(ATTACHMENT_ID_FOO, createFinalRecordDataJson.get("foo.txt").textValue());
-
-        // validate - create attachment. The order doesn't matter, since the call to create
-        // attachment only includes the record ID, which is the same for all attachments in a given record.
+        // validate - create attachment. Attachment IDs are generated by the handler, and all attachments point at
+        // the same record.
         List<HealthDataAttachment> createAttachmentArgList = createAttachmentArgCaptor.getAllValues();
         assertEquals(2, createAttachmentArgList.size());
+        Map<String, String> attachmentIdsByData = new HashMap<>();
+        String recordId = createAttachmentArgList.get(0).getRecordId();
+        assertNotNull(recordId);
         for (HealthDataAttachment oneAttachment : createAttachmentArgList) {
-            assertEquals(TEST_RECORD_ID, oneAttachment.getRecordId());
+            assertEquals(recordId, oneAttachment.getRecordId());
+            assertNotNull(oneAttachment.getId());
         }
 
-        // validate - S3 uploads
-        verify(mockS3Helper).writeBytesToS3(TestConstants.ATTACHMENT_BUCKET, ATTACHMENT_ID_BAR, BYTES_BAR);
-        verify(mockS3Helper).writeBytesToS3(TestConstants.ATTACHMENT_BUCKET, ATTACHMENT_ID_FOO, BYTES_FOO);
+        // validate - S3 uploads, keyed by attachment ID
+        ArgumentCaptor<String> s3KeyCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<byte[]> s3DataCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(mockS3Helper, times(2)).writeBytesToS3(eq(TestConstants.ATTACHMENT_BUCKET), s3KeyCaptor.capture(),
+                s3DataCaptor.capture());
+        for (int i = 0; i < 2; i++) {
+            attachmentIdsByData.put(new String(s3DataCaptor.getAllValues().get(i), Charsets.UTF_8),
+                    s3KeyCaptor.getAllValues().get(i));
+        }
+
+        // validate - the record is written exactly once, with the record ID and the attachment IDs, and is never
+        // read back
+        List<HealthDataRecord> createRecordArgList = createRecordArgCaptor.getAllValues();
+        assertEquals(1, createRecordArgList.size());
+        HealthDataRecord createRecordArg = createRecordArgList.get(0);
+        assertEquals(recordId, createRecordArg.getId());
+        JsonNode createRecordDataJson = createRecordArg.getData();
+        assertEquals(4, createRecordDataJson.size());
+        assertEquals("This is a string", createRecordDataJson.get("json.json.string").textValue());
+        assertEquals(42, createRecordDataJson.get("json.json.int").intValue());
+        assertEquals(attachmentIdsByData.get(ATTACHMENT_TEXT_BAR), createRecordDataJson.get("bar.txt").textValue());
+        assertEquals(attachmentIdsByData.get(ATTACHMENT_TEXT_FOO), createRecordDataJson.get("foo.txt").textValue());
+        verify(mockHealthDataService, never()).getRecordById(anyString());
 
         // validate record ID in the context
         assertEquals(TEST_RECORD_ID, context.getRecordId());
@@ -151,6 +149,78 @@ public class UploadArtifactsHandlerTest {
         assertTrue(context.getMessageList().isEmpty());
     }
 
+    @Test
+    public void noAttachments() throws Exception {
+        HealthDataService mockHealthDataService = mockHealthDataService();
+        ArgumentCaptor<HealthDataRecord> createRecordArgCaptor = ArgumentCaptor.forClass(HealthDataRecord.class);
+        when(mockHealthDataService.createOrUpdateRecord(createRecordArgCaptor.capture())).thenReturn(TEST_RECORD_ID);
+
+        UploadArtifactsHandler handler = new UploadArtifactsHandler();
+        handler.setExecutorService(executorService);
+        handler.setHealthDataService(mockHealthDataService);
+        handler.setS3Helper(mock(S3Helper.class));
+
+        UploadValidationContext context = makeContext(createValidRecordBuilder(
+                BridgeObjectMapper.get().createObjectNode()), new TreeMap<>());
+        handler.handle(context);
+
+        assertEquals(1, createRecordArgCaptor.getAllValues().size());
+        assertNotNull(createRecordArgCaptor.getValue().getId());
+        verify(mockHealthDataService, never()).createOrUpdateAttachment(any(HealthDataAttachment.class));
+        assertEquals(TEST_RECORD_ID, context.getRecordId());
+    }
+
+    @Test
+    public void s3ErrorIsRecordedInContext() throws Exception {
+        HealthDataService mockHealthDataService = mockHealthDataService();
+        when(mockHealthDataService.createOrUpdateRecord(any(HealthDataRecord.class))).thenReturn(TEST_RECORD_ID);
+
+        S3Helper mockS3Helper = mock(S3Helper.class);
+        doThrow(IOException.class).when(mockS3Helper).writeBytesToS3(eq(TestConstants.ATTACHMENT_BUCKET),
+                anyString(), eq(BYTES_FOO));
+
+        UploadArtifactsHandler handler = new UploadArtifactsHandler();
+        handler.setExecutorService(executorService);
+        handler.setHealthDataService(mockHealthDataService);
+        handler.setS3Helper(mockS3Helper);
+
+        Map<String, byte[]> attachmentMap = new TreeMap<>();
+        attachmentMap.put("bar.txt", BYTES_BAR);
+        attachmentMap.put("foo.txt", BYTES_FOO);
+        UploadValidationContext context = makeContext(createValidRecordBuilder(
+                BridgeObjectMapper.get().createObjectNode()), attachmentMap);
+        handler.handle(context);
+
+        // The record is still written, and the error is recorded for the failed field only.
+        verify(mockHealthDataService).createOrUpdateRecord(any(HealthDataRecord.class));
+        assertEquals(1, context.getMessageList().size());
+        assertTrue(context.getMessageList().get(0).contains("foo.txt"));
+    }
+
+    private static HealthDataService mockHealthDataService() {
+        HealthDataService mockHealthDataService = mock(HealthDataService.class);
+        when(mockHealthDataService.getAttachmentBuilder()).thenAnswer(new Answer<HealthDataAttachmentBuilder>() {
+            @Override
+            public HealthDataAttachmentBuilder answer(InvocationOnMock invocation) {
+                return new DynamoHealthDataAttachment.Builder();
+            }
+        });
+        return mockHealthDataService;
+    }
+
+    private static UploadValidationContext makeContext(HealthDataRecordBuilder recordBuilder,
+            Map<String, byte[]> attachmentMap) {
+        // only need upload ID from upload
+        DynamoUpload2 upload = new DynamoUpload2();
+        upload.setUploadId(TEST_UPLOAD_ID);
+
+        UploadValidationContext context = new UploadValidationContext();
+        context.setAttachmentsByFieldName(attachmentMap);
+        context.setHealthDataRecordBuilder(recordBuilder);
+        context.setUpload(upload);
+        return context;
+    }
+
     // creates a record builder that has all the valid values filled in, with the data JsonNode specified
     private static HealthDataRecordBuilder createValidRecordBuilder(JsonNode dataNode) {
         // none of these values matter (except data, which is specified), so just fill in whatever
@@ -0,0 +1,161 @@
+package org.sagebionetworks.bridge.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.dao.UploadDao;
+import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.util.TimingStats;
+
+public class UploadValidationSchedulerTest {
+    private UploadValidationScheduler scheduler;
+
+    @After
+    public void after() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void studiesTakeTurns() throws Exception {
+        scheduler = new UploadValidationScheduler(1, 10, 10, UploadValidationScheduler.RejectionPolicy.REJECT);
+
+        // Block the only worker, so everything else queues up behind it.
+        CountDownLatch blockerStarted = new CountDownLatch(1);
+        CountDownLatch releaseBlocker = new CountDownLatch(1);
+        scheduler.submit(makeTask("blocker", "blocker", context -> {
+            blockerStarted.countDown();
+            awaitQuietly(releaseBlocker);
+        }));
+        assertTrue(blockerStarted.await(5, TimeUnit.SECONDS));
+
+        List<String> runOrder = new CopyOnWriteArrayList<>();
+        CountDownLatch allDone = new CountDownLatch(4);
+        UploadValidationHandler recorder = context -> {
+            runOrder.add(context.getUpload().getUploadId());
+            allDone.countDown();
+        };
+        scheduler.submit(makeTask("big-study", "a1", recorder));
+        scheduler.submit(makeTask("big-study", "a2", recorder));
+        scheduler.submit(makeTask("big-study", "a3", recorder));
+        scheduler.submit(makeTask("small-study", "b1", recorder));
+        assertEquals(4, scheduler.getQueueDepth());
+
+        releaseBlocker.countDown();
+        assertTrue(allDone.await(5, TimeUnit.SECONDS));
+
+        // The small study doesn't have to wait for the big study's whole backlog.
+        assertEquals(ImmutableList.of("a1", "b1", "a2", "a3"), runOrder);
+    }
+
+    @Test
+    public void rejectsWhenStudyQueueIsFull() throws Exception {
+        scheduler = new UploadValidationScheduler(1, 10, 1, UploadValidationScheduler.RejectionPolicy.REJECT);
+
+        CountDownLatch blockerStarted = new CountDownLatch(1);
+        CountDownLatch releaseBlocker = new CountDownLatch(1);
+        scheduler.submit(makeTask("study", "blocker", context -> {
+            blockerStarted.countDown();
+            awaitQuietly(releaseBlocker);
+        }));
+        assertTrue(blockerStarted.await(5, TimeUnit.SECONDS));
+
+        UploadValidationHandler noop = context -> {};
+        scheduler.submit(makeTask("study", "queued", noop));
+        try {
+            scheduler.submit(makeTask("study", "rejected", noop));
+            fail("expected exception");
+        } catch (ServiceUnavailableException ex) {
+            // expected exception
+        }
+
+        // Other studies can still queue.
+        scheduler.submit(makeTask("other-study", "queued", noop));
+        assertEquals(2, scheduler.getQueueDepth());
+        assertEquals(1L, scheduler.getStats().get("rejectedCount"));
+        releaseBlocker.countDown();
+    }
+
+    @Test
+    public void callerRunsWhenQueueIsFull() throws Exception {
+        scheduler = new UploadValidationScheduler(1, 1, 1, UploadValidationScheduler.RejectionPolicy.CALLER_RUNS);
+
+        CountDownLatch blockerStarted = new CountDownLatch(1);
+        CountDownLatch releaseBlocker = new CountDownLatch(1);
+        scheduler.submit(makeTask("study", "blocker", context -> {
+            blockerStarted.countDown();
+            awaitQuietly(releaseBlocker);
+        }));
+        assertTrue(blockerStarted.await(5, TimeUnit.SECONDS));
+        scheduler.submit(makeTask("study", "queued", context -> {}));
+
+        // Queue is full, so this runs on the test thread.
+        List<String> threadNames = new CopyOnWriteArrayList<>();
+        scheduler.submit(makeTask("study", "caller-runs", context -> threadNames.add(
+                Thread.currentThread().getName())));
+        assertEquals(ImmutableList.of(Thread.currentThread().getName()), threadNames);
+        releaseBlocker.countDown();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void recordsStats() throws Exception {
+        scheduler = new UploadValidationScheduler(2, 10, 10, UploadValidationScheduler.RejectionPolicy.REJECT);
+
+        CountDownLatch done = new CountDownLatch(1);
+        UploadValidationHandler handler = context -> done.countDown();
+        scheduler.submit(makeTask("study", "upload", handler));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // Stats are recorded after the handler returns, so give the worker a moment to finish.
+        Map<String, TimingStats> handlerStats = null;
+        for (int i = 0; i < 50; i++) {
+            handlerStats = (Map<String, TimingStats>) scheduler.getStats().get("handlers");
+            if (!handlerStats.isEmpty()) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertEquals(1, handlerStats.size());
+        assertEquals(1, handlerStats.get(handler.getClass().getName()).getCount());
+        assertEquals(1, ((TimingStats) scheduler.getStats().get("queueWait")).getCount());
+        assertEquals(2, scheduler.getStats().get("workerCount"));
+    }
+
+    private static UploadValidationTask makeTask(String studyId, String uploadId, UploadValidationHandler handler) {
+        DynamoUpload2 upload = new DynamoUpload2();
+        upload.setUploadId(uploadId);
+
+        UploadValidationContext context = new UploadValidationContext();
+        context.setStudy(new StudyIdentifierImpl(studyId));
+        context.setUpload(upload);
+
+        UploadValidationTask task = new UploadValidationTask(context);
+        task.setHandlerList(ImmutableList.of(handler));
+        task.setUploadDao(mock(UploadDao.class));
+        return task;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.sagebionetworks.bridge.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Comparator;
+
+import org.junit.Test;
+
+public class ExternalLineSorterTest {
+
+    @Test
+    public void sortsInMemory() throws IOException {
+        try (ExternalLineSorter sorter = new ExternalLineSorter(Comparator.naturalOrder(), 10)) {
+            sorter.add("c");
+            sorter.add("a");
+            sorter.add("b");
+
+            StringWriter writer = new StringWriter();
+            sorter.writeSorted(writer);
+            assertEquals("a\nb\nc\n", writer.toString());
+            assertEquals(3, sorter.getLineCount());
+        }
+    }
+
+    @Test
+    public void mergesSpilledLines() throws IOException {
+        try (ExternalLineSorter sorter = new ExternalLineSorter(Comparator.naturalOrder(), 2)) {
+            for (String line : new String[] {"e", "b", "g", "a", "f", "c", "d"}) {
+                sorter.add(line);
+            }
+            StringWriter writer = new StringWriter();
+            sorter.writeSorted(writer);
+            assertEquals("a\nb\nc\nd\ne\nf\ng\n", writer.toString());
+            assertEquals(7, sorter.getLineCount());
+        }
+    }
+
+    @Test
+    public void noLines() throws IOException {
+        try (ExternalLineSorter sorter = new ExternalLineSorter(Comparator.naturalOrder(), 2)) {
+            StringWriter writer = new StringWriter();
+            sorter.writeSorted(writer);
+            assertEquals("", writer.toString());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLineBreaks() throws IOException {
+        try (ExternalLineSorter sorter = new ExternalLineSorter(Comparator.naturalOrder(), 2)) {
+            sorter.add("a\nb");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.sagebionetworks.bridge.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getTotalSeconds(), DELTA);
+        assertEquals(0.0, histogram.getPercentileSeconds(99), DELTA);
+    }
+
+    @Test
+    public void recordsIntoBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 50us is in the first bucket. 100us is on the first bound, so it's also in the first bucket.
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(50));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        histogram.record(TimeUnit.SECONDS.toNanos(120));
+
+        long[] counts = histogram.getBucketCounts();
+        assertEquals(LatencyHistogram.getBucketUpperBoundsSeconds().length + 1, counts.length);
+        assertEquals(2, counts[0]);
+        assertEquals(1, counts[5]);
+        assertEquals(1, counts[counts.length - 1]);
+        assertEquals(4, histogram.getCount());
+        assertEquals(120.00315, histogram.getTotalSeconds(), DELTA);
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(4));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(300));
+
+        assertEquals(0.005, histogram.getPercentileSeconds(50), DELTA);
+        assertEquals(0.005, histogram.getPercentileSeconds(99), DELTA);
+        assertEquals(0.5, histogram.getPercentileSeconds(99.9), DELTA);
+        assertEquals(0.5, histogram.getPercentileSeconds(100), DELTA);
+    }
+
+    @Test
+    public void bucketBounds() {
+        double[] bounds = LatencyHistogram.getBucketUpperBoundsSeconds();
+        assertEquals(0.0001, bounds[0], DELTA);
+        assertEquals(60.0, bounds[bounds.length - 1], DELTA);
+        assertArrayEquals(new double[] { 0.0001, 0.0002, 0.0005 }, Arrays.copyOf(bounds, 3), DELTA);
+    }
+}
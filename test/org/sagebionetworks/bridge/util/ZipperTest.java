@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.util;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.io.ByteArrayInputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -31,6 +32,36 @@ public class ZipperTest {
         zipper.unzip(zipped);
     }
 
+    @Test
+    public void testStreamingUnzip() throws Exception {
+        Zipper zipper = new Zipper(10, 20);
+        Map<String, byte[]> dataMap = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            dataMap.put(Integer.toString(i), Integer.toString(i).getBytes());
+        }
+        byte[] zipped = zipper.zip(dataMap);
+
+        Map<String, String> unzippedMap = new HashMap<>();
+        zipper.unzip(new ByteArrayInputStream(zipped), (entryName, content) -> {
+            unzippedMap.put(entryName, new String(content));
+        });
+        assertEquals(20, unzippedMap.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Integer.toString(i), unzippedMap.get(Integer.toString(i)));
+        }
+    }
+
+    @Test(expected=ZipOverflowException.class)
+    public void testStreamingUnzipTooManyZipEntries() throws Exception {
+        Zipper zipper = new Zipper(10, 20);
+        Map<String, byte[]> dataMap = new HashMap<>();
+        for (int i = 0; i < 21; i++) {
+            dataMap.put(Integer.toString(i), Integer.toString(i).getBytes());
+        }
+        byte[] zipped = zipper.zip(dataMap);
+        zipper.unzip(new ByteArrayInputStream(zipped), (entryName, content) -> {});
+    }
+
     private void zipUnzip(final Zipper zipper, final int numEntries) throws Exception {
         Map<String, byte[]> dataMap = new HashMap<>();
         for (int i = 0; i < numEntries; i++) {